@@ -0,0 +1,71 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.domains
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertTrue
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Compares autocomplete lookups in the shipped domain list using a [DomainIndex] and a linear scan. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class DomainIndexBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val domains = Domains.load(ApplicationProvider.getApplicationContext()).into()
+
+    // Every keystroke of typing "www." followed by each host, and of typing each bare host.
+    private val queries = domains.flatMap { domain ->
+        val wwwHost = "www.${domain.host}"
+        (1..wwwHost.length).map { wwwHost.substring(0, it) } +
+            (1..domain.host.length).map { domain.host.substring(0, it) }
+    }
+
+    @Test
+    fun buildIndex() {
+        assertTrue(domains.isNotEmpty())
+
+        benchmarkRule.measureRepeated {
+            DomainIndex(domains)
+        }
+    }
+
+    @Test
+    fun findWithIndex() {
+        val index = DomainIndex(domains)
+
+        benchmarkRule.measureRepeated {
+            queries.forEach { index.find(it) }
+        }
+    }
+
+    @Test
+    fun findWithLinearScan() {
+        benchmarkRule.measureRepeated {
+            queries.forEach { query -> linearScan(query) }
+        }
+    }
+
+    // The lookup the providers did before they used a DomainIndex.
+    private fun linearScan(query: String): String? {
+        domains.forEach {
+            val wwwDomain = "www.${it.host}"
+            if (wwwDomain.startsWith(query)) {
+                return wwwDomain
+            }
+            if (it.host.startsWith(query)) {
+                return it.host
+            }
+        }
+        return null
+    }
+}
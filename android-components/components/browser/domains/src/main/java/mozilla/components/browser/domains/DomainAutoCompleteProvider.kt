@@ -9,7 +9,6 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.launch
-import java.util.Locale
 
 /**
  * Provides autocomplete functionality for domains, based on a provided list
@@ -47,10 +46,22 @@ class DomainAutoCompleteProvider {
 
     // We compute these on worker threads; make sure results are immediately visible on the UI thread.
     @Volatile
-    internal var customDomains = emptyList<Domain>()
+    private var customDomainIndex = DomainIndex(emptyList())
 
     @Volatile
-    internal var shippedDomains = emptyList<Domain>()
+    private var shippedDomainIndex = DomainIndex(emptyList())
+
+    internal var customDomains: List<Domain>
+        get() = customDomainIndex.domains
+        set(value) {
+            customDomainIndex = DomainIndex(value)
+        }
+
+    internal var shippedDomains: List<Domain>
+        get() = shippedDomainIndex.domains
+        set(value) {
+            shippedDomainIndex = DomainIndex(value)
+        }
     private var useCustomDomains = false
     private var useShippedDomains = true
 
@@ -65,14 +76,14 @@ class DomainAutoCompleteProvider {
     @Suppress("ReturnCount")
     fun autocomplete(rawText: String): Result {
         if (useCustomDomains) {
-            val result = tryToAutocomplete(rawText, customDomains, AutocompleteSource.CUSTOM_LIST)
+            val result = tryToAutocomplete(rawText, customDomainIndex, AutocompleteSource.CUSTOM_LIST)
             if (result != null) {
                 return result
             }
         }
 
         if (useShippedDomains) {
-            val result = tryToAutocomplete(rawText, shippedDomains, AutocompleteSource.DEFAULT_LIST)
+            val result = tryToAutocomplete(rawText, shippedDomainIndex, AutocompleteSource.DEFAULT_LIST)
             if (result != null) {
                 return result
             }
@@ -120,23 +131,9 @@ class DomainAutoCompleteProvider {
         }
     }
 
-    @Suppress("ReturnCount")
-    private fun tryToAutocomplete(rawText: String, domains: List<Domain>, source: String): Result? {
-        // Search terms are all lowercase already, we just need to lowercase the search text
-        val searchText = rawText.lowercase(Locale.US)
-
-        domains.forEach {
-            val wwwDomain = "www.${it.host}"
-            if (wwwDomain.startsWith(searchText)) {
-                return Result(getResultText(rawText, wwwDomain), it.url, source, domains.size)
-            }
-
-            if (it.host.startsWith(searchText)) {
-                return Result(getResultText(rawText, it.host), it.url, source, domains.size)
-            }
-        }
-
-        return null
+    private fun tryToAutocomplete(rawText: String, index: DomainIndex, source: String): Result? {
+        val match = index.find(rawText) ?: return null
+        return Result(getResultText(rawText, match.text), match.domain.url, source, index.domains.size)
     }
 
     /**
@@ -0,0 +1,131 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.domains
+
+import java.util.TreeMap
+
+private const val WWW_PREFIX = "www."
+private const val NO_MATCH = -1
+
+/**
+ * A prefix index of [domains] for autocompletion, covering both the "www." and the bare form of
+ * every host.
+ *
+ * The index is a trie stored in flat arrays. Every node stores the best match among all hosts
+ * starting with its prefix, so a lookup walks one node per character of the query and doesn't
+ * allocate. The best match is the one the linear scan it replaces would have found: the first
+ * domain in [domains] whose "www." or bare form starts with the query, preferring the "www." form.
+ */
+internal class DomainIndex(val domains: List<Domain>) {
+    /**
+     * A match of a query in the index.
+     *
+     * @property domain The matching domain.
+     * @property text The form of the domain's host that matched: with or without "www.".
+     */
+    data class Match(val domain: Domain, val text: String)
+
+    // Children of a node have consecutive node IDs and are sorted by their label. Node 0 is the root.
+    private val labels: CharArray
+    private val firstChild: IntArray
+    private val childCount: IntArray
+
+    // The best match of every node, as a rank: the index of the domain times 2, plus 1 for the bare form.
+    private val bestRanks: IntArray
+
+    init {
+        val root = BuildNode()
+        domains.forEachIndexed { index, domain ->
+            root.insert(WWW_PREFIX, domain.host, index * 2)
+            root.insert("", domain.host, index * 2 + 1)
+        }
+
+        val nodes = ArrayList<BuildNode>()
+        nodes.add(root)
+        var position = 0
+        while (position < nodes.size) {
+            nodes.addAll(nodes[position].children.values)
+            position++
+        }
+
+        labels = CharArray(nodes.size)
+        firstChild = IntArray(nodes.size)
+        childCount = IntArray(nodes.size)
+        bestRanks = IntArray(nodes.size)
+
+        // Nodes were collected breadth-first, so the children of a node are next to each other.
+        var nextChild = 1
+        nodes.forEachIndexed { id, node ->
+            labels[id] = node.label
+            bestRanks[id] = node.bestRank
+            firstChild[id] = nextChild
+            childCount[id] = node.children.size
+            nextChild += node.children.size
+        }
+    }
+
+    /**
+     * Returns the best match for [query], compared case-insensitively, or null if no host starts
+     * with [query].
+     */
+    fun find(query: CharSequence): Match? {
+        val rank = findRank(query)
+        if (rank == NO_MATCH) {
+            return null
+        }
+
+        val domain = domains[rank / 2]
+        val text = if (rank % 2 == 0) WWW_PREFIX + domain.host else domain.host
+        return Match(domain, text)
+    }
+
+    /**
+     * Returns the rank of the best match for [query], or [NO_MATCH].
+     */
+    @Suppress("ReturnCount")
+    private fun findRank(query: CharSequence): Int {
+        if (domains.isEmpty()) {
+            return NO_MATCH
+        }
+
+        var node = 0
+        for (i in query.indices) {
+            node = findChild(node, Character.toLowerCase(query[i]))
+            if (node == NO_MATCH) {
+                return NO_MATCH
+            }
+        }
+        return bestRanks[node]
+    }
+
+    private fun findChild(node: Int, label: Char): Int {
+        var low = firstChild[node]
+        var high = low + childCount[node] - 1
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            when {
+                labels[middle] < label -> low = middle + 1
+                labels[middle] > label -> high = middle - 1
+                else -> return middle
+            }
+        }
+        return NO_MATCH
+    }
+
+    private class BuildNode(val label: Char = '\u0000') {
+        val children = TreeMap<Char, BuildNode>()
+        var bestRank = Int.MAX_VALUE
+
+        fun insert(prefix: String, host: String, rank: Int) {
+            var node = this
+            node.bestRank = minOf(node.bestRank, rank)
+            for (i in 0 until prefix.length + host.length) {
+                val char = if (i < prefix.length) prefix[i] else host[i - prefix.length]
+                node = node.children.getOrPut(char) { BuildNode(char) }
+                node.bestRank = minOf(node.bestRank, rank)
+            }
+        }
+    }
+}
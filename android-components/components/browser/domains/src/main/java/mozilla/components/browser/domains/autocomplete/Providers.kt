@@ -11,6 +11,7 @@ import kotlinx.coroutines.async
 import kotlinx.coroutines.launch
 import mozilla.components.browser.domains.CustomDomains
 import mozilla.components.browser.domains.Domain
+import mozilla.components.browser.domains.DomainIndex
 import mozilla.components.browser.domains.Domains
 import mozilla.components.browser.domains.into
 import mozilla.components.concept.toolbar.AutocompleteProvider
@@ -53,7 +54,14 @@ open class BaseDomainAutocompleteProvider(
 
     // We compute 'domains' on the worker thread; make sure it's immediately visible on the UI thread.
     @Volatile
-    var domains: List<Domain> = emptyList()
+    private var index = DomainIndex(emptyList())
+
+    var domains: List<Domain>
+        get() = index.domains
+        set(value) {
+            // Index the domains once here, so that looking up a suggestion doesn't need to scan all of them.
+            index = DomainIndex(value)
+        }
 
     fun initialize(context: Context) {
         launch {
@@ -69,33 +77,17 @@ open class BaseDomainAutocompleteProvider(
      * @return the result of auto-completion, or null if no match is found.
      */
     override suspend fun getAutocompleteSuggestion(query: String): AutocompleteResult? {
-        // Search terms are all lowercase already, we just need to lowercase the search text
-        val searchText = query.lowercase(Locale.US)
-
-        domains.forEach {
-            val wwwDomain = "www.${it.host}"
-            if (wwwDomain.startsWith(searchText)) {
-                return AutocompleteResult(
-                    input = searchText,
-                    text = getResultText(query, wwwDomain),
-                    url = it.url,
-                    source = list.listName,
-                    totalItems = domains.size,
-                )
-            }
+        val currentIndex = index
+        val match = currentIndex.find(query) ?: return null
 
-            if (it.host.startsWith(searchText)) {
-                return AutocompleteResult(
-                    input = searchText,
-                    text = getResultText(query, it.host),
-                    url = it.url,
-                    source = list.listName,
-                    totalItems = domains.size,
-                )
-            }
-        }
-
-        return null
+        // Search terms are all lowercase already, we just need to lowercase the search text
+        return AutocompleteResult(
+            input = query.lowercase(Locale.US),
+            text = getResultText(query, match.text),
+            url = match.domain.url,
+            source = list.listName,
+            totalItems = currentIndex.domains.size,
+        )
     }
 
     /**
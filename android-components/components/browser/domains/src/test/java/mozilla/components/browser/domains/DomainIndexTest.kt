@@ -0,0 +1,47 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.domains
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class DomainIndexTest {
+    private val domains = listOf("https://mozilla.org", "www.google.com", "mozilla.com", "wikipedia.org").into()
+    private val index = DomainIndex(domains)
+
+    @Test
+    fun `finds the first domain in list order starting with the query`() {
+        assertEquals(DomainIndex.Match(domains[0], "mozilla.org"), index.find("m"))
+        assertEquals(DomainIndex.Match(domains[0], "mozilla.org"), index.find("mozilla."))
+        assertEquals(DomainIndex.Match(domains[2], "mozilla.com"), index.find("mozilla.c"))
+        assertEquals(DomainIndex.Match(domains[1], "google.com"), index.find("goo"))
+        assertEquals(DomainIndex.Match(domains[3], "wikipedia.org"), index.find("wi"))
+    }
+
+    @Test
+    fun `prefers the www form of a domain`() {
+        assertEquals(DomainIndex.Match(domains[0], "www.mozilla.org"), index.find(""))
+        assertEquals(DomainIndex.Match(domains[0], "www.mozilla.org"), index.find("w"))
+        assertEquals(DomainIndex.Match(domains[0], "www.mozilla.org"), index.find("www."))
+        assertEquals(DomainIndex.Match(domains[1], "www.google.com"), index.find("www.g"))
+        assertEquals(DomainIndex.Match(domains[2], "www.mozilla.com"), index.find("www.mozilla.c"))
+    }
+
+    @Test
+    fun `compares the query case-insensitively`() {
+        assertEquals(DomainIndex.Match(domains[1], "www.google.com"), index.find("WWW.Goo"))
+        assertEquals(DomainIndex.Match(domains[3], "wikipedia.org"), index.find("WikiPedia.ORG"))
+    }
+
+    @Test
+    fun `finds nothing if no domain starts with the query`() {
+        assertNull(index.find("mozilla.net"))
+        assertNull(index.find("mozilla.org/"))
+        assertNull(index.find("wwww"))
+        assertNull(index.find("x"))
+        assertNull(DomainIndex(emptyList()).find(""))
+    }
+}
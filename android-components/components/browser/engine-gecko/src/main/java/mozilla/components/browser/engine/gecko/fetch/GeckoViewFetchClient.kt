@@ -5,6 +5,8 @@
 package mozilla.components.browser.engine.gecko.fetch
 
 import android.content.Context
+import android.os.Handler
+import android.os.HandlerThread
 import androidx.annotation.VisibleForTesting
 import mozilla.components.concept.fetch.Client
 import mozilla.components.concept.fetch.Headers
@@ -14,6 +16,7 @@ import mozilla.components.concept.fetch.Response
 import mozilla.components.concept.fetch.Response.Companion.SUCCESS
 import mozilla.components.concept.fetch.isBlobUri
 import mozilla.components.concept.fetch.isDataUri
+import org.mozilla.geckoview.GeckoResult
 import org.mozilla.geckoview.GeckoRuntime
 import org.mozilla.geckoview.GeckoWebExecutor
 import org.mozilla.geckoview.WebRequest
@@ -62,6 +65,39 @@ class GeckoViewFetchClient(
         }
     }
 
+    /**
+     * Fetches with [GeckoWebExecutor] without blocking a thread. Cancelling the returned [Client.Call] cancels the
+     * [GeckoResult] of the fetch. The callback is called on a dedicated thread, so that this can be called from any
+     * thread, including ones without a Looper. Unlike [fetch], this doesn't enforce the [Request.readTimeout].
+     */
+    override fun fetchAsync(request: Request, callback: Client.Callback): Client.Call {
+        if (request.isDataUri()) {
+            try {
+                callback.onResponse(fetchDataUri(request))
+            } catch (e: IOException) {
+                callback.onFailure(e)
+            }
+            return Client.Call {}
+        }
+
+        val result = executor.fetch(request.toWebRequest(), request.fetchFlags)
+        // Without a Handler, GeckoResult can only call listeners on the Looper of the calling thread.
+        result.withHandler(callbackHandler).accept(
+            { webResponse ->
+                if (webResponse != null) {
+                    callback.onResponse(webResponse.toResponse())
+                } else {
+                    callback.onFailure(IOException("Fetch failed with null response"))
+                }
+            },
+            { throwable ->
+                callback.onFailure(throwable as? IOException ?: IOException(throwable))
+            },
+        )
+
+        return Client.Call { result.cancel() }
+    }
+
     private val Request.fetchFlags: Int
         get() {
             var fetchFlags = 0
@@ -79,6 +115,11 @@ class GeckoViewFetchClient(
 
     companion object {
         const val MAX_READ_TIMEOUT_MINUTES = 5L
+
+        private val callbackHandler by lazy {
+            val thread = HandlerThread("GeckoViewFetchClient").apply { start() }
+            Handler(thread.looper)
+        }
     }
 }
 
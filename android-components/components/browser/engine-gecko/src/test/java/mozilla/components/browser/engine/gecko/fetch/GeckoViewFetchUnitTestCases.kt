@@ -4,11 +4,13 @@
 
 package mozilla.components.browser.engine.gecko.fetch
 
+import android.os.Looper
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import mozilla.components.concept.fetch.Client
 import mozilla.components.concept.fetch.Request
 import mozilla.components.concept.fetch.Response
 import mozilla.components.support.test.any
+import mozilla.components.support.test.argumentCaptor
 import mozilla.components.support.test.eq
 import mozilla.components.support.test.mock
 import mozilla.components.support.test.robolectric.testContext
@@ -18,6 +20,7 @@ import okhttp3.Headers
 import okhttp3.mockwebserver.MockWebServer
 import okhttp3.mockwebserver.RecordedRequest
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Ignore
@@ -34,7 +37,10 @@ import org.mozilla.geckoview.WebRequestError
 import org.mozilla.geckoview.WebResponse
 import java.io.IOException
 import java.nio.charset.Charset
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
+import kotlin.concurrent.thread
 
 /**
  * We can't run standard JVM unit tests for GWE. Therefore, we provide both
@@ -301,6 +307,91 @@ class GeckoViewFetchUnitTestCases : FetchTestCases() {
         assertEquals(Response.SUCCESS, builder.toResponse().status)
     }
 
+    @Test
+    fun fetchAsyncCallsCallbackWithResponseAndCancelsResult() {
+        val geckoResult = mock<GeckoResult<WebResponse>>()
+        whenever(geckoResult.withHandler(any())).thenReturn(geckoResult)
+        val executor = mock<GeckoWebExecutor>()
+        whenever(executor.fetch(any(), anyInt())).thenReturn(geckoResult)
+        geckoWebExecutor = executor
+
+        val callback = RecordingCallback()
+        val call = createNewClient().fetchAsync(Request("https://mozilla.org"), callback)
+
+        val valueCaptor = argumentCaptor<GeckoResult.Consumer<WebResponse>>()
+        val exceptionCaptor = argumentCaptor<GeckoResult.Consumer<Throwable>>()
+        verify(geckoResult).accept(valueCaptor.capture(), exceptionCaptor.capture())
+
+        valueCaptor.value.accept(WebResponse.Builder("https://mozilla.org").statusCode(200).build())
+        assertEquals(200, callback.response!!.status)
+
+        exceptionCaptor.value.accept(WebRequestError(0, 0))
+        assertTrue(callback.exception!!.cause is WebRequestError)
+
+        call.cancel()
+        verify(geckoResult).cancel()
+    }
+
+    @Test
+    fun fetchAsyncCanBeCalledFromThreadWithoutLooper() {
+        val geckoResult = GeckoResult<WebResponse>()
+        val executor = mock<GeckoWebExecutor>()
+        whenever(executor.fetch(any(), anyInt())).thenReturn(geckoResult)
+        geckoWebExecutor = executor
+        val client = createNewClient()
+
+        val latch = CountDownLatch(1)
+        val callback = object : Client.Callback {
+            var response: Response? = null
+
+            override fun onResponse(response: Response) {
+                this.response = response
+                latch.countDown()
+            }
+
+            override fun onFailure(exception: IOException) = Unit
+        }
+        var looper: Looper? = null
+        var exception: Throwable? = null
+        thread {
+            looper = Looper.myLooper()
+            try {
+                client.fetchAsync(Request("https://mozilla.org"), callback)
+            } catch (e: IllegalThreadStateException) {
+                exception = e
+            }
+        }.join()
+        assertNull(looper)
+        assertNull(exception)
+
+        geckoResult.complete(WebResponse.Builder("https://mozilla.org").statusCode(200).build())
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS))
+        assertEquals(200, callback.response!!.status)
+    }
+
+    @Test
+    fun fetchAsyncCallsCallbackWithDataUriResponse() {
+        val callback = RecordingCallback()
+        createNewClient().fetchAsync(Request("data:,Hello%2C%20World!"), callback)
+
+        assertEquals("Hello, World!", callback.response!!.body.string())
+        assertNull(callback.exception)
+    }
+
+    private class RecordingCallback : Client.Callback {
+        var response: Response? = null
+        var exception: IOException? = null
+
+        override fun onResponse(response: Response) {
+            this.response = response
+        }
+
+        override fun onFailure(exception: IOException) {
+            this.exception = exception
+        }
+    }
+
     private fun mockRequest(headerMap: Map<String, String>? = null, body: String? = null, method: String = "GET") {
         val server = mock<MockWebServer>()
         whenever(server.url(any())).thenReturn(mock())
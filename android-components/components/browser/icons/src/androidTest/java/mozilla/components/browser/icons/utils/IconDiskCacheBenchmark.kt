@@ -0,0 +1,132 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import android.content.Context
+import android.graphics.Bitmap
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.browser.icons.Icon
+import mozilla.components.browser.icons.IconRequest
+import mozilla.components.browser.icons.loader.DiskIconLoader
+import mozilla.components.browser.icons.preparer.DiskIconPreparer
+import mozilla.components.browser.icons.processor.DiskIconProcessor
+import org.junit.Assert.assertNotNull
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import kotlin.random.Random
+
+private const val ICON_COUNT = 1000
+private const val LOOKUPS_PER_ITERATION = 100
+private const val ICON_SIZE = 32
+
+/** Compares lookups in the [IconDiskCache] and the [PackedIconDiskCache] after caching [ICON_COUNT] icons. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class IconDiskCacheBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+
+    private val requests = (0 until ICON_COUNT).map { index ->
+        IconRequest(
+            url = "https://www.example$index.org",
+            resources = listOf(
+                IconRequest.Resource(
+                    url = "https://www.example$index.org/favicon.ico",
+                    type = IconRequest.Resource.Type.FAVICON,
+                ),
+            ),
+        )
+    }
+
+    @Test
+    fun lookupIconDiskCache() {
+        val cache = IconDiskCache().apply { clear(context) }
+        benchmarkLookups(cache, cache, cache)
+    }
+
+    @Test
+    fun lookupPackedIconDiskCache() {
+        val cache = PackedIconDiskCache().apply { clear(context) }
+        benchmarkLookups(cache, cache, cache)
+    }
+
+    @Test
+    fun openAndLookupIconDiskCache() {
+        IconDiskCache().apply {
+            clear(context)
+            populate(this)
+        }
+
+        benchmarkOpenAndLookup(
+            createCache = { IconDiskCache() },
+            closeCache = { cache ->
+                cache.iconResourcesCache?.close()
+                cache.iconDataCache?.close()
+            },
+        )
+    }
+
+    @Test
+    fun openAndLookupPackedIconDiskCache() {
+        PackedIconDiskCache().apply {
+            clear(context)
+            populate(this)
+        }
+
+        benchmarkOpenAndLookup(
+            createCache = { PackedIconDiskCache() },
+            closeCache = { cache -> cache.packedFile?.close() },
+        )
+    }
+
+    private fun benchmarkLookups(
+        processorCache: DiskIconProcessor.ProcessorDiskCache,
+        preparerCache: DiskIconPreparer.PreparerDiskCache,
+        loaderCache: DiskIconLoader.LoaderDiskCache,
+    ) {
+        populate(processorCache)
+
+        val random = Random(seed = 42)
+        benchmarkRule.measureRepeated {
+            repeat(LOOKUPS_PER_ITERATION) {
+                val request = requests[random.nextInt(ICON_COUNT)]
+                val resources = preparerCache.getResources(context, request)
+                assertNotNull(loaderCache.getIconData(context, resources.first()))
+            }
+        }
+    }
+
+    private fun <T> benchmarkOpenAndLookup(
+        createCache: () -> T,
+        closeCache: (T) -> Unit,
+    ) where T : DiskIconPreparer.PreparerDiskCache, T : DiskIconLoader.LoaderDiskCache {
+        benchmarkRule.measureRepeated {
+            val cache = createCache()
+            val request = requests.last()
+            val resources = cache.getResources(context, request)
+            assertNotNull(cache.getIconData(context, resources.first()))
+
+            runWithTimingDisabled { closeCache(cache) }
+        }
+    }
+
+    private fun populate(cache: DiskIconProcessor.ProcessorDiskCache) {
+        val random = Random(seed = 23)
+        val bitmap = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888)
+
+        requests.forEach { request ->
+            bitmap.eraseColor(random.nextInt())
+            cache.putResources(context, request)
+            cache.putIcon(context, request.resources.first(), Icon(bitmap, source = Icon.Source.DOWNLOAD))
+        }
+    }
+}
@@ -5,7 +5,6 @@
 package mozilla.components.browser.icons
 
 import android.annotation.SuppressLint
-import android.content.ComponentCallbacks2
 import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.drawable.Drawable
@@ -20,7 +19,6 @@ import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.asCoroutineDispatcher
-import kotlinx.coroutines.async
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.flow.map
@@ -45,6 +43,7 @@ import mozilla.components.browser.icons.processor.IconProcessor
 import mozilla.components.browser.icons.processor.MemoryIconProcessor
 import mozilla.components.browser.icons.utils.IconDiskCache
 import mozilla.components.browser.icons.utils.IconMemoryCache
+import mozilla.components.browser.icons.utils.InFlightRequests
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.base.memory.MemoryConsumer
@@ -54,6 +53,7 @@ import mozilla.components.concept.fetch.Client
 import mozilla.components.lib.state.ext.flowScoped
 import mozilla.components.support.base.log.logger.Logger
 import mozilla.components.support.base.utils.NamedThreadFactory
+import mozilla.components.support.images.BitmapPool
 import mozilla.components.support.images.CancelOnDetach
 import mozilla.components.support.images.DesiredSize
 import mozilla.components.support.images.decoder.AndroidImageDecoder
@@ -72,12 +72,15 @@ private const val THREADS = 3
 
 internal val sharedMemoryCache = IconMemoryCache()
 internal val sharedDiskCache = IconDiskCache()
+internal val sharedBitmapPool = BitmapPool()
 
 /**
  * Entry point for loading icons for websites.
  *
  * @param generator The [IconGenerator] to generate an icon if no icon could be loaded.
  * @param decoders List of [ImageDecoder] instances to use when decoding a loaded icon into a [android.graphics.Bitmap].
+ * @param bitmapPool The [BitmapPool] that [Icon.releasable] bitmaps are released to, if a processor
+ * replaces or drops them. The default decoders reuse the bitmaps of this pool for decoding icons.
  */
 class BrowserIcons @Suppress("LongParameterList") constructor(
     private val context: Context,
@@ -95,7 +98,7 @@ class BrowserIcons @Suppress("LongParameterList") constructor(
         DataUriIconLoader(),
     ),
     private val decoders: List<ImageDecoder> = listOf(
-        AndroidImageDecoder(),
+        AndroidImageDecoder(sharedBitmapPool),
         ICOIconDecoder(),
     ),
     private val processors: List<IconProcessor> = listOf(
@@ -106,26 +109,36 @@ class BrowserIcons @Suppress("LongParameterList") constructor(
         THREADS,
         NamedThreadFactory("BrowserIcons"),
     ).asCoroutineDispatcher(),
+    private val bitmapPool: BitmapPool = sharedBitmapPool,
 ) : MemoryConsumer {
     private val logger = Logger("BrowserIcons")
     private val maximumSize = context.resources.getDimensionPixelSize(R.dimen.mozac_browser_icons_maximum_size)
     private val minimumSize = context.resources.getDimensionPixelSize(R.dimen.mozac_browser_icons_minimum_size)
     private val scope = CoroutineScope(jobDispatcher)
+    private val inFlightRequests = InFlightRequests<Pair<IconRequest, DesiredSize>, Icon>(scope)
     private val backgroundHttpIconLoader = NonBlockingHttpIconLoader(httpClient) { request, resource, result ->
         val desiredSize = request.getDesiredSize(context, minimumSize, maximumSize)
 
         val icon = decodeIconLoaderResult(result, decoders, desiredSize)
             ?: generator.generate(context, request)
 
-        process(context, processors, request, resource, icon, desiredSize)
+        process(context, processors, request, resource, icon, desiredSize, bitmapPool)
     }
 
     /**
      * Asynchronously loads an [Icon] for the given [IconRequest].
      */
-    fun loadIcon(request: IconRequest): Deferred<Icon> = scope.async {
-        loadIconInternalAsync(request).await().also { loadedIcon ->
-            logger.debug("Loaded icon (source = ${loadedIcon.source}): ${request.url}")
+    fun loadIcon(request: IconRequest): Deferred<Icon> = loadIconInternalAsync(request)
+
+    /**
+     * Asynchronously loads an [Icon] for each of the given [IconRequest]s, e.g. for the rows of a
+     * list that are about to be displayed. The returned list contains a [Deferred] for every
+     * request, in the same order. Equal requests share a single load.
+     */
+    fun loadIcons(requests: List<IconRequest>): List<Deferred<Icon>> {
+        val deferredIcons = HashMap<IconRequest, Deferred<Icon>>(requests.size)
+        return requests.map { request ->
+            deferredIcons.getOrPut(request) { loadIcon(request) }
         }
     }
 
@@ -144,14 +157,27 @@ class BrowserIcons @Suppress("LongParameterList") constructor(
         return null
     }
 
+    /**
+     * Loads an [Icon] for the given [IconRequest], joining a load of an equal request that is
+     * already in flight (e.g. if multiple lists display the icon of the same site at the same time)
+     * instead of running the pipeline (and possibly downloading the icon) again.
+     */
     @WorkerThread
     @VisibleForTesting
     internal fun loadIconInternalAsync(
         initialRequest: IconRequest,
         size: DesiredSize? = null,
-    ): Deferred<Icon> = scope.async {
+    ): Deferred<Icon> {
         val desiredSize = size ?: desiredSizeForRequest(initialRequest)
 
+        return inFlightRequests.join(initialRequest to desiredSize) {
+            loadIconPipeline(initialRequest, desiredSize).also { loadedIcon ->
+                logger.debug("Loaded icon (source = ${loadedIcon.source}): ${initialRequest.url}")
+            }
+        }
+    }
+
+    private fun loadIconPipeline(initialRequest: IconRequest, desiredSize: DesiredSize): Icon {
         // (1) First prepare the request.
         val request = prepare(context, preparers, initialRequest)
 
@@ -168,9 +194,10 @@ class BrowserIcons @Suppress("LongParameterList") constructor(
         val (icon, resource) = load(context, request, updatedLoaders, decoders, desiredSize)
             ?: generator.generate(context, request) to null
 
-        // (4) Finally process the icon.
-        process(context, processors, request, resource, icon, desiredSize)
+        // (4) Finally process the icon. The caller references the bitmap of the returned icon.
+        val processedIcon = process(context, processors, request, resource, icon, desiredSize, bitmapPool)
             ?: generator.generate(context, request)
+        return if (processedIcon.releasable) processedIcon.copy(releasable = false) else processedIcon
     }
 
     /**
@@ -265,32 +292,12 @@ class BrowserIcons @Suppress("LongParameterList") constructor(
     @Deprecated("Use onTrimMemory instead.", replaceWith = ReplaceWith("onTrimMemory"))
     fun onLowMemory() {
         sharedMemoryCache.clear()
+        bitmapPool.clear()
     }
 
     override fun onTrimMemory(level: Int) {
-        val shouldClearMemoryCache = when (level) {
-            // Foreground: The device is running much lower on memory. The app is running and not killable, but the
-            // system wants us to release unused resources to improve system performance.
-            ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
-            // Foreground: The device is running extremely low on memory. The app is not yet considered a killable
-            // process, but the system will begin killing background processes if apps do not release resources.
-            ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
-            -> true
-
-            // Background: The system is running low on memory and our process is near the middle of the LRU list.
-            // If the system becomes further constrained for memory, there's a chance our process will be killed.
-            ComponentCallbacks2.TRIM_MEMORY_MODERATE,
-            // Background: The system is running low on memory and our process is one of the first to be killed
-            // if the system does not recover memory now.
-            ComponentCallbacks2.TRIM_MEMORY_COMPLETE,
-            -> true
-
-            else -> false
-        }
-
-        if (shouldClearMemoryCache) {
-            sharedMemoryCache.clear()
-        }
+        sharedMemoryCache.onTrimMemory(level)
+        bitmapPool.clear()
     }
 
     /**
@@ -368,8 +375,9 @@ private fun decodeIconLoaderResult(
 
     is IconLoader.Result.BitmapResult -> Icon(result.bitmap, source = result.source)
 
+    // Nothing else references a bitmap that was just decoded.
     is IconLoader.Result.BytesResult ->
-        decodeBytes(result.bytes, decoders, desiredSize)?.let { Icon(it, source = result.source) }
+        decodeBytes(result.bytes, decoders, desiredSize)?.let { Icon(it, source = result.source, releasable = true) }
 }
 
 @VisibleForTesting
@@ -405,8 +413,13 @@ private fun process(
     resource: IconRequest.Resource?,
     icon: Icon?,
     desiredSize: DesiredSize,
+    bitmapPool: BitmapPool,
 ): Icon? =
     processors.fold(icon) { processedIcon, processor ->
         if (processedIcon == null) return null
-        processor.process(context, request, resource, processedIcon, desiredSize)
+        processor.process(context, request, resource, processedIcon, desiredSize).also { result ->
+            if (processedIcon.releasable && result?.bitmap !== processedIcon.bitmap) {
+                bitmapPool.put(processedIcon.bitmap)
+            }
+        }
     }
@@ -13,12 +13,17 @@ import android.graphics.Bitmap
  * @property color The dominant color of the icon. Will be null if no color could be extracted.
  * @property source The source of the icon.
  * @property maskable True if the icon represents as full-bleed icon that can be cropped to other shapes.
+ * @property releasable True if the [bitmap] was created while loading or processing the icon and is
+ * not referenced by anything else (e.g. a memory cache or a view) yet. If a processor replaces or
+ * drops such a bitmap, [BrowserIcons] releases it to its [mozilla.components.support.images.BitmapPool].
+ * Icons returned by [BrowserIcons] are never releasable.
  */
 data class Icon(
     val bitmap: Bitmap,
     val color: Int? = null,
     val source: Source,
     val maskable: Boolean = false,
+    val releasable: Boolean = false,
 ) {
     /**
      * The source of an [Icon].
@@ -61,7 +61,12 @@ class AdaptiveIconProcessor : IconProcessor {
             drawBitmap(originalBitmap, null, maskBounds, paint)
         }
 
-        return icon.copy(bitmap = paddedBitmap, maskable = true).also { originalBitmap.recycle() }
+        // A releasable bitmap is released to the bitmap pool by BrowserIcons instead.
+        if (!icon.releasable) {
+            originalBitmap.recycle()
+        }
+
+        return icon.copy(bitmap = paddedBitmap, maskable = true, releasable = true)
     }
 
     companion object {
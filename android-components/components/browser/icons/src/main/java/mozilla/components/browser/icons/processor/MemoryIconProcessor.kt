@@ -29,6 +29,8 @@ class MemoryIconProcessor(
     ): Icon {
         if (resource != null && icon.shouldCacheInMemory) {
             cache.put(request, resource, icon)
+            // The cache references the bitmap now.
+            return icon.copy(releasable = false)
         }
 
         return icon
@@ -6,17 +6,28 @@ package mozilla.components.browser.icons.processor
 
 import android.content.Context
 import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.Rect
 import androidx.annotation.VisibleForTesting
 import mozilla.components.browser.icons.Icon
 import mozilla.components.browser.icons.IconRequest
+import mozilla.components.support.images.BitmapPool
 import mozilla.components.support.images.DesiredSize
 import kotlin.math.roundToInt
 
 /**
  * [IconProcessor] implementation for resizing the loaded icon based on the target size.
+ *
+ * @param discardSmallIcons Whether icons that can't be scaled up to the target size should be
+ * discarded.
+ * @param bitmapPool An optional [BitmapPool] to take the bitmaps for resized icons from. Resized
+ * icons are marked as [Icon.releasable], so that [mozilla.components.browser.icons.BrowserIcons]
+ * can release their bitmaps to its pool once a later processor has replaced them.
  */
 class ResizingProcessor(
     private val discardSmallIcons: Boolean = true,
+    private val bitmapPool: BitmapPool? = null,
 ) : IconProcessor {
 
     override fun process(
@@ -50,7 +61,15 @@ class ResizingProcessor(
             }
         }
 
-        return icon.copy(bitmap = resizedBitmap ?: return null)
+        if (resizedBitmap == null) {
+            return null
+        }
+
+        // Only the resized icon references a newly created bitmap.
+        return icon.copy(
+            bitmap = resizedBitmap,
+            releasable = icon.releasable || resizedBitmap !== originalBitmap,
+        )
     }
 
     /**
@@ -58,10 +77,27 @@ class ResizingProcessor(
      */
     @VisibleForTesting
     internal fun resize(bitmap: Bitmap, targetSize: Int) = try {
-        Bitmap.createScaledBitmap(bitmap, targetSize, targetSize, true)
+        resizeIntoPooledBitmap(bitmap, targetSize)
+            ?: Bitmap.createScaledBitmap(bitmap, targetSize, targetSize, true)
     } catch (e: OutOfMemoryError) {
         // There's not enough memory to create a resized copy of the bitmap in memory. Let's just
         // use what we have.
         bitmap
     }
+
+    private fun resizeIntoPooledBitmap(bitmap: Bitmap, targetSize: Int): Bitmap? {
+        // Only software bitmaps can be drawn into a pooled bitmap.
+        if (bitmap.config != Bitmap.Config.ARGB_8888) {
+            return null
+        }
+
+        val resizedBitmap = bitmapPool?.get(targetSize, targetSize) ?: return null
+        Canvas(resizedBitmap).drawBitmap(
+            bitmap,
+            null,
+            Rect(0, 0, targetSize, targetSize),
+            Paint(Paint.FILTER_BITMAP_FLAG),
+        )
+        return resizedBitmap
+    }
 }
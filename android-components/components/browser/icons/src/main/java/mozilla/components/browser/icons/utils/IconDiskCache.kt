@@ -22,6 +22,7 @@ import org.json.JSONArray
 import org.json.JSONException
 import java.io.File
 import java.io.IOException
+import java.io.OutputStream
 
 private const val RESOURCES_DISK_CACHE_VERSION = 1
 private const val ICON_DATA_DISK_CACHE_VERSION = 1
@@ -108,19 +109,13 @@ class IconDiskCache :
     }
 
     internal fun putIconBitmap(context: Context, resource: IconRequest.Resource, bitmap: Bitmap) {
-        val compressFormat = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            Bitmap.CompressFormat.WEBP_LOSSY
-        } else {
-            @Suppress("DEPRECATION")
-            Bitmap.CompressFormat.WEBP
-        }
         try {
             synchronized(iconDataCacheWriteLock) {
                 val editor = getIconDataCache(context)
                     .edit(createKey(resource.url)) ?: return
 
                 editor.newOutputStream(0).use { stream ->
-                    bitmap.compress(compressFormat, WEBP_QUALITY, stream)
+                    bitmap.compressToWebP(stream)
                 }
 
                 editor.commit()
@@ -182,4 +177,15 @@ class IconDiskCache :
     }
 }
 
-private fun createKey(rawKey: String): String = rawKey.sha1()
+internal fun createKey(rawKey: String): String = rawKey.sha1()
+
+internal fun Bitmap.compressToWebP(stream: OutputStream): Boolean {
+    val compressFormat = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+        Bitmap.CompressFormat.WEBP_LOSSY
+    } else {
+        @Suppress("DEPRECATION")
+        Bitmap.CompressFormat.WEBP
+    }
+
+    return compress(compressFormat, WEBP_QUALITY, stream)
+}
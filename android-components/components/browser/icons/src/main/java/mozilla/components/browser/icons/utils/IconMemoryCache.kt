@@ -4,24 +4,41 @@
 
 package mozilla.components.browser.icons.utils
 
+import android.content.ComponentCallbacks2
 import android.graphics.Bitmap
 import android.util.LruCache
+import androidx.annotation.VisibleForTesting
 import mozilla.components.browser.icons.Icon
 import mozilla.components.browser.icons.IconRequest
 import mozilla.components.browser.icons.loader.MemoryIconLoader.LoaderMemoryCache
 import mozilla.components.browser.icons.preparer.MemoryIconPreparer
 import mozilla.components.browser.icons.processor.MemoryIconProcessor.ProcessorMemoryCache
+import mozilla.components.concept.base.memory.MemoryConsumer
 
 private const val MAXIMUM_CACHE_URLS = 1000
 
-// Use a better mechanism for determining the cache size:
-// https://github.com/mozilla-mobile/android-components/issues/2764
 private const val MAXIMUM_CACHE_BITMAP_BYTES = 1024 * 1024 * 25 // 25 MB
 
-class IconMemoryCache : ProcessorMemoryCache, LoaderMemoryCache, MemoryIconPreparer.PreparerMemoryCache {
+// Share of the maximum heap size that may be used for caching bitmaps.
+private const val HEAP_SHARE_DIVISOR = 16
+
+/**
+ * An in-memory cache of icon resources and bitmaps.
+ *
+ * Bitmaps are cached per [IconRequest.Size], so that loading the icon of a resource in one size
+ * does not replace the icon of the same resource in another size.
+ *
+ * @param maxBytes The maximum number of bytes of all cached bitmaps. By default, this depends on
+ * the maximum heap size of the app (up to 25 MB).
+ */
+class IconMemoryCache(
+    private val maxBytes: Int = defaultMaxBytes(),
+) : ProcessorMemoryCache, LoaderMemoryCache, MemoryIconPreparer.PreparerMemoryCache, MemoryConsumer {
+    private data class BitmapKey(val url: String, val size: IconRequest.Size)
+
     private val iconResourcesCache = LruCache<String, List<IconRequest.Resource>>(MAXIMUM_CACHE_URLS)
-    private val iconBitmapCache = object : LruCache<String, Bitmap>(MAXIMUM_CACHE_BITMAP_BYTES) {
-        override fun sizeOf(key: String, value: Bitmap): Int {
+    private val iconBitmapCache = object : LruCache<BitmapKey, Bitmap>(maxBytes) {
+        override fun sizeOf(key: BitmapKey, value: Bitmap): Int {
             return value.byteCount
         }
     }
@@ -30,13 +47,21 @@ class IconMemoryCache : ProcessorMemoryCache, LoaderMemoryCache, MemoryIconPrepa
         return iconResourcesCache[request.url] ?: emptyList()
     }
 
+    /**
+     * Returns the cached bitmap of [resource] in the size of the [request]. If there is none, the
+     * bitmap cached for another size is returned (preferring larger sizes).
+     */
     override fun getBitmap(request: IconRequest, resource: IconRequest.Resource): Bitmap? {
-        return iconBitmapCache[resource.url]
+        iconBitmapCache[BitmapKey(resource.url, request.size)]?.let { return it }
+
+        return SIZES_LARGEST_FIRST.firstNotNullOfOrNull { size ->
+            if (size != request.size) iconBitmapCache[BitmapKey(resource.url, size)] else null
+        }
     }
 
     override fun put(request: IconRequest, resource: IconRequest.Resource, icon: Icon) {
         if (icon.source.shouldCacheInMemory) {
-            iconBitmapCache.put(resource.url, icon.bitmap)
+            iconBitmapCache.put(BitmapKey(resource.url, request.size), icon.bitmap)
         }
 
         if (request.resources.isNotEmpty()) {
@@ -44,10 +69,53 @@ class IconMemoryCache : ProcessorMemoryCache, LoaderMemoryCache, MemoryIconPrepa
         }
     }
 
+    /**
+     * Shrinks the cache depending on how low the system is running on memory. Unless the cache gets
+     * cleared, only the least recently used bitmaps get evicted: the cache may grow up to [maxBytes]
+     * again afterwards.
+     */
+    override fun onTrimMemory(level: Int) {
+        when (level) {
+            // Foreground: The device is beginning to run low on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+            -> iconBitmapCache.trimToSize(maxBytes / 4 * 3)
+
+            // Foreground: The device is running much lower on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+            // The UI of the app is no longer visible, but the user may return to it soon.
+            ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+            // Background: Our process is at the beginning of the LRU list.
+            ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+            -> iconBitmapCache.trimToSize(maxBytes / 2)
+
+            // Foreground: The device is running extremely low on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+            // Background: Our process is near the middle or end of the LRU list and may get killed.
+            ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+            ComponentCallbacks2.TRIM_MEMORY_COMPLETE,
+            -> clear()
+        }
+    }
+
+    /**
+     * Returns the number of bytes of all cached bitmaps.
+     */
+    @VisibleForTesting
+    internal fun sizeInBytes(): Int = iconBitmapCache.size()
+
     internal fun clear() {
         iconResourcesCache.evictAll()
         iconBitmapCache.evictAll()
     }
+
+    private companion object {
+        val SIZES_LARGEST_FIRST = IconRequest.Size.values().reversed()
+    }
+}
+
+private fun defaultMaxBytes(): Int {
+    val heapShare = Runtime.getRuntime().maxMemory() / HEAP_SHARE_DIVISOR
+    return minOf(heapShare, MAXIMUM_CACHE_BITMAP_BYTES.toLong()).toInt()
 }
 
 private val Icon.Source.shouldCacheInMemory: Boolean
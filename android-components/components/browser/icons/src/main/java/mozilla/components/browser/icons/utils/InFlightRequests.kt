@@ -0,0 +1,85 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+
+/**
+ * Deduplicates concurrent requests for the same [K]ey ("single flight"): While a request is in
+ * flight, callers asking for the same key join it instead of starting another one.
+ *
+ * Every caller gets its own [Deferred], so that a caller cancelling its [Deferred] (e.g. because
+ * the view it loads an icon into got detached) does not cancel the request for the other callers.
+ * The request itself is only cancelled once all of its callers have cancelled.
+ */
+internal class InFlightRequests<K, V>(
+    private val scope: CoroutineScope,
+) {
+    private class Flight<V>(val deferred: Deferred<V>) {
+        var callers = 0
+    }
+
+    private val flights = mutableMapOf<K, Flight<V>>()
+
+    /**
+     * Returns the number of requests currently in flight.
+     */
+    val size: Int
+        get() = synchronized(flights) { flights.size }
+
+    /**
+     * Returns a [Deferred] for the result of the request for [key], running [block] only if there
+     * is no request for [key] in flight already.
+     */
+    fun join(key: K, block: suspend CoroutineScope.() -> V): Deferred<V> {
+        val flight = synchronized(flights) {
+            flights.getOrPut(key) { startFlight(key, block) }.also { it.callers++ }
+        }
+
+        // Start the request outside of the lock, in case the dispatcher runs it right away.
+        flight.deferred.start()
+
+        return scope.async { flight.deferred.await() }.also { caller ->
+            // Also invoked if the caller gets cancelled before it even started waiting.
+            caller.invokeOnCompletion { leave(key, flight) }
+        }
+    }
+
+    private fun startFlight(key: K, block: suspend CoroutineScope.() -> V): Flight<V> {
+        val flight = Flight(scope.async(start = CoroutineStart.LAZY, block = block))
+
+        flight.deferred.invokeOnCompletion {
+            synchronized(flights) { remove(key, flight) }
+        }
+
+        return flight
+    }
+
+    private fun leave(key: K, flight: Flight<V>) {
+        val abandoned = synchronized(flights) {
+            flight.callers--
+            if (flight.callers == 0 && !flight.deferred.isCompleted) {
+                remove(key, flight)
+                true
+            } else {
+                false
+            }
+        }
+
+        if (abandoned) {
+            flight.deferred.cancel()
+        }
+    }
+
+    private fun remove(key: K, flight: Flight<V>) {
+        // A new request for the same key may have been started since this one was abandoned.
+        if (flights[key] === flight) {
+            flights.remove(key)
+        }
+    }
+}
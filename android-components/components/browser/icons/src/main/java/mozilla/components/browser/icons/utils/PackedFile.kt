@@ -0,0 +1,354 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import androidx.annotation.VisibleForTesting
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+private const val MAGIC = 0x4D504B31 // "MPK1"
+private const val FILE_HEADER_BYTES = 4
+private const val RECORD_HEADER_BYTES = 8
+
+// Longer keys can only be the result of a corrupted file.
+private const val MAXIMUM_KEY_BYTES = 1024
+
+// Entries appended since the file was last mapped are read with a positional read, until this
+// many bytes have been appended and the file gets mapped again.
+private const val REMAP_THRESHOLD_BYTES = 1024 * 1024 // 1 MB
+
+// Share of the maximum size the file is compacted to, so that it doesn't get compacted on every write.
+private const val COMPACTED_SIZE_DIVIDEND = 3
+private const val COMPACTED_SIZE_DIVISOR = 4
+
+private const val INDEX_INITIAL_CAPACITY = 256
+private const val INDEX_LOAD_FACTOR = 0.75f
+
+/**
+ * A key-value store keeping all values in a single append-only [file], instead of one file per
+ * value. The file is memory-mapped, so that reading a value is a single copy from the mapped file.
+ *
+ * The file starts with a magic number, followed by one record per write:
+ *
+ * ```
+ * [key length: Int][value length: Int][key: UTF-8 bytes][value: bytes]
+ * ```
+ *
+ * When the file is opened, an index of the latest record of every key is built by skipping from
+ * record header to record header. A partially written record at the end of the file (e.g. because
+ * the app was killed while writing) is dropped.
+ *
+ * Once the file grows larger than [maxBytes], it gets compacted: the most recently used values are
+ * copied into a new file, dropping overwritten and least recently used values. Values are copied
+ * without holding the lock of the [PackedFile], so that other threads can keep reading and writing
+ * values; the compacted file then replaces the file atomically.
+ */
+internal class PackedFile(
+    private val file: File,
+    private val maxBytes: Long,
+) : Closeable {
+    private class Entry(val offset: Long, val length: Int, val recordBytes: Long)
+
+    // The latest record of every key in access order, for keeping the most recently used values
+    // when compacting.
+    private val index = LinkedHashMap<String, Entry>(INDEX_INITIAL_CAPACITY, INDEX_LOAD_FACTOR, true)
+
+    private var channel: FileChannel? = null
+    private var mapped: MappedByteBuffer? = null
+    private var size: Long = 0
+    private var compacting = false
+    private var closed = false
+
+    /**
+     * The entries to keep when compacting [source], which had [sourceSize] bytes when the
+     * compaction started.
+     */
+    private class Compaction(
+        val source: FileChannel,
+        val sourceSize: Long,
+        val kept: List<Pair<String, Entry>>,
+    )
+
+    init {
+        require(maxBytes in FILE_HEADER_BYTES.toLong()..Int.MAX_VALUE.toLong()) {
+            "maxBytes must fit into a mapped buffer"
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the file.
+     */
+    @VisibleForTesting
+    internal val sizeInBytes: Long
+        @Synchronized get() = size
+
+    /**
+     * Returns the value last written for [key], or null if there is none.
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun get(key: String): ByteArray? {
+        val channel = open()
+        val entry = index[key] ?: return null
+        val value = ByteArray(entry.length)
+
+        val mapped = mapped
+        if (mapped != null && entry.offset + entry.length <= mapped.limit()) {
+            mapped.duplicate().apply { position(entry.offset.toInt()) }.get(value)
+        } else {
+            channel.readFully(ByteBuffer.wrap(value), entry.offset)
+        }
+
+        return value
+    }
+
+    /**
+     * Writes the [value] for [key], replacing the value previously written for it. If the file
+     * gets larger than [maxBytes], it is compacted before returning.
+     */
+    @Throws(IOException::class)
+    fun put(key: String, value: ByteArray) {
+        val compaction = synchronized(this) {
+            val channel = open()
+            val keyBytes = key.toByteArray(Charsets.UTF_8)
+            require(keyBytes.size <= MAXIMUM_KEY_BYTES) { "Key is too long" }
+
+            val offset = size
+            val record = createRecord(keyBytes, value.size).put(value)
+            record.flip()
+            channel.writeFully(record, offset)
+
+            val recordBytes = record.limit().toLong()
+            index[key] = Entry(offset + RECORD_HEADER_BYTES + keyBytes.size, value.size, recordBytes)
+            size += recordBytes
+
+            if (size > maxBytes && !compacting) {
+                compacting = true
+                startCompaction(channel)
+            } else {
+                if (size - (mapped?.limit() ?: 0) > REMAP_THRESHOLD_BYTES) {
+                    map(channel)
+                }
+                null
+            }
+        }
+
+        if (compaction != null) {
+            try {
+                compact(compaction)
+            } finally {
+                synchronized(this) { compacting = false }
+            }
+        }
+    }
+
+    /**
+     * Closes the file. Reading or writing values afterwards fails with an [IOException], so that a
+     * file that has been closed for deleting it doesn't get recreated.
+     */
+    @Synchronized
+    override fun close() {
+        closed = true
+        release()
+    }
+
+    private fun release() {
+        try {
+            channel?.close()
+        } finally {
+            channel = null
+            mapped = null
+            index.clear()
+            size = 0
+        }
+    }
+
+    private fun open(): FileChannel {
+        channel?.let { return it }
+        if (closed) {
+            throw IOException("File is closed")
+        }
+
+        file.parentFile?.mkdirs()
+        val channel = RandomAccessFile(file, "rw").channel
+        try {
+            size = readIndex(channel)
+            // Drop anything after the last complete record, so that new records get appended to it.
+            channel.truncate(size)
+            map(channel)
+        } catch (e: IOException) {
+            channel.close()
+            index.clear()
+            throw e
+        }
+
+        return channel.also { this.channel = it }
+    }
+
+    private fun readIndex(channel: FileChannel): Long {
+        index.clear()
+
+        // A file too large to be mapped can't have been written with a valid maxBytes: start over.
+        if (channel.size() < FILE_HEADER_BYTES || channel.size() > Int.MAX_VALUE) {
+            return writeFileHeader(channel)
+        }
+
+        // The file may be larger than maxBytes, e.g. if the app was killed while compacting it.
+        // All of its entries are indexed, and it gets compacted on the next write.
+        val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+        if (buffer.getInt() != MAGIC) {
+            return writeFileHeader(channel)
+        }
+
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            val start = buffer.position()
+            val keyLength = buffer.getInt()
+            val valueLength = buffer.getInt()
+            if (keyLength !in 0..MAXIMUM_KEY_BYTES || valueLength !in 0..buffer.remaining() - keyLength) {
+                buffer.position(start)
+                break
+            }
+
+            val keyBytes = ByteArray(keyLength)
+            buffer.get(keyBytes)
+
+            val offset = buffer.position().toLong()
+            buffer.position(buffer.position() + valueLength)
+            index[String(keyBytes, Charsets.UTF_8)] = Entry(offset, valueLength, buffer.position() - start.toLong())
+        }
+
+        return buffer.position().toLong()
+    }
+
+    private fun writeFileHeader(channel: FileChannel): Long {
+        channel.truncate(0)
+        val header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC)
+        header.flip()
+        channel.writeFully(header, 0)
+        return FILE_HEADER_BYTES.toLong()
+    }
+
+    private fun map(channel: FileChannel) {
+        // Values written while the file is being compacted may exceed the mappable size: they are
+        // read with a positional read.
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, minOf(size, Int.MAX_VALUE.toLong()))
+    }
+
+    private fun startCompaction(channel: FileChannel): Compaction {
+        val maxCompactedBytes = maxBytes / COMPACTED_SIZE_DIVISOR * COMPACTED_SIZE_DIVIDEND
+
+        // Keep the most recently used entries that fit, in the order they were used.
+        var compactedBytes = FILE_HEADER_BYTES.toLong()
+        val kept = index.entries.reversed().takeWhile { (_, entry) ->
+            compactedBytes += entry.recordBytes
+            compactedBytes <= maxCompactedBytes
+        }.asReversed().map { (key, entry) -> key to entry }
+
+        return Compaction(channel, size, kept)
+    }
+
+    /**
+     * Copies the entries to keep into a new file without holding the lock, since records are never
+     * changed once written.
+     */
+    private fun compact(compaction: Compaction) {
+        val compacted = File.createTempFile(file.name, ".compacting", file.parentFile)
+        try {
+            RandomAccessFile(compacted, "rw").channel.use { target ->
+                var position = writeFileHeader(target)
+                val copied = HashMap<String, Entry>(compaction.kept.size)
+                for ((key, entry) in compaction.kept) {
+                    copied[key] = copyRecord(compaction.source, entry, target, position)
+                    position += entry.recordBytes
+                }
+
+                finishCompaction(compaction, copied, compacted, target, position)
+            }
+        } finally {
+            compacted.delete()
+        }
+    }
+
+    /**
+     * Copies the records of values written while compacting into the [compacted] file and lets it
+     * replace the file.
+     */
+    @Synchronized
+    private fun finishCompaction(
+        compaction: Compaction,
+        copied: Map<String, Entry>,
+        compacted: File,
+        target: FileChannel,
+        copiedBytes: Long,
+    ) {
+        // The file has been closed (e.g. for deleting it) in the meantime.
+        if (channel !== compaction.source) {
+            return
+        }
+
+        var position = copiedBytes
+        val compactedIndex = LinkedHashMap<String, Entry>(index.size, INDEX_LOAD_FACTOR, true)
+        for ((key, entry) in index) {
+            compactedIndex[key] = if (entry.offset >= compaction.sourceSize) {
+                copyRecord(compaction.source, entry, target, position).also { position += entry.recordBytes }
+            } else {
+                copied[key] ?: continue
+            }
+        }
+
+        swap(compacted, compactedIndex, position)
+    }
+
+    private fun swap(compacted: File, compactedIndex: Map<String, Entry>, compactedSize: Long) {
+        release()
+
+        if (!compacted.renameTo(file)) {
+            // Start over with an empty file when it is opened again.
+            file.delete()
+            return
+        }
+
+        channel = RandomAccessFile(file, "rw").channel.also { channel ->
+            index.putAll(compactedIndex)
+            size = compactedSize
+            map(channel)
+        }
+    }
+
+    private fun copyRecord(source: FileChannel, entry: Entry, target: FileChannel, position: Long): Entry {
+        val recordHeaderBytes = entry.recordBytes - entry.length
+        val record = ByteBuffer.allocate(entry.recordBytes.toInt())
+        source.readFully(record, entry.offset - recordHeaderBytes)
+        record.flip()
+        target.writeFully(record, position)
+        return Entry(position + recordHeaderBytes, entry.length, entry.recordBytes)
+    }
+}
+
+private fun createRecord(keyBytes: ByteArray, valueLength: Int): ByteBuffer {
+    return ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.size + valueLength)
+        .putInt(keyBytes.size)
+        .putInt(valueLength)
+        .put(keyBytes)
+}
+
+private fun FileChannel.readFully(buffer: ByteBuffer, position: Long) {
+    while (buffer.hasRemaining()) {
+        if (read(buffer, position + buffer.position()) < 0) {
+            throw IOException("Unexpected end of file")
+        }
+    }
+}
+
+private fun FileChannel.writeFully(buffer: ByteBuffer, position: Long) {
+    while (buffer.hasRemaining()) {
+        write(buffer, position + buffer.position())
+    }
+}
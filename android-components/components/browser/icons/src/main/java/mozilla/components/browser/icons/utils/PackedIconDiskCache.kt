@@ -0,0 +1,126 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import mozilla.components.browser.icons.Icon
+import mozilla.components.browser.icons.IconRequest
+import mozilla.components.browser.icons.extension.toIconResources
+import mozilla.components.browser.icons.extension.toJSON
+import mozilla.components.browser.icons.loader.DiskIconLoader
+import mozilla.components.browser.icons.preparer.DiskIconPreparer
+import mozilla.components.browser.icons.processor.DiskIconProcessor
+import mozilla.components.support.base.log.logger.Logger
+import org.json.JSONArray
+import org.json.JSONException
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+
+private const val MAXIMUM_CACHE_BYTES: Long = 1024L * 1024L * 100L // 100 MB
+
+private const val RESOURCES_KEY_PREFIX = "r:"
+private const val ICON_DATA_KEY_PREFIX = "i:"
+
+/**
+ * Caching bitmaps and resource URLs on disk, like [IconDiskCache], but packing all of them into a
+ * single memory-mapped file instead of keeping every icon and every list of resources in a file of
+ * its own. Reading an entry is a lookup in an in-memory index and a copy from the mapped file,
+ * without opening any files.
+ *
+ * @param maxBytes The maximum size of the file. Once it gets larger, the least recently used
+ * entries are dropped.
+ */
+class PackedIconDiskCache(
+    private val maxBytes: Long = MAXIMUM_CACHE_BYTES,
+) : DiskIconLoader.LoaderDiskCache,
+    DiskIconPreparer.PreparerDiskCache,
+    DiskIconProcessor.ProcessorDiskCache {
+    private val logger = Logger("Icons/PackedIconDiskCache")
+
+    @VisibleForTesting
+    internal var packedFile: PackedFile? = null
+
+    override fun getResources(context: Context, request: IconRequest): List<IconRequest.Resource> {
+        try {
+            val data = withPackedFile(context) { it.get(RESOURCES_KEY_PREFIX + createKey(request.url)) }
+                ?: return emptyList()
+
+            return JSONArray(String(data, Charsets.UTF_8)).toIconResources()
+        } catch (e: IOException) {
+            logger.info("Failed to load resources from disk", e)
+        } catch (e: JSONException) {
+            logger.warn("Failed to parse resources from disk", e)
+        }
+
+        return emptyList()
+    }
+
+    override fun putResources(context: Context, request: IconRequest) {
+        try {
+            val data = request.resources.toJSON().toString().toByteArray(Charsets.UTF_8)
+            withPackedFile(context) { it.put(RESOURCES_KEY_PREFIX + createKey(request.url), data) }
+        } catch (e: IOException) {
+            logger.info("Failed to save resources to disk", e)
+        } catch (e: JSONException) {
+            logger.warn("Failed to serialize resources")
+        }
+    }
+
+    override fun putIcon(context: Context, resource: IconRequest.Resource, icon: Icon) {
+        val data = ByteArrayOutputStream().use { stream ->
+            if (!icon.bitmap.compressToWebP(stream)) {
+                return
+            }
+            stream.toByteArray()
+        }
+
+        try {
+            withPackedFile(context) { it.put(ICON_DATA_KEY_PREFIX + createKey(resource.url), data) }
+        } catch (e: IOException) {
+            logger.info("Failed to save icon bitmap to disk", e)
+        }
+    }
+
+    override fun getIconData(context: Context, resource: IconRequest.Resource): ByteArray? {
+        return try {
+            withPackedFile(context) { it.get(ICON_DATA_KEY_PREFIX + createKey(resource.url)) }
+        } catch (e: IOException) {
+            logger.info("Failed to read icon bitmap from disk", e)
+            null
+        }
+    }
+
+    /**
+     * Clears all icons and resources from disk.
+     */
+    @Synchronized
+    fun clear(context: Context) {
+        packedFile?.close()
+        packedFile = null
+
+        getPackedFileLocation(context).delete()
+    }
+
+    /**
+     * Runs [block] with the [PackedFile]. The lock of the cache is only held for getting the
+     * [PackedFile], so that reading or writing an entry (or compacting the file) doesn't block other
+     * threads: if [clear] closes the [PackedFile] in the meantime, [block] fails with an
+     * [IOException] instead of recreating the deleted file.
+     */
+    private fun <T> withPackedFile(context: Context, block: (PackedFile) -> T): T {
+        val file = synchronized(this) {
+            packedFile ?: PackedFile(getPackedFileLocation(context), maxBytes).also { packedFile = it }
+        }
+
+        return block(file)
+    }
+
+    private fun getPackedFileLocation(context: Context): File {
+        val cacheDirectory = File(context.cacheDir, "mozac_browser_icons")
+        return File(cacheDirectory, "icons.pack")
+    }
+}
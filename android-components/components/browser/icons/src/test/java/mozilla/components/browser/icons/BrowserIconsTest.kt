@@ -13,8 +13,12 @@ import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
 import mozilla.components.browser.icons.generator.IconGenerator
+import mozilla.components.browser.icons.loader.IconLoader
+import mozilla.components.browser.icons.processor.IconProcessor
 import mozilla.components.concept.engine.manifest.Size
 import mozilla.components.lib.fetch.httpurlconnection.HttpURLConnectionClient
+import mozilla.components.support.images.BitmapPool
+import mozilla.components.support.images.decoder.ImageDecoder
 import mozilla.components.support.test.any
 import mozilla.components.support.test.eq
 import mozilla.components.support.test.ext.joinBlocking
@@ -27,6 +31,7 @@ import okhttp3.mockwebserver.MockWebServer
 import okio.Okio
 import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertSame
 import org.junit.Before
@@ -37,10 +42,12 @@ import org.mockito.ArgumentMatchers
 import org.mockito.Mockito.doReturn
 import org.mockito.Mockito.never
 import org.mockito.Mockito.spy
+import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
 import org.robolectric.Shadows.shadowOf
 import java.io.OutputStream
+import java.util.concurrent.CountDownLatch
 
 @ExperimentalCoroutinesApi // for runTestOnMain
 @RunWith(AndroidJUnit4::class)
@@ -211,6 +218,77 @@ class BrowserIconsTest {
         }
     }
 
+    @Test
+    fun `WHEN the same icon is requested concurrently THEN it is only loaded once`() = runTestOnMain {
+        val latch = CountDownLatch(1)
+        val loader: IconLoader = mock()
+        `when`(loader.load(any(), any(), any())).thenAnswer {
+            latch.await()
+            IconLoader.Result.BitmapResult(mock(), Icon.Source.DOWNLOAD)
+        }
+
+        val icons = createIcons(loader)
+        val request = IconRequest(url = "https://www.mozilla.org", resources = listOf(createResource()))
+
+        val first = icons.loadIcon(request)
+        val second = icons.loadIcon(request)
+
+        latch.countDown()
+
+        assertSame(first.await(), second.await())
+        verify(loader, times(1)).load(any(), any(), any())
+    }
+
+    @Test
+    fun `WHEN loading multiple icons THEN equal requests share a load`() = runTestOnMain {
+        val loader: IconLoader = mock()
+        `when`(loader.load(any(), any(), any())).thenAnswer {
+            IconLoader.Result.BitmapResult(mock(), Icon.Source.DOWNLOAD)
+        }
+
+        val icons = createIcons(loader)
+        val mozilla = IconRequest(url = "https://www.mozilla.org", resources = listOf(createResource()))
+        val firefox = IconRequest(url = "https://www.firefox.com", resources = listOf(createResource()))
+
+        val deferredIcons = icons.loadIcons(listOf(mozilla, firefox, mozilla))
+
+        assertEquals(3, deferredIcons.size)
+        assertSame(deferredIcons[0], deferredIcons[2])
+        deferredIcons.forEach { assertEquals(Icon.Source.DOWNLOAD, it.await().source) }
+        verify(loader, times(2)).load(any(), any(), any())
+    }
+
+    @Test
+    fun `WHEN a processor replaces a decoded bitmap THEN it is released to the bitmap pool`() = runTestOnMain {
+        val loader: IconLoader = mock()
+        `when`(loader.load(any(), any(), any())).thenReturn(
+            IconLoader.Result.BytesResult(ByteArray(0), Icon.Source.DOWNLOAD),
+        )
+        val decodedBitmap = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888)
+        val decoder: ImageDecoder = mock()
+        `when`(decoder.decode(any(), any())).thenReturn(decodedBitmap)
+        val processedBitmap = Bitmap.createBitmap(16, 16, Bitmap.Config.ARGB_8888)
+        val processor: IconProcessor = mock()
+        `when`(processor.process(any(), any(), any(), any(), any())).thenAnswer {
+            (it.arguments[3] as Icon).copy(bitmap = processedBitmap, releasable = true)
+        }
+        val bitmapPool = BitmapPool()
+
+        val icon = BrowserIcons(
+            testContext,
+            httpClient = mock(),
+            preparers = emptyList(),
+            loaders = listOf(loader),
+            decoders = listOf(decoder),
+            processors = listOf(processor),
+            bitmapPool = bitmapPool,
+        ).loadIcon(IconRequest(url = "https://www.mozilla.org", resources = listOf(createResource()))).await()
+
+        assertSame(processedBitmap, icon.bitmap)
+        assertFalse(icon.releasable)
+        assertEquals(decodedBitmap.allocationByteCount, bitmapPool.sizeInBytes)
+    }
+
     @Test
     fun `Automatically load icon into image view`() {
         val mockedBitmap: Bitmap = mock()
@@ -335,4 +413,17 @@ class BrowserIconsTest {
         assertEquals(101, result.maxSize)
         assertEquals(MAXIMUM_SCALE_FACTOR, result.maxScaleFactor)
     }
+
+    private fun createIcons(loader: IconLoader) = BrowserIcons(
+        testContext,
+        httpClient = mock(),
+        preparers = emptyList(),
+        loaders = listOf(loader),
+        processors = emptyList(),
+    )
+
+    private fun createResource() = IconRequest.Resource(
+        url = "https://www.mozilla.org/favicon.ico",
+        type = IconRequest.Resource.Type.FAVICON,
+    )
 }
@@ -13,10 +13,12 @@ import mozilla.components.browser.icons.IconRequest.Resource.Type.MANIFEST_ICON
 import mozilla.components.support.test.mock
 import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.Mockito.never
 import org.mockito.Mockito.spy
 import org.mockito.Mockito.verify
 import org.robolectric.util.ReflectionHelpers.setStaticField
@@ -83,6 +85,25 @@ class AdaptiveIconProcessorTest {
         assertTrue(icon.maskable)
     }
 
+    @Test
+    fun `process does not recycle releasable bitmaps`() {
+        setSdkInt(Build.VERSION_CODES.O)
+        val bitmap = spy(createBitmap(128, 128))
+
+        val icon = AdaptiveIconProcessor().process(
+            mock(),
+            mock(),
+            IconRequest.Resource("", MANIFEST_ICON, maskable = false),
+            Icon(bitmap, source = Icon.Source.DOWNLOAD, releasable = true),
+            mock(),
+        )
+
+        assertTrue(icon.maskable)
+        assertTrue(icon.releasable)
+        assertNotSame(bitmap, icon.bitmap)
+        verify(bitmap, never()).recycle()
+    }
+
     private fun setSdkInt(sdkVersion: Int) {
         setStaticField(Build.VERSION::SDK_INT.javaField, sdkVersion)
     }
@@ -8,6 +8,7 @@ import mozilla.components.browser.icons.Icon
 import mozilla.components.browser.icons.IconRequest
 import mozilla.components.support.test.any
 import mozilla.components.support.test.mock
+import org.junit.Assert.assertFalse
 import org.junit.Test
 import org.mockito.Mockito.never
 import org.mockito.Mockito.verify
@@ -59,6 +60,17 @@ class MemoryIconProcessorTest {
         verify(cache).put(request, resource, icon)
     }
 
+    @Test
+    fun `Icon saved in cache is not releasable`() {
+        val icon = Icon(mock(), source = Icon.Source.DOWNLOAD, releasable = true)
+        val cache: MemoryIconProcessor.ProcessorMemoryCache = mock()
+
+        val processedIcon = MemoryIconProcessor(cache).process(mock(), mock(), mock(), icon, mock())
+
+        verify(cache).put(any(), any(), any())
+        assertFalse(processedIcon.releasable)
+    }
+
     @Test
     fun `Inlined icon is saved in cache`() {
         val icon = Icon(mock(), source = Icon.Source.INLINE)
@@ -16,9 +16,11 @@ import mozilla.components.support.test.any
 import mozilla.components.support.test.eq
 import mozilla.components.support.test.mock
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotEquals
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -99,6 +101,17 @@ class ResizingProcessorTest {
         verify(processor).resize(icon.bitmap, 30)
     }
 
+    @Test
+    fun `resized icons are releasable`() {
+        val icon = Icon(mockBitmap(120), source = Icon.Source.DISK)
+        doReturn(mockBitmap(64)).`when`(processor).resize(eq(icon.bitmap), anyInt())
+
+        val resized = process(icon = icon, desiredSize = DesiredSize(64, 64, 64, 3f))
+
+        assertTrue(resized!!.releasable)
+        assertFalse(process(icon = icon, desiredSize = DesiredSize(120, 64, 120, 3f))!!.releasable)
+    }
+
     private fun process(
         p: ResizingProcessor = processor,
         context: Context = mockContext(2f),
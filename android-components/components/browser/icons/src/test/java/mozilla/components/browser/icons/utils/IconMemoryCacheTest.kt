@@ -4,6 +4,8 @@
 
 package mozilla.components.browser.icons.utils
 
+import android.content.ComponentCallbacks2
+import android.graphics.Bitmap
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import mozilla.components.browser.icons.Icon
 import mozilla.components.browser.icons.IconRequest
@@ -13,6 +15,7 @@ import mozilla.components.browser.icons.preparer.MemoryIconPreparer
 import mozilla.components.browser.icons.processor.MemoryIconProcessor
 import mozilla.components.support.test.mock
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertSame
 import org.junit.Assert.assertTrue
 import org.junit.Test
@@ -59,4 +62,67 @@ class IconMemoryCacheTest {
         assertSame(icon.bitmap, (preparedResult as IconLoader.Result.BitmapResult).bitmap)
         assertEquals(Icon.Source.MEMORY, preparedResult.source)
     }
+
+    @Test
+    fun `Bitmaps are cached per size`() {
+        val cache = IconMemoryCache()
+        val resource = IconRequest.Resource(
+            url = "https://www.mozilla.org/favicon64.ico",
+            type = IconRequest.Resource.Type.FAVICON,
+        )
+        val defaultRequest = IconRequest("https://www.mozilla.org", resources = listOf(resource))
+        val launcherRequest = defaultRequest.copy(size = IconRequest.Size.LAUNCHER)
+        val adaptiveRequest = defaultRequest.copy(size = IconRequest.Size.LAUNCHER_ADAPTIVE)
+
+        val defaultIcon = Icon(bitmap = mock(), source = Icon.Source.DOWNLOAD)
+        val launcherIcon = Icon(bitmap = mock(), source = Icon.Source.DOWNLOAD)
+
+        cache.put(defaultRequest, resource, defaultIcon)
+        cache.put(launcherRequest, resource, launcherIcon)
+
+        assertSame(defaultIcon.bitmap, cache.getBitmap(defaultRequest, resource))
+        assertSame(launcherIcon.bitmap, cache.getBitmap(launcherRequest, resource))
+
+        // Falls back to the largest size that is cached.
+        assertSame(launcherIcon.bitmap, cache.getBitmap(adaptiveRequest, resource))
+    }
+
+    @Test
+    fun `Cache is trimmed depending on the trim memory level`() {
+        val cache = IconMemoryCache(maxBytes = 4 * BITMAP_BYTES)
+        val resources = (0 until 4).map { index ->
+            IconRequest.Resource(url = "https://www.mozilla.org/$index.ico", type = IconRequest.Resource.Type.FAVICON)
+        }
+        val request = IconRequest("https://www.mozilla.org", resources = resources)
+
+        fun fill() = resources.forEach { resource ->
+            cache.put(request, resource, Icon(bitmap = createBitmap(), source = Icon.Source.DOWNLOAD))
+        }
+
+        fill()
+        assertEquals(4 * BITMAP_BYTES, cache.sizeInBytes())
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+        assertEquals(3 * BITMAP_BYTES, cache.sizeInBytes())
+        // The least recently used bitmap was evicted.
+        assertNull(cache.getBitmap(request, resources[0]))
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+        assertEquals(2 * BITMAP_BYTES, cache.sizeInBytes())
+
+        // The cache can grow again.
+        fill()
+        assertEquals(4 * BITMAP_BYTES, cache.sizeInBytes())
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+        assertEquals(0, cache.sizeInBytes())
+        assertTrue(cache.getResources(request).isEmpty())
+    }
+
+    private fun createBitmap() = Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888)
+
+    private companion object {
+        const val BITMAP_SIZE = 16
+        const val BITMAP_BYTES = BITMAP_SIZE * BITMAP_SIZE * 4
+    }
 }
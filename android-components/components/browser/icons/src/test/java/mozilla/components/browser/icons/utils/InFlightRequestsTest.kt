@@ -0,0 +1,118 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class InFlightRequestsTest {
+
+    @Test
+    fun `Concurrent requests for the same key share a single run`() = runTest {
+        val requests = InFlightRequests<String, Int>(this)
+        val gate = CompletableDeferred<Unit>()
+        var runs = 0
+
+        val first = requests.join("a") {
+            runs++
+            gate.await()
+            42
+        }
+        val second = requests.join("a") {
+            runs++
+            23
+        }
+        runCurrent()
+
+        assertEquals(1, requests.size)
+
+        gate.complete(Unit)
+
+        assertEquals(42, first.await())
+        assertEquals(42, second.await())
+        assertEquals(1, runs)
+        assertEquals(0, requests.size)
+    }
+
+    @Test
+    fun `Requests for different keys run separately`() = runTest {
+        val requests = InFlightRequests<String, Int>(this)
+
+        val first = requests.join("a") { 1 }
+        val second = requests.join("b") { 2 }
+
+        assertEquals(1, first.await())
+        assertEquals(2, second.await())
+    }
+
+    @Test
+    fun `Requests are run again once completed`() = runTest {
+        val requests = InFlightRequests<String, Int>(this)
+
+        assertEquals(1, requests.join("a") { 1 }.await())
+        assertEquals(2, requests.join("a") { 2 }.await())
+    }
+
+    @Test
+    fun `Cancelling one caller does not cancel the request for other callers`() = runTest {
+        val requests = InFlightRequests<String, Int>(this)
+        val gate = CompletableDeferred<Unit>()
+
+        val first = requests.join("a") {
+            gate.await()
+            42
+        }
+        val second = requests.join("a") { 23 }
+        runCurrent()
+
+        first.cancel()
+        runCurrent()
+
+        assertEquals(1, requests.size)
+
+        gate.complete(Unit)
+
+        assertTrue(first.isCancelled)
+        assertEquals(42, second.await())
+    }
+
+    @Test
+    fun `Request is cancelled once all callers cancelled`() = runTest {
+        val requests = InFlightRequests<String, Int>(this)
+        var cancelled = false
+
+        val first = requests.join("a") {
+            try {
+                awaitCancellation()
+            } finally {
+                cancelled = true
+            }
+        }
+        val second = requests.join("a") { 23 }
+        runCurrent()
+
+        first.cancel()
+        runCurrent()
+
+        assertFalse(cancelled)
+
+        second.cancel()
+        runCurrent()
+
+        assertTrue(cancelled)
+        assertEquals(0, requests.size)
+
+        // A new request for the same key is run again.
+        assertEquals(42, requests.join("a") { 42 }.await())
+    }
+}
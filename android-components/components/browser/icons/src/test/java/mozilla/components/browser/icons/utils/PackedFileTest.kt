@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+
+class PackedFileTest {
+
+    @Rule @JvmField
+    val folder = TemporaryFolder()
+
+    @Test
+    fun `Writing and reading values`() {
+        val packedFile = PackedFile(createFile(), maxBytes = 1024)
+
+        packedFile.put("a", "Hello".toByteArray())
+        packedFile.put("b", "World".toByteArray())
+
+        assertArrayEquals("Hello".toByteArray(), packedFile.get("a"))
+        assertArrayEquals("World".toByteArray(), packedFile.get("b"))
+        assertNull(packedFile.get("c"))
+    }
+
+    @Test
+    fun `Writing a value again replaces it`() {
+        val packedFile = PackedFile(createFile(), maxBytes = 1024)
+
+        packedFile.put("a", "Hello".toByteArray())
+        packedFile.put("a", "World".toByteArray())
+
+        assertArrayEquals("World".toByteArray(), packedFile.get("a"))
+    }
+
+    @Test
+    fun `Values are read from an existing file`() {
+        val file = createFile()
+        PackedFile(file, maxBytes = 1024).use { packedFile ->
+            packedFile.put("a", "Hello".toByteArray())
+            packedFile.put("b", ByteArray(0))
+            packedFile.put("a", "World".toByteArray())
+        }
+
+        val packedFile = PackedFile(file, maxBytes = 1024)
+        assertArrayEquals("World".toByteArray(), packedFile.get("a"))
+        assertArrayEquals(ByteArray(0), packedFile.get("b"))
+    }
+
+    @Test
+    fun `Partially written record at the end of the file is dropped`() {
+        val file = createFile()
+        PackedFile(file, maxBytes = 1024).use { packedFile ->
+            packedFile.put("a", "Hello".toByteArray())
+            packedFile.put("b", "World".toByteArray())
+        }
+
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 2) }
+
+        PackedFile(file, maxBytes = 1024).use { packedFile ->
+            assertArrayEquals("Hello".toByteArray(), packedFile.get("a"))
+            assertNull(packedFile.get("b"))
+
+            packedFile.put("c", "Mozilla".toByteArray())
+        }
+
+        val packedFile = PackedFile(file, maxBytes = 1024)
+        assertArrayEquals("Hello".toByteArray(), packedFile.get("a"))
+        assertNull(packedFile.get("b"))
+        assertArrayEquals("Mozilla".toByteArray(), packedFile.get("c"))
+    }
+
+    @Test
+    fun `File with unknown content is replaced`() {
+        val file = createFile()
+        file.writeText("This is not a packed file")
+
+        val packedFile = PackedFile(file, maxBytes = 1024)
+        assertNull(packedFile.get("a"))
+
+        packedFile.put("a", "Hello".toByteArray())
+        assertArrayEquals("Hello".toByteArray(), packedFile.get("a"))
+    }
+
+    @Test
+    fun `File is compacted keeping the most recently used values`() {
+        // Every record takes 8 + 2 + 200 = 210 bytes. The file header takes 4 bytes.
+        val packedFile = PackedFile(createFile(), maxBytes = 1000)
+        val values = (0 until 5).map { index -> ByteArray(200) { index.toByte() } }
+
+        packedFile.put("k0", values[0])
+        packedFile.put("k1", values[1])
+        packedFile.put("k2", values[2])
+        packedFile.get("k0")
+        packedFile.put("k3", values[3])
+        assertEquals(844, packedFile.sizeInBytes)
+
+        // Exceeds the maximum size: compacted to at most 750 bytes.
+        packedFile.put("k4", values[4])
+        assertEquals(634, packedFile.sizeInBytes)
+
+        assertArrayEquals(values[0], packedFile.get("k0"))
+        assertNull(packedFile.get("k1"))
+        assertNull(packedFile.get("k2"))
+        assertArrayEquals(values[3], packedFile.get("k3"))
+        assertArrayEquals(values[4], packedFile.get("k4"))
+    }
+
+    @Test
+    fun `File larger than the maximum size is read completely and compacted on the next write`() {
+        val file = createFile()
+        val values = (0 until 5).map { index -> ByteArray(200) { index.toByte() } }
+        PackedFile(file, maxBytes = 1000).use { packedFile ->
+            (0 until 4).forEach { index -> packedFile.put("k$index", values[index]) }
+        }
+
+        val packedFile = PackedFile(file, maxBytes = 500)
+        (0 until 4).forEach { index -> assertArrayEquals(values[index], packedFile.get("k$index")) }
+        assertEquals(844, packedFile.sizeInBytes)
+
+        // Compacted to at most 375 bytes.
+        packedFile.put("k4", values[4])
+        assertEquals(214, packedFile.sizeInBytes)
+        assertNull(packedFile.get("k3"))
+        assertArrayEquals(values[4], packedFile.get("k4"))
+        assertEquals(listOf("test.pack"), folder.root.list()!!.toList())
+    }
+
+    @Test(expected = IOException::class)
+    fun `Closed file is not reopened`() {
+        val packedFile = PackedFile(createFile(), maxBytes = 1024)
+        packedFile.put("a", "Hello".toByteArray())
+        packedFile.close()
+
+        packedFile.get("a")
+    }
+
+    private fun createFile() = File(folder.root, "test.pack")
+}
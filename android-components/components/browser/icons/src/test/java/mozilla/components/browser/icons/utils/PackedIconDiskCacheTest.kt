@@ -0,0 +1,133 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.icons.utils
+
+import android.graphics.Bitmap
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.browser.icons.Icon
+import mozilla.components.browser.icons.IconRequest
+import mozilla.components.concept.engine.manifest.Size
+import mozilla.components.support.test.any
+import mozilla.components.support.test.mock
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.ArgumentMatchers.anyInt
+import org.mockito.Mockito.`when`
+import java.io.OutputStream
+
+@RunWith(AndroidJUnit4::class)
+class PackedIconDiskCacheTest {
+
+    private val resource = IconRequest.Resource(
+        url = "https://www.mozilla.org/icon64.png",
+        sizes = listOf(Size(64, 64)),
+        mimeType = "image/png",
+        type = IconRequest.Resource.Type.FAVICON,
+    )
+
+    @Test
+    fun `Writing and reading resources`() {
+        val cache = PackedIconDiskCache()
+
+        val resources = listOf(
+            resource,
+            IconRequest.Resource(
+                url = "https://www.mozilla.org/icon128.png",
+                sizes = listOf(Size(180, 180)),
+                type = IconRequest.Resource.Type.APPLE_TOUCH_ICON,
+            ),
+        )
+
+        val request = IconRequest("https://www.mozilla.org", resources = resources)
+        cache.putResources(testContext, request)
+
+        assertEquals(resources, cache.getResources(testContext, request))
+        assertTrue(cache.getResources(testContext, IconRequest("https://www.example.org")).isEmpty())
+    }
+
+    @Test
+    fun `Writing and reading bitmap bytes`() {
+        val cache = PackedIconDiskCache()
+
+        cache.putIcon(testContext, resource, Icon(createBitmap("Hello World"), source = Icon.Source.DOWNLOAD))
+
+        val data = cache.getIconData(testContext, resource)
+        assertNotNull(data!!)
+        assertEquals("Hello World", String(data))
+    }
+
+    @Test
+    fun `Entries are read from the file written by another instance`() {
+        PackedIconDiskCache().putIcon(
+            testContext,
+            resource,
+            Icon(createBitmap("Hello World"), source = Icon.Source.DOWNLOAD),
+        )
+
+        val data = PackedIconDiskCache().getIconData(testContext, resource)
+        assertEquals("Hello World", String(data!!))
+    }
+
+    @Test
+    fun `Clearing the cache removes all entries`() {
+        val cache = PackedIconDiskCache()
+        val request = IconRequest("https://www.mozilla.org", resources = listOf(resource))
+
+        cache.putResources(testContext, request)
+        cache.putIcon(testContext, resource, Icon(createBitmap("Hello World"), source = Icon.Source.DOWNLOAD))
+
+        cache.clear(testContext)
+
+        assertNull(cache.packedFile)
+        assertTrue(cache.getResources(testContext, request).isEmpty())
+        assertNull(cache.getIconData(testContext, resource))
+        assertNull(PackedIconDiskCache().getIconData(testContext, resource))
+    }
+
+    @Test
+    fun `Clearing the cache while other threads read and write keeps the cache consistent`() {
+        val cache = PackedIconDiskCache()
+        val icon = Icon(createBitmap("Hello World"), source = Icon.Source.DOWNLOAD)
+        val errors = mutableListOf<Throwable>()
+
+        val threads = List(4) { thread ->
+            Thread {
+                try {
+                    repeat(200) { i ->
+                        val resource = resource.copy(url = "https://www.mozilla.org/$thread/$i.png")
+                        cache.putIcon(testContext, resource, icon)
+                        cache.getIconData(testContext, resource)?.let { assertEquals("Hello World", String(it)) }
+                    }
+                } catch (e: Throwable) {
+                    synchronized(errors) { errors.add(e) }
+                }
+            }.apply { start() }
+        }
+        repeat(50) { cache.clear(testContext) }
+        threads.forEach { it.join() }
+
+        assertTrue(errors.toString(), errors.isEmpty())
+
+        // Only one file is used: entries written after clearing are visible to other instances.
+        cache.clear(testContext)
+        cache.putIcon(testContext, resource, icon)
+        assertEquals("Hello World", String(PackedIconDiskCache().getIconData(testContext, resource)!!))
+    }
+
+    private fun createBitmap(content: String): Bitmap {
+        val bitmap: Bitmap = mock()
+        `when`(bitmap.compress(any(), anyInt(), any())).thenAnswer {
+            val stream = it.arguments[2] as OutputStream
+            stream.write(content.toByteArray())
+            true
+        }
+        return bitmap
+    }
+}
@@ -0,0 +1,100 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.session.storage.serialize
+
+import android.content.Context
+import android.util.AtomicFile
+import android.util.Log
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.browser.state.state.BrowserState
+import mozilla.components.browser.state.state.EngineState
+import mozilla.components.browser.state.state.LastMediaAccessState
+import mozilla.components.browser.state.state.createTab
+import mozilla.components.concept.storage.HistoryMetadataKey
+import mozilla.components.support.test.fakes.engine.FakeEngine
+import mozilla.components.support.test.fakes.engine.FakeEngineSessionState
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+
+private const val TAB_COUNT = 1000
+private const val DOMAIN_COUNT = 50
+
+/** Compares writing and reading [TAB_COUNT] tabs in the [SnapshotFormat.JSON] and [SnapshotFormat.BINARY] format. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class SnapshotFormatBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val engine = FakeEngine()
+    private val writer = BrowserStateWriter()
+    private val reader = BrowserStateReader()
+    private val state = createState()
+
+    @Test
+    fun writeJson() = benchmarkWrite(SnapshotFormat.JSON)
+
+    @Test
+    fun writeBinary() = benchmarkWrite(SnapshotFormat.BINARY)
+
+    @Test
+    fun readJson() = benchmarkRead(SnapshotFormat.JSON)
+
+    @Test
+    fun readBinary() = benchmarkRead(SnapshotFormat.BINARY)
+
+    private fun benchmarkWrite(format: SnapshotFormat) {
+        val file = createFile(format)
+
+        benchmarkRule.measureRepeated {
+            assertTrue(writer.write(state, file, format = format))
+        }
+
+        Log.i("SnapshotFormat", "$format snapshot of $TAB_COUNT tabs: ${file.baseFile.length()} bytes")
+    }
+
+    private fun benchmarkRead(format: SnapshotFormat) {
+        val file = createFile(format)
+        assertTrue(writer.write(state, file, format = format))
+
+        benchmarkRule.measureRepeated {
+            assertNotNull(reader.read(engine, file))
+        }
+    }
+
+    private fun createFile(format: SnapshotFormat): AtomicFile {
+        val directory = ApplicationProvider.getApplicationContext<Context>().cacheDir
+        return AtomicFile(File(directory, "snapshot_benchmark_${format.name.lowercase()}"))
+    }
+}
+
+private fun createState(): BrowserState {
+    val tabs = List(TAB_COUNT) { index ->
+        val host = "https://www.example${index % DOMAIN_COUNT}.org"
+        val url = "$host/articles/$index?utm_source=benchmark"
+
+        createTab(
+            url = url,
+            id = "tab-$index",
+            title = "Example article number $index",
+            lastAccess = 1_600_000_000_000L + index,
+            createdAt = 1_600_000_000_000L,
+            lastMediaAccessState = LastMediaAccessState(url, lastMediaAccess = 1_600_000_000_000L + index),
+            historyMetadata = HistoryMetadataKey(url, referrerUrl = host),
+        ).copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("history:$url")),
+        )
+    }
+
+    return BrowserState(tabs = tabs, selectedTabId = tabs.last().id)
+}
@@ -0,0 +1,88 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.session.storage
+
+import android.util.AtomicFile
+import androidx.annotation.WorkerThread
+import mozilla.components.concept.engine.Engine
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.support.ktx.java.io.truncateDirectory
+import mozilla.components.support.ktx.kotlin.sha1
+import mozilla.components.support.ktx.util.readJSON
+import mozilla.components.support.ktx.util.streamJSON
+import java.io.File
+
+/**
+ * Stores the [EngineSessionState] of every tab in a separate file inside [directory], using a hash
+ * of the tab ID as file name (tab IDs may contain characters that are not valid in file names).
+ * This allows persisting the (potentially large) engine state of a tab only if it changed, instead
+ * of rewriting the engine state of all tabs at once.
+ *
+ * @param directory The directory to store the files in. Will be created if needed.
+ * @param engine An [Engine] instance used for rehydrating persisted [EngineSessionState].
+ */
+internal class EngineSessionStateFiles(
+    private val directory: File,
+    private val engine: Engine,
+) {
+    /**
+     * Writes the [state] of the tab with the given [tabId] to disk.
+     */
+    @WorkerThread
+    fun write(tabId: String, state: EngineSessionState): Boolean {
+        directory.mkdirs()
+
+        return getFile(tabId).streamJSON {
+            state.writeTo(this)
+        }
+    }
+
+    /**
+     * Reads the [EngineSessionState] of the tab with the given [tabId]. Returns null if no state was
+     * persisted for this tab or if reading the file failed.
+     */
+    @WorkerThread
+    fun read(tabId: String): EngineSessionState? {
+        return getFile(tabId).readJSON {
+            engine.createSessionStateFrom(this)
+        }
+    }
+
+    /**
+     * Deletes the persisted state of the tab with the given [tabId].
+     */
+    @WorkerThread
+    fun delete(tabId: String) {
+        getFile(tabId).delete()
+    }
+
+    /**
+     * Deletes the persisted state of all tabs whose ID is not contained in [tabIds].
+     */
+    @WorkerThread
+    fun retainAll(tabIds: Set<String>) {
+        val fileNames = tabIds.mapTo(HashSet()) { getFileName(it) }
+        directory.listFiles()?.forEach { file ->
+            // AtomicFile may leave a backup file next to the actual file.
+            if (file.name.removeSuffix(".bak") !in fileNames) {
+                file.delete()
+            }
+        }
+    }
+
+    /**
+     * Deletes the persisted state of all tabs.
+     */
+    @WorkerThread
+    fun deleteAll() {
+        directory.truncateDirectory()
+    }
+
+    private fun getFile(tabId: String): AtomicFile {
+        return AtomicFile(File(directory, getFileName(tabId)))
+    }
+
+    private fun getFileName(tabId: String) = tabId.sha1()
+}
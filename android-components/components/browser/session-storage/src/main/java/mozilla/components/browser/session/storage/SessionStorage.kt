@@ -11,6 +11,8 @@ import androidx.annotation.VisibleForTesting
 import androidx.annotation.WorkerThread
 import mozilla.components.browser.session.storage.serialize.BrowserStateReader
 import mozilla.components.browser.session.storage.serialize.BrowserStateWriter
+import mozilla.components.browser.session.storage.serialize.SnapshotFormat
+import mozilla.components.browser.state.engine.EngineMiddleware
 import mozilla.components.browser.state.selector.normalTabs
 import mozilla.components.browser.state.selector.selectedTab
 import mozilla.components.browser.state.state.BrowserState
@@ -18,37 +20,140 @@ import mozilla.components.browser.state.state.recover.RecoverableTab
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.base.crash.CrashReporting
 import mozilla.components.concept.engine.Engine
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.engine.EngineSessionStateStorage
 import mozilla.components.support.base.log.logger.Logger
 import java.io.File
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 
 private const val STORE_FILE_NAME_FORMAT = "mozilla_components_session_storage_%s.json"
+private const val ENGINE_STATE_DIRECTORY_NAME_FORMAT = "mozilla_components_session_storage_%s_engine_states"
 
 private val sessionFileLock = Any()
 
 /**
  * Session storage for (partially) persisting the state of [BrowserStore] to disk.
+ *
+ * @param context A [Context] used for accessing the file system.
+ * @param engine The [Engine] implementation for restoring the engine state.
+ * @param crashReporting An optional [CrashReporting] instance for reporting caught exceptions.
+ * @param incremental Whether the [EngineSessionState] of every tab should be written to a separate
+ * file. If enabled, only the engine states that changed since the last save will be written to disk,
+ * while the (small) rest of the state is still written to a single file. State written with or without
+ * this option can be restored either way, so it can be enabled or disabled at any time: after disabling
+ * it, the separately written engine states are read when restoring and moved back into the single file
+ * the next time the state is saved.
+ * @param snapshotFormat The [SnapshotFormat] used for writing the state. Snapshots in any format can be
+ * restored, so changing the format migrates the existing snapshot the next time the state is saved.
  */
 class SessionStorage(
     private val context: Context,
     private val engine: Engine,
     private val crashReporting: CrashReporting? = null,
+    private val incremental: Boolean = false,
+    private val snapshotFormat: SnapshotFormat = SnapshotFormat.JSON,
 ) : AutoSave.Storage {
     private val logger = Logger("SessionStorage")
     private val stateWriter = BrowserStateWriter()
     private val stateReader = BrowserStateReader()
+    private val engineSessionStateFiles by lazy {
+        EngineSessionStateFiles(getEngineStateDirectoryForEngine(context, engine), engine)
+    }
+
+    // The engine states that are known to be on disk, by tab ID. Guarded by sessionFileLock.
+    private val persistedEngineSessionStates = mutableMapOf<String, EngineSessionState>()
+
+    // The IDs of all tabs that may have an engine state on disk. In addition to the tabs in
+    // persistedEngineSessionStates this includes tabs whose engine state has not been read yet.
+    // Modified while holding sessionFileLock, but can be read without it.
+    private val persistedTabIds: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    // Whether a non-incremental restore read engine states that were written to separate files, which
+    // are removed once the engine states have been written to the single file. Guarded by sessionFileLock.
+    private var hasSeparateEngineSessionStates = false
 
     /**
      * Reads the saved state from disk. Returns null if no state was found on disk or if reading the file failed.
      *
      * @param predicate an optional predicate applied to each tab to determine if it should be restored.
+     * @param restoreEngineSessionStates Whether the [EngineSessionState] of every tab should be read
+     * as part of restoring. If false, the returned tabs will not contain an engine state and the
+     * engine state of a tab can be read on demand using [engineSessionStateStorage], e.g. by passing
+     * it to [EngineMiddleware.create]. This allows restoring the (lightweight) list of tabs quickly
+     * and is only supported if this storage is [incremental]. Otherwise this flag is ignored.
      */
     @WorkerThread
-    fun restore(predicate: (RecoverableTab) -> Boolean = { true }): RecoverableBrowserState? {
+    fun restore(
+        predicate: (RecoverableTab) -> Boolean = { true },
+        restoreEngineSessionStates: Boolean = true,
+    ): RecoverableBrowserState? {
         synchronized(sessionFileLock) {
             val file = getFileForEngine(context, engine)
-            return stateReader.read(engine, file, predicate)
+
+            if (!incremental) {
+                // The state may have been written incrementally before.
+                return stateReader.read(engine, file, predicate) { tabId ->
+                    hasSeparateEngineSessionStates = true
+                    engineSessionStateFiles.read(tabId)
+                }
+            }
+
+            persistedEngineSessionStates.clear()
+            persistedTabIds.clear()
+
+            return stateReader.read(engine, file, predicate) { tabId ->
+                persistedTabIds.add(tabId)
+
+                if (restoreEngineSessionStates) {
+                    readEngineSessionState(tabId)
+                } else {
+                    null
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an [EngineSessionStateStorage] for reading the [EngineSessionState] of tabs that were
+     * restored without one (see [restore]). Only supported if this storage is [incremental].
+     */
+    fun engineSessionStateStorage(): EngineSessionStateStorage {
+        require(incremental) { "Reading engine states on demand requires incremental storage" }
+
+        return object : EngineSessionStateStorage {
+            override fun contains(uuid: String): Boolean {
+                return uuid in persistedTabIds
+            }
+
+            override suspend fun read(uuid: String): EngineSessionState? {
+                return synchronized(sessionFileLock) {
+                    readEngineSessionState(uuid)
+                }
+            }
+
+            override suspend fun write(uuid: String, state: EngineSessionState): Boolean {
+                return synchronized(sessionFileLock) {
+                    writeEngineSessionState(uuid, state)
+                }
+            }
+
+            override suspend fun delete(uuid: String) {
+                synchronized(sessionFileLock) {
+                    engineSessionStateFiles.delete(uuid)
+                    persistedEngineSessionStates.remove(uuid)
+                    persistedTabIds.remove(uuid)
+                }
+            }
+
+            override suspend fun deleteAll() {
+                synchronized(sessionFileLock) {
+                    engineSessionStateFiles.deleteAll()
+                    persistedEngineSessionStates.clear()
+                    persistedTabIds.clear()
+                }
+            }
         }
     }
 
@@ -57,7 +162,14 @@ class SessionStorage(
      */
     @WorkerThread
     fun clear() {
-        removeSnapshotFromDisk(context, engine)
+        synchronized(sessionFileLock) {
+            removeSnapshotFromDisk(context, engine)
+
+            persistedEngineSessionStates.clear()
+            persistedTabIds.clear()
+            hasSeparateEngineSessionStates = false
+            engineSessionStateFiles.deleteAll()
+        }
     }
 
     /**
@@ -87,7 +199,17 @@ class SessionStorage(
         return synchronized(sessionFileLock) {
             try {
                 val file = getFileForEngine(context, engine)
-                stateWriter.write(stateToPersist, file)
+                if (incremental) {
+                    writeIncrementally(stateToPersist, file)
+                } else {
+                    stateWriter.write(stateToPersist, file, format = snapshotFormat).also { success ->
+                        if (success && hasSeparateEngineSessionStates) {
+                            // The engine states are part of the file now.
+                            engineSessionStateFiles.deleteAll()
+                            hasSeparateEngineSessionStates = false
+                        }
+                    }
+                }
             } catch (e: OutOfMemoryError) {
                 crashReporting?.submitCaughtException(e)
                 logger.error("Failed to save state to disk due to OutOfMemoryError", e)
@@ -96,6 +218,72 @@ class SessionStorage(
         }
     }
 
+    /**
+     * Writes the engine states of all tabs that changed since the last save to separate files and
+     * then the rest of the [state] to [file]. Needs to be called while holding [sessionFileLock].
+     */
+    private fun writeIncrementally(state: BrowserState, file: AtomicFile): Boolean {
+        val tabs = state.tabs.filter { !it.content.private }
+
+        for (tab in tabs) {
+            val engineSessionState = tab.engineState.engineSessionState
+            val persistedEngineSessionState = persistedEngineSessionStates[tab.id]
+
+            if (engineSessionState == null) {
+                // A tab without engine state may either have lost it (which we'll then also remove
+                // from disk) or it may not have been read yet.
+                if (persistedEngineSessionState != null) {
+                    engineSessionStateFiles.delete(tab.id)
+                    persistedEngineSessionStates.remove(tab.id)
+                    persistedTabIds.remove(tab.id)
+                }
+            } else if (engineSessionState !== persistedEngineSessionState) {
+                if (!writeEngineSessionState(tab.id, engineSessionState)) {
+                    return false
+                }
+            }
+        }
+
+        if (!stateWriter.write(state, file, writeEngineSessionState = false, format = snapshotFormat)) {
+            return false
+        }
+
+        // Only remove engine states of closed tabs once the state referencing them has been replaced.
+        val tabIds = tabs.map { it.id }.toSet()
+        if (!tabIds.containsAll(persistedTabIds)) {
+            persistedEngineSessionStates.keys.retainAll(tabIds)
+            persistedTabIds.retainAll(tabIds)
+            engineSessionStateFiles.retainAll(tabIds)
+        }
+
+        return true
+    }
+
+    /**
+     * Reads the engine state of the tab with the given [tabId] from disk. Needs to be called while
+     * holding [sessionFileLock].
+     */
+    private fun readEngineSessionState(tabId: String): EngineSessionState? {
+        return engineSessionStateFiles.read(tabId)?.also { state ->
+            persistedEngineSessionStates[tabId] = state
+            persistedTabIds.add(tabId)
+        }
+    }
+
+    /**
+     * Writes the engine [state] of the tab with the given [tabId] to disk. Needs to be called while
+     * holding [sessionFileLock].
+     */
+    private fun writeEngineSessionState(tabId: String, state: EngineSessionState): Boolean {
+        if (!engineSessionStateFiles.write(tabId, state)) {
+            return false
+        }
+
+        persistedEngineSessionStates[tabId] = state
+        persistedTabIds.add(tabId)
+        return true
+    }
+
     /**
      * Starts configuring automatic saving of the state.
      */
@@ -126,3 +314,11 @@ internal fun getFileForEngine(context: Context, engine: Engine): AtomicFile {
         ),
     )
 }
+
+private fun getEngineStateDirectoryForEngine(context: Context, engine: Engine): File {
+    return File(
+        context.filesDir,
+        String.format(ENGINE_STATE_DIRECTORY_NAME_FORMAT, engine.name())
+            .lowercase(Locale.ROOT),
+    )
+}
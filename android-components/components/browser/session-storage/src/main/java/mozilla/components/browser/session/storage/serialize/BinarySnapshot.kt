@@ -0,0 +1,413 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.session.storage.serialize
+
+import android.util.AtomicFile
+import android.util.JsonReader
+import android.util.JsonWriter
+import mozilla.components.browser.session.storage.RecoverableBrowserState
+import mozilla.components.browser.state.state.BrowserState
+import mozilla.components.browser.state.state.LastMediaAccessState
+import mozilla.components.browser.state.state.ReaderState
+import mozilla.components.browser.state.state.SessionState
+import mozilla.components.browser.state.state.TabSessionState
+import mozilla.components.browser.state.state.recover.RecoverableTab
+import mozilla.components.browser.state.state.recover.TabState
+import mozilla.components.concept.engine.Engine
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.storage.HistoryMetadataKey
+import org.json.JSONException
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+
+/**
+ * The first four bytes of every binary snapshot ("MCBS"). JSON snapshots always start with "{", so
+ * this is enough to tell both formats apart.
+ */
+internal const val BINARY_MAGIC = 0x4D434253
+internal const val BINARY_MAGIC_SIZE = 4
+
+/**
+ * The version of the binary snapshot layout. Fields may be appended to the end of a tab record
+ * without changing the version, since readers skip the unknown remainder of a record. Any other
+ * change of the layout requires a new version.
+ */
+internal const val BINARY_VERSION = 1
+
+private const val NO_STRING = 0
+
+private const val FLAG_READER_MODE_ACTIVE = 1
+private const val FLAG_MEDIA_SESSION_ACTIVE = 1 shl 1
+private const val FLAG_HISTORY_METADATA = 1 shl 2
+private const val FLAG_EXTERNAL_CALLER = 1 shl 3
+private const val FLAG_ENGINE_SESSION_STATE = 1 shl 4
+
+private const val VAR_INT_MASK = 0x7F
+private const val VAR_INT_CONTINUATION = 0x80
+private const val VAR_INT_SHIFT = 7
+private const val MAX_VAR_LONG_SHIFT = 63
+
+// Upper bound for pre-allocating lists from counts read from disk.
+private const val INITIAL_CAPACITY_LIMIT = 1024
+
+/**
+ * Writes a [BrowserState] to [file] in the binary snapshot format:
+ *
+ * ```
+ * magic (int) | version (varint) | string table | selected tab ID (string ref) | tab records
+ * ```
+ *
+ * The string table contains every distinct string of the snapshot exactly once (e.g. a URL that is
+ * both the URL of a tab and its last media URL or history metadata URL), and all other fields refer
+ * to strings by their index in the table. Every tab record is prefixed with its length in bytes.
+ */
+internal fun AtomicFile.writeBinarySnapshot(
+    state: BrowserState,
+    writeEngineSessionState: Boolean,
+): Boolean {
+    var outputStream: FileOutputStream? = null
+    return try {
+        outputStream = startWrite()
+
+        DataOutputStream(outputStream.buffered()).apply {
+            BinarySnapshotWriter(this).write(state, writeEngineSessionState)
+            flush()
+        }
+
+        finishWrite(outputStream)
+        true
+    } catch (_: IOException) {
+        failWrite(outputStream)
+        false
+    } catch (_: JSONException) {
+        failWrite(outputStream)
+        false
+    }
+}
+
+/**
+ * Returns true if [input] starts with a binary snapshot header. The position of [input] is left
+ * unchanged.
+ */
+internal fun isBinarySnapshot(input: InputStream): Boolean {
+    require(input.markSupported()) { "Detecting the snapshot format requires a stream supporting mark()" }
+
+    input.mark(BINARY_MAGIC_SIZE)
+    val header = ByteArray(BINARY_MAGIC_SIZE)
+    var read = 0
+    while (read < BINARY_MAGIC_SIZE) {
+        val count = input.read(header, read, BINARY_MAGIC_SIZE - read)
+        if (count < 0) break
+        read += count
+    }
+    input.reset()
+
+    return read == BINARY_MAGIC_SIZE && DataInputStream(ByteArrayInputStream(header)).readInt() == BINARY_MAGIC
+}
+
+private class BinarySnapshotWriter(
+    private val output: DataOutputStream,
+) {
+    private val strings = LinkedHashMap<String, Int>()
+    private val recordBuffer = ByteArrayOutputStream()
+    private val record = DataOutputStream(recordBuffer)
+
+    fun write(state: BrowserState, writeEngineSessionState: Boolean) {
+        val tabs = state.tabs.filter { !it.content.private }
+
+        intern(state.selectedTabId)
+        tabs.forEach { intern(it) }
+
+        output.writeInt(BINARY_MAGIC)
+        output.writeVarInt(BINARY_VERSION)
+
+        output.writeVarInt(strings.size)
+        strings.keys.forEach { string ->
+            val bytes = string.toByteArray(Charsets.UTF_8)
+            output.writeVarInt(bytes.size)
+            output.write(bytes)
+        }
+
+        output.writeVarInt(ref(state.selectedTabId))
+
+        output.writeVarInt(tabs.size)
+        tabs.forEach { tab ->
+            recordBuffer.reset()
+            record.tab(tab, writeEngineSessionState)
+            record.flush()
+
+            output.writeVarInt(recordBuffer.size())
+            recordBuffer.writeTo(output)
+        }
+    }
+
+    private fun intern(tab: TabSessionState) {
+        intern(tab.id)
+        intern(tab.parentId)
+        intern(tab.content.url)
+        intern(tab.content.title)
+        intern(tab.content.searchTerms)
+        intern(tab.contextId)
+        intern(tab.readerState.activeUrl.takeIf { tab.readerState.active })
+        intern(tab.lastMediaAccessState.lastMediaUrl)
+        tab.historyMetadata?.let { metadata ->
+            intern(metadata.url)
+            intern(metadata.searchTerm)
+            intern(metadata.referrerUrl)
+        }
+        (tab.source as? SessionState.Source.External)?.caller?.let { intern(it.packageId) }
+    }
+
+    private fun intern(string: String?) {
+        if (string != null && !strings.containsKey(string)) {
+            strings[string] = strings.size
+        }
+    }
+
+    /**
+     * Returns the reference to [string] in the string table: 0 for null or the index plus one.
+     */
+    private fun ref(string: String?): Int {
+        return if (string == null) NO_STRING else requireNotNull(strings[string]) + 1
+    }
+
+    @Suppress("ComplexMethod")
+    private fun DataOutputStream.tab(tab: TabSessionState, writeEngineSessionState: Boolean) {
+        val metadata = tab.historyMetadata
+        val caller = (tab.source as? SessionState.Source.External)?.caller
+        val readerActiveUrl = tab.readerState.activeUrl.takeIf { tab.readerState.active }
+
+        var flags = 0
+        if (tab.readerState.active) flags = flags or FLAG_READER_MODE_ACTIVE
+        if (tab.lastMediaAccessState.mediaSessionActive) flags = flags or FLAG_MEDIA_SESSION_ACTIVE
+        if (metadata != null) flags = flags or FLAG_HISTORY_METADATA
+        if (caller != null) flags = flags or FLAG_EXTERNAL_CALLER
+        if (writeEngineSessionState) flags = flags or FLAG_ENGINE_SESSION_STATE
+
+        writeVarInt(flags)
+        writeVarInt(ref(tab.id))
+        writeVarInt(ref(tab.parentId))
+        writeVarInt(ref(tab.content.url))
+        writeVarInt(ref(tab.content.title))
+        writeVarInt(ref(tab.content.searchTerms))
+        writeVarInt(ref(tab.contextId))
+        writeVarInt(ref(readerActiveUrl))
+        writeVarLong(tab.lastAccess)
+        writeVarLong(tab.createdAt)
+        writeVarInt(ref(tab.lastMediaAccessState.lastMediaUrl))
+        writeVarLong(tab.lastMediaAccessState.lastMediaAccess)
+        writeVarInt(tab.source.id)
+
+        if (metadata != null) {
+            writeVarInt(ref(metadata.url))
+            writeVarInt(ref(metadata.searchTerm))
+            writeVarInt(ref(metadata.referrerUrl))
+        }
+
+        if (caller != null) {
+            writeVarInt(ref(caller.packageId))
+            writeVarInt(caller.category.id)
+        }
+
+        if (writeEngineSessionState) {
+            // The engine state is opaque to us and only available as JSON.
+            val engineStateBuffer = ByteArrayOutputStream()
+            JsonWriter(engineStateBuffer.writer()).apply {
+                engineSession(tab.engineState.engineSessionState)
+                flush()
+            }
+            writeVarInt(engineStateBuffer.size())
+            engineStateBuffer.writeTo(this)
+        }
+    }
+}
+
+/**
+ * Reads a binary snapshot (see [writeBinarySnapshot]) from [input], which must be positioned at the
+ * start of the snapshot.
+ */
+internal class BinarySnapshotReader(
+    input: InputStream,
+) {
+    private val input = DataInputStream(input)
+    private lateinit var strings: ArrayList<String>
+
+    @Throws(IOException::class)
+    fun read(
+        engine: Engine,
+        predicate: (RecoverableTab) -> Boolean,
+        readEngineSessionState: (String) -> EngineSessionState?,
+    ): RecoverableBrowserState? {
+        if (input.readInt() != BINARY_MAGIC) {
+            throw IOException("Not a binary snapshot")
+        }
+
+        val version = input.readVarInt()
+        if (version > BINARY_VERSION) {
+            throw IOException("Unsupported binary snapshot version: $version")
+        }
+
+        val stringCount = input.readLength()
+        strings = ArrayList(minOf(stringCount, INITIAL_CAPACITY_LIMIT))
+        repeat(stringCount) {
+            val bytes = ByteArray(input.readLength())
+            input.readFully(bytes)
+            strings.add(String(bytes, Charsets.UTF_8))
+        }
+
+        val selectedTabId = input.readString()
+
+        val count = input.readLength()
+        val tabs = ArrayList<RecoverableTab>(minOf(count, INITIAL_CAPACITY_LIMIT))
+        var recordBuffer = ByteArray(0)
+        repeat(count) {
+            val size = input.readLength()
+            if (recordBuffer.size < size) {
+                recordBuffer = ByteArray(size)
+            }
+            input.readFully(recordBuffer, 0, size)
+
+            val tab = DataInputStream(ByteArrayInputStream(recordBuffer, 0, size))
+                .tab(engine, readEngineSessionState)
+            if (predicate(tab)) {
+                tabs.add(tab)
+            }
+        }
+
+        return recoverableBrowserState(tabs, selectedTabId)
+    }
+
+    private fun DataInputStream.readString(): String? {
+        val ref = readVarInt()
+        if (ref == NO_STRING) {
+            return null
+        }
+        if (ref > strings.size) {
+            throw IOException("Invalid string reference: $ref")
+        }
+        return strings[ref - 1]
+    }
+
+    private fun DataInputStream.requireString(): String {
+        return readString() ?: throw IOException("Missing required string")
+    }
+
+    @Suppress("LongMethod")
+    private fun DataInputStream.tab(
+        engine: Engine,
+        readEngineSessionState: (String) -> EngineSessionState?,
+    ): RecoverableTab {
+        val flags = readVarInt()
+        val id = requireString()
+        val parentId = readString()
+        val url = requireString()
+        val title = readString() ?: ""
+        val searchTerm = readString() ?: ""
+        val contextId = readString()
+        val readerActiveUrl = readString()
+        val lastAccess = readVarLong()
+        val createdAt = readVarLong()
+        val lastMediaUrl = readString() ?: ""
+        val lastMediaAccess = readVarLong()
+        val sourceId = readVarInt()
+
+        val historyMetadata = if (flags and FLAG_HISTORY_METADATA != 0) {
+            HistoryMetadataKey(
+                url = requireString(),
+                searchTerm = readString(),
+                referrerUrl = readString(),
+            )
+        } else {
+            null
+        }
+
+        var externalPackageId: String? = null
+        var externalPackageCategory: Int? = null
+        if (flags and FLAG_EXTERNAL_CALLER != 0) {
+            externalPackageId = requireString()
+            externalPackageCategory = readVarInt()
+        }
+
+        val engineSessionState = if (flags and FLAG_ENGINE_SESSION_STATE != 0) {
+            val bytes = ByteArray(readLength())
+            readFully(bytes)
+            engine.createSessionStateFrom(JsonReader(ByteArrayInputStream(bytes).reader()))
+        } else {
+            // The engine state of this tab was persisted separately.
+            readEngineSessionState(id)
+        }
+
+        return RecoverableTab(
+            engineSessionState = engineSessionState,
+            state = TabState(
+                id = id,
+                parentId = parentId,
+                url = url,
+                title = title,
+                searchTerm = searchTerm,
+                contextId = contextId,
+                readerState = ReaderState(
+                    active = flags and FLAG_READER_MODE_ACTIVE != 0,
+                    activeUrl = readerActiveUrl,
+                ),
+                historyMetadata = historyMetadata,
+                private = false, // We never serialize private sessions
+                lastAccess = lastAccess,
+                createdAt = createdAt,
+                lastMediaAccessState = LastMediaAccessState(
+                    lastMediaUrl,
+                    lastMediaAccess = lastMediaAccess,
+                    mediaSessionActive = flags and FLAG_MEDIA_SESSION_ACTIVE != 0,
+                ),
+                source = SessionState.Source.restore(sourceId, externalPackageId, externalPackageCategory),
+            ),
+        )
+    }
+}
+
+private fun OutputStream.writeVarInt(value: Int) = writeVarLong(value.toLong() and 0xFFFFFFFFL)
+
+private fun OutputStream.writeVarLong(value: Long) {
+    var remaining = value
+    while (remaining and VAR_INT_MASK.toLong().inv() != 0L) {
+        write((remaining.toInt() and VAR_INT_MASK) or VAR_INT_CONTINUATION)
+        remaining = remaining ushr VAR_INT_SHIFT
+    }
+    write(remaining.toInt())
+}
+
+private fun DataInputStream.readVarInt(): Int = readVarLong().toInt()
+
+/**
+ * Reads a length or count, which may come from a corrupted file and is therefore validated before
+ * it is used for allocating memory.
+ */
+private fun DataInputStream.readLength(): Int {
+    val length = readVarInt()
+    if (length < 0) {
+        throw IOException("Invalid length: $length")
+    }
+    return length
+}
+
+private fun DataInputStream.readVarLong(): Long {
+    var result = 0L
+    var shift = 0
+    while (shift <= MAX_VAR_LONG_SHIFT) {
+        val byte = readUnsignedByte()
+        result = result or ((byte and VAR_INT_MASK).toLong() shl shift)
+        if (byte and VAR_INT_CONTINUATION == 0) {
+            return result
+        }
+        shift += VAR_INT_SHIFT
+    }
+    throw IOException("Malformed variable-length integer")
+}
@@ -22,6 +22,7 @@ import mozilla.components.support.ktx.android.util.nextBooleanOrNull
 import mozilla.components.support.ktx.android.util.nextIntOrNull
 import mozilla.components.support.ktx.android.util.nextStringOrNull
 import mozilla.components.support.ktx.util.readJSON
+import java.io.IOException
 import java.util.UUID
 
 /**
@@ -30,24 +31,37 @@ import java.util.UUID
  */
 class BrowserStateReader {
     /**
-     * Reads a serialized [RecoverableBrowserState] from the given [AtomicFile].
+     * Reads a serialized [RecoverableBrowserState] from the given [AtomicFile]. The file may have
+     * been written in any [SnapshotFormat].
      *
      * @param engine The [Engine] implementation for restoring the engine state.
      * @param file The [AtomicFile] to read the the recoverable state from.
      * @param predicate an optional predicate applied to each tab to determine if it should be restored.
+     * @param readEngineSessionState an optional function for reading the [EngineSessionState] of a tab
+     * (by its ID) that was persisted separately (see [BrowserStateWriter.write]).
      */
     fun read(
         engine: Engine,
         file: AtomicFile,
         predicate: (RecoverableTab) -> Boolean = { true },
+        readEngineSessionState: (String) -> EngineSessionState? = { null },
     ): RecoverableBrowserState? {
-        return file.readJSON {
-            browsingSession(
-                engine,
-                restoreSessionId = true,
-                restoreParentId = true,
-                predicate = predicate,
-            )
+        return try {
+            file.openRead().buffered().use { input ->
+                if (isBinarySnapshot(input)) {
+                    BinarySnapshotReader(input).read(engine, predicate, readEngineSessionState)
+                } else {
+                    JsonReader(input.bufferedReader()).browsingSession(
+                        engine,
+                        restoreSessionId = true,
+                        restoreParentId = true,
+                        predicate = predicate,
+                        readEngineSessionState = readEngineSessionState,
+                    )
+                }
+            }
+        } catch (e: IOException) {
+            null
         }
     }
 
@@ -76,6 +90,7 @@ private fun JsonReader.browsingSession(
     restoreSessionId: Boolean = true,
     restoreParentId: Boolean = true,
     predicate: (RecoverableTab) -> Boolean = { true },
+    readEngineSessionState: (String) -> EngineSessionState? = { null },
 ): RecoverableBrowserState? {
     beginObject()
 
@@ -89,7 +104,13 @@ private fun JsonReader.browsingSession(
             Keys.VERSION_KEY -> version = nextInt()
             Keys.SELECTED_SESSION_INDEX_KEY -> selectedIndex = nextInt()
             Keys.SELECTED_TAB_ID_KEY -> selectedTabId = nextStringOrNull()
-            Keys.SESSION_STATE_TUPLES_KEY -> tabs = tabs(engine, restoreSessionId, restoreParentId, predicate)
+            Keys.SESSION_STATE_TUPLES_KEY -> tabs = tabs(
+                engine,
+                restoreSessionId,
+                restoreParentId,
+                predicate,
+                readEngineSessionState,
+            )
         }
     }
 
@@ -102,14 +123,28 @@ private fun JsonReader.browsingSession(
         selectedTabId = tabs?.getOrNull(selectedIndex)?.state?.id
     }
 
+    return recoverableBrowserState(tabs, selectedTabId)
+}
+
+/**
+ * Creates a [RecoverableBrowserState] from the restored [tabs], or returns null if there are none.
+ */
+internal fun recoverableBrowserState(
+    tabs: List<RecoverableTab>?,
+    selectedTabId: String?,
+): RecoverableBrowserState? {
     return if (tabs != null && tabs.isNotEmpty()) {
         // Check if selected tab still exists after restoring/filtering and
         // use most recently accessed tab otherwise.
-        if (tabs.find { it.state.id == selectedTabId } == null) {
-            selectedTabId = tabs.sortedByDescending { it.state.lastAccess }.first().state.id
-        }
-
-        RecoverableBrowserState(tabs, selectedTabId)
+        val selectedTabExists = tabs.find { it.state.id == selectedTabId } != null
+        RecoverableBrowserState(
+            tabs,
+            if (selectedTabExists) {
+                selectedTabId
+            } else {
+                tabs.sortedByDescending { it.state.lastAccess }.first().state.id
+            },
+        )
     } else {
         null
     }
@@ -120,12 +155,13 @@ private fun JsonReader.tabs(
     restoreSessionId: Boolean = true,
     restoreParentId: Boolean = true,
     predicate: (RecoverableTab) -> Boolean = { true },
+    readEngineSessionState: (String) -> EngineSessionState? = { null },
 ): List<RecoverableTab> {
     beginArray()
 
     val tabs = mutableListOf<RecoverableTab>()
     while (peek() != JsonToken.END_ARRAY) {
-        val tab = tab(engine, restoreSessionId, restoreParentId)
+        val tab = tab(engine, restoreSessionId, restoreParentId, readEngineSessionState)
         if (tab != null && predicate(tab)) {
             tabs.add(tab)
         }
@@ -140,21 +176,31 @@ private fun JsonReader.tab(
     engine: Engine,
     restoreSessionId: Boolean = true,
     restoreParentId: Boolean = true,
+    readEngineSessionState: (String) -> EngineSessionState? = { null },
 ): RecoverableTab? {
     beginObject()
 
     var engineSessionState: EngineSessionState? = null
+    var hasEngineSessionState = false
     var tab: RecoverableTab? = null
 
     while (hasNext()) {
         when (nextName()) {
             Keys.SESSION_KEY -> tab = tabSession()
-            Keys.ENGINE_SESSION_KEY -> engineSessionState = engine.createSessionStateFrom(this)
+            Keys.ENGINE_SESSION_KEY -> {
+                engineSessionState = engine.createSessionStateFrom(this)
+                hasEngineSessionState = true
+            }
         }
     }
 
     endObject()
 
+    if (tab != null && !hasEngineSessionState) {
+        // The engine state of this tab was persisted separately.
+        engineSessionState = readEngineSessionState(tab.state.id)
+    }
+
     return tab?.copy(
         engineSessionState = engineSessionState,
         state = tab.state.copy(
@@ -18,12 +18,25 @@ import mozilla.components.support.ktx.util.streamJSON
  */
 class BrowserStateWriter {
     /**
-     * Writes the [BrowserState] to [file] as JSON.
+     * Writes the [BrowserState] to [file].
+     *
+     * @param state The [BrowserState] to write.
+     * @param file The [AtomicFile] to write the state to.
+     * @param writeEngineSessionState Whether the [EngineSessionState] of every tab should be written
+     * to [file] too. If false, the engine state needs to be persisted separately and will be
+     * requested from [BrowserStateReader] when reading the state back.
+     * @param format The [SnapshotFormat] to write the state in. [BrowserStateReader] can read
+     * either format.
      */
     fun write(
         state: BrowserState,
         file: AtomicFile,
-    ): Boolean = file.streamJSON { state(state) }
+        writeEngineSessionState: Boolean = true,
+        format: SnapshotFormat = SnapshotFormat.JSON,
+    ): Boolean = when (format) {
+        SnapshotFormat.JSON -> file.streamJSON { state(state, writeEngineSessionState) }
+        SnapshotFormat.BINARY -> file.writeBinarySnapshot(state, writeEngineSessionState)
+    }
 
     /**
      * Writes a single [TabSessionState] to [file] in JSON format.
@@ -39,6 +52,7 @@ class BrowserStateWriter {
  */
 private fun JsonWriter.state(
     state: BrowserState,
+    writeEngineSessionState: Boolean,
 ) {
     beginObject()
 
@@ -53,7 +67,7 @@ private fun JsonWriter.state(
     beginArray()
 
     state.tabs.filter { !it.content.private }.forEachIndexed { _, tab ->
-        tab(tab)
+        tab(tab, writeEngineSessionState)
     }
 
     endArray()
@@ -66,6 +80,7 @@ private fun JsonWriter.state(
  */
 private fun JsonWriter.tab(
     tab: TabSessionState,
+    writeEngineSessionState: Boolean = true,
 ) {
     beginObject()
 
@@ -140,8 +155,10 @@ private fun JsonWriter.tab(
         endObject()
     }
 
-    name(Keys.ENGINE_SESSION_KEY)
-    engineSession(tab.engineState.engineSessionState)
+    if (writeEngineSessionState) {
+        name(Keys.ENGINE_SESSION_KEY)
+        engineSession(tab.engineState.engineSessionState)
+    }
 
     endObject()
 }
@@ -149,7 +166,7 @@ private fun JsonWriter.tab(
 /**
  * Writes a (nullable) [EngineSessionState] to [JsonWriter].
  */
-private fun JsonWriter.engineSession(engineSessionState: EngineSessionState?) {
+internal fun JsonWriter.engineSession(engineSessionState: EngineSessionState?) {
     if (engineSessionState == null) {
         beginObject()
         endObject()
@@ -0,0 +1,26 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.session.storage.serialize
+
+/**
+ * The encoding used by [BrowserStateWriter] for writing a browser state snapshot to disk.
+ *
+ * [BrowserStateReader] detects the encoding of a snapshot automatically. Switching between formats
+ * therefore does not require a migration: a snapshot written in one format can always be read and
+ * will be written in the new format the next time the state is saved.
+ */
+enum class SnapshotFormat {
+    /**
+     * JSON, as written by all previous versions of [BrowserStateWriter].
+     */
+    JSON,
+
+    /**
+     * A compact binary encoding with a version header, length-prefixed tab records and a table of
+     * interned strings. Snapshots in this format are smaller and faster to parse than [JSON], but
+     * can not be read by versions of [BrowserStateReader] that predate this format.
+     */
+    BINARY,
+}
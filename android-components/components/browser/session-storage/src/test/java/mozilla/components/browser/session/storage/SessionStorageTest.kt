@@ -5,12 +5,16 @@
 package mozilla.components.browser.session.storage
 
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.test.runTest
+import mozilla.components.browser.session.storage.serialize.SnapshotFormat
+import mozilla.components.browser.session.storage.serialize.isBinarySnapshot
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.EngineState
 import mozilla.components.browser.state.state.ReaderState
 import mozilla.components.browser.state.state.TabSessionState
 import mozilla.components.browser.state.state.createTab
 import mozilla.components.browser.state.state.recover.RecoverableTab
+import mozilla.components.support.ktx.kotlin.sha1
 import mozilla.components.support.ktx.util.writeString
 import mozilla.components.support.test.fakes.engine.FakeEngine
 import mozilla.components.support.test.fakes.engine.FakeEngineSessionState
@@ -24,6 +28,7 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Mockito.spy
 import org.mockito.Mockito.verify
+import java.io.File
 
 @RunWith(AndroidJUnit4::class)
 class SessionStorageTest {
@@ -387,6 +392,219 @@ class SessionStorageTest {
         // the first one if all tabs have the same last access value.
         assertEquals("pocket", browsingSession.selectedTabId)
     }
+
+    @Test
+    fun `GIVEN incremental storage WHEN saving and restoring state THEN engine states are restored`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2")),
+        )
+        val tab3 = createTab("https://www.firefox.com", id = "tab3")
+
+        val engine = FakeEngine()
+        val storage = SessionStorage(testContext, engine, incremental = true)
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, tab2, tab3), selectedTabId = tab2.id)))
+
+        val restoredState = SessionStorage(testContext, engine, incremental = true).restore()
+        assertNotNull(restoredState!!)
+
+        assertEquals(3, restoredState.tabs.size)
+        assertEquals("tab2", restoredState.selectedTabId)
+        assertEquals("engineState1", (restoredState.tabs[0].engineSessionState as FakeEngineSessionState).value)
+        assertEquals("engineState2", (restoredState.tabs[1].engineSessionState as FakeEngineSessionState).value)
+        assertNull(restoredState.tabs[2].engineSessionState)
+    }
+
+    @Test
+    fun `GIVEN incremental storage WHEN saving THEN only changed engine states are written`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2")),
+        )
+
+        val engine = FakeEngine()
+        val storage = SessionStorage(testContext, engine, incremental = true)
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, tab2))))
+
+        val directory = File(testContext.filesDir, "mozilla_components_session_storage_fake_engine_engine_states")
+        val tab1File = File(directory, "tab1".sha1())
+        val tab2File = File(directory, "tab2".sha1())
+        assertTrue(tab1File.exists())
+        assertTrue(tab2File.exists())
+
+        // Deleting the file of tab 1 allows us to verify that it does not get written again.
+        tab1File.delete()
+
+        val updatedTab2 = tab2.copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2-updated")),
+        )
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, updatedTab2))))
+
+        assertFalse(tab1File.exists())
+        assertTrue(tab2File.exists())
+
+        val restoredState = SessionStorage(testContext, engine, incremental = true).restore()
+        assertNotNull(restoredState!!)
+        assertEquals(
+            "engineState2-updated",
+            (restoredState.tabs[1].engineSessionState as FakeEngineSessionState).value,
+        )
+    }
+
+    @Test
+    fun `GIVEN incremental storage WHEN a tab was closed THEN its engine state is removed`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2")),
+        )
+
+        val engine = FakeEngine()
+        val storage = SessionStorage(testContext, engine, incremental = true)
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, tab2))))
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab2))))
+
+        val directory = File(testContext.filesDir, "mozilla_components_session_storage_fake_engine_engine_states")
+        assertFalse(File(directory, "tab1".sha1()).exists())
+        assertTrue(File(directory, "tab2".sha1()).exists())
+
+        storage.clear()
+
+        assertFalse(File(directory, "tab2".sha1()).exists())
+        assertNull(storage.restore())
+    }
+
+    @Test
+    fun `GIVEN incremental storage WHEN restoring without engine states THEN engine states can be read on demand`() = runTest {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2")),
+        )
+
+        val engine = FakeEngine()
+        val initialStorage = SessionStorage(testContext, engine, incremental = true)
+        assertTrue(initialStorage.save(BrowserState(tabs = listOf(tab1, tab2))))
+
+        val storage = SessionStorage(testContext, engine, incremental = true)
+        val restoredState = storage.restore(restoreEngineSessionStates = false)
+        assertNotNull(restoredState!!)
+
+        assertEquals(2, restoredState.tabs.size)
+        assertNull(restoredState.tabs[0].engineSessionState)
+        assertNull(restoredState.tabs[1].engineSessionState)
+
+        val engineSessionStateStorage = storage.engineSessionStateStorage()
+        assertTrue(engineSessionStateStorage.contains("tab1"))
+        assertTrue(engineSessionStateStorage.contains("tab2"))
+        assertFalse(engineSessionStateStorage.contains("tab3"))
+        assertEquals("engineState2", (engineSessionStateStorage.read("tab2") as FakeEngineSessionState).value)
+
+        // Saving the restored state (without engine states) must not remove the engine states from disk.
+        val restoredTabs = restoredState.tabs.map { createTab(it.state.url, id = it.state.id) }
+        assertTrue(storage.save(BrowserState(tabs = restoredTabs)))
+        assertEquals("engineState1", (engineSessionStateStorage.read("tab1") as FakeEngineSessionState).value)
+
+        // Closing a tab removes its engine state, even if it was never read.
+        assertTrue(storage.save(BrowserState(tabs = restoredTabs.subList(1, 2))))
+        assertFalse(engineSessionStateStorage.contains("tab1"))
+        assertNull(engineSessionStateStorage.read("tab1"))
+    }
+
+    @Test
+    fun `GIVEN state written incrementally WHEN restoring and saving without incremental storage THEN engine states are migrated`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState2")),
+        )
+
+        val engine = FakeEngine()
+        val incrementalStorage = SessionStorage(testContext, engine, incremental = true)
+        assertTrue(incrementalStorage.save(BrowserState(tabs = listOf(tab1, tab2))))
+
+        val storage = SessionStorage(testContext, engine)
+        val restoredState = storage.restore()
+        assertNotNull(restoredState!!)
+        assertEquals("engineState1", (restoredState.tabs[0].engineSessionState as FakeEngineSessionState).value)
+        assertEquals("engineState2", (restoredState.tabs[1].engineSessionState as FakeEngineSessionState).value)
+
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, tab2))))
+
+        val directory = File(testContext.filesDir, "mozilla_components_session_storage_fake_engine_engine_states")
+        assertTrue(directory.listFiles().isNullOrEmpty())
+        val migratedState = SessionStorage(testContext, engine).restore()
+        assertNotNull(migratedState!!)
+        assertEquals("engineState1", (migratedState.tabs[0].engineSessionState as FakeEngineSessionState).value)
+        assertEquals("engineState2", (migratedState.tabs[1].engineSessionState as FakeEngineSessionState).value)
+    }
+
+    @Test
+    fun `GIVEN incremental storage WHEN tab IDs are not valid file names THEN engine states are still stored`() {
+        val tab = createTab("https://www.mozilla.org", id = "../tab/1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+
+        val engine = FakeEngine()
+        assertTrue(SessionStorage(testContext, engine, incremental = true).save(BrowserState(tabs = listOf(tab))))
+
+        val restoredState = SessionStorage(testContext, engine, incremental = true).restore()
+        assertNotNull(restoredState!!)
+        assertEquals("engineState1", (restoredState.tabs[0].engineSessionState as FakeEngineSessionState).value)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `GIVEN non-incremental storage WHEN requesting engine state storage THEN an exception is thrown`() {
+        SessionStorage(testContext, FakeEngine()).engineSessionStateStorage()
+    }
+
+    @Test
+    fun `GIVEN state saved without incremental storage WHEN restoring with incremental storage THEN engine states are restored`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+
+        val engine = FakeEngine()
+        assertTrue(SessionStorage(testContext, engine).save(BrowserState(tabs = listOf(tab1))))
+
+        val restoredState = SessionStorage(testContext, engine, incremental = true).restore()
+        assertNotNull(restoredState!!)
+        tab1.assertSameAs(restoredState.tabs[0])
+    }
+
+    @Test
+    fun `GIVEN state saved as JSON WHEN saving with binary snapshot format THEN state is migrated`() {
+        val tab1 = createTab("https://www.mozilla.org", id = "tab1").copy(
+            engineState = EngineState(engineSessionState = FakeEngineSessionState("engineState1")),
+        )
+        val tab2 = createTab("https://getpocket.com", id = "tab2", parentId = "tab1")
+
+        val engine = FakeEngine()
+        assertTrue(SessionStorage(testContext, engine).save(BrowserState(tabs = listOf(tab1, tab2))))
+
+        val storage = SessionStorage(testContext, engine, snapshotFormat = SnapshotFormat.BINARY)
+        val restoredFromJson = storage.restore()
+        assertNotNull(restoredFromJson!!)
+        tab1.assertSameAs(restoredFromJson.tabs[0])
+        tab2.assertSameAs(restoredFromJson.tabs[1])
+
+        assertTrue(storage.save(BrowserState(tabs = listOf(tab1, tab2), selectedTabId = "tab2")))
+        assertTrue(getFileForEngine(testContext, engine).openRead().use { isBinarySnapshot(it.buffered()) })
+
+        // The default storage can read the migrated state too.
+        val restoredFromBinary = SessionStorage(testContext, engine).restore()
+        assertNotNull(restoredFromBinary!!)
+        assertEquals("tab2", restoredFromBinary.selectedTabId)
+        tab1.assertSameAs(restoredFromBinary.tabs[0])
+        tab2.assertSameAs(restoredFromBinary.tabs[1])
+    }
 }
 
 internal fun TabSessionState.assertSameAs(tab: RecoverableTab) {
@@ -0,0 +1,300 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.session.storage.serialize
+
+import android.util.AtomicFile
+import android.util.JsonReader
+import android.util.JsonWriter
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.browser.state.state.BrowserState
+import mozilla.components.browser.state.state.EngineState
+import mozilla.components.browser.state.state.ExternalPackage
+import mozilla.components.browser.state.state.LastMediaAccessState
+import mozilla.components.browser.state.state.PackageCategory
+import mozilla.components.browser.state.state.ReaderState
+import mozilla.components.browser.state.state.SessionState
+import mozilla.components.browser.state.state.createTab
+import mozilla.components.concept.engine.Engine
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.storage.HistoryMetadataKey
+import mozilla.components.support.test.any
+import mozilla.components.support.test.mock
+import mozilla.components.support.test.whenever
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.UUID
+
+@RunWith(AndroidJUnit4::class)
+class BinarySnapshotTest {
+    @Test
+    fun `Read and write state in binary format`() {
+        val engineState = createFakeEngineState()
+        val engine = createFakeEngine(engineState)
+
+        val state = BrowserState(
+            tabs = listOf(
+                createTab(
+                    url = "https://www.mozilla.org",
+                    title = "Mozilla",
+                    id = "mozilla",
+                    contextId = "work",
+                    readerState = ReaderState(active = true, activeUrl = "https://www.mozilla.org/article"),
+                    historyMetadata = HistoryMetadataKey(
+                        "https://www.mozilla.org",
+                        searchTerm = "mozilla",
+                        referrerUrl = "https://www.firefox.com",
+                    ),
+                    lastAccess = 42,
+                    createdAt = 23,
+                    lastMediaAccessState = LastMediaAccessState(
+                        "https://www.mozilla.org",
+                        lastMediaAccess = 1234567890123,
+                        mediaSessionActive = true,
+                    ),
+                    source = SessionState.Source.External.CustomTab(
+                        ExternalPackage("com.example.app", PackageCategory.SOCIAL),
+                    ),
+                    searchTerms = "mozilla",
+                ).copy(engineState = EngineState(engineSessionState = engineState)),
+                createTab(
+                    url = "https://www.firefox.com",
+                    id = "firefox",
+                    parentId = "mozilla",
+                ),
+                createTab(
+                    url = "https://www.example.org",
+                    id = "private",
+                    private = true,
+                ),
+            ),
+            selectedTabId = "firefox",
+        )
+
+        val file = createFile()
+        assertTrue(BrowserStateWriter().write(state, file, format = SnapshotFormat.BINARY))
+        assertTrue(file.openRead().use { isBinarySnapshot(it.buffered()) })
+
+        val restored = BrowserStateReader().read(engine, file)
+        assertNotNull(restored!!)
+        assertEquals("firefox", restored.selectedTabId)
+        assertEquals(2, restored.tabs.size)
+
+        val mozilla = restored.tabs[0]
+        assertEquals(engineState, mozilla.engineSessionState)
+        assertEquals("mozilla", mozilla.state.id)
+        assertNull(mozilla.state.parentId)
+        assertEquals("https://www.mozilla.org", mozilla.state.url)
+        assertEquals("Mozilla", mozilla.state.title)
+        assertEquals("mozilla", mozilla.state.searchTerm)
+        assertEquals("work", mozilla.state.contextId)
+        assertEquals(
+            ReaderState(active = true, activeUrl = "https://www.mozilla.org/article"),
+            mozilla.state.readerState,
+        )
+        assertEquals(
+            HistoryMetadataKey("https://www.mozilla.org", "mozilla", "https://www.firefox.com"),
+            mozilla.state.historyMetadata,
+        )
+        assertEquals(42L, mozilla.state.lastAccess)
+        assertEquals(23L, mozilla.state.createdAt)
+        assertEquals(
+            LastMediaAccessState("https://www.mozilla.org", 1234567890123, mediaSessionActive = true),
+            mozilla.state.lastMediaAccessState,
+        )
+        assertEquals(
+            SessionState.Source.External.CustomTab(ExternalPackage("com.example.app", PackageCategory.SOCIAL)),
+            mozilla.state.source,
+        )
+        assertFalse(mozilla.state.private)
+
+        val firefox = restored.tabs[1]
+        assertEquals("firefox", firefox.state.id)
+        assertEquals("mozilla", firefox.state.parentId)
+        assertEquals("https://www.firefox.com", firefox.state.url)
+        assertEquals("", firefox.state.title)
+        assertEquals("", firefox.state.searchTerm)
+        assertNull(firefox.state.contextId)
+        assertFalse(firefox.state.readerState.active)
+        assertNull(firefox.state.historyMetadata)
+        assertEquals(SessionState.Source.Internal.None, firefox.state.source)
+    }
+
+    @Test
+    fun `Reading state automatically migrates from JSON to binary format`() {
+        val engineState = createFakeEngineState()
+        val engine = createFakeEngine(engineState)
+        val state = BrowserState(
+            tabs = listOf(
+                createTab("https://www.mozilla.org", id = "mozilla"),
+                createTab("https://www.firefox.com", id = "firefox"),
+            ),
+            selectedTabId = "mozilla",
+        )
+
+        val file = createFile()
+        val writer = BrowserStateWriter()
+        val reader = BrowserStateReader()
+
+        assertTrue(writer.write(state, file))
+        assertFalse(file.openRead().use { isBinarySnapshot(it.buffered()) })
+
+        val fromJson = reader.read(engine, file)!!
+        assertEquals(listOf("mozilla", "firefox"), fromJson.tabs.map { it.state.id })
+
+        assertTrue(writer.write(state, file, format = SnapshotFormat.BINARY))
+        assertTrue(file.openRead().use { isBinarySnapshot(it.buffered()) })
+
+        assertEquals(fromJson, reader.read(engine, file))
+    }
+
+    @Test
+    fun `Binary format reads engine states that were persisted separately`() {
+        val engineState = createFakeEngineState()
+        val engine = createFakeEngine(engineState)
+        val separateEngineState: EngineSessionState = mock()
+        val state = BrowserState(
+            tabs = listOf(
+                createTab("https://www.mozilla.org", id = "mozilla")
+                    .copy(engineState = EngineState(engineSessionState = engineState)),
+            ),
+        )
+
+        val file = createFile()
+        assertTrue(
+            BrowserStateWriter().write(
+                state,
+                file,
+                writeEngineSessionState = false,
+                format = SnapshotFormat.BINARY,
+            ),
+        )
+
+        val requestedIds = mutableListOf<String>()
+        val restored = BrowserStateReader().read(engine, file) { id ->
+            requestedIds.add(id)
+            separateEngineState
+        }
+
+        assertEquals(listOf("mozilla"), requestedIds)
+        assertEquals(separateEngineState, restored!!.tabs.single().engineSessionState)
+    }
+
+    @Test
+    fun `Binary format applies predicate and falls back to most recently accessed tab`() {
+        val engine = createFakeEngine(createFakeEngineState())
+        val state = BrowserState(
+            tabs = listOf(
+                createTab("https://www.mozilla.org", id = "mozilla", lastAccess = 10),
+                createTab("https://www.firefox.com", id = "firefox", lastAccess = 20),
+                createTab("https://www.example.org", id = "example", lastAccess = 30),
+            ),
+            selectedTabId = "example",
+        )
+
+        val file = createFile()
+        assertTrue(BrowserStateWriter().write(state, file, format = SnapshotFormat.BINARY))
+
+        val restored = BrowserStateReader().read(engine, file, predicate = { it.state.id != "example" })
+        assertEquals(listOf("mozilla", "firefox"), restored!!.tabs.map { it.state.id })
+        assertEquals("firefox", restored.selectedTabId)
+    }
+
+    @Test
+    fun `Binary format is smaller than JSON and interns repeated strings`() {
+        val engineState = createFakeEngineState()
+        val state = BrowserState(
+            tabs = List(100) { index ->
+                val url = "https://www.example.org/some/long/path/to/a/page"
+                createTab(
+                    url = url,
+                    id = "tab-$index",
+                    lastMediaAccessState = LastMediaAccessState(url, lastMediaAccess = index.toLong()),
+                    historyMetadata = HistoryMetadataKey(url, referrerUrl = url),
+                ).copy(engineState = EngineState(engineSessionState = engineState))
+            },
+        )
+
+        val jsonFile = createFile()
+        val binaryFile = createFile()
+        assertTrue(BrowserStateWriter().write(state, jsonFile))
+        assertTrue(BrowserStateWriter().write(state, binaryFile, format = SnapshotFormat.BINARY))
+
+        val binarySize = binaryFile.baseFile.length()
+        assertTrue(binarySize * 4 < jsonFile.baseFile.length())
+        assertEquals(1, binaryFile.readFully().asString().split("https://www.example.org").size - 1)
+    }
+
+    @Test
+    fun `Reading corrupted binary state returns null`() {
+        val engine = createFakeEngine(createFakeEngineState())
+        val state = BrowserState(tabs = listOf(createTab("https://www.mozilla.org", id = "mozilla")))
+
+        val file = createFile()
+        assertTrue(BrowserStateWriter().write(state, file, format = SnapshotFormat.BINARY))
+
+        val bytes = file.readFully()
+        val stream = file.startWrite()
+        stream.write(bytes, 0, bytes.size - 3)
+        file.finishWrite(stream)
+
+        assertNull(BrowserStateReader().read(engine, file))
+    }
+
+    @Test
+    fun `Reading binary state of an unknown version returns null`() {
+        val engine = createFakeEngine(createFakeEngineState())
+        val state = BrowserState(tabs = listOf(createTab("https://www.mozilla.org", id = "mozilla")))
+
+        val file = createFile()
+        assertTrue(BrowserStateWriter().write(state, file, format = SnapshotFormat.BINARY))
+
+        val bytes = file.readFully()
+        bytes[BINARY_MAGIC_SIZE] = (BINARY_VERSION + 1).toByte()
+        val stream = file.startWrite()
+        stream.write(bytes)
+        file.finishWrite(stream)
+
+        assertNull(BrowserStateReader().read(engine, file))
+    }
+}
+
+private fun ByteArray.asString() = String(this, Charsets.UTF_8)
+
+private fun createFile() = AtomicFile(
+    File.createTempFile(UUID.randomUUID().toString(), UUID.randomUUID().toString()),
+)
+
+private fun createFakeEngineState(): EngineSessionState {
+    val state: EngineSessionState = mock()
+    whenever(state.writeTo(any())).then {
+        val writer = it.arguments[0] as JsonWriter
+        writer.beginObject()
+        writer.name("history")
+        writer.value("opaque")
+        writer.endObject()
+    }
+    return state
+}
+
+private fun createFakeEngine(engineState: EngineSessionState): Engine {
+    val engine: Engine = mock()
+    whenever(engine.createSessionStateFrom(any())).then {
+        val reader = it.arguments[0] as JsonReader
+        reader.beginObject()
+        while (reader.hasNext()) {
+            reader.nextName()
+            reader.skipValue()
+        }
+        reader.endObject()
+        engineState
+    }
+    return engine
+}
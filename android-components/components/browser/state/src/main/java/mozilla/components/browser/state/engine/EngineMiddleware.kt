@@ -19,6 +19,8 @@ import mozilla.components.browser.state.engine.middleware.WebExtensionMiddleware
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.engine.Engine
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.engine.EngineSessionStateStorage
 import mozilla.components.lib.state.Middleware
 
 /**
@@ -31,17 +33,22 @@ object EngineMiddleware {
      *
      * @param trimMemoryAutomatically Whether a middleware should listen to LowMemoryAction and
      * automatically trim memory by suspending tabs.
+     * @param engineSessionStateStorage An optional [EngineSessionStateStorage] for reading the
+     * [EngineSessionState] of tabs that have been restored without one, once an engine session
+     * gets created for them.
      */
     fun create(
         engine: Engine,
         scope: CoroutineScope = MainScope(),
         trimMemoryAutomatically: Boolean = true,
+        engineSessionStateStorage: EngineSessionStateStorage? = null,
     ): List<Middleware<BrowserState, BrowserAction>> {
         return listOf(
             EngineDelegateMiddleware(scope),
             CreateEngineSessionMiddleware(
                 engine,
                 scope,
+                engineSessionStateStorage,
             ),
             LinkingMiddleware(scope),
             TabsRemovedMiddleware(scope),
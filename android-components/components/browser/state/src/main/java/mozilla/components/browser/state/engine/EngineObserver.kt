@@ -99,7 +99,7 @@ internal class EngineObserver(
     }
 
     override fun onTitleChange(title: String) {
-        store.dispatch(ContentAction.UpdateTitleAction(tabId, title))
+        store.dispatchCoalesced(ContentAction.UpdateTitleAction(tabId, title))
     }
 
     override fun onPreviewImageChange(previewImageUrl: String) {
@@ -107,7 +107,7 @@ internal class EngineObserver(
     }
 
     override fun onProgress(progress: Int) {
-        store.dispatch(ContentAction.UpdateProgressAction(tabId, progress))
+        store.dispatchCoalesced(ContentAction.UpdateProgressAction(tabId, progress))
     }
 
     override fun onLoadingStateChange(loading: Boolean) {
@@ -5,8 +5,11 @@
 package mozilla.components.browser.state.engine.middleware
 
 import androidx.annotation.MainThread
+import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import mozilla.components.browser.state.action.BrowserAction
 import mozilla.components.browser.state.action.EngineAction
 import mozilla.components.browser.state.selector.findTabOrCustomTab
@@ -14,6 +17,8 @@ import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.SessionState
 import mozilla.components.concept.engine.Engine
 import mozilla.components.concept.engine.EngineSession
+import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.engine.EngineSessionStateStorage
 import mozilla.components.lib.state.Middleware
 import mozilla.components.lib.state.MiddlewareContext
 import mozilla.components.lib.state.Store
@@ -22,13 +27,23 @@ import mozilla.components.support.base.log.logger.Logger
 /**
  * [Middleware] responsible for creating [EngineSession] instances whenever an [EngineAction.CreateEngineSessionAction]
  * is getting dispatched.
+ *
+ * @param engineSessionStateStorage An optional [EngineSessionStateStorage] to read the [EngineSessionState]
+ * of tabs from, that were restored without one (e.g. because it gets loaded lazily).
+ * @param ioDispatcher The [CoroutineDispatcher] used for reading from [engineSessionStateStorage].
  */
 internal class CreateEngineSessionMiddleware(
     private val engine: Engine,
     private val scope: CoroutineScope,
+    private val engineSessionStateStorage: EngineSessionStateStorage? = null,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO,
 ) : Middleware<BrowserState, BrowserAction> {
     private val logger = Logger("CreateEngineSessionMiddleware")
 
+    // The follow-up actions to dispatch once the engine session of a tab has been created, by the ID
+    // of the tab. Tabs are only contained while creating their engine session is in progress.
+    private val pendingFollowupActions = mutableMapOf<String, MutableList<BrowserAction>>()
+
     override fun invoke(
         context: MiddlewareContext<BrowserState, BrowserAction>,
         next: (BrowserAction) -> Unit,
@@ -37,15 +52,25 @@ internal class CreateEngineSessionMiddleware(
         if (action is EngineAction.CreateEngineSessionAction) {
             if (context.state.findTabOrCustomTab(action.tabId)?.engineState?.initializing == false) {
                 context.dispatch(EngineAction.UpdateEngineSessionInitializingAction(action.tabId, true))
+                synchronized(pendingFollowupActions) {
+                    pendingFollowupActions[action.tabId] = listOfNotNull(action.followupAction).toMutableList()
+                }
                 createEngineSession(context.store, action)
             } else {
-                // Initialization is in progress by a pending CreateEngineSessionAction. Let's
-                // schedule dispatching the follow-up action when the engine session is ready.
-                // We launch this on main to guarantee this happens after the engine session
-                // is created which has been launched on main already at this point.
-                action.followupAction?.let {
-                    scope.launch {
-                        context.store.dispatch(it)
+                // Initialization is in progress by a pending CreateEngineSessionAction, which may
+                // still be reading the engine session state. Let's queue the follow-up action, so
+                // that it gets dispatched once the engine session has been created.
+                action.followupAction?.let { followupAction ->
+                    val queued = synchronized(pendingFollowupActions) {
+                        pendingFollowupActions[action.tabId]?.add(followupAction) ?: false
+                    }
+
+                    if (!queued) {
+                        // Creating the engine session has just completed and the action linking it
+                        // has already been dispatched.
+                        scope.launch {
+                            context.store.dispatch(followupAction)
+                        }
                     }
                 }
             }
@@ -61,30 +86,75 @@ internal class CreateEngineSessionMiddleware(
         logger.debug("Request to create engine session for tab ${action.tabId}")
 
         scope.launch {
-            // We only need to ask for an EngineSession here. If needed this method will internally
-            // create one and dispatch a LinkEngineSessionAction to add it to BrowserState.
-            getOrCreateEngineSession(
-                engine,
-                logger,
-                store,
-                action.tabId,
-            )
-
-            action.followupAction?.let {
-                store.dispatch(it)
+            try {
+                // We only need to ask for an EngineSession here. If needed this method will internally
+                // create one and dispatch a LinkEngineSessionAction to add it to BrowserState.
+                getOrCreateEngineSession(
+                    engine,
+                    logger,
+                    store,
+                    action.tabId,
+                ) { tabId -> readEngineSessionState(tabId) }
+            } finally {
+                val followupActions = synchronized(pendingFollowupActions) {
+                    pendingFollowupActions.remove(action.tabId)
+                }
+                followupActions?.forEach { store.dispatch(it) }
             }
         }
     }
+
+    private suspend fun readEngineSessionState(tabId: String): EngineSessionState? {
+        val storage = engineSessionStateStorage ?: return null
+        if (!storage.contains(tabId)) {
+            // Avoid reading from disk for tabs that were never persisted, e.g. new tabs.
+            return null
+        }
+
+        return withContext(ioDispatcher) {
+            storage.read(tabId)
+        }
+    }
 }
 
 @MainThread
 @Suppress("ReturnCount")
-private fun getOrCreateEngineSession(
+private suspend fun getOrCreateEngineSession(
     engine: Engine,
     logger: Logger,
     store: Store<BrowserState, BrowserAction>,
     tabId: String,
+    readEngineSessionState: suspend (String) -> EngineSessionState?,
 ): EngineSession? {
+    var tab = findTabForEngineSession(logger, store, tabId) ?: return null
+
+    tab.engineState.engineSession?.let {
+        logger.debug("Engine session already exists for tab $tabId")
+        return it
+    }
+
+    var engineSessionState = tab.engineState.engineSessionState
+    if (engineSessionState == null) {
+        engineSessionState = readEngineSessionState(tabId)
+
+        if (engineSessionState != null) {
+            logger.debug("Read engine session state for tab $tabId")
+            store.dispatch(EngineAction.UpdateEngineSessionStateAction(tabId, engineSessionState))
+
+            // The state may have changed while we were reading.
+            tab = findTabForEngineSession(logger, store, tabId) ?: return null
+            tab.engineState.engineSession?.let { return it }
+        }
+    }
+
+    return createEngineSession(engine, logger, store, tab, engineSessionState)
+}
+
+private fun findTabForEngineSession(
+    logger: Logger,
+    store: Store<BrowserState, BrowserAction>,
+    tabId: String,
+): SessionState? {
     val tab = store.state.findTabOrCustomTab(tabId)
     if (tab == null) {
         logger.warn("Requested engine session for tab. But tab does not exist. ($tabId)")
@@ -96,12 +166,7 @@ private fun getOrCreateEngineSession(
         return null
     }
 
-    tab.engineState.engineSession?.let {
-        logger.debug("Engine session already exists for tab $tabId")
-        return it
-    }
-
-    return createEngineSession(engine, logger, store, tab)
+    return tab
 }
 
 @MainThread
@@ -110,11 +175,11 @@ private fun createEngineSession(
     logger: Logger,
     store: Store<BrowserState, BrowserAction>,
     tab: SessionState,
+    engineSessionState: EngineSessionState?,
 ): EngineSession {
     val engineSession = engine.createSession(tab.content.private, tab.contextId)
     logger.debug("Created engine session for tab ${tab.id}")
 
-    val engineSessionState = tab.engineState.engineSessionState
     val skipLoading = if (engineSessionState != null) {
         engineSession.restoreState(engineSessionState)
     } else {
@@ -34,6 +34,7 @@ import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.CustomTabSessionState
 import mozilla.components.browser.state.state.SessionState
 import mozilla.components.browser.state.state.TabSessionState
+import mozilla.components.browser.state.state.toIndexedTabList
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.lib.state.Action
 
@@ -146,8 +147,9 @@ internal fun <T : SessionState> List<T>.updateTabs(
     tabId: String,
     update: (T) -> T,
 ): List<T>? {
-    val tabIndex = indexOfFirst { it.id == tabId }
+    val tabs = toIndexedTabList()
+    val tabIndex = tabs.indexOfTab(tabId)
     if (tabIndex == -1) return null
 
-    return subList(0, tabIndex) + update(get(tabIndex)) + subList(tabIndex + 1, size)
+    return tabs.replace(tabIndex, update(tabs[tabIndex]))
 }
@@ -10,7 +10,9 @@ import mozilla.components.browser.state.selector.selectedTab
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.TabPartition
 import mozilla.components.browser.state.state.TabSessionState
+import mozilla.components.browser.state.state.indexOfTabById
 import mozilla.components.browser.state.state.recover.toTabSessionStates
+import mozilla.components.browser.state.state.toIndexedTabList
 import kotlin.math.max
 
 internal object TabListReducer {
@@ -25,7 +27,7 @@ internal object TabListReducer {
                 requireUniqueTab(state, action.tab)
 
                 val updatedTabList = if (action.tab.parentId != null) {
-                    val parentIndex = state.tabs.indexOfFirst { it.id == action.tab.parentId }
+                    val parentIndex = state.tabs.indexOfTabById(action.tab.parentId)
                     if (parentIndex == -1) {
                         throw IllegalArgumentException("The parent does not exist")
                     }
@@ -35,7 +37,7 @@ internal object TabListReducer {
                     state.tabs.subList(0, childIndex) + action.tab + state.tabs.subList(childIndex, state.tabs.size)
                 } else {
                     state.tabs + action.tab
-                }
+                }.toIndexedTabList()
 
                 state.copy(
                     tabs = updatedTabList,
@@ -55,7 +57,7 @@ internal object TabListReducer {
                 }
 
                 state.copy(
-                    tabs = state.tabs + action.tabs,
+                    tabs = (state.tabs + action.tabs).toIndexedTabList(),
                     selectedTabId = if (state.selectedTabId == null) {
                         action.tabs.find { tab -> !tab.content.private }?.id
                     } else {
@@ -79,7 +81,7 @@ internal object TabListReducer {
                         movedTabs +
                         unmovedTabs.subList(finalPos, unmovedTabs.size)
 
-                    state.copy(tabs = updatedTabList)
+                    state.copy(tabs = updatedTabList.toIndexedTabList())
                 }
             }
 
@@ -111,7 +113,7 @@ internal object TabListReducer {
                     }
 
                     state.copy(
-                        tabs = updatedTabList,
+                        tabs = updatedTabList.toIndexedTabList(),
                         selectedTabId = updatedSelection,
                         tabPartitions = state.tabPartitions.removeTabs(listOf(action.tabId)),
                     )
@@ -148,7 +150,7 @@ internal object TabListReducer {
                         }
 
                     state.copy(
-                        tabs = updatedTabList,
+                        tabs = updatedTabList.toIndexedTabList(),
                         selectedTabId = updatedSelection,
                         tabPartitions = state.tabPartitions.removeTabs(action.tabIds),
                     )
@@ -184,7 +186,7 @@ internal object TabListReducer {
                 }
 
                 state.copy(
-                    tabs = combinedTabList,
+                    tabs = combinedTabList.toIndexedTabList(),
                     selectedTabId = if (action.selectedTabId != null && state.selectedTabId == null) {
                         // We only want to update the selected tab if none has been already selected. Otherwise we may
                         // switch to a restored tab even though the user is already looking at an existing tab (e.g.
@@ -209,7 +211,7 @@ internal object TabListReducer {
                 val partition = state.tabs.partition { it.content.private }
                 val normalTabs = partition.second
                 state.copy(
-                    tabs = normalTabs,
+                    tabs = normalTabs.toIndexedTabList(),
                     selectedTabId = if (selectionAffected) {
                         // If the selection is affected, select the last normal tab, if available.
                         normalTabs.lastOrNull()?.id
@@ -225,7 +227,7 @@ internal object TabListReducer {
                 val partition = state.tabs.partition { it.content.private }
                 val privateTabs = partition.first
                 state.copy(
-                    tabs = privateTabs,
+                    tabs = privateTabs.toIndexedTabList(),
                     selectedTabId = if (selectionAffected) {
                         // If the selection is affected, we'll set it to null as there's no
                         // normal tab left and NO private tab should get selected instead.
@@ -330,7 +332,7 @@ private fun findNearbyTab(
  * @param tab the [TabSessionState] to check.
  */
 private fun requireUniqueTab(state: BrowserState, tab: TabSessionState) {
-    require(state.tabs.find { it.id == tab.id } == null) {
+    require(state.findTab(tab.id) == null) {
         "Tab with same ID already exists"
     }
 }
@@ -8,6 +8,8 @@ import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.CustomTabSessionState
 import mozilla.components.browser.state.state.SessionState
 import mozilla.components.browser.state.state.TabSessionState
+import mozilla.components.browser.state.state.findTabById
+import mozilla.components.lib.state.KeyedSelector
 import mozilla.components.support.base.log.logger.Logger
 import java.net.URI
 import java.net.URISyntaxException
@@ -36,7 +38,7 @@ val BrowserState.selectedNormalTab: TabSessionState?
  * @return The [TabSessionState] with the provided [tabId] or null if it could not be found.
  */
 fun BrowserState.findTab(tabId: String): TabSessionState? {
-    return tabs.firstOrNull { it.id == tabId }
+    return tabs.findTabById(tabId)
 }
 
 /**
@@ -47,7 +49,7 @@ fun BrowserState.findTab(tabId: String): TabSessionState? {
  * @return The [CustomTabSessionState] with the provided [tabId] or null if it could not be found.
  */
 fun BrowserState.findCustomTab(tabId: String): CustomTabSessionState? {
-    return customTabs.firstOrNull { it.id == tabId }
+    return customTabs.findTabById(tabId)
 }
 
 /**
@@ -58,7 +60,7 @@ fun BrowserState.findCustomTab(tabId: String): CustomTabSessionState? {
  * @return The [TabSessionState] with the provided [tabId] or null if it could not be found.
  */
 fun BrowserState.findNormalTab(tabId: String): TabSessionState? {
-    return normalTabs.firstOrNull { it.id == tabId }
+    return findTab(tabId)?.takeIf { !it.content.private }
 }
 
 /**
@@ -98,6 +100,16 @@ fun BrowserState.findTabOrCustomTabOrSelectedTab(tabId: String? = null): Session
     }
 }
 
+/**
+ * [KeyedSelector] for observing the tab with a given id or the selected tab if no id was provided (null),
+ * see [findTabOrCustomTabOrSelectedTab]. Subscriptions using this selector share a single lookup per
+ * state change instead of each searching the state for their tab.
+ */
+val tabOrCustomTabOrSelectedTabSelector = KeyedSelector<BrowserState, String?, SessionState?> { state ->
+    val selectedTab = state.selectedTab
+    ({ tabId -> if (tabId != null) state.findTabOrCustomTab(tabId) else selectedTab })
+}
+
 /**
  * Finds and returns the tab with the given url. Returns null if no matching tab could be found.
  *
@@ -0,0 +1,136 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.state.state
+
+/**
+ * Read-only [List] of tabs that additionally maintains a lazily created index of tab IDs to their
+ * position in the list, allowing tabs to be looked up by ID in constant time.
+ *
+ * Replacing a tab with a new version of itself (same ID, same position) via [replace] creates a
+ * new list that shares the index and the underlying list of tabs with this list: replaced tabs
+ * are kept in a small overlay of parallel arrays (positions and tabs) on top of the shared list,
+ * which only gets copied once [MAX_REPLACEMENTS] different positions have been replaced. This
+ * makes the very common case of updating the state of a single tab (e.g. its content) cheap, even
+ * with many open tabs.
+ *
+ * Since this class implements [List], it can be used wherever a list of tabs is expected and
+ * compares equal to any other [List] containing the same tabs.
+ */
+internal class IndexedTabList<T : SessionState> private constructor(
+    private val tabs: List<T>,
+    private val replacedPositions: IntArray,
+    private val replacedTabs: Array<SessionState>,
+    private val positions: Lazy<Map<String, Int>>,
+) : AbstractList<T>() {
+
+    constructor(tabs: List<T>) : this(tabs, NO_POSITIONS, NO_TABS, lazy { createIndex(tabs) })
+
+    override val size: Int
+        get() = tabs.size
+
+    override fun get(index: Int): T {
+        for (i in replacedPositions.indices) {
+            if (replacedPositions[i] == index) {
+                @Suppress("UNCHECKED_CAST")
+                return replacedTabs[i] as T
+            }
+        }
+        return tabs[index]
+    }
+
+    /**
+     * Returns the position of the tab with the given [tabId] or -1 if no such tab exists.
+     */
+    fun indexOfTab(tabId: String): Int {
+        return positions.value[tabId] ?: -1
+    }
+
+    /**
+     * Returns the tab with the given [tabId] or null if no such tab exists.
+     */
+    fun findTab(tabId: String): T? {
+        val position = indexOfTab(tabId)
+        return if (position == -1) null else get(position)
+    }
+
+    /**
+     * Returns a new [IndexedTabList] with the tab at [position] replaced by [tab]. The new [tab]
+     * is required to have the same ID as the tab it replaces, which allows sharing the index
+     * between both lists.
+     */
+    fun replace(position: Int, tab: T): IndexedTabList<T> {
+        require(get(position).id == tab.id) { "Replacement tab must have the same ID" }
+
+        val slot = replacedPositions.indexOf(position)
+        return when {
+            slot != -1 -> {
+                val newTabs = replacedTabs.copyOf()
+                newTabs[slot] = tab
+                IndexedTabList(tabs, replacedPositions, newTabs, positions)
+            }
+            replacedPositions.size < MAX_REPLACEMENTS -> {
+                IndexedTabList(tabs, replacedPositions + position, replacedTabs + tab, positions)
+            }
+            else -> {
+                val newTabs = ArrayList(this)
+                newTabs[position] = tab
+                IndexedTabList(newTabs, NO_POSITIONS, NO_TABS, positions)
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * The number of replaced positions after which the list of tabs gets copied, so that looking
+         * up a tab by position only ever needs to scan a few entries of the overlay.
+         */
+        internal const val MAX_REPLACEMENTS = 8
+
+        private val NO_POSITIONS = IntArray(0)
+        private val NO_TABS = emptyArray<SessionState>()
+
+        private fun createIndex(tabs: List<SessionState>): Map<String, Int> {
+            val index = HashMap<String, Int>(tabs.size * 2)
+            tabs.forEachIndexed { position, tab ->
+                // Keep the first occurrence to match the behavior of a linear search.
+                if (!index.containsKey(tab.id)) {
+                    index[tab.id] = position
+                }
+            }
+            return index
+        }
+    }
+}
+
+/**
+ * Returns this list as an [IndexedTabList], reusing it if it already is one.
+ */
+internal fun <T : SessionState> List<T>.toIndexedTabList(): IndexedTabList<T> {
+    return this as? IndexedTabList<T> ?: IndexedTabList(this)
+}
+
+/**
+ * Returns the tab with the given [tabId] or null if no such tab exists. Uses the index if this is
+ * an [IndexedTabList] and falls back to a linear search otherwise.
+ */
+internal fun <T : SessionState> List<T>.findTabById(tabId: String): T? {
+    return if (this is IndexedTabList<T>) {
+        findTab(tabId)
+    } else {
+        firstOrNull { it.id == tabId }
+    }
+}
+
+/**
+ * Returns the position of the tab with the given [tabId] or -1 if no such tab exists. Uses the
+ * index if this is an [IndexedTabList] and falls back to a linear search otherwise.
+ */
+internal fun <T : SessionState> List<T>.indexOfTabById(tabId: String): Int {
+    return if (this is IndexedTabList<T>) {
+        indexOfTab(tabId)
+    } else {
+        indexOfFirst { it.id == tabId }
+    }
+}
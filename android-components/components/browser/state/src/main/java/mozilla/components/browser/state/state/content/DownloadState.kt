@@ -30,6 +30,8 @@ import java.util.UUID
  * used instead of performing a manual a download.
  * @property notificationId Identifies the download notification in the status bar, if this
  * [DownloadState] has one otherwise null.
+ * @property timeToFirstByteMs The time between sending the request of the current download attempt
+ * and receiving its first bytes, if it was measured.
  */
 @Suppress("Deprecation")
 data class DownloadState(
@@ -49,6 +51,7 @@ data class DownloadState(
     val createdTime: Long = System.currentTimeMillis(),
     val response: Response? = null,
     val notificationId: Int? = null,
+    val timeToFirstByteMs: Long? = null,
 ) {
     val filePath: String get() =
         Environment.getExternalStoragePublicDirectory(destinationDirectory).path + File.separatorChar + fileName
@@ -5,6 +5,7 @@
 package mozilla.components.browser.state.engine.middleware
 
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.CompletableDeferred
 import mozilla.components.browser.state.action.ContentAction
 import mozilla.components.browser.state.action.EngineAction
 import mozilla.components.browser.state.selector.findCustomTab
@@ -16,6 +17,7 @@ import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.engine.Engine
 import mozilla.components.concept.engine.EngineSession
 import mozilla.components.concept.engine.EngineSessionState
+import mozilla.components.concept.engine.EngineSessionStateStorage
 import mozilla.components.support.test.any
 import mozilla.components.support.test.ext.joinBlocking
 import mozilla.components.support.test.libstate.ext.waitUntilIdle
@@ -93,6 +95,132 @@ class CreateEngineSessionMiddlewareTest {
         Unit
     }
 
+    @Test
+    fun `reads engine session state from storage if not available`() = runTestOnMain {
+        val engine: Engine = mock()
+        val engineSession: EngineSession = mock()
+        whenever(engine.createSession(anyBoolean(), any())).thenReturn(engineSession)
+        val engineSessionState: EngineSessionState = mock()
+        val storage: EngineSessionStateStorage = mock()
+        whenever(storage.contains("1")).thenReturn(true)
+        whenever(storage.read("1")).thenReturn(engineSessionState)
+
+        val middleware = CreateEngineSessionMiddleware(engine, scope, storage, dispatcher)
+        val tab = createTab("https://www.mozilla.org", id = "1")
+        val store = BrowserStore(
+            initialState = BrowserState(tabs = listOf(tab)),
+            middleware = listOf(middleware),
+        )
+
+        store.dispatch(EngineAction.CreateEngineSessionAction(tab.id)).joinBlocking()
+        store.waitUntilIdle()
+        dispatcher.scheduler.advanceUntilIdle()
+        store.waitUntilIdle()
+
+        verify(storage).read("1")
+        verify(engineSession).restoreState(engineSessionState)
+        assertEquals(engineSessionState, store.state.findTab(tab.id)?.engineState?.engineSessionState)
+        assertEquals(engineSession, store.state.findTab(tab.id)?.engineState?.engineSession)
+    }
+
+    @Test
+    fun `does not read engine session state from storage if available`() = runTestOnMain {
+        val engine: Engine = mock()
+        val engineSession: EngineSession = mock()
+        whenever(engine.createSession(anyBoolean(), any())).thenReturn(engineSession)
+        val engineSessionState: EngineSessionState = mock()
+        val storage: EngineSessionStateStorage = mock()
+
+        val middleware = CreateEngineSessionMiddleware(engine, scope, storage, dispatcher)
+        val tab = createTab("https://www.mozilla.org", id = "1")
+        val store = BrowserStore(
+            initialState = BrowserState(tabs = listOf(tab)),
+            middleware = listOf(middleware),
+        )
+
+        store.dispatch(EngineAction.UpdateEngineSessionStateAction(tab.id, engineSessionState)).joinBlocking()
+        store.dispatch(EngineAction.CreateEngineSessionAction(tab.id)).joinBlocking()
+        store.waitUntilIdle()
+        dispatcher.scheduler.advanceUntilIdle()
+
+        verify(storage, never()).read(anyString())
+        verify(engineSession).restoreState(engineSessionState)
+    }
+
+    @Test
+    fun `does not read engine session state from storage if it was not persisted`() = runTestOnMain {
+        val engine: Engine = mock()
+        val engineSession: EngineSession = mock()
+        whenever(engine.createSession(anyBoolean(), any())).thenReturn(engineSession)
+        val storage: EngineSessionStateStorage = mock()
+        whenever(storage.contains("1")).thenReturn(false)
+
+        val middleware = CreateEngineSessionMiddleware(engine, scope, storage, dispatcher)
+        val tab = createTab("https://www.mozilla.org", id = "1")
+        val store = BrowserStore(
+            initialState = BrowserState(tabs = listOf(tab)),
+            middleware = listOf(middleware),
+        )
+
+        store.dispatch(EngineAction.CreateEngineSessionAction(tab.id)).joinBlocking()
+        store.waitUntilIdle()
+        dispatcher.scheduler.advanceUntilIdle()
+        store.waitUntilIdle()
+
+        verify(storage, never()).read(anyString())
+        verify(engineSession, never()).restoreState(any())
+        assertEquals(engineSession, store.state.findTab(tab.id)?.engineState?.engineSession)
+    }
+
+    @Test
+    fun `dispatches follow-up actions once engine session is created after reading its state`() = runTestOnMain {
+        val engine: Engine = mock()
+        val engineSession: EngineSession = mock()
+        whenever(engine.createSession(anyBoolean(), any())).thenReturn(engineSession)
+        val engineSessionState: EngineSessionState = mock()
+        val readResult = CompletableDeferred<EngineSessionState?>()
+        val storage = object : EngineSessionStateStorage {
+            var reads = 0
+            override suspend fun write(uuid: String, state: EngineSessionState) = true
+            override suspend fun read(uuid: String): EngineSessionState? {
+                reads++
+                return readResult.await()
+            }
+            override suspend fun delete(uuid: String) = Unit
+            override suspend fun deleteAll() = Unit
+        }
+
+        val middleware = CreateEngineSessionMiddleware(engine, scope, storage, dispatcher)
+        val tab = createTab("https://www.mozilla.org", id = "1")
+        val store = BrowserStore(
+            initialState = BrowserState(tabs = listOf(tab)),
+            middleware = listOf(middleware),
+        )
+
+        val followupAction1 = ContentAction.UpdateTitleAction(tab.id, "title1")
+        val followupAction2 = ContentAction.UpdateProgressAction(tab.id, 50)
+        store.dispatch(EngineAction.CreateEngineSessionAction(tab.id, followupAction = followupAction1))
+        store.dispatch(EngineAction.CreateEngineSessionAction(tab.id, followupAction = followupAction2))
+        store.waitUntilIdle()
+        dispatcher.scheduler.advanceUntilIdle()
+        store.waitUntilIdle()
+
+        // Follow-up actions are not dispatched while the state is being read.
+        assertEquals("", store.state.findTab(tab.id)?.content?.title)
+        assertEquals(0, store.state.findTab(tab.id)?.content?.progress)
+
+        readResult.complete(engineSessionState)
+        dispatcher.scheduler.advanceUntilIdle()
+        store.waitUntilIdle()
+
+        assertEquals(1, storage.reads)
+        verify(engine, times(1)).createSession(false)
+        verify(engineSession).restoreState(engineSessionState)
+        assertEquals(engineSession, store.state.findTab(tab.id)?.engineState?.engineSession)
+        assertEquals("title1", store.state.findTab(tab.id)?.content?.title)
+        assertEquals(50, store.state.findTab(tab.id)?.content?.progress)
+    }
+
     @Test
     fun `creates no engine session if tab does not exist`() = runTestOnMain {
         val engine: Engine = mock()
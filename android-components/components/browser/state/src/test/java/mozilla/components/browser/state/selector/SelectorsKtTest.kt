@@ -7,6 +7,7 @@ package mozilla.components.browser.state.selector
 import mozilla.components.browser.state.action.CustomTabListAction
 import mozilla.components.browser.state.action.TabListAction
 import mozilla.components.browser.state.state.BrowserState
+import mozilla.components.browser.state.state.SessionState
 import mozilla.components.browser.state.state.TabSessionState
 import mozilla.components.browser.state.state.createCustomTab
 import mozilla.components.browser.state.state.createTab
@@ -174,6 +175,38 @@ class SelectorsKtTest {
         assertEquals(customTab, state.findTabOrCustomTabOrSelectedTab(customTab.id))
     }
 
+    @Test
+    fun `tabOrCustomTabOrSelectedTabSelector observes tabs by id`() {
+        val tab = createTab("https://www.firefox.com")
+        val otherTab = createTab("https://getpocket.com")
+        val customTab = createCustomTab("https://www.mozilla.org")
+        val store = BrowserStore(
+            BrowserState(
+                tabs = listOf(tab, otherTab),
+                customTabs = listOf(customTab),
+                selectedTabId = tab.id,
+            ),
+        )
+
+        var selected: SessionState? = null
+        var other: SessionState? = null
+        var custom: SessionState? = null
+        store.observeManually(tabOrCustomTabOrSelectedTabSelector, null) { selected = it }.also { it.resume() }
+        store.observeManually(tabOrCustomTabOrSelectedTabSelector, otherTab.id) { other = it }.also { it.resume() }
+        store.observeManually(tabOrCustomTabOrSelectedTabSelector, customTab.id) { custom = it }.also { it.resume() }
+
+        assertEquals(tab, selected)
+        assertEquals(otherTab, other)
+        assertEquals(customTab, custom)
+
+        store.dispatch(TabListAction.SelectTabAction(otherTab.id)).joinBlocking()
+        store.dispatch(CustomTabListAction.RemoveCustomTabAction(customTab.id)).joinBlocking()
+
+        assertEquals(otherTab, selected)
+        assertEquals(otherTab, other)
+        assertNull(custom)
+    }
+
     @Test
     fun `getNormalOrPrivateTabs extension function`() {
         val tab1 = createTab("https://www.firefox.com")
@@ -0,0 +1,148 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.state.state
+
+import mozilla.components.browser.state.action.TabListAction
+import mozilla.components.browser.state.store.BrowserStore
+import mozilla.components.support.test.ext.joinBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class IndexedTabListTest {
+
+    @Test
+    fun `GIVEN an indexed tab list WHEN looking up tabs by ID THEN the matching tab is returned`() {
+        val tabs = IndexedTabList(
+            listOf(
+                createTab("https://www.mozilla.org", id = "a"),
+                createTab("https://www.firefox.com", id = "b"),
+                createTab("https://getpocket.com", id = "c"),
+            ),
+        )
+
+        assertEquals(1, tabs.indexOfTab("b"))
+        assertEquals("https://getpocket.com", tabs.findTab("c")?.content?.url)
+        assertEquals(-1, tabs.indexOfTab("d"))
+        assertNull(tabs.findTab("d"))
+    }
+
+    @Test
+    fun `GIVEN an indexed tab list WHEN replacing a tab THEN a new list with the updated tab is returned`() {
+        val original = listOf(
+            createTab("https://www.mozilla.org", id = "a"),
+            createTab("https://www.firefox.com", id = "b"),
+        )
+        val tabs = IndexedTabList(original)
+        val updatedTab = original[1].copy(content = original[1].content.copy(title = "Firefox"))
+
+        val updated = tabs.replace(1, updatedTab)
+
+        assertEquals(original, tabs)
+        assertEquals(listOf(original[0], updatedTab), updated)
+        assertSame(updatedTab, updated.findTab("b"))
+        assertEquals(0, updated.indexOfTab("a"))
+    }
+
+    @Test
+    fun `GIVEN an indexed tab list WHEN replacing more tabs than are kept separately THEN all updates are kept`() {
+        val original = (0 until 100).map { createTab("https://www.mozilla.org/$it", id = "$it") }
+        var tabs = IndexedTabList(original)
+
+        repeat(IndexedTabList.MAX_REPLACEMENTS * 3) { i ->
+            val position = (i * 7) % original.size
+            tabs = tabs.replace(position, tabs[position].copy(content = tabs[position].content.copy(title = "$i")))
+        }
+
+        val expected = original.toMutableList()
+        repeat(IndexedTabList.MAX_REPLACEMENTS * 3) { i ->
+            val position = (i * 7) % original.size
+            expected[position] = expected[position].copy(content = expected[position].content.copy(title = "$i"))
+        }
+        assertEquals(expected, tabs)
+        assertEquals(expected.toList(), tabs.toList())
+        assertEquals(expected[7], tabs.findTab("7"))
+    }
+
+    @Test
+    fun `GIVEN an indexed tab list WHEN replacing the same tab repeatedly THEN only the latest version is kept`() {
+        val original = (0 until 10).map { createTab("https://www.mozilla.org/$it", id = "$it") }
+        var tabs = IndexedTabList(original)
+
+        repeat(IndexedTabList.MAX_REPLACEMENTS * 3) { i ->
+            tabs = tabs.replace(3, tabs[3].copy(content = tabs[3].content.copy(title = "$i")))
+        }
+
+        val expectedTitle = "${IndexedTabList.MAX_REPLACEMENTS * 3 - 1}"
+        assertEquals(expectedTitle, tabs[3].content.title)
+        assertEquals(expectedTitle, tabs.findTab("3")!!.content.title)
+        assertEquals(original.filterIndexed { index, _ -> index != 3 }, tabs.filterIndexed { index, _ -> index != 3 })
+    }
+
+    @Test
+    fun `WHEN tabs are added, moved or removed THEN the tab list of the state stays indexed`() {
+        val store = BrowserStore(
+            BrowserState(
+                tabs = listOf(
+                    createTab("https://www.mozilla.org", id = "a"),
+                    createTab("https://www.firefox.com", id = "b"),
+                ),
+            ),
+        )
+
+        store.dispatch(TabListAction.AddMultipleTabsAction(listOf(createTab("https://getpocket.com", id = "c"))))
+            .joinBlocking()
+        assertTrue(store.state.tabs is IndexedTabList)
+
+        store.dispatch(TabListAction.MoveTabsAction(listOf("c"), "a", placeAfter = false)).joinBlocking()
+        assertTrue(store.state.tabs is IndexedTabList)
+        assertEquals(listOf("c", "a", "b"), store.state.tabs.map { it.id })
+
+        store.dispatch(TabListAction.RemoveTabAction("a")).joinBlocking()
+        assertTrue(store.state.tabs is IndexedTabList)
+        assertEquals(1, store.state.tabs.indexOfTabById("b"))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `GIVEN an indexed tab list WHEN replacing a tab with a different ID THEN an exception is thrown`() {
+        val tabs = IndexedTabList(listOf(createTab("https://www.mozilla.org", id = "a")))
+
+        tabs.replace(0, createTab("https://www.mozilla.org", id = "b"))
+    }
+
+    @Test
+    fun `GIVEN an indexed tab list THEN it is equal to a plain list with the same tabs`() {
+        val original = listOf(
+            createTab("https://www.mozilla.org", id = "a"),
+            createTab("https://www.firefox.com", id = "b"),
+        )
+        val tabs = IndexedTabList(original)
+
+        assertEquals(original, tabs)
+        assertEquals(tabs, original)
+        assertEquals(original.hashCode(), tabs.hashCode())
+    }
+
+    @Test
+    fun `GIVEN a plain list WHEN looking up tabs by ID THEN the matching tab is returned`() {
+        val tabs = listOf(
+            createTab("https://www.mozilla.org", id = "a"),
+            createTab("https://www.firefox.com", id = "b"),
+        )
+
+        assertSame(tabs[1], tabs.findTabById("b"))
+        assertEquals(1, tabs.indexOfTabById("b"))
+        assertNull(tabs.findTabById("c"))
+    }
+
+    @Test
+    fun `GIVEN an indexed tab list WHEN converting to an indexed tab list THEN the same instance is returned`() {
+        val tabs = IndexedTabList(listOf(createTab("https://www.mozilla.org", id = "a")))
+
+        assertSame(tabs, tabs.toIndexedTabList())
+    }
+}
@@ -0,0 +1,90 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.tabstray.thumbnail
+
+import androidx.annotation.VisibleForTesting
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import kotlinx.coroutines.Job
+import mozilla.components.concept.base.images.ImageLoadRequest
+
+private const val DEFAULT_PREFETCH_WINDOW = 6
+
+/**
+ * A [RecyclerView.OnScrollListener] that prefetches the thumbnails of the items ahead of the visible items, in the
+ * direction of scrolling, so that they are already loaded once they get scrolled into view. Prefetches of items that
+ * are no longer ahead of the visible items get cancelled, so that they don't hold up loading the thumbnails that are
+ * needed now.
+ *
+ * Requires the [RecyclerView] to use a [LinearLayoutManager] (or a subclass, e.g. a `GridLayoutManager`).
+ *
+ * @param prefetchWindow the number of items ahead of the visible items to prefetch thumbnails for.
+ * @param requestForPosition returns the [ImageLoadRequest] for the thumbnail of the item at the given adapter
+ * position, or null if there is no thumbnail to prefetch for it.
+ * @param prefetch starts prefetching the thumbnail for the given [ImageLoadRequest] (e.g. with a lower priority than
+ * loading thumbnails of visible items) and returns the [Job] doing so.
+ */
+class ThumbnailPrefetchScrollListener(
+    private val prefetchWindow: Int = DEFAULT_PREFETCH_WINDOW,
+    private val requestForPosition: (Int) -> ImageLoadRequest?,
+    private val prefetch: (ImageLoadRequest) -> Job,
+) : RecyclerView.OnScrollListener() {
+    private val prefetches = mutableMapOf<ImageLoadRequest, Job>()
+
+    override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+        val layoutManager = recyclerView.layoutManager as? LinearLayoutManager ?: return
+        val firstVisible = layoutManager.findFirstVisibleItemPosition()
+        val lastVisible = layoutManager.findLastVisibleItemPosition()
+        if (firstVisible == RecyclerView.NO_POSITION || lastVisible == RecyclerView.NO_POSITION) {
+            return
+        }
+
+        val scrollDelta = if (layoutManager.orientation == RecyclerView.VERTICAL) dy else dx
+        onVisibleItemsChanged(firstVisible, lastVisible, scrollDelta, layoutManager.itemCount)
+    }
+
+    /**
+     * Prefetches the thumbnails of the items ahead of the items from [firstVisible] to [lastVisible], in the
+     * direction of [scrollDelta], and cancels all other prefetches.
+     */
+    @VisibleForTesting
+    internal fun onVisibleItemsChanged(firstVisible: Int, lastVisible: Int, scrollDelta: Int, itemCount: Int) {
+        if (scrollDelta == 0) {
+            // Not scrolled, e.g. the layout changed: the direction is unknown.
+            return
+        }
+
+        // Ordered from the farthest to the closest item: the most recently requested thumbnail gets loaded first.
+        val positions = if (scrollDelta > 0) {
+            minOf(lastVisible + prefetchWindow, itemCount - 1) downTo lastVisible + 1
+        } else {
+            maxOf(firstVisible - prefetchWindow, 0) until firstVisible
+        }
+        val requests = positions.mapNotNull(requestForPosition)
+
+        val iterator = prefetches.iterator()
+        while (iterator.hasNext()) {
+            val (request, job) = iterator.next()
+            if (request !in requests) {
+                job.cancel()
+                iterator.remove()
+            }
+        }
+
+        requests.forEach { request ->
+            if (request !in prefetches) {
+                prefetches[request] = prefetch(request)
+            }
+        }
+    }
+
+    /**
+     * Cancels all prefetches, e.g. when the [RecyclerView] is no longer displayed.
+     */
+    fun cancel() {
+        prefetches.values.forEach { it.cancel() }
+        prefetches.clear()
+    }
+}
@@ -0,0 +1,82 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.tabstray.thumbnail
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.Job
+import mozilla.components.concept.base.images.ImageLoadRequest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class ThumbnailPrefetchScrollListenerTest {
+    private val prefetched = mutableListOf<String>()
+    private val jobs = mutableMapOf<String, Job>()
+
+    private val listener = ThumbnailPrefetchScrollListener(
+        prefetchWindow = 3,
+        requestForPosition = { position -> ImageLoadRequest("tab$position", 100) },
+        prefetch = { request ->
+            prefetched.add(request.id)
+            Job().also { jobs[request.id] = it }
+        },
+    )
+
+    @Test
+    fun `WHEN scrolling down THEN the items below the visible items are prefetched, closest last`() {
+        listener.onVisibleItemsChanged(firstVisible = 0, lastVisible = 4, scrollDelta = 10, itemCount = 100)
+
+        assertEquals(listOf("tab7", "tab6", "tab5"), prefetched)
+    }
+
+    @Test
+    fun `WHEN scrolling up THEN the items above the visible items are prefetched, closest last`() {
+        listener.onVisibleItemsChanged(firstVisible = 10, lastVisible = 14, scrollDelta = -10, itemCount = 100)
+
+        assertEquals(listOf("tab7", "tab8", "tab9"), prefetched)
+    }
+
+    @Test
+    fun `WHEN the list ends THEN only existing items are prefetched`() {
+        listener.onVisibleItemsChanged(firstVisible = 0, lastVisible = 4, scrollDelta = 10, itemCount = 6)
+        listener.onVisibleItemsChanged(firstVisible = 1, lastVisible = 5, scrollDelta = -10, itemCount = 6)
+
+        assertEquals(listOf("tab5", "tab0"), prefetched)
+    }
+
+    @Test
+    fun `WHEN not scrolled THEN nothing is prefetched`() {
+        listener.onVisibleItemsChanged(firstVisible = 0, lastVisible = 4, scrollDelta = 0, itemCount = 100)
+
+        assertTrue(prefetched.isEmpty())
+    }
+
+    @Test
+    fun `WHEN items are no longer ahead of the visible items THEN their prefetches are cancelled`() {
+        listener.onVisibleItemsChanged(firstVisible = 0, lastVisible = 4, scrollDelta = 10, itemCount = 100)
+        listener.onVisibleItemsChanged(firstVisible = 2, lastVisible = 6, scrollDelta = 10, itemCount = 100)
+
+        // Items that are still ahead are not prefetched again.
+        assertEquals(listOf("tab7", "tab6", "tab5", "tab9", "tab8"), prefetched)
+        assertTrue(jobs.getValue("tab5").isCancelled)
+        assertTrue(jobs.getValue("tab6").isCancelled)
+        assertFalse(jobs.getValue("tab7").isCancelled)
+
+        // Changing the direction cancels all prefetches ahead in the other direction.
+        listener.onVisibleItemsChanged(firstVisible = 1, lastVisible = 5, scrollDelta = -10, itemCount = 100)
+
+        assertEquals("tab0", prefetched.last())
+        assertTrue(jobs.getValue("tab7").isCancelled)
+        assertTrue(jobs.getValue("tab8").isCancelled)
+        assertTrue(jobs.getValue("tab9").isCancelled)
+
+        listener.cancel()
+
+        assertTrue(jobs.getValue("tab0").isCancelled)
+    }
+}
@@ -6,7 +6,9 @@ package mozilla.components.browser.thumbnails.storage
 
 import android.content.Context
 import android.graphics.Bitmap
+import androidx.annotation.VisibleForTesting
 import androidx.annotation.WorkerThread
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Deferred
@@ -15,7 +17,10 @@ import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.async
 import kotlinx.coroutines.launch
 import mozilla.components.browser.thumbnails.R
+import mozilla.components.browser.thumbnails.utils.LoadScheduler
 import mozilla.components.browser.thumbnails.utils.ThumbnailDiskCache
+import mozilla.components.browser.thumbnails.utils.ThumbnailMemoryCache
+import mozilla.components.concept.base.memory.MemoryConsumer
 import mozilla.components.concept.base.images.ImageLoadRequest
 import mozilla.components.concept.base.images.ImageSaveRequest
 import mozilla.components.support.base.log.logger.Logger
@@ -23,6 +28,7 @@ import mozilla.components.support.base.utils.NamedThreadFactory
 import mozilla.components.support.images.DesiredSize
 import mozilla.components.support.images.decoder.AndroidImageDecoder
 import java.util.concurrent.Executors
+import kotlin.math.roundToInt
 
 private const val MAXIMUM_SCALE_FACTOR = 2.0f
 
@@ -30,9 +36,21 @@ private const val MAXIMUM_SCALE_FACTOR = 2.0f
 private const val THREADS = 3
 
 internal val sharedDiskCache = ThumbnailDiskCache()
+internal val sharedMemoryCache = ThumbnailMemoryCache()
 
 /**
  * Thumbnail storage layer which handles saving and loading the thumbnail from the disk cache.
+ *
+ * Besides the thumbnail in its original size, downsampled variants of it get saved, so that loading
+ * a small thumbnail (e.g. for a list of tabs) doesn't require reading and decoding the full size
+ * thumbnail. Loaded thumbnails are kept in a memory cache.
+ *
+ * At most as many thumbnails as there are worker threads are loaded at the same time. Further loads
+ * wait for their turn, ordered by their [Priority]: thumbnails of visible views are loaded before
+ * prefetched ones, and the most recently requested thumbnails first.
+ *
+ * @param variantSizes The sizes of the downsampled variants to save, in pixels. A variant gets
+ * scaled so that its shorter side has the given size.
  */
 class ThumbnailStorage(
     private val context: Context,
@@ -40,37 +58,97 @@ class ThumbnailStorage(
         THREADS,
         NamedThreadFactory("ThumbnailStorage"),
     ).asCoroutineDispatcher(),
-) {
+    variantSizes: List<Int> = listOf(
+        context.resources.getDimensionPixelSize(R.dimen.mozac_browser_thumbnails_variant_size_small),
+        context.resources.getDimensionPixelSize(R.dimen.mozac_browser_thumbnails_variant_size_medium),
+    ),
+) : MemoryConsumer {
     private val decoders = AndroidImageDecoder()
     private val logger = Logger("ThumbnailStorage")
     private val maximumSize =
         context.resources.getDimensionPixelSize(R.dimen.mozac_browser_thumbnails_maximum_size)
     private val scope = CoroutineScope(jobDispatcher)
+    private val scheduler = LoadScheduler(THREADS)
+
+    /**
+     * The priority of loading a thumbnail.
+     */
+    enum class Priority {
+        /**
+         * The thumbnail is displayed right away, e.g. in a view that is visible.
+         */
+        VISIBLE,
+
+        /**
+         * The thumbnail is likely to be displayed soon, e.g. in a view that is about to be scrolled
+         * into the visible area.
+         */
+        PREFETCH,
+    }
+
+    @VisibleForTesting
+    internal val variantSizes = variantSizes.distinct().sorted()
 
     /**
      * Clears all the stored thumbnails in the disk cache.
      */
-    fun clearThumbnails(): Job =
-        scope.launch {
+    fun clearThumbnails(): Job {
+        sharedMemoryCache.clear()
+
+        return scope.launch {
             logger.debug("Cleared all thumbnails from disk")
             sharedDiskCache.clear(context)
+
+            // Reject thumbnails that were read while clearing.
+            sharedMemoryCache.clear()
         }
+    }
 
     /**
      * Deletes the given thumbnail [Bitmap] from the disk cache with the provided session ID or url
      * as its key.
      */
-    fun deleteThumbnail(sessionIdOrUrl: String): Job =
-        scope.launch {
+    fun deleteThumbnail(sessionIdOrUrl: String): Job {
+        sharedMemoryCache.remove(sessionIdOrUrl)
+
+        return scope.launch {
             logger.debug("Removed thumbnail from disk (sessionIdOrUrl = $sessionIdOrUrl)")
-            sharedDiskCache.removeThumbnailData(context, sessionIdOrUrl)
+            sharedDiskCache.removeThumbnailData(context, sessionIdOrUrl, variantSizes)
+
+            // Reject thumbnails that were read while removing them.
+            sharedMemoryCache.remove(sessionIdOrUrl)
         }
+    }
 
     /**
      * Asynchronously loads a thumbnail [Bitmap] for the given [ImageLoadRequest].
+     *
+     * If the thumbnail was loaded for the same size before and is still in the memory cache, the
+     * returned [Deferred] is already completed. Cancelling the returned [Deferred] before the load
+     * started removes it from the queue of loads.
+     *
+     * @param request The [ImageLoadRequest] of the thumbnail to load.
+     * @param priority The [Priority] of the load, relative to the other loads that are waiting.
      */
-    fun loadThumbnail(request: ImageLoadRequest): Deferred<Bitmap?> = scope.async {
-        loadThumbnailInternal(request).also { loadedThumbnail ->
+    fun loadThumbnail(
+        request: ImageLoadRequest,
+        priority: Priority = Priority.VISIBLE,
+    ): Deferred<Bitmap?> {
+        sharedMemoryCache.get(request)?.let { return CompletableDeferred(it) }
+
+        return scope.async {
+            scheduler.schedule(priority) { loadThumbnailAndLog(request) }
+        }
+    }
+
+    /**
+     * Loads the thumbnail for the given [ImageLoadRequest] into the memory cache with
+     * [Priority.PREFETCH], so that it can be displayed right away once it gets loaded again.
+     */
+    fun prefetchThumbnail(request: ImageLoadRequest): Job = loadThumbnail(request, Priority.PREFETCH)
+
+    private fun loadThumbnailAndLog(request: ImageLoadRequest): Bitmap? {
+        return loadThumbnailInternal(request).also { loadedThumbnail ->
             if (loadedThumbnail != null) {
                 logger.debug(
                     "Loaded thumbnail from disk (id = ${request.id}, " +
@@ -91,25 +169,71 @@ class ThumbnailStorage(
             maxScaleFactor = MAXIMUM_SCALE_FACTOR,
         )
 
-        val data = sharedDiskCache.getThumbnailData(context, request)
+        // A thumbnail saved while loading this one replaces it: it must not be cached afterwards.
+        val generation = sharedMemoryCache.generation(request.id)
 
-        if (data != null) {
-            return decoders.decode(data, desiredSize)
-        }
+        // Prefer the smallest variant that is still at least as large as the requested size.
+        val data = variantSizes.firstOrNull { it >= request.size }
+            ?.let { variantSize -> sharedDiskCache.getThumbnailData(context, request, variantSize) }
+            ?: sharedDiskCache.getThumbnailData(context, request)
+            ?: return null
 
-        return null
+        return decoders.decode(data, desiredSize)?.also { bitmap ->
+            sharedMemoryCache.put(request, bitmap, generation)
+        }
     }
 
     /**
      * Stores the given thumbnail [Bitmap] into the disk cache with the provided [ImageLoadRequest]
      * as its key.
      */
-    fun saveThumbnail(request: ImageSaveRequest, bitmap: Bitmap): Job =
-        scope.launch {
+    fun saveThumbnail(request: ImageSaveRequest, bitmap: Bitmap): Job {
+        // Stop serving thumbnails of the previous screenshot before replacing them on disk.
+        sharedMemoryCache.remove(request)
+
+        return scope.launch {
             logger.debug(
                 "Saved thumbnail to disk (id = $request, " +
                     "generationId = ${bitmap.generationId})",
             )
             sharedDiskCache.putThumbnailBitmap(context, request, bitmap)
+            saveThumbnailVariants(request, bitmap)
+
+            // Reject thumbnails of the previous screenshot that were read while writing.
+            sharedMemoryCache.remove(request)
+        }
+    }
+
+    @WorkerThread
+    private fun saveThumbnailVariants(request: ImageSaveRequest, bitmap: Bitmap) {
+        val shorterSide = minOf(bitmap.width, bitmap.height)
+
+        // Loading these variants falls back to the original thumbnail, which is small enough.
+        // Variants of an earlier, larger screenshot must not be loaded instead of it.
+        val skippedVariantSizes = variantSizes.filter { shorterSide <= it }
+        if (skippedVariantSizes.isNotEmpty()) {
+            sharedDiskCache.removeThumbnailVariants(context, request, skippedVariantSizes)
         }
+
+        variantSizes.forEach { variantSize ->
+            if (shorterSide <= variantSize) {
+                return@forEach
+            }
+
+            val scale = variantSize.toFloat() / shorterSide
+            val variant = Bitmap.createScaledBitmap(
+                bitmap,
+                (bitmap.width * scale).roundToInt(),
+                (bitmap.height * scale).roundToInt(),
+                true,
+            )
+
+            sharedDiskCache.putThumbnailBitmap(context, request, variant, variantSize)
+            variant.recycle()
+        }
+    }
+
+    override fun onTrimMemory(level: Int) {
+        sharedMemoryCache.onTrimMemory(level)
+    }
 }
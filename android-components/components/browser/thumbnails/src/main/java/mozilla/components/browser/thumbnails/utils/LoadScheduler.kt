@@ -0,0 +1,95 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.thumbnails.utils
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.suspendCancellableCoroutine
+import mozilla.components.browser.thumbnails.storage.ThumbnailStorage.Priority
+import java.util.PriorityQueue
+
+/**
+ * Limits the number of loads running at the same time to [maxConcurrentLoads].
+ *
+ * Loads waiting for their turn are started by [Priority] first and, within the same priority, the
+ * most recently scheduled load first: While scrolling quickly through a list, the rows that are
+ * visible now were bound last, while the loads of the rows that were scrolled past are usually
+ * cancelled before their turn. Cancelled loads are removed from the queue right away.
+ */
+internal class LoadScheduler(
+    private val maxConcurrentLoads: Int,
+) {
+    private class Waiter(
+        val priority: Priority,
+        val sequence: Long,
+        val continuation: CancellableContinuation<Unit>,
+    )
+
+    private val waiters = PriorityQueue(
+        INITIAL_CAPACITY,
+        compareBy<Waiter> { it.priority.ordinal }.thenByDescending { it.sequence },
+    )
+    private var running = 0
+    private var sequence = 0L
+
+    /**
+     * Returns the number of loads waiting for their turn.
+     */
+    val waiting: Int
+        get() = synchronized(waiters) { waiters.size }
+
+    /**
+     * Suspends until it is the turn of a load with the given [priority], then runs [block].
+     */
+    suspend fun <T> schedule(priority: Priority, block: suspend () -> T): T {
+        acquire(priority)
+        try {
+            return block()
+        } finally {
+            release()
+        }
+    }
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private suspend fun acquire(priority: Priority) {
+        suspendCancellableCoroutine { continuation ->
+            val waiter = synchronized(waiters) {
+                if (running < maxConcurrentLoads) {
+                    running++
+                    null
+                } else {
+                    Waiter(priority, sequence++, continuation).also { waiters.add(it) }
+                }
+            }
+
+            if (waiter == null) {
+                // If the load got cancelled in the meantime, the slot is released again.
+                continuation.resume(Unit) { release() }
+            } else {
+                continuation.invokeOnCancellation {
+                    synchronized(waiters) { waiters.remove(waiter) }
+                }
+            }
+        }
+    }
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private fun release() {
+        val next = synchronized(waiters) {
+            // The slot is handed over to the next waiter, if there is one.
+            waiters.poll() ?: run {
+                running--
+                null
+            }
+        }
+
+        // If the next load got cancelled before it resumed, it releases the slot again.
+        next?.continuation?.resume(Unit) { release() }
+    }
+
+    private companion object {
+        const val INITIAL_CAPACITY = 16
+    }
+}
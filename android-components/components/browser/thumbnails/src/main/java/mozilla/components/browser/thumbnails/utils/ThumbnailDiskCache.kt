@@ -7,6 +7,7 @@ package mozilla.components.browser.thumbnails.utils
 import android.content.Context
 import android.graphics.Bitmap
 import android.os.Build
+import androidx.annotation.Px
 import androidx.annotation.VisibleForTesting
 import com.jakewharton.disklrucache.DiskLruCache
 import mozilla.components.concept.base.images.ImageLoadRequest
@@ -45,10 +46,16 @@ class ThumbnailDiskCache {
      *
      * @param context the application [Context].
      * @param request [ImageLoadRequest] providing the session ID or URL of the thumbnail to retrieve.
+     * @param variantSize the size of the downsampled variant of the thumbnail to retrieve, or null
+     * for the thumbnail in its original size.
      * @return the [ByteArray] of the thumbnail or null if the snapshot of the entry does not exist.
      */
-    internal fun getThumbnailData(context: Context, request: ImageLoadRequest): ByteArray? {
-        val snapshot = getThumbnailCache(context).get(request.id) ?: return null
+    internal fun getThumbnailData(
+        context: Context,
+        request: ImageLoadRequest,
+        @Px variantSize: Int? = null,
+    ): ByteArray? {
+        val snapshot = getThumbnailCache(context).get(createKey(request.id, variantSize)) ?: return null
 
         return try {
             snapshot.getInputStream(0).use {
@@ -66,8 +73,15 @@ class ThumbnailDiskCache {
      * @param context the application [Context].
      * @param request [ImageSaveRequest] providing the session ID or URL of the thumbnail to retrieve.
      * @param bitmap the thumbnail [Bitmap] to store.
+     * @param variantSize the size of the downsampled variant that [bitmap] is, or null if it is the
+     * thumbnail in its original size.
      */
-    internal fun putThumbnailBitmap(context: Context, request: ImageSaveRequest, bitmap: Bitmap) {
+    internal fun putThumbnailBitmap(
+        context: Context,
+        request: ImageSaveRequest,
+        bitmap: Bitmap,
+        @Px variantSize: Int? = null,
+    ) {
         val compressFormat = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
             Bitmap.CompressFormat.WEBP_LOSSY
         } else {
@@ -78,7 +92,7 @@ class ThumbnailDiskCache {
         try {
             synchronized(thumbnailCacheWriteLock) {
                 val editor = getThumbnailCache(context)
-                    .edit(request) ?: return
+                    .edit(createKey(request, variantSize)) ?: return
 
                 editor.newOutputStream(0).use { stream ->
                     bitmap.compress(compressFormat, WEBP_QUALITY, stream)
@@ -96,17 +110,51 @@ class ThumbnailDiskCache {
      *
      * @param context the application [Context].
      * @param sessionIdOrUrl the session ID or URL.
+     * @param variantSizes the sizes of the downsampled variants of the thumbnail to remove as well.
      */
-    internal fun removeThumbnailData(context: Context, sessionIdOrUrl: String) {
+    internal fun removeThumbnailData(
+        context: Context,
+        sessionIdOrUrl: String,
+        variantSizes: List<Int> = emptyList(),
+    ) {
         try {
             synchronized(thumbnailCacheWriteLock) {
-                getThumbnailCache(context).remove(sessionIdOrUrl)
+                val cache = getThumbnailCache(context)
+                cache.remove(sessionIdOrUrl)
+                variantSizes.forEach { cache.remove(createKey(sessionIdOrUrl, it)) }
             }
         } catch (e: IOException) {
             logger.info("Failed to remove thumbnail bitmap from disk", e)
         }
     }
 
+    /**
+     * Removes downsampled variants of the given session ID or URL's thumbnail from the disk cache,
+     * keeping the thumbnail in its original size.
+     *
+     * @param context the application [Context].
+     * @param sessionIdOrUrl the session ID or URL.
+     * @param variantSizes the sizes of the downsampled variants to remove.
+     */
+    internal fun removeThumbnailVariants(
+        context: Context,
+        sessionIdOrUrl: String,
+        variantSizes: List<Int>,
+    ) {
+        try {
+            synchronized(thumbnailCacheWriteLock) {
+                val cache = getThumbnailCache(context)
+                variantSizes.forEach { cache.remove(createKey(sessionIdOrUrl, it)) }
+            }
+        } catch (e: IOException) {
+            logger.info("Failed to remove thumbnail variants from disk", e)
+        }
+    }
+
+    private fun createKey(sessionIdOrUrl: String, @Px variantSize: Int?): String {
+        return if (variantSize == null) sessionIdOrUrl else "${sessionIdOrUrl}_$variantSize"
+    }
+
     private fun getThumbnailCacheDirectory(context: Context): File {
         val cacheDirectory = File(context.cacheDir, "mozac_browser_thumbnails")
         return File(cacheDirectory, "thumbnails")
@@ -0,0 +1,117 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.thumbnails.utils
+
+import android.content.ComponentCallbacks2
+import android.graphics.Bitmap
+import android.util.LruCache
+import androidx.annotation.Px
+import mozilla.components.concept.base.images.ImageLoadRequest
+
+private const val MAXIMUM_CACHE_THUMBNAIL_BYTES = 1024 * 1024 * 32 // 32 MB
+
+// Share of the maximum heap size that may be used for caching thumbnails.
+private const val HEAP_SHARE_DIVISOR = 8
+
+/**
+ * Caching decoded thumbnail bitmaps in memory, keyed by the session ID or URL and the size they
+ * were loaded for.
+ *
+ * Every session ID or URL has a generation that changes whenever its thumbnails are removed. A
+ * thumbnail is only stored if the generation is still the one from before it was loaded, so that a
+ * load racing with saving a new thumbnail can't put the previous thumbnail back into the cache.
+ */
+internal class ThumbnailMemoryCache(
+    private val maxBytes: Int = defaultMaxBytes(),
+) {
+    private data class Key(val id: String, @Px val size: Int)
+
+    private val cache = object : LruCache<Key, Bitmap>(maxBytes) {
+        override fun sizeOf(key: Key, value: Bitmap): Int = value.byteCount
+    }
+
+    // Incremented whenever thumbnails are removed. The generation of a session ID or URL is the
+    // version it was last removed at, or the version the cache was last cleared at.
+    private var version = 0L
+    private var clearedVersion = 0L
+    private val removedVersions = HashMap<String, Long>()
+
+    /**
+     * Returns the thumbnail previously loaded for the given [request], or null if there is none.
+     */
+    fun get(request: ImageLoadRequest): Bitmap? = cache[Key(request.id, request.size)]
+
+    /**
+     * Returns the current generation of the thumbnails of the given session ID or URL, to be
+     * passed to [put] once a thumbnail has been loaded.
+     */
+    @Synchronized
+    fun generation(sessionIdOrUrl: String): Long =
+        maxOf(removedVersions[sessionIdOrUrl] ?: 0L, clearedVersion)
+
+    /**
+     * Stores the thumbnail [bitmap] loaded for the given [request], unless the thumbnails of the
+     * session ID or URL have been removed since [generation] was returned by [generation].
+     */
+    @Synchronized
+    fun put(request: ImageLoadRequest, bitmap: Bitmap, generation: Long) {
+        if (generation(request.id) == generation) {
+            cache.put(Key(request.id, request.size), bitmap)
+        }
+    }
+
+    /**
+     * Removes the thumbnails of all sizes for the given session ID or URL, and rejects thumbnails
+     * that were being loaded for it in the meantime.
+     */
+    @Synchronized
+    fun remove(sessionIdOrUrl: String) {
+        removedVersions[sessionIdOrUrl] = ++version
+
+        cache.snapshot().keys
+            .filter { it.id == sessionIdOrUrl }
+            .forEach { cache.remove(it) }
+    }
+
+    /**
+     * Returns the number of bytes of all cached thumbnails.
+     */
+    fun sizeInBytes(): Int = cache.size()
+
+    @Synchronized
+    fun clear() {
+        clearedVersion = ++version
+        removedVersions.clear()
+        cache.evictAll()
+    }
+
+    /**
+     * Shrinks the cache depending on how low the system is running on memory. Thumbnails are
+     * only shown while the app is visible, so they are dropped once the UI gets hidden.
+     */
+    fun onTrimMemory(level: Int) {
+        when (level) {
+            // Foreground: The device is beginning to run low on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+            // Foreground: The device is running much lower on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+            -> cache.trimToSize(maxBytes / 2)
+
+            // Foreground: The device is running extremely low on memory.
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+            // The UI of the app is no longer visible, or the app is in the background.
+            ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+            ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+            ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+            ComponentCallbacks2.TRIM_MEMORY_COMPLETE,
+            -> clear()
+        }
+    }
+}
+
+private fun defaultMaxBytes(): Int {
+    val heapShare = Runtime.getRuntime().maxMemory() / HEAP_SHARE_DIVISOR
+    return minOf(heapShare, MAXIMUM_CACHE_THUMBNAIL_BYTES.toLong()).toInt()
+}
@@ -4,6 +4,7 @@
 
 package mozilla.components.browser.thumbnails.storage
 
+import android.content.ComponentCallbacks2
 import android.graphics.Bitmap
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import kotlinx.coroutines.CompletableDeferred
@@ -17,6 +18,8 @@ import org.junit.After
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -35,6 +38,7 @@ class ThumbnailStorageTest {
     @After
     fun cleanUp() {
         sharedDiskCache.clear(testContext)
+        sharedMemoryCache.clear()
     }
 
     @Test
@@ -97,4 +101,98 @@ class ThumbnailStorageTest {
         val thumbnail = thumbnailStorage.loadThumbnail(request).await()
         assertEquals(bitmap, thumbnail)
     }
+
+    @Test
+    fun `saveThumbnail saves downsampled variants`() = runTestOnMain {
+        val bitmap = Bitmap.createBitmap(400, 800, Bitmap.Config.ARGB_8888)
+        val thumbnailStorage = ThumbnailStorage(testContext, testDispatcher, variantSizes = listOf(200, 100, 400))
+        val request = ImageLoadRequest("test-tab1", 100)
+
+        assertEquals(listOf(100, 200, 400), thumbnailStorage.variantSizes)
+
+        thumbnailStorage.saveThumbnail(request.id, bitmap).joinBlocking()
+
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request))
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 100))
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 200))
+        // The thumbnail is not larger than this variant: the original is loaded instead.
+        assertNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 400))
+        assertNotNull(thumbnailStorage.loadThumbnail(ImageLoadRequest(request.id, 300)).await())
+
+        thumbnailStorage.deleteThumbnail(request.id).joinBlocking()
+
+        assertNull(sharedDiskCache.getThumbnailData(testContext, request))
+        assertNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 100))
+        assertNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 200))
+    }
+
+    @Test
+    fun `saveThumbnail removes variants of a previous larger thumbnail`() = runTestOnMain {
+        val thumbnailStorage = ThumbnailStorage(testContext, testDispatcher, variantSizes = listOf(100, 200))
+        val request = ImageLoadRequest("test-tab1", 100)
+
+        thumbnailStorage.saveThumbnail(request.id, Bitmap.createBitmap(400, 800, Bitmap.Config.ARGB_8888))
+            .joinBlocking()
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 200))
+
+        thumbnailStorage.saveThumbnail(request.id, Bitmap.createBitmap(150, 300, Bitmap.Config.ARGB_8888))
+            .joinBlocking()
+
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request))
+        assertNotNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 100))
+        // Loading a thumbnail of this size falls back to the new original, not the old variant.
+        assertNull(sharedDiskCache.getThumbnailData(testContext, request, variantSize = 200))
+    }
+
+    @Test
+    fun `loadThumbnail returns thumbnail from memory cache`() = runTestOnMain {
+        val request = ImageLoadRequest("test-tab1", 100)
+        val bitmap: Bitmap = mock()
+        val thumbnailStorage = ThumbnailStorage(testContext, testDispatcher)
+
+        thumbnailStorage.saveThumbnail(request.id, bitmap).joinBlocking()
+        val thumbnail = thumbnailStorage.loadThumbnail(request).await()
+        assertNotNull(thumbnail)
+
+        val cached = thumbnailStorage.loadThumbnail(request)
+        assertTrue(cached.isCompleted)
+        assertSame(thumbnail, cached.await())
+
+        // Saving a new thumbnail for the tab drops the cached one.
+        thumbnailStorage.saveThumbnail(request.id, bitmap).joinBlocking()
+        assertNull(sharedMemoryCache.get(request))
+    }
+
+    @Test
+    fun `thumbnails loaded before saving or clearing thumbnails are not cached`() = runTestOnMain {
+        val request = ImageLoadRequest("test-tab1", 100)
+        val thumbnailStorage = ThumbnailStorage(testContext, testDispatcher)
+
+        var generation = sharedMemoryCache.generation(request.id)
+        thumbnailStorage.saveThumbnail(request.id, mock()).joinBlocking()
+        sharedMemoryCache.put(request, mock(), generation)
+        assertNull(sharedMemoryCache.get(request))
+
+        generation = sharedMemoryCache.generation(request.id)
+        thumbnailStorage.clearThumbnails().joinBlocking()
+        sharedMemoryCache.put(request, mock(), generation)
+        assertNull(sharedMemoryCache.get(request))
+
+        sharedMemoryCache.put(request, mock(), sharedMemoryCache.generation(request.id))
+        assertNotNull(sharedMemoryCache.get(request))
+    }
+
+    @Test
+    fun `onTrimMemory clears memory cache once the UI is hidden`() = runTestOnMain {
+        val request = ImageLoadRequest("test-tab1", 100)
+        val thumbnailStorage = ThumbnailStorage(testContext, testDispatcher)
+
+        thumbnailStorage.saveThumbnail(request.id, mock()).joinBlocking()
+        assertNotNull(thumbnailStorage.loadThumbnail(request).await())
+        assertNotNull(sharedMemoryCache.get(request))
+
+        thumbnailStorage.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+
+        assertNull(sharedMemoryCache.get(request))
+    }
 }
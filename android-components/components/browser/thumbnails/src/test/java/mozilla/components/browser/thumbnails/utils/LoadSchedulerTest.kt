@@ -0,0 +1,94 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.browser.thumbnails.utils
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import mozilla.components.browser.thumbnails.storage.ThumbnailStorage.Priority
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class LoadSchedulerTest {
+
+    @Test
+    fun `Waiting loads are started by priority and most recent first`() = runTest {
+        val scheduler = LoadScheduler(maxConcurrentLoads = 1)
+        val gate = CompletableDeferred<Unit>()
+        val order = mutableListOf<String>()
+
+        launch {
+            scheduler.schedule(Priority.VISIBLE) {
+                gate.await()
+                order.add("running")
+            }
+        }
+        runCurrent()
+
+        launch { scheduler.schedule(Priority.PREFETCH) { order.add("prefetch") } }
+        launch { scheduler.schedule(Priority.VISIBLE) { order.add("visible1") } }
+        launch { scheduler.schedule(Priority.VISIBLE) { order.add("visible2") } }
+        val cancelled = launch { scheduler.schedule(Priority.VISIBLE) { order.add("cancelled") } }
+        runCurrent()
+
+        assertEquals(4, scheduler.waiting)
+
+        cancelled.cancel()
+        runCurrent()
+
+        assertEquals(3, scheduler.waiting)
+
+        gate.complete(Unit)
+        advanceUntilIdle()
+
+        assertEquals(listOf("running", "visible2", "visible1", "prefetch"), order)
+        assertEquals(0, scheduler.waiting)
+    }
+
+    @Test
+    fun `No more than the maximum number of loads run at the same time`() = runTest {
+        val scheduler = LoadScheduler(maxConcurrentLoads = 2)
+        val gate = CompletableDeferred<Unit>()
+        var running = 0
+        var maxRunning = 0
+
+        repeat(5) {
+            launch {
+                scheduler.schedule(Priority.VISIBLE) {
+                    running++
+                    maxRunning = maxOf(maxRunning, running)
+                    gate.await()
+                    running--
+                }
+            }
+        }
+        runCurrent()
+
+        assertEquals(2, running)
+        assertEquals(3, scheduler.waiting)
+
+        gate.complete(Unit)
+        advanceUntilIdle()
+
+        assertEquals(2, maxRunning)
+        assertEquals(0, running)
+    }
+
+    @Test
+    fun `Failing load frees its slot`() = runTest {
+        val scheduler = LoadScheduler(maxConcurrentLoads = 1)
+
+        val failed = runCatching {
+            scheduler.schedule(Priority.VISIBLE) { throw IllegalStateException("Failed") }
+        }
+
+        assertEquals("Failed", failed.exceptionOrNull()?.message)
+        assertEquals(42, scheduler.schedule(Priority.VISIBLE) { 42 })
+    }
+}
@@ -92,6 +92,23 @@ class ThumbnailDiskCacheTest {
         assertNull(data)
     }
 
+    @Test
+    fun `Writing, reading and removing variants of a bitmap`() {
+        val cache = ThumbnailDiskCache()
+        val request = ImageLoadRequest("123", 100)
+        val bitmap: Bitmap = mock()
+
+        cache.putThumbnailBitmap(testContext, request.id, bitmap, variantSize = 200)
+        assertNull(cache.getThumbnailData(testContext, request))
+        assertNull(cache.getThumbnailData(testContext, request, variantSize = 100))
+        assertNotNull(cache.getThumbnailData(testContext, request, variantSize = 200))
+
+        cache.putThumbnailBitmap(testContext, request.id, bitmap)
+        cache.removeThumbnailData(testContext, request.id, variantSizes = listOf(100, 200))
+        assertNull(cache.getThumbnailData(testContext, request))
+        assertNull(cache.getThumbnailData(testContext, request, variantSize = 200))
+    }
+
     @Test
     fun `Clearing bitmap from disk cache`() {
         val cache = ThumbnailDiskCache()
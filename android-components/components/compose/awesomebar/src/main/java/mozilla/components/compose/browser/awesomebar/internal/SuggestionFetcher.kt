@@ -8,35 +8,77 @@ import android.os.SystemClock
 import androidx.annotation.VisibleForTesting
 import androidx.compose.runtime.RememberObserver
 import androidx.compose.runtime.mutableStateOf
+import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
 import mozilla.components.compose.browser.awesomebar.AwesomeBarFacts
 import mozilla.components.compose.browser.awesomebar.AwesomeBarFacts.emitAwesomeBarFact
 import mozilla.components.concept.awesomebar.AwesomeBar
 import mozilla.components.concept.base.profiler.Profiler
 import mozilla.components.support.base.facts.Action
+import mozilla.components.support.base.log.logger.Logger
 import mozilla.components.support.base.utils.NamedThreadFactory
 import mozilla.components.support.utils.ThreadUtils
-import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * The maximum time a provider may take to return suggestions before its query gets cancelled.
+ */
+internal const val DEFAULT_PROVIDER_TIMEOUT_MS = 5_000L
+
+// The maximum number of providers queried at the same time, by all AwesomeBars.
+private const val MAX_CONCURRENT_QUERIES = 8
+private const val IDLE_THREAD_TIMEOUT_SECONDS = 60L
+
+/**
+ * [CoroutineDispatcher] shared by all [SuggestionFetcher]s: Providers are queried on every keystroke, so instead of
+ * creating threads for every AwesomeBar, queries wait for one of a bounded number of threads. Threads that have not
+ * been used for a minute are terminated.
+ */
+private val sharedDispatcher by lazy {
+    ThreadPoolExecutor(
+        MAX_CONCURRENT_QUERIES,
+        MAX_CONCURRENT_QUERIES,
+        IDLE_THREAD_TIMEOUT_SECONDS,
+        TimeUnit.SECONDS,
+        LinkedBlockingQueue(),
+        NamedThreadFactory("SuggestionFetcher"),
+    ).apply {
+        allowCoreThreadTimeOut(true)
+    }.asCoroutineDispatcher()
+}
 
 /**
  * Class responsible for fetching search suggestions and exposing a [state] to observe the current
  * list of suggestions from a composable.
+ *
+ * Results are applied as they arrive, one provider at a time, and only the group of that provider gets updated.
+ * The previous suggestions of a provider are shown until it returns new ones. When the text is extended (e.g. while
+ * typing), providers can remove the previous suggestions that no longer match right away (see
+ * [AwesomeBar.SuggestionProvider.filterPreviousSuggestions]).
+ *
+ * @param dispatcher The [CoroutineDispatcher] for querying the providers.
+ * @param providerTimeoutMs The maximum time a provider may take to return suggestions. If it takes longer, the query
+ * gets cancelled and the previous suggestions of the provider (for a different text) are removed.
  */
 internal class SuggestionFetcher(
     private val groups: List<AwesomeBar.SuggestionProviderGroup>,
     private val profiler: Profiler?,
+    private val dispatcher: CoroutineDispatcher = sharedDispatcher,
+    private val providerTimeoutMs: Long = DEFAULT_PROVIDER_TIMEOUT_MS,
 ) : RememberObserver {
-    private val dispatcher = Executors.newFixedThreadPool(
-        groups.fold(0, { acc, group -> acc + group.providers.size }),
-        NamedThreadFactory("SuggestionFetcher"),
-    ).asCoroutineDispatcher()
+    private val logger = Logger("SuggestionFetcher")
 
     @VisibleForTesting
     internal var fetchJob: Job? = null
 
+    private var previousText: String? = null
+
     /**
      * The current list of suggestions as an observable list.
      */
@@ -52,6 +94,8 @@ internal class SuggestionFetcher(
 
         fetchJob?.cancel()
 
+        filterPreviousSuggestions(text)
+
         fetchJob = CoroutineScope(dispatcher).launch {
             groups.forEach { group ->
                 group.providers.forEach { provider ->
@@ -87,11 +131,42 @@ internal class SuggestionFetcher(
         // grouping correctly becomes tricky and we run a risk of omitting certain values - or, of
         // adding a bunch of complexity just for the sake of "correct grouping".
         val start = SystemClock.elapsedRealtimeNanos()
-        val suggestions = provider.onInputChanged(text)
+        val suggestions = withTimeoutOrNull(providerTimeoutMs) { provider.onInputChanged(text) }
         val end = SystemClock.elapsedRealtimeNanos()
         emitProviderQueryTimingFact(provider, timingNs = end - start)
 
-        processResultFrom(group, provider, suggestions, profilerStartTime)
+        if (suggestions == null) {
+            logger.warn("${provider::class.simpleName} did not return suggestions within $providerTimeoutMs ms")
+        }
+
+        // The previous suggestions of a provider that timed out are for a different text: remove them.
+        processResultFrom(group, provider, suggestions ?: emptyList(), profilerStartTime)
+    }
+
+    /**
+     * If [text] extends the text of the previous fetch, lets every provider remove its previous suggestions that
+     * don't match [text] anymore, so that the remaining ones are shown while the providers are queried again.
+     */
+    @Synchronized
+    private fun filterPreviousSuggestions(text: String) {
+        val previous = previousText
+        previousText = text
+        if (previous.isNullOrEmpty() || text.length <= previous.length || !text.startsWith(previous)) {
+            return
+        }
+
+        val suggestionMap = state.value
+        val filteredSuggestionMap = suggestionMap.mapValues { (_, suggestions) ->
+            val remaining = suggestions.groupBy { it.provider }.flatMapTo(HashSet()) { (provider, previous) ->
+                provider.filterPreviousSuggestions(text, previous) ?: previous
+            }
+            // Keep the order of the group, in which the suggestions of all its providers are sorted by score.
+            val filteredSuggestions = suggestions.filter { it in remaining }
+            if (filteredSuggestions.size == suggestions.size) suggestions else filteredSuggestions
+        }
+        if (filteredSuggestionMap.any { (group, suggestions) -> suggestions !== suggestionMap[group] }) {
+            state.value = filteredSuggestionMap
+        }
     }
 
     /**
@@ -107,12 +182,15 @@ internal class SuggestionFetcher(
     ) {
         val suggestionMap = state.value
 
-        val updatedSuggestions = (suggestionMap[group] ?: emptyList())
-            .filter { suggestion -> suggestion.provider != provider }
-            .toMutableList()
+        val currentSuggestions = suggestionMap[group] ?: emptyList()
+        val otherSuggestions = currentSuggestions.filter { suggestion -> suggestion.provider != provider }
+        if (suggestions.isEmpty() && otherSuggestions.size == currentSuggestions.size) {
+            // Nothing to add or remove: Keep the current state, so that nothing gets recomposed.
+            return
+        }
 
-        updatedSuggestions.addAll(suggestions)
-        updatedSuggestions.sortByDescending { suggestion -> suggestion.score }
+        // The suggestions of a group are sorted by their score already, so the new ones only need to be merged in.
+        val updatedSuggestions = merge(otherSuggestions, suggestions.sortedByDescending { it.score })
 
         if (updatedSuggestions.isNotEmpty()) {
             group.priority = updatedSuggestions[0].score
@@ -137,16 +215,35 @@ internal class SuggestionFetcher(
     }
 
     override fun onAbandoned() {
-        dispatcher.close()
+        fetchJob?.cancel()
     }
 
     override fun onForgotten() {
-        dispatcher.close()
+        fetchJob?.cancel()
     }
 
     override fun onRemembered() = Unit
 }
 
+/**
+ * Merges two lists of suggestions sorted by descending score. Suggestions with the same score keep their order, those
+ * of [first] coming before those of [second].
+ */
+private fun merge(
+    first: List<AwesomeBar.Suggestion>,
+    second: List<AwesomeBar.Suggestion>,
+): List<AwesomeBar.Suggestion> {
+    val merged = ArrayList<AwesomeBar.Suggestion>(first.size + second.size)
+    var i = 0
+    var j = 0
+    while (i < first.size && j < second.size) {
+        merged.add(if (first[i].score >= second[j].score) first[i++] else second[j++])
+    }
+    merged.addAll(first.subList(i, first.size))
+    merged.addAll(second.subList(j, second.size))
+    return merged
+}
+
 @Suppress("MagicNumber")
 internal fun emitProviderQueryTimingFact(provider: AwesomeBar.SuggestionProvider, timingNs: Long) {
     emitAwesomeBarFact(
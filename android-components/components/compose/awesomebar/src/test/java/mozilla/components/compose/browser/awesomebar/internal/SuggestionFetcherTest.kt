@@ -4,8 +4,12 @@
 
 package mozilla.components.compose.browser.awesomebar.internal
 
+import androidx.test.ext.junit.runners.AndroidJUnit4
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
 import mozilla.components.concept.awesomebar.AwesomeBar
 import mozilla.components.concept.awesomebar.AwesomeBar.SuggestionProvider
 import mozilla.components.concept.awesomebar.AwesomeBar.SuggestionProviderGroup
@@ -14,13 +18,17 @@ import mozilla.components.support.test.mock
 import mozilla.components.support.test.rule.MainCoroutineRule
 import mozilla.components.support.test.rule.runTestOnMain
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
 import org.junit.Rule
 import org.junit.Test
+import org.junit.runner.RunWith
 import org.mockito.Mockito.doAnswer
 import org.mockito.Mockito.inOrder
 import org.mockito.Mockito.spy
+import java.util.UUID
 
 @ExperimentalCoroutinesApi // for runTestOnMain
+@RunWith(AndroidJUnit4::class)
 class SuggestionFetcherTest {
     @get:Rule
     val coroutinesTestRule = MainCoroutineRule()
@@ -66,4 +74,142 @@ class SuggestionFetcherTest {
 
         assertEquals(providerGroup.priority, Int.MAX_VALUE)
     }
+
+    @Test
+    fun `GIVEN suggestions from multiple providers THEN they are merged by score`() = runTestOnMain {
+        val provider1 = FakeProvider()
+        val provider2 = FakeProvider()
+        val providerGroup = SuggestionProviderGroup(listOf(provider1, provider2))
+        val fetcher = SuggestionFetcher(listOf(providerGroup), null)
+
+        fetcher.processResultFrom(
+            providerGroup,
+            provider1,
+            listOf(provider1.suggestion("a", score = 5), provider1.suggestion("b", score = 1)),
+            null,
+        )
+        fetcher.processResultFrom(
+            providerGroup,
+            provider2,
+            listOf(provider2.suggestion("c", score = 0), provider2.suggestion("d", score = 5)),
+            null,
+        )
+
+        assertEquals(listOf("a", "d", "b", "c"), fetcher.state.value.getValue(providerGroup).map { it.title })
+
+        fetcher.processResultFrom(providerGroup, provider1, listOf(provider1.suggestion("e", score = 3)), null)
+
+        assertEquals(listOf("d", "e", "c"), fetcher.state.value.getValue(providerGroup).map { it.title })
+    }
+
+    @Test
+    fun `GIVEN a provider without suggestions before and after a query THEN the state is not updated`() = runTestOnMain {
+        val provider1 = FakeProvider()
+        val provider2 = FakeProvider()
+        val providerGroup = SuggestionProviderGroup(listOf(provider1, provider2))
+        val fetcher = SuggestionFetcher(listOf(providerGroup), null)
+        fetcher.processResultFrom(providerGroup, provider1, listOf(provider1.suggestion("a")), null)
+        val state = fetcher.state.value
+
+        fetcher.processResultFrom(providerGroup, provider2, emptyList(), null)
+
+        assertSame(state, fetcher.state.value)
+    }
+
+    @Test
+    fun `GIVEN a provider not returning within its deadline THEN its previous suggestions are removed`() = runTestOnMain {
+        val slowProvider = FakeProvider(delayMs = 10_000) { text -> listOf(suggestion("slow $text")) }
+        val fastProvider = FakeProvider { text -> listOf(suggestion("fast $text")) }
+        val providerGroup = SuggestionProviderGroup(listOf(slowProvider, fastProvider))
+        val fetcher = SuggestionFetcher(
+            listOf(providerGroup),
+            null,
+            dispatcher = coroutinesTestRule.testDispatcher,
+            providerTimeoutMs = 1_000,
+        )
+        fetcher.processResultFrom(providerGroup, slowProvider, listOf(slowProvider.suggestion("slow")), null)
+
+        fetcher.fetch("test")
+        advanceUntilIdle()
+
+        assertEquals(
+            listOf("fast test"),
+            fetcher.state.value.getValue(providerGroup).map { it.title },
+        )
+    }
+
+    @Test
+    fun `GIVEN the text is extended THEN previous suggestions of providers that can't filter them are kept while querying`() = runTestOnMain {
+        val provider = FakeProvider(delayMs = 100) { text -> listOf(suggestion(text)) }
+        val providerGroup = SuggestionProviderGroup(listOf(provider))
+        val fetcher = SuggestionFetcher(listOf(providerGroup), null, dispatcher = coroutinesTestRule.testDispatcher)
+        fetcher.fetch("moz")
+        advanceUntilIdle()
+        // Suggestions may match the text in fields that aren't shown, e.g. the URL of a bookmark with a custom title.
+        val previous = listOf(provider.suggestion("Mozilla"), provider.suggestion("Firefox"))
+        fetcher.processResultFrom(providerGroup, provider, previous, null)
+
+        fetcher.fetch("mozi")
+
+        assertEquals(listOf("Mozilla", "Firefox"), fetcher.state.value.getValue(providerGroup).map { it.title })
+
+        advanceTimeBy(200)
+
+        assertEquals(listOf("mozi"), fetcher.state.value.getValue(providerGroup).map { it.title })
+    }
+
+    @Test
+    fun `GIVEN the text is extended THEN providers can remove previous suggestions that no longer match`() = runTestOnMain {
+        val filteringProvider = FakeProvider(
+            delayMs = 100,
+            filter = { text, previous -> previous.filter { it.title!!.contains(text, ignoreCase = true) } },
+        ) { text -> listOf(suggestion(text, score = 2)) }
+        val provider = FakeProvider(delayMs = 100) { text -> listOf(suggestion("other $text", score = 1)) }
+        val providerGroup = SuggestionProviderGroup(listOf(filteringProvider, provider))
+        val fetcher = SuggestionFetcher(listOf(providerGroup), null, dispatcher = coroutinesTestRule.testDispatcher)
+        fetcher.fetch("moz")
+        advanceUntilIdle()
+        fetcher.processResultFrom(
+            providerGroup,
+            filteringProvider,
+            listOf(filteringProvider.suggestion("Mozilla", score = 3), filteringProvider.suggestion("mozaic")),
+            null,
+        )
+
+        fetcher.fetch("mozi")
+
+        assertEquals(
+            listOf("Mozilla", "other moz"),
+            fetcher.state.value.getValue(providerGroup).map { it.title },
+        )
+
+        advanceTimeBy(200)
+
+        assertEquals(listOf("mozi", "other mozi"), fetcher.state.value.getValue(providerGroup).map { it.title })
+
+        // Suggestions are not filtered when the text doesn't extend the previous text.
+        fetcher.fetch("fire")
+
+        assertEquals(listOf("mozi", "other mozi"), fetcher.state.value.getValue(providerGroup).map { it.title })
+    }
+
+    private class FakeProvider(
+        private val delayMs: Long = 0,
+        private val filter: ((String, List<AwesomeBar.Suggestion>) -> List<AwesomeBar.Suggestion>)? = null,
+        private val results: FakeProvider.(String) -> List<AwesomeBar.Suggestion> = { emptyList() },
+    ) : SuggestionProvider {
+        override val id: String = UUID.randomUUID().toString()
+
+        override suspend fun onInputChanged(text: String): List<AwesomeBar.Suggestion> {
+            delay(delayMs)
+            return results(text)
+        }
+
+        override fun filterPreviousSuggestions(
+            text: String,
+            previousSuggestions: List<AwesomeBar.Suggestion>,
+        ): List<AwesomeBar.Suggestion>? = filter?.invoke(text, previousSuggestions)
+
+        fun suggestion(title: String, score: Int = 0) = AwesomeBar.Suggestion(this, title = title, score = score)
+    }
 }
@@ -180,6 +180,18 @@ interface AwesomeBar {
          */
         suspend fun onInputChanged(text: String): List<Suggestion>
 
+        /**
+         * Fired when the user extended their input, before [onInputChanged] is invoked with the new [text].
+         *
+         * Providers that can tell which of their [previousSuggestions] (returned for a prefix of [text]) still
+         * match [text] can return those, so that an [AwesomeBar] implementation can show them until
+         * [onInputChanged] returns. This is invoked on the thread the input is changed on and should be fast.
+         *
+         * @return The [previousSuggestions] still matching [text], or null (the default) if this provider can't
+         * tell, in which case all of them keep being shown.
+         */
+        fun filterPreviousSuggestions(text: String, previousSuggestions: List<Suggestion>): List<Suggestion>? = null
+
         /**
          * Fired when the user has cancelled their interaction with the awesome bar.
          */
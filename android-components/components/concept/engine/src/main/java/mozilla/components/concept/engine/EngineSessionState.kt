@@ -39,6 +39,15 @@ interface EngineSessionStateStorage {
      */
     suspend fun read(uuid: String): EngineSessionState?
 
+    /**
+     * Returns whether an [EngineSessionState] may be persisted for the given [uuid], without
+     * reading it. This is called on the main thread before [read], so it must not perform I/O.
+     *
+     * @return `false` if no [EngineSessionState] is persisted for the given [uuid]. The default
+     * implementation always returns `true`.
+     */
+    fun contains(uuid: String): Boolean = true
+
     /**
      * Deletes persisted [EngineSessionState] for a given [uuid].
      */
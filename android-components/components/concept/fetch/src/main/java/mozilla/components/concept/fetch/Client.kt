@@ -5,10 +5,15 @@
 package mozilla.components.concept.fetch
 
 import android.util.Base64
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.suspendCancellableCoroutine
 import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.net.URLDecoder
 import java.nio.charset.Charset
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import kotlin.coroutines.resumeWithException
 
 /**
  * A generic [Client] for fetching resources via HTTP/s.
@@ -44,6 +49,94 @@ abstract class Client {
     @Throws(IOException::class)
     abstract fun fetch(request: Request): Response
 
+    /**
+     * Starts the process of fetching a resource from the network as described by the [Request] object, without
+     * blocking the calling thread. Once the request has completed, either [Callback.onResponse] or
+     * [Callback.onFailure] is called, on a thread chosen by the implementation.
+     *
+     * The returned [Call] can be used to cancel the request. Clients that support it abort the underlying connection.
+     * After cancelling, the callback may not be called at all, or called with a failure. A [Response] passed to the
+     * callback after cancelling still needs to be closed.
+     *
+     * The default implementation performs [fetch] on a background thread, which can't abort the connection: Clients
+     * should override it with an implementation not blocking a thread per request.
+     *
+     * @param request The request to be executed by this [Client].
+     * @param callback The [Callback] receiving the [Response] or failure.
+     * @return The [Call] for cancelling the request.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    open fun fetchAsync(request: Request, callback: Callback): Call {
+        val future = asyncExecutor.submit(
+            Runnable {
+                val response = try {
+                    fetch(request)
+                } catch (e: Exception) {
+                    // Otherwise the callback would never be called.
+                    callback.onFailure(e as? IOException ?: IOException(e))
+                    null
+                }
+                response?.let { callback.onResponse(it) }
+            },
+        )
+
+        return Call { future.cancel(true) }
+    }
+
+    /**
+     * Fetches a resource from the network as described by the [Request] object, suspending instead of blocking the
+     * calling thread. Cancelling the calling coroutine cancels the request (see [fetchAsync]).
+     *
+     * As with [fetch], it's important to always close the [Response] or its [Response.Body].
+     *
+     * @param request The request to be executed by this [Client].
+     * @return The [Response] returned by the server.
+     * @throws IOException if the request could not be executed due to a connectivity problem or a timeout.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    suspend fun fetchAsync(request: Request): Response = suspendCancellableCoroutine { continuation ->
+        val call = fetchAsync(
+            request,
+            object : Callback {
+                override fun onResponse(response: Response) {
+                    // The response is closed if the coroutine has been cancelled in the meantime.
+                    continuation.resume(response) { response.close() }
+                }
+
+                override fun onFailure(exception: IOException) {
+                    continuation.resumeWithException(exception)
+                }
+            },
+        )
+
+        continuation.invokeOnCancellation { call.cancel() }
+    }
+
+    /**
+     * Receives the result of a request started with [fetchAsync].
+     */
+    interface Callback {
+        /**
+         * Called with the [Response] returned by the server. The [Response] needs to be closed.
+         */
+        fun onResponse(response: Response)
+
+        /**
+         * Called if the request could not be executed due to cancellation, a connectivity problem or a timeout.
+         */
+        fun onFailure(exception: IOException)
+    }
+
+    /**
+     * A request started with [fetchAsync].
+     */
+    fun interface Call {
+        /**
+         * Cancels the request, if it has not completed yet.
+         */
+        fun cancel()
+    }
+
     /**
      * Generates a [Response] based on the provided [Request] for a data URI.
      *
@@ -94,5 +187,11 @@ abstract class Client {
         const val DATA_URI_BASE64_EXT = ";base64"
         const val DATA_URI_SCHEME = "data:"
         const val DATA_URI_CHARSET = "charset="
+
+        // Threads for clients without their own implementation of fetchAsync. Idle threads are terminated after a
+        // minute.
+        private val asyncExecutor: ExecutorService = Executors.newCachedThreadPool { runnable ->
+            Thread(runnable, "Client.fetchAsync").apply { isDaemon = true }
+        }
     }
 }
@@ -50,14 +50,27 @@ interface Headers : Iterable<Header> {
      * @see [Headers.Values]
      */
     object Names {
+        const val ACCEPT_RANGES = "Accept-Ranges"
+        const val AGE = "Age"
+        const val CACHE_CONTROL = "Cache-Control"
         const val CONTENT_DISPOSITION = "Content-Disposition"
+        const val CONTENT_ENCODING = "Content-Encoding"
         const val CONTENT_RANGE = "Content-Range"
         const val RANGE = "Range"
         const val CONTENT_LENGTH = "Content-Length"
         const val CONTENT_TYPE = "Content-Type"
         const val COOKIE = "Cookie"
+        const val DATE = "Date"
+        const val ETAG = "ETag"
+        const val EXPIRES = "Expires"
+        const val IF_MODIFIED_SINCE = "If-Modified-Since"
+        const val IF_NONE_MATCH = "If-None-Match"
+        const val IF_RANGE = "If-Range"
+        const val LAST_MODIFIED = "Last-Modified"
+        const val PRAGMA = "Pragma"
         const val REFERRER = "Referer"
         const val USER_AGENT = "User-Agent"
+        const val VARY = "Vary"
     }
 
     /**
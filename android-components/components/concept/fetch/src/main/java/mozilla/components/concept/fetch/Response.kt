@@ -55,7 +55,7 @@ data class Response(
      * charset can't be found, UTF-8 will be used for decoding.
      */
     open class Body(
-        private val stream: InputStream,
+        internal val stream: InputStream,
         contentType: String? = null,
     ) : Closeable, AutoCloseable {
 
@@ -0,0 +1,52 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.concept.fetch.interceptor
+
+import mozilla.components.concept.fetch.Headers
+
+/**
+ * The `Cache-Control` directives of a request or response that are relevant for [CacheInterceptor].
+ *
+ * @property noStore Whether the response must not be stored.
+ * @property noCache Whether a stored response must be revalidated before it is used.
+ * @property maxAgeSeconds The maximum age of a response in seconds, if specified.
+ */
+internal data class CacheControl(
+    val noStore: Boolean = false,
+    val noCache: Boolean = false,
+    val maxAgeSeconds: Long? = null,
+) {
+    companion object {
+        /**
+         * Parses the `Cache-Control` headers of the given [headers]. For compatibility with HTTP/1.0, a
+         * `Pragma: no-cache` header is treated like `Cache-Control: no-cache` if there is no `Cache-Control` header.
+         */
+        fun parse(headers: Headers?): CacheControl {
+            if (headers == null) {
+                return CacheControl()
+            }
+
+            var cacheControl = CacheControl()
+            headers.getAll(Headers.Names.CACHE_CONTROL).flatMap { it.split(',') }.forEach { directive ->
+                val name = directive.substringBefore('=').trim().lowercase()
+                val value = directive.substringAfter('=', "").trim().removeSurrounding("\"")
+                cacheControl = when (name) {
+                    "no-store" -> cacheControl.copy(noStore = true)
+                    "no-cache" -> cacheControl.copy(noCache = true)
+                    "max-age" -> cacheControl.copy(maxAgeSeconds = value.toLongOrNull()?.coerceAtLeast(0))
+                    else -> cacheControl
+                }
+            }
+
+            if (Headers.Names.CACHE_CONTROL !in headers &&
+                headers.getAll(Headers.Names.PRAGMA).any { it.trim().equals("no-cache", ignoreCase = true) }
+            ) {
+                cacheControl = cacheControl.copy(noCache = true)
+            }
+
+            return cacheControl
+        }
+    }
+}
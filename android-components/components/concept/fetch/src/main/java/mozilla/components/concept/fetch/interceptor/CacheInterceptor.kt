@@ -0,0 +1,356 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.concept.fetch.interceptor
+
+import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.Header
+import mozilla.components.concept.fetch.Headers.Names.AGE
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_ENCODING
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_LENGTH
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_TYPE
+import mozilla.components.concept.fetch.Headers.Names.DATE
+import mozilla.components.concept.fetch.Headers.Names.ETAG
+import mozilla.components.concept.fetch.Headers.Names.EXPIRES
+import mozilla.components.concept.fetch.Headers.Names.IF_MODIFIED_SINCE
+import mozilla.components.concept.fetch.Headers.Names.IF_NONE_MATCH
+import mozilla.components.concept.fetch.Headers.Names.LAST_MODIFIED
+import mozilla.components.concept.fetch.Headers.Names.RANGE
+import mozilla.components.concept.fetch.Headers.Names.VARY
+import mozilla.components.concept.fetch.MutableHeaders
+import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
+import mozilla.components.concept.fetch.isBlobUri
+import mozilla.components.concept.fetch.isDataUri
+import mozilla.components.concept.fetch.isSuccess
+import java.io.File
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.text.ParseException
+import java.text.SimpleDateFormat
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+
+private const val DEFAULT_MAX_SIZE = 10L * 1024 * 1024 // 10 MB
+private const val NOT_MODIFIED = 304
+
+// Share of the time since a response was last modified that it is considered fresh for, if it has no explicit
+// expiration time.
+private const val HEURISTIC_FRESHNESS_DIVISOR = 10
+
+/**
+ * An [Interceptor] caching responses on disk, for any [Client]:
+ *
+ * ```
+ * val client = HttpURLConnectionClient().withInterceptors(CacheInterceptor(File(context.cacheDir, "fetch")))
+ * ```
+ *
+ * The interceptor is a private cache following a subset of the HTTP caching rules (RFC 9111):
+ * - Responses to GET requests with status 200 are stored, unless the request or the response has
+ * `Cache-Control: no-store`, or the response varies on all request headers (`Vary: *`). Responses are only stored
+ * if the body is read completely.
+ * - A stored response is returned without sending the request while it is fresh: for the time given by
+ * `Cache-Control: max-age` or `Expires`, or, if the response only has a `Last-Modified` header, for 10% of the time
+ * since it was last modified. `Cache-Control: max-age` of the request can shorten this time.
+ * - Once a stored response is stale, or `Cache-Control: no-cache` is used, it is revalidated by sending the request
+ * with `If-None-Match` or `If-Modified-Since`, if the response has an `ETag` or a `Last-Modified` header. If the
+ * server responds with "304 Not Modified", the stored response is returned with the updated headers.
+ * - A successful request with a method other than GET or HEAD removes the stored response for its URL.
+ *
+ * Requests with [Request.useCaches] set to false, private requests, and requests with their own conditional or `Range`
+ * headers bypass the cache.
+ *
+ * @param directory The directory to store responses in. It should not be used for anything else.
+ * @param maxSize The maximum size of all stored responses in bytes. Once exceeded, the least recently used responses
+ * are removed.
+ */
+class CacheInterceptor(
+    directory: File,
+    maxSize: Long = DEFAULT_MAX_SIZE,
+) : Interceptor {
+    internal var clock: () -> Long = { System.currentTimeMillis() }
+
+    private val store = ResponseCacheStore(directory, maxSize) { clock() }
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request
+        return when {
+            request.method == Request.Method.GET && request.isCacheable() -> interceptCacheable(chain, request)
+            request.method == Request.Method.GET || request.method == Request.Method.HEAD -> chain.proceed(request)
+            else -> chain.proceed(request).also { response ->
+                if (response.isSuccess) {
+                    store.remove(request.url)
+                }
+            }
+        }
+    }
+
+    @Suppress("ReturnCount")
+    private fun interceptCacheable(chain: Interceptor.Chain, request: Request): Response {
+        val requestCacheControl = CacheControl.parse(request.headers)
+        val entry = store.get(request.url)?.takeIf { it.matchesVaryHeaders(request) }
+
+        if (entry != null && entry.isFresh(requestCacheControl, clock())) {
+            store.openBody(request.url)?.let { body -> return entry.toResponse(body) }
+        }
+
+        val conditionalRequest = entry?.let { request.toConditionalRequest(it) }
+        val requestTime = clock()
+        val response = chain.proceed(conditionalRequest ?: request)
+        val responseTime = clock()
+
+        if (entry != null && conditionalRequest != null && response.status == NOT_MODIFIED) {
+            val revalidatedResponse = revalidate(request, entry, response, requestTime, responseTime)
+            if (revalidatedResponse != null) {
+                return revalidatedResponse
+            }
+
+            // The stored response was removed in the meantime.
+            return chain.proceed(request)
+        }
+
+        return if (isStorable(requestCacheControl, response)) {
+            store(request, response, requestTime, responseTime)
+        } else {
+            if (entry != null) {
+                store.remove(request.url)
+            }
+            response
+        }
+    }
+
+    /**
+     * Updates the stored [entry] with the headers of the "304 Not Modified" [response] and returns the stored response,
+     * or null if it was removed in the meantime.
+     */
+    private fun revalidate(
+        request: Request,
+        entry: ResponseCacheStore.Entry,
+        response: Response,
+        requestTime: Long,
+        responseTime: Long,
+    ): Response? {
+        response.close()
+
+        val updatedHeaders = response.headers.filterNot { header ->
+            header.name.equals(CONTENT_LENGTH, ignoreCase = true) ||
+                header.name.equals(CONTENT_ENCODING, ignoreCase = true)
+        }
+        val updatedNames = updatedHeaders.map { it.name.lowercase() }.toSet()
+        val headers = MutableHeaders(
+            entry.headers.filterNot { it.name.lowercase() in updatedNames } + updatedHeaders,
+        )
+
+        val updatedEntry = ResponseCacheStore.Entry(
+            url = entry.url,
+            status = entry.status,
+            headers = headers,
+            varyHeaders = entry.varyHeaders,
+            requestTime = requestTime,
+            responseTime = responseTime,
+        )
+        store.update(request.url, updatedEntry)
+
+        return store.openBody(request.url)?.let { body -> updatedEntry.toResponse(body) }
+    }
+
+    /**
+     * Returns the [response] with a body that gets stored while it is read.
+     */
+    private fun store(request: Request, response: Response, requestTime: Long, responseTime: Long): Response {
+        // Clients decode the body, so the encoding and length of the response no longer apply to it.
+        val headers = if (CONTENT_ENCODING in response.headers) {
+            response.headers.filterNot { header ->
+                header.name.equals(CONTENT_ENCODING, ignoreCase = true) ||
+                    header.name.equals(CONTENT_LENGTH, ignoreCase = true)
+            }
+        } else {
+            response.headers.toList()
+        }
+
+        val varyHeaders = response.varyHeaderNames().map { name ->
+            Header(name, request.headers?.getAll(name)?.joinToString(",").orEmpty())
+        }
+
+        val entry = ResponseCacheStore.Entry(
+            url = response.url,
+            status = response.status,
+            headers = MutableHeaders(headers),
+            varyHeaders = varyHeaders,
+            requestTime = requestTime,
+            responseTime = responseTime,
+        )
+
+        val editor = store.edit(request.url, entry)
+        return response.copy(body = CachingBody(response.body, editor, response.headers[CONTENT_TYPE]))
+    }
+
+    private fun isStorable(requestCacheControl: CacheControl, response: Response): Boolean {
+        val cacheControl = CacheControl.parse(response.headers)
+        val hasExpiration = cacheControl.maxAgeSeconds != null || EXPIRES in response.headers
+        val hasValidator = ETAG in response.headers || LAST_MODIFIED in response.headers
+
+        return response.status == Response.SUCCESS &&
+            !requestCacheControl.noStore &&
+            !cacheControl.noStore &&
+            "*" !in response.varyHeaderNames() &&
+            (hasExpiration || hasValidator)
+    }
+
+    private fun ResponseCacheStore.Entry.isFresh(requestCacheControl: CacheControl, now: Long): Boolean {
+        val cacheControl = CacheControl.parse(headers)
+        if (cacheControl.noCache || requestCacheControl.noCache) {
+            return false
+        }
+
+        var lifetime = freshnessLifetime(cacheControl)
+        requestCacheControl.maxAgeSeconds?.let { lifetime = minOf(lifetime, TimeUnit.SECONDS.toMillis(it)) }
+        return age(now) < lifetime
+    }
+
+    private fun ResponseCacheStore.Entry.freshnessLifetime(cacheControl: CacheControl): Long {
+        val date = parseHttpDate(headers[DATE]) ?: responseTime
+        val expires = headers[EXPIRES]
+        val lastModified = parseHttpDate(headers[LAST_MODIFIED])
+
+        return when {
+            cacheControl.maxAgeSeconds != null -> TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds)
+            // An invalid date, e.g. "0", means that the response has already expired.
+            expires != null -> parseHttpDate(expires)?.let { it - date } ?: 0L
+            // Responses to requests with a query may change at any time.
+            lastModified != null && !url.contains('?') -> (date - lastModified) / HEURISTIC_FRESHNESS_DIVISOR
+            else -> 0L
+        }
+    }
+
+    /**
+     * Returns the age of the stored response as defined by RFC 9111, section 4.2.3.
+     */
+    private fun ResponseCacheStore.Entry.age(now: Long): Long {
+        val date = parseHttpDate(headers[DATE]) ?: responseTime
+        val apparentAge = maxOf(0L, responseTime - date)
+        val ageHeader = headers[AGE]?.trim()?.toLongOrNull()?.let { TimeUnit.SECONDS.toMillis(it) } ?: 0L
+        val correctedInitialAge = maxOf(apparentAge, ageHeader) + (responseTime - requestTime)
+        return correctedInitialAge + (now - responseTime)
+    }
+
+    private fun ResponseCacheStore.Entry.matchesVaryHeaders(request: Request): Boolean {
+        return varyHeaders.all { header ->
+            request.headers?.getAll(header.name)?.joinToString(",").orEmpty() == header.value
+        }
+    }
+
+    private fun ResponseCacheStore.Entry.toResponse(body: InputStream): Response {
+        return Response(url, status, headers, Response.Body(body, headers[CONTENT_TYPE]))
+    }
+
+    private fun Request.isCacheable(): Boolean {
+        val requestHeaders = headers
+        return useCaches &&
+            !private &&
+            !isDataUri() &&
+            !isBlobUri() &&
+            (requestHeaders == null || listOf(IF_NONE_MATCH, IF_MODIFIED_SINCE, RANGE).none { it in requestHeaders })
+    }
+
+    private fun Request.toConditionalRequest(entry: ResponseCacheStore.Entry): Request? {
+        val etag = entry.headers[ETAG]
+        val lastModified = entry.headers[LAST_MODIFIED]
+        if (etag == null && lastModified == null) {
+            return null
+        }
+
+        val conditionalHeaders = MutableHeaders(headers?.toList() ?: emptyList())
+        etag?.let { conditionalHeaders.set(IF_NONE_MATCH, it) }
+        lastModified?.let { conditionalHeaders.set(IF_MODIFIED_SINCE, it) }
+        return copy(headers = conditionalHeaders)
+    }
+
+    private fun Response.varyHeaderNames(): List<String> {
+        return headers.getAll(VARY)
+            .flatMap { it.split(',') }
+            .map { it.trim() }
+            .filter { it.isNotEmpty() }
+    }
+
+    private fun parseHttpDate(value: String?): Long? {
+        if (value == null) {
+            return null
+        }
+
+        val format = SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).apply {
+            timeZone = TimeZone.getTimeZone("GMT")
+        }
+        return try {
+            format.parse(value.trim())?.time
+        } catch (e: ParseException) {
+            null
+        }
+    }
+}
+
+/**
+ * A [Response.Body] writing everything read from the [original] body to the [editor]. The response is stored once the
+ * body has been read completely, and discarded if the body gets closed before.
+ */
+private class CachingBody(
+    private val original: Response.Body,
+    editor: ResponseCacheStore.Editor,
+    contentType: String?,
+) : Response.Body(CachingInputStream(original.stream, editor), contentType) {
+    override fun close() {
+        super.close()
+        original.close()
+    }
+}
+
+private class CachingInputStream(
+    stream: InputStream,
+    private val editor: ResponseCacheStore.Editor,
+) : FilterInputStream(stream) {
+    private var completed = false
+
+    override fun read(): Int {
+        val byte = super.read()
+        if (byte == -1) {
+            complete()
+        } else {
+            editor.write(byteArrayOf(byte.toByte()), 0, 1)
+        }
+        return byte
+    }
+
+    override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+        val count = super.read(buffer, offset, length)
+        if (count == -1) {
+            complete()
+        } else {
+            editor.write(buffer, offset, count)
+        }
+        return count
+    }
+
+    override fun skip(n: Long): Long {
+        // Skipped bytes are missing from the stored body.
+        editor.abort()
+        return super.skip(n)
+    }
+
+    override fun markSupported() = false
+
+    override fun close() {
+        super.close()
+        if (!completed) {
+            editor.abort()
+        }
+    }
+
+    private fun complete() {
+        if (!completed) {
+            completed = true
+            editor.commit()
+        }
+    }
+}
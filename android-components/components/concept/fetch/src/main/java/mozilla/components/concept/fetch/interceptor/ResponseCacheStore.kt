@@ -0,0 +1,294 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.concept.fetch.interceptor
+
+import mozilla.components.concept.fetch.Header
+import mozilla.components.concept.fetch.Headers
+import mozilla.components.concept.fetch.MutableHeaders
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.security.MessageDigest
+import java.util.UUID
+
+private const val FORMAT_VERSION = 1
+private const val METADATA_SUFFIX = ".0"
+private const val BODY_SUFFIX = ".1"
+private const val TEMP_SUFFIX = ".tmp"
+private const val MAX_HEADER_COUNT = 1000
+
+/**
+ * A store of responses on disk for [CacheInterceptor], limited to [maxSize] bytes.
+ *
+ * Every entry consists of two files named after a hash of its URL: the metadata and the body. Entries are written to
+ * temporary files first and only renamed once complete, so that incomplete entries are never read. Once the store
+ * grows larger than [maxSize], the least recently used entries are removed.
+ */
+internal class ResponseCacheStore(
+    private val directory: File,
+    private val maxSize: Long,
+    private val clock: () -> Long,
+) {
+    /**
+     * The metadata of a stored response.
+     *
+     * @property url The URL of the response, after following redirects.
+     * @property status The status code of the response.
+     * @property headers The headers of the response.
+     * @property varyHeaders The headers of the request the response varies on, as listed in the `Vary` header of the
+     * response. Headers missing in the request have an empty value.
+     * @property requestTime The time the request was sent.
+     * @property responseTime The time the response was received.
+     */
+    class Entry(
+        val url: String,
+        val status: Int,
+        val headers: Headers,
+        val varyHeaders: List<Header>,
+        val requestTime: Long,
+        val responseTime: Long,
+    )
+
+    private val lock = Any()
+
+    /**
+     * Returns the metadata of the response stored for [url], or null if there is none.
+     */
+    fun get(url: String): Entry? = synchronized(lock) {
+        val key = key(url)
+        val metadataFile = File(directory, key + METADATA_SUFFIX)
+        try {
+            val (storedUrl, entry) = DataInputStream(metadataFile.inputStream().buffered()).use { readEntry(it) }
+            // Hash collisions are possible, in theory.
+            entry.takeIf { storedUrl == url && File(directory, key + BODY_SUFFIX).exists() }?.also {
+                metadataFile.setLastModified(clock())
+            }
+        } catch (e: FileNotFoundException) {
+            null
+        } catch (e: IOException) {
+            removeLocked(key)
+            null
+        } catch (e: IllegalArgumentException) {
+            // An invalid header.
+            removeLocked(key)
+            null
+        }
+    }
+
+    /**
+     * Opens the body of the response stored for [url], or returns null if it has been removed in the meantime.
+     */
+    fun openBody(url: String): InputStream? = synchronized(lock) {
+        try {
+            File(directory, key(url) + BODY_SUFFIX).inputStream()
+        } catch (e: FileNotFoundException) {
+            null
+        }
+    }
+
+    /**
+     * Starts storing a response with the given metadata for [url]. The body is written to the returned [Editor] and
+     * the response is only stored once [Editor.commit] is called.
+     */
+    fun edit(url: String, entry: Entry): Editor = Editor(url, entry)
+
+    /**
+     * Replaces the metadata of the response stored for [url], e.g. after it has been revalidated.
+     */
+    fun update(url: String, entry: Entry) {
+        val key = key(url)
+        val tempFile = tempFile(key)
+        try {
+            writeEntry(tempFile, url, entry)
+            synchronized(lock) {
+                if (File(directory, key + BODY_SUFFIX).exists()) {
+                    moveMetadata(tempFile, key)
+                }
+            }
+        } catch (e: IOException) {
+            // The previous metadata is still used.
+        } finally {
+            tempFile.delete()
+        }
+    }
+
+    /**
+     * Removes the response stored for [url], if there is one.
+     */
+    fun remove(url: String) = synchronized(lock) {
+        removeLocked(key(url))
+    }
+
+    /**
+     * Returns the size of all stored responses in bytes.
+     */
+    fun size(): Long = synchronized(lock) {
+        entryFiles().sumOf { (metadata, body) -> metadata.length() + body.length() }
+    }
+
+    private fun removeLocked(key: String) {
+        File(directory, key + METADATA_SUFFIX).delete()
+        File(directory, key + BODY_SUFFIX).delete()
+    }
+
+    private fun trimToSize() = synchronized(lock) {
+        val entries = entryFiles().sortedBy { (metadata, _) -> metadata.lastModified() }
+        var size = entries.sumOf { (metadata, body) -> metadata.length() + body.length() }
+        for ((metadata, body) in entries) {
+            if (size <= maxSize) {
+                break
+            }
+            size -= metadata.length() + body.length()
+            metadata.delete()
+            body.delete()
+        }
+    }
+
+    private fun moveMetadata(file: File, key: String) {
+        val metadataFile = File(directory, key + METADATA_SUFFIX)
+        file.renameTo(metadataFile)
+        // The last modification time of the metadata is the time the entry was last used.
+        metadataFile.setLastModified(clock())
+    }
+
+    private fun entryFiles(): List<Pair<File, File>> {
+        val metadataFiles = directory.listFiles { file -> file.name.endsWith(METADATA_SUFFIX) } ?: return emptyList()
+        return metadataFiles.map { metadata ->
+            metadata to File(directory, metadata.name.removeSuffix(METADATA_SUFFIX) + BODY_SUFFIX)
+        }
+    }
+
+    private fun tempFile(key: String): File {
+        directory.mkdirs()
+        return File(directory, "$key.${UUID.randomUUID()}$TEMP_SUFFIX")
+    }
+
+    /**
+     * Writes the body of a response to a temporary file, until it is committed to the store or aborted. Writing a body
+     * larger than the store is aborted right away.
+     */
+    inner class Editor(private val url: String, private val entry: Entry) {
+        private val key = key(url)
+        private val bodyFile = tempFile(key)
+        private var output: OutputStream? = try {
+            bodyFile.outputStream().buffered()
+        } catch (e: IOException) {
+            null
+        }
+        private var bytesWritten = 0L
+
+        /**
+         * Appends [length] bytes from [buffer], starting at [offset], to the body.
+         */
+        fun write(buffer: ByteArray, offset: Int, length: Int) {
+            val output = output ?: return
+            if (bytesWritten + length > maxSize) {
+                abort()
+                return
+            }
+
+            try {
+                output.write(buffer, offset, length)
+                bytesWritten += length
+            } catch (e: IOException) {
+                abort()
+            }
+        }
+
+        /**
+         * Stores the response with the complete body.
+         */
+        fun commit() {
+            val output = output ?: return
+            this.output = null
+
+            val metadataFile = tempFile(key)
+            try {
+                output.close()
+                writeEntry(metadataFile, url, entry)
+                synchronized(lock) {
+                    bodyFile.renameTo(File(directory, key + BODY_SUFFIX))
+                    moveMetadata(metadataFile, key)
+                }
+                trimToSize()
+            } catch (e: IOException) {
+                // The response is not stored.
+            } finally {
+                bodyFile.delete()
+                metadataFile.delete()
+            }
+        }
+
+        /**
+         * Discards the response, e.g. if the body has not been read completely.
+         */
+        fun abort() {
+            try {
+                output?.close()
+            } catch (e: IOException) {
+                // Ignore
+            }
+            output = null
+            bodyFile.delete()
+        }
+    }
+
+    private fun writeEntry(file: File, url: String, entry: Entry) {
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+            output.writeInt(FORMAT_VERSION)
+            output.writeUTF(url)
+            output.writeUTF(entry.url)
+            output.writeInt(entry.status)
+            output.writeHeaders(entry.headers.toList())
+            output.writeHeaders(entry.varyHeaders)
+            output.writeLong(entry.requestTime)
+            output.writeLong(entry.responseTime)
+        }
+    }
+
+    /**
+     * Reads the URL the entry is stored for, and the entry.
+     */
+    private fun readEntry(input: DataInputStream): Pair<String, Entry> {
+        if (input.readInt() != FORMAT_VERSION) {
+            throw IOException("Unsupported format version")
+        }
+
+        return input.readUTF() to Entry(
+            url = input.readUTF(),
+            status = input.readInt(),
+            headers = MutableHeaders(input.readHeaders()),
+            varyHeaders = input.readHeaders(),
+            requestTime = input.readLong(),
+            responseTime = input.readLong(),
+        )
+    }
+
+    private fun DataOutputStream.writeHeaders(headers: List<Header>) {
+        writeInt(headers.size)
+        headers.forEach { header ->
+            writeUTF(header.name)
+            writeUTF(header.value)
+        }
+    }
+
+    private fun DataInputStream.readHeaders(): List<Header> {
+        val count = readInt()
+        if (count !in 0..MAX_HEADER_COUNT) {
+            throw IOException("Invalid header count: $count")
+        }
+        return List(count) { Header(readUTF(), readUTF()) }
+    }
+
+    private fun key(url: String): String {
+        return MessageDigest.getInstance("SHA-256")
+            .digest(url.toByteArray())
+            .joinToString("") { "%02x".format(it) }
+    }
+}
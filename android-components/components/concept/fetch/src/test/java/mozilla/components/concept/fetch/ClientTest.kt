@@ -6,9 +6,18 @@ package mozilla.components.concept.fetch
 
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.runCurrent
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
 import org.junit.Test
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class ClientTest {
     @ExperimentalCoroutinesApi
@@ -22,6 +31,101 @@ class ClientTest {
         val body = deferredResponse.await().body.string()
         assertEquals("Hello World", body)
     }
+
+    @Test
+    fun `fetchAsync calls the callback with the response`() {
+        val client = TestClient(responseBody = Response.Body("Hello World".byteInputStream()))
+        val callback = LatchCallback()
+
+        client.fetchAsync(Request("https://www.mozilla.org"), callback)
+
+        assertTrue(callback.latch.await(10, TimeUnit.SECONDS))
+        assertEquals("Hello World", callback.response!!.body.string())
+        assertNull(callback.exception)
+    }
+
+    @Test
+    fun `fetchAsync calls the callback with a failure`() {
+        val client = object : Client() {
+            override fun fetch(request: Request): Response = throw IllegalStateException("Failure")
+        }
+        val callback = LatchCallback()
+
+        client.fetchAsync(Request("https://www.mozilla.org"), callback)
+
+        assertTrue(callback.latch.await(10, TimeUnit.SECONDS))
+        assertNull(callback.response)
+        assertTrue(callback.exception!!.cause is IllegalStateException)
+    }
+
+    @ExperimentalCoroutinesApi
+    @Test
+    fun `suspending fetchAsync returns the response or throws`() = runTest {
+        val client = TestClient(responseBody = Response.Body("Hello World".byteInputStream()))
+        assertEquals("Hello World", client.fetchAsync(Request("https://www.mozilla.org")).body.string())
+
+        val failingClient = object : Client() {
+            override fun fetch(request: Request): Response = throw IOException("Failure")
+        }
+        try {
+            failingClient.fetchAsync(Request("https://www.mozilla.org"))
+            fail("Expected IOException")
+        } catch (e: IOException) {
+            assertEquals("Failure", e.message)
+        }
+    }
+
+    @ExperimentalCoroutinesApi
+    @Test
+    fun `cancelling suspending fetchAsync cancels the call and closes a late response`() = runTest {
+        val client = CallbackClient()
+        val job = launch { client.fetchAsync(Request("https://www.mozilla.org")) }
+        runCurrent()
+
+        job.cancel()
+        runCurrent()
+
+        assertTrue(client.cancelled)
+
+        var closed = false
+        val stream = object : InputStream() {
+            override fun read() = -1
+            override fun close() {
+                closed = true
+            }
+        }
+        client.callback!!.onResponse(Response("https://www.mozilla.org", 200, MutableHeaders(), Response.Body(stream)))
+
+        assertTrue(closed)
+    }
+}
+
+private class LatchCallback : Client.Callback {
+    val latch = CountDownLatch(1)
+    var response: Response? = null
+    var exception: IOException? = null
+
+    override fun onResponse(response: Response) {
+        this.response = response
+        latch.countDown()
+    }
+
+    override fun onFailure(exception: IOException) {
+        this.exception = exception
+        latch.countDown()
+    }
+}
+
+private class CallbackClient : Client() {
+    var callback: Callback? = null
+    var cancelled = false
+
+    override fun fetch(request: Request): Response = throw UnsupportedOperationException()
+
+    override fun fetchAsync(request: Request, callback: Callback): Call {
+        this.callback = callback
+        return Call { cancelled = true }
+    }
 }
 
 private class TestClient(
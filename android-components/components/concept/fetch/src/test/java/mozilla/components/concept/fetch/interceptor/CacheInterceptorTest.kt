@@ -0,0 +1,270 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.concept.fetch.interceptor
+
+import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.MutableHeaders
+import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class CacheInterceptorTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val server = FakeServer()
+    private lateinit var interceptor: CacheInterceptor
+    private lateinit var client: Client
+    private var now = 1_000_000L
+
+    @Before
+    fun setUp() {
+        createClient(maxSize = 1024 * 1024)
+    }
+
+    @Test
+    fun `fresh responses are returned without sending the request`() {
+        server.respond { response("content", "Cache-Control" to "max-age=60") }
+
+        assertEquals("content", fetch())
+        now += 59_000
+        assertEquals("content", fetch())
+
+        assertEquals(1, server.requests.size)
+
+        now += 2_000
+        fetch()
+
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `responses are fresh until they expire`() {
+        server.respond {
+            response(
+                "content",
+                "Date" to "Sun, 06 Nov 1994 08:49:37 GMT",
+                "Expires" to "Sun, 06 Nov 1994 08:50:37 GMT",
+            )
+        }
+
+        fetch()
+        now += 30_000
+        fetch()
+
+        assertEquals(1, server.requests.size)
+
+        now += 31_000
+        fetch()
+
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `responses with only a Last-Modified header are fresh for a tenth of the time since they were modified`() {
+        server.respond {
+            response(
+                "content",
+                "Date" to "Sun, 06 Nov 1994 08:49:37 GMT",
+                "Last-Modified" to "Sun, 06 Nov 1994 08:32:57 GMT",
+            )
+        }
+
+        // Modified 1000 seconds before: fresh for 100 seconds.
+        fetch()
+        now += 99_000
+        fetch()
+
+        assertEquals(1, server.requests.size)
+
+        now += 2_000
+        fetch()
+
+        assertEquals(2, server.requests.size)
+        assertEquals("Sun, 06 Nov 1994 08:32:57 GMT", server.requests.last().headers!!["If-Modified-Since"])
+    }
+
+    @Test
+    fun `stale responses are revalidated`() {
+        server.respond { response("content", "Cache-Control" to "max-age=60", "ETag" to "\"v1\"", "X-Version" to "1") }
+        fetch()
+        now += 120_000
+
+        server.respond { request ->
+            assertEquals("\"v1\"", request.headers!!["If-None-Match"])
+            response("", "Cache-Control" to "max-age=60", "X-Version" to "2", status = 304)
+        }
+        val response = client.fetch(Request(URL))
+
+        assertEquals(200, response.status)
+        assertEquals("2", response.headers["X-Version"])
+        assertEquals("\"v1\"", response.headers["ETag"])
+        assertEquals("content", response.body.string())
+        assertEquals(2, server.requests.size)
+
+        // The revalidated response is fresh again.
+        now += 30_000
+        assertEquals("content", fetch())
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `responses are replaced if they changed`() {
+        server.respond { response("old", "ETag" to "\"v1\"") }
+        fetch()
+
+        server.respond { response("new", "ETag" to "\"v2\"") }
+        assertEquals("new", fetch())
+
+        server.respond { request ->
+            assertEquals("\"v2\"", request.headers!!["If-None-Match"])
+            response("", status = 304)
+        }
+        assertEquals("new", fetch())
+    }
+
+    @Test
+    fun `no-cache responses are always revalidated`() {
+        server.respond { response("content", "Cache-Control" to "no-cache, max-age=60", "ETag" to "\"v1\"") }
+        fetch()
+
+        server.respond { response("", status = 304) }
+        assertEquals("content", fetch())
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `no-store responses are not stored`() {
+        server.respond { response("content", "Cache-Control" to "no-store, max-age=60") }
+
+        fetch()
+        fetch()
+
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `responses are not stored if the body is not read completely`() {
+        server.respond { response("content", "Cache-Control" to "max-age=60") }
+
+        client.fetch(Request(URL)).use { response ->
+            response.body.useStream { it.read() }
+        }
+        fetch()
+
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `requests bypassing the cache`() {
+        server.respond { response("content", "Cache-Control" to "max-age=60") }
+        fetch()
+
+        client.fetch(Request(URL, useCaches = false)).close()
+        client.fetch(Request(URL, private = true)).close()
+        client.fetch(Request(URL, headers = MutableHeaders("Range" to "bytes=0-1"))).close()
+        client.fetch(Request(URL, headers = MutableHeaders("Cache-Control" to "no-cache"))).close()
+
+        assertEquals(5, server.requests.size)
+    }
+
+    @Test
+    fun `responses are only returned for requests with the same headers the response varies on`() {
+        server.respond { request ->
+            response(
+                request.headers!!["Accept-Language"]!!,
+                "Cache-Control" to "max-age=60",
+                "Vary" to "Accept-Language",
+            )
+        }
+
+        assertEquals("en", fetch(Request(URL, headers = MutableHeaders("Accept-Language" to "en"))))
+        assertEquals("de", fetch(Request(URL, headers = MutableHeaders("Accept-Language" to "de"))))
+        assertEquals("de", fetch(Request(URL, headers = MutableHeaders("Accept-Language" to "de"))))
+
+        assertEquals(2, server.requests.size)
+    }
+
+    @Test
+    fun `successful requests with other methods remove stored responses`() {
+        server.respond { response("content", "Cache-Control" to "max-age=60") }
+        fetch()
+
+        client.fetch(Request(URL, method = Request.Method.POST, body = Request.Body.fromString("data"))).close()
+        fetch()
+
+        assertEquals(3, server.requests.size)
+    }
+
+    @Test
+    fun `least recently used responses are removed once the cache is too large`() {
+        createClient(maxSize = 3000)
+        server.respond { response("x".repeat(1000), "Cache-Control" to "max-age=3600") }
+
+        fetch(Request("$URL/a"))
+        now += 1_000
+        fetch(Request("$URL/b"))
+        now += 1_000
+        fetch(Request("$URL/a"))
+        now += 1_000
+        fetch(Request("$URL/c"))
+
+        // "b" was used least recently.
+        assertEquals(3, server.requests.size)
+        fetch(Request("$URL/a"))
+        fetch(Request("$URL/c"))
+        assertEquals(3, server.requests.size)
+        fetch(Request("$URL/b"))
+        assertEquals(4, server.requests.size)
+    }
+
+    @Test
+    fun `headers from the client decoding the body are not stored`() {
+        server.respond {
+            response("content", "Cache-Control" to "max-age=60", "Content-Encoding" to "gzip", "Content-Length" to "5")
+        }
+        fetch()
+
+        val response = client.fetch(Request(URL))
+
+        assertEquals(1, server.requests.size)
+        assertNull(response.headers["Content-Encoding"])
+        assertNull(response.headers["Content-Length"])
+        assertEquals("content", response.body.string())
+    }
+
+    private fun createClient(maxSize: Long) {
+        interceptor = CacheInterceptor(folder.newFolder(), maxSize).apply { clock = { now } }
+        client = server.withInterceptors(interceptor)
+    }
+
+    private fun fetch(request: Request = Request(URL)): String = client.fetch(request).use { it.body.string() }
+
+    private fun response(body: String, vararg headers: Pair<String, String>, status: Int = 200) =
+        Response(URL, status, MutableHeaders(*headers), Response.Body(body.byteInputStream()))
+
+    private class FakeServer : Client() {
+        val requests = mutableListOf<Request>()
+        private var handler: (Request) -> Response = { throw AssertionError("Unexpected request") }
+
+        fun respond(handler: (Request) -> Response) {
+            this.handler = handler
+        }
+
+        override fun fetch(request: Request): Response {
+            requests.add(request)
+            return handler(request)
+        }
+    }
+
+    private companion object {
+        const val URL = "https://example.org/data.json"
+    }
+}
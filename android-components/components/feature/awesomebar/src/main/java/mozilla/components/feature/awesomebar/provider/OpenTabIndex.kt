@@ -0,0 +1,106 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.feature.awesomebar.provider
+
+import mozilla.components.browser.state.state.TabSessionState
+
+private const val GRAM_LENGTH = 3
+private const val CHAR_BITS = 16
+
+/**
+ * An index of the URLs and titles of open tabs, for finding the tabs whose URL or title contains
+ * a query (ignoring case).
+ *
+ * Every URL and title is split into its trigrams (all substrings of three characters). A query
+ * only needs to be compared with the tabs that contain all trigrams of the query, instead of with
+ * all tabs. The index is updated incrementally with [update]: only tabs whose URL or title changed
+ * are indexed again. Private tabs are not indexed.
+ */
+internal class OpenTabIndex {
+    private class Entry(var tab: TabSessionState, val grams: Set<Long>)
+
+    private val entries = LinkedHashMap<String, Entry>()
+    private val postings = HashMap<Long, MutableSet<String>>()
+
+    /**
+     * Updates the index to contain exactly the given [tabs].
+     */
+    fun update(tabs: List<TabSessionState>) {
+        val ids = HashSet<String>(tabs.size)
+        tabs.forEach { tab ->
+            if (tab.content.private) {
+                return@forEach
+            }
+            ids.add(tab.id)
+
+            val entry = entries[tab.id]
+            when {
+                entry == null -> add(tab)
+                entry.tab === tab -> Unit
+                entry.tab.content.url == tab.content.url && entry.tab.content.title == tab.content.title ->
+                    entry.tab = tab
+                else -> {
+                    remove(tab.id)
+                    add(tab)
+                }
+            }
+        }
+
+        entries.keys.filterNot { it in ids }.forEach { remove(it) }
+    }
+
+    /**
+     * Returns the IDs of the indexed tabs whose URL or title contains [text], ignoring case.
+     */
+    fun find(text: String): Set<String> {
+        val candidates = if (text.length < GRAM_LENGTH) {
+            entries.keys
+        } else {
+            val postingsOfQuery = grams(text).map { postings[it] ?: return emptySet() }
+            postingsOfQuery.minByOrNull { it.size }.orEmpty().filter { id ->
+                postingsOfQuery.all { id in it }
+            }
+        }
+
+        // Trigrams don't retain their order, so the candidates still need to be verified.
+        return candidates.filterTo(HashSet()) { id -> entries.getValue(id).tab.contains(text) }
+    }
+
+    private fun add(tab: TabSessionState) {
+        val grams = grams(tab.content.url) + grams(tab.content.title)
+        entries[tab.id] = Entry(tab, grams)
+        grams.forEach { postings.getOrPut(it) { HashSet() }.add(tab.id) }
+    }
+
+    private fun remove(id: String) {
+        val entry = entries.remove(id) ?: return
+        entry.grams.forEach { gram ->
+            val ids = postings.getValue(gram)
+            ids.remove(id)
+            if (ids.isEmpty()) {
+                postings.remove(gram)
+            }
+        }
+    }
+
+    private fun grams(text: String): Set<Long> {
+        val grams = HashSet<Long>()
+        for (i in 0..text.length - GRAM_LENGTH) {
+            var gram = 0L
+            for (j in i until i + GRAM_LENGTH) {
+                gram = (gram shl CHAR_BITS) or normalize(text[j]).code.toLong()
+            }
+            grams.add(gram)
+        }
+        return grams
+    }
+
+    // Maps all characters that are equal when ignoring case, as in String.contains(ignoreCase = true),
+    // to the same character.
+    private fun normalize(char: Char) = Character.toLowerCase(Character.toUpperCase(char))
+}
+
+private fun TabSessionState.contains(text: String) =
+    (content.url.contains(text, ignoreCase = true) || content.title.contains(text, ignoreCase = true))
@@ -7,9 +7,7 @@ package mozilla.components.feature.awesomebar.provider
 import android.content.res.Resources
 import android.graphics.drawable.Drawable
 import androidx.annotation.VisibleForTesting
-import kotlinx.coroutines.Deferred
 import mozilla.components.browser.icons.BrowserIcons
-import mozilla.components.browser.icons.Icon
 import mozilla.components.browser.icons.IconRequest
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.TabSessionState
@@ -24,6 +22,12 @@ import java.util.UUID
 /**
  * A [AwesomeBar.SuggestionProvider] implementation that provides suggestions based on the sessions in the
  * [SessionManager] (Open tabs).
+ *
+ * The URLs and titles of the open tabs are kept in an index that is updated incrementally as tabs change, so
+ * that a query doesn't need to search all tabs. Icons are only loaded for the returned suggestions.
+ *
+ * @param maxNumberOfSuggestions The maximum number of suggestions returned for a query, or null to return
+ * all matching tabs.
  */
 @Suppress("LongParameterList")
 class SessionSuggestionProvider(
@@ -35,56 +39,65 @@ class SessionSuggestionProvider(
     private val excludeSelectedSession: Boolean = false,
     private val suggestionsHeader: String? = null,
     @get:VisibleForTesting val resultsHostFilter: String? = null,
+    private val maxNumberOfSuggestions: Int? = null,
 ) : AwesomeBar.SuggestionProvider {
     override val id: String = UUID.randomUUID().toString()
 
+    private val index = OpenTabIndex()
+
     override fun groupTitle(): String? {
         return suggestionsHeader
     }
 
-    @Suppress("ComplexCondition")
     override suspend fun onInputChanged(text: String): List<AwesomeBar.Suggestion> {
         if (text.isEmpty()) {
             return emptyList()
         }
 
         val state = store.state
-        val tabs = state.tabs
+        val matchingIds = synchronized(index) {
+            index.update(state.tabs)
+            index.find(text)
+        }
+
+        // Filter first, so that icons are only loaded for the tabs that are suggested.
+        val results = state.tabs.asSequence()
+            .filter { it.id in matchingIds }
+            .filter { resultsHostFilter?.equals(it.content.url.tryGetHostFromUrl()) != false }
+            .filter { shouldIncludeSelectedTab(state, it) }
+            .let { tabs -> maxNumberOfSuggestions?.let { tabs.take(it) } ?: tabs }
+            .toList()
 
-        val suggestions = mutableListOf<AwesomeBar.Suggestion>()
-        val iconRequests: List<Deferred<Icon>?> = tabs.map {
+        val iconRequests = results.map {
             icons?.loadIcon(IconRequest(url = it.content.url, waitOnNetworkLoad = false))
         }
 
-        tabs.zip(iconRequests) { result, icon ->
-            if (
-                resultsHostFilter?.equals(result.content.url.tryGetHostFromUrl()) != false &&
-                result.contains(text) &&
-                !result.content.private &&
-                shouldIncludeSelectedTab(state, result)
-            ) {
-                suggestions.add(
-                    AwesomeBar.Suggestion(
-                        provider = this,
-                        id = result.id,
-                        title = if (result.content.title.isNotBlank()) result.content.title else result.content.url,
-                        description = resources.getString(R.string.switch_to_tab_description),
-                        flags = setOf(AwesomeBar.Suggestion.Flag.OPEN_TAB),
-                        icon = icon?.await()?.bitmap,
-                        indicatorIcon = indicatorIcon,
-                        onSuggestionClicked = {
-                            selectTabUseCase(result.id)
-                            emitOpenTabSuggestionClickedFact()
-                        },
-                    ),
-                )
-            }
+        return results.zip(iconRequests) { result, icon ->
+            AwesomeBar.Suggestion(
+                provider = this,
+                id = result.id,
+                title = if (result.content.title.isNotBlank()) result.content.title else result.content.url,
+                description = resources.getString(R.string.switch_to_tab_description),
+                flags = setOf(AwesomeBar.Suggestion.Flag.OPEN_TAB),
+                icon = icon?.await()?.bitmap,
+                indicatorIcon = indicatorIcon,
+                onSuggestionClicked = {
+                    selectTabUseCase(result.id)
+                    emitOpenTabSuggestionClickedFact()
+                },
+            )
         }
-        return suggestions
     }
 
-    private fun TabSessionState.contains(text: String) =
-        (content.url.contains(text, ignoreCase = true) || content.title.contains(text, ignoreCase = true))
+    override fun filterPreviousSuggestions(
+        text: String,
+        previousSuggestions: List<AwesomeBar.Suggestion>,
+    ): List<AwesomeBar.Suggestion> {
+        val matchingIds = synchronized(index) {
+            index.find(text)
+        }
+        return previousSuggestions.filter { it.id in matchingIds }
+    }
 
     private fun shouldIncludeSelectedTab(state: BrowserState, tab: TabSessionState): Boolean {
         return if (excludeSelectedSession) {
@@ -0,0 +1,80 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.feature.awesomebar.provider
+
+import mozilla.components.browser.state.state.createTab
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class OpenTabIndexTest {
+    private val index = OpenTabIndex()
+
+    @Test
+    fun `finds tabs whose URL or title contains the text, ignoring case`() {
+        index.update(
+            listOf(
+                createTab(id = "a", url = "https://www.mozilla.org", title = "Internet for people"),
+                createTab(id = "b", url = "https://example.com", title = "Example Domain"),
+                createTab(id = "c", url = "https://wikipedia.org", title = "Wikipedia"),
+            ),
+        )
+
+        assertEquals(setOf("a"), index.find("MOZILLA"))
+        assertEquals(setOf("b"), index.find("domain"))
+        assertEquals(setOf("a", "b", "c"), index.find("https://"))
+        assertEquals(setOf("b"), index.find("x"))
+        assertEquals(setOf("a", "c"), index.find("pe"))
+        assertTrue(index.find("firefox").isEmpty())
+    }
+
+    @Test
+    fun `verifies that the trigrams of the text appear in order`() {
+        index.update(listOf(createTab(id = "a", url = "https://abcd.org/bcde")))
+
+        // All trigrams of the text are part of the URL, but the text is not.
+        assertTrue(index.find("abcde").isEmpty())
+        assertEquals(setOf("a"), index.find("bcde"))
+    }
+
+    @Test
+    fun `does not index private tabs`() {
+        index.update(
+            listOf(
+                createTab(id = "a", url = "https://www.mozilla.org"),
+                createTab(id = "b", url = "https://www.mozilla.org", private = true),
+            ),
+        )
+
+        assertEquals(setOf("a"), index.find("mozilla"))
+        assertEquals(setOf("a"), index.find("m"))
+    }
+
+    @Test
+    fun `updates tabs whose URL or title changed and removes closed tabs`() {
+        index.update(
+            listOf(
+                createTab(id = "a", url = "https://www.mozilla.org", title = "Mozilla"),
+                createTab(id = "b", url = "https://example.com", title = "Example"),
+            ),
+        )
+
+        index.update(
+            listOf(
+                createTab(id = "a", url = "https://www.mozilla.org", title = "Firefox"),
+                createTab(id = "b", url = "https://developer.mozilla.org", title = "Example"),
+            ),
+        )
+
+        assertEquals(setOf("a"), index.find("firefox"))
+        assertEquals(setOf("a", "b"), index.find("mozilla"))
+        assertTrue(index.find("example.com").isEmpty())
+
+        index.update(listOf(createTab(id = "b", url = "https://developer.mozilla.org", title = "Example")))
+
+        assertEquals(setOf("b"), index.find("mozilla"))
+        assertEquals(setOf("b"), index.find("o"))
+    }
+}
@@ -5,20 +5,28 @@
 package mozilla.components.feature.awesomebar.provider
 
 import android.content.res.Resources
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.test.runTest
+import mozilla.components.browser.icons.BrowserIcons
+import mozilla.components.browser.icons.Icon
+import mozilla.components.browser.icons.IconRequest
+import mozilla.components.browser.state.action.ContentAction
 import mozilla.components.browser.state.action.TabListAction
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.createTab
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.feature.tabs.TabsUseCases
 import mozilla.components.support.ktx.kotlin.tryGetHostFromUrl
+import mozilla.components.support.test.any
+import mozilla.components.support.test.argumentCaptor
 import mozilla.components.support.test.mock
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.mockito.ArgumentMatchers.anyInt
 import org.mockito.Mockito.never
+import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
 
@@ -276,4 +284,97 @@ class SessionSuggestionProviderTest {
         assertTrue(suggestions.map { it.title }.contains("https://mozilla.org/firefox"))
         assertTrue(suggestions.map { it.title }.contains("https://mozilla.org/focus"))
     }
+
+    @Test
+    fun `Provider returns Sessions matching after their URL or title changed`() = runTest {
+        val store = BrowserStore(
+            BrowserState(
+                tabs = listOf(
+                    createTab(id = "a", url = "https://www.mozilla.org", title = "Mozilla"),
+                    createTab(id = "b", url = "https://example.com", title = "Example"),
+                ),
+            ),
+        )
+        val resources: Resources = mock()
+        `when`(resources.getString(anyInt())).thenReturn("Switch to tab")
+        val provider = SessionSuggestionProvider(resources, store, mock())
+
+        assertEquals(listOf("a"), provider.onInputChanged("mozilla").map { it.id })
+
+        store.dispatch(ContentAction.UpdateUrlAction("b", "https://developer.mozilla.org")).join()
+        assertEquals(listOf("a", "b"), provider.onInputChanged("mozilla").map { it.id })
+
+        store.dispatch(ContentAction.UpdateTitleAction("b", "Firefox Developer Docs")).join()
+        assertEquals(listOf("b"), provider.onInputChanged("firefox").map { it.id })
+
+        store.dispatch(TabListAction.RemoveTabAction("a")).join()
+        assertEquals(listOf("b"), provider.onInputChanged("mozilla").map { it.id })
+    }
+
+    @Test
+    fun `Provider returns at most maxNumberOfSuggestions and only loads icons for them`() = runTest {
+        val store = BrowserStore(
+            BrowserState(
+                tabs = (0 until 10).map { createTab(id = "$it", url = "https://example.com/$it") } +
+                    createTab(id = "other", url = "https://www.mozilla.org"),
+            ),
+        )
+        val resources: Resources = mock()
+        `when`(resources.getString(anyInt())).thenReturn("Switch to tab")
+        val icons: BrowserIcons = mock()
+        `when`(icons.loadIcon(any())).thenReturn(CompletableDeferred(Icon(mock(), source = Icon.Source.DISK)))
+        val provider = SessionSuggestionProvider(
+            resources = resources,
+            store = store,
+            selectTabUseCase = mock(),
+            icons = icons,
+            maxNumberOfSuggestions = 3,
+        )
+
+        val suggestions = provider.onInputChanged("example")
+
+        assertEquals(listOf("0", "1", "2"), suggestions.map { it.id })
+        val requests = argumentCaptor<IconRequest>()
+        verify(icons, times(3)).loadIcon(requests.capture())
+        assertEquals(
+            listOf("https://example.com/0", "https://example.com/1", "https://example.com/2"),
+            requests.allValues.map { it.url },
+        )
+    }
+
+    @Test
+    fun `Provider filters its previous suggestions by the extended text`() = runTest {
+        val store = BrowserStore(
+            BrowserState(
+                tabs = listOf(
+                    createTab(id = "a", url = "https://www.mozilla.org"),
+                    createTab(id = "b", url = "https://www.mozaic.org"),
+                ),
+            ),
+        )
+        val resources: Resources = mock()
+        `when`(resources.getString(anyInt())).thenReturn("Switch to tab")
+        val provider = SessionSuggestionProvider(resources, store, mock())
+
+        val suggestions = provider.onInputChanged("moz")
+        assertEquals(listOf("a", "b"), suggestions.map { it.id })
+
+        assertEquals(listOf("a"), provider.filterPreviousSuggestions("mozi", suggestions).map { it.id })
+    }
+
+    @Test
+    fun `Provider returns all matching tabs by default`() = runTest {
+        val store = BrowserStore(
+            BrowserState(
+                tabs = (0 until 30).map { createTab(id = "$it", url = "https://example.com/$it") },
+            ),
+        )
+        val resources: Resources = mock()
+        `when`(resources.getString(anyInt())).thenReturn("Switch to tab")
+        val provider = SessionSuggestionProvider(resources, store, mock())
+
+        val suggestions = provider.onInputChanged("example")
+
+        assertEquals((0 until 30).map { "$it" }, suggestions.map { it.id })
+    }
 }
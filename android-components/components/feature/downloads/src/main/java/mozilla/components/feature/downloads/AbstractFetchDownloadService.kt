@@ -37,14 +37,19 @@ import androidx.core.app.NotificationManagerCompat
 import androidx.core.content.FileProvider
 import androidx.core.net.toUri
 import androidx.localbroadcastmanager.content.LocalBroadcastManager
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
 import kotlinx.coroutines.Dispatchers.IO
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.MainScope
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
 import mozilla.components.browser.state.action.DownloadAction
 import mozilla.components.browser.state.state.content.DownloadState
 import mozilla.components.browser.state.state.content.DownloadState.Status
@@ -56,10 +61,16 @@ import mozilla.components.browser.state.state.content.DownloadState.Status.INITI
 import mozilla.components.browser.state.state.content.DownloadState.Status.PAUSED
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.Headers.Names.ACCEPT_RANGES
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_ENCODING
 import mozilla.components.concept.fetch.Headers.Names.CONTENT_RANGE
+import mozilla.components.concept.fetch.Headers.Names.ETAG
+import mozilla.components.concept.fetch.Headers.Names.IF_RANGE
+import mozilla.components.concept.fetch.Headers.Names.LAST_MODIFIED
 import mozilla.components.concept.fetch.Headers.Names.RANGE
 import mozilla.components.concept.fetch.MutableHeaders
 import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
 import mozilla.components.feature.downloads.DownloadNotification.NOTIFICATION_DOWNLOAD_GROUP_ID
 import mozilla.components.feature.downloads.ext.addCompletedDownload
 import mozilla.components.feature.downloads.ext.isScheme
@@ -69,11 +80,11 @@ import mozilla.components.feature.downloads.facts.emitNotificationOpenFact
 import mozilla.components.feature.downloads.facts.emitNotificationPauseFact
 import mozilla.components.feature.downloads.facts.emitNotificationResumeFact
 import mozilla.components.feature.downloads.facts.emitNotificationTryAgainFact
+import mozilla.components.support.base.android.Clock
 import mozilla.components.support.base.android.NotificationsDelegate
 import mozilla.components.support.base.log.logger.Logger
 import mozilla.components.support.ktx.kotlin.ifNullOrEmpty
 import mozilla.components.support.ktx.kotlin.sanitizeURL
-import mozilla.components.support.ktx.kotlinx.coroutines.throttleLatest
 import mozilla.components.support.utils.DownloadUtils
 import mozilla.components.support.utils.ext.stopForegroundCompat
 import java.io.File
@@ -81,6 +92,12 @@ import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
 import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
+import kotlin.coroutines.coroutineContext
 import kotlin.random.Random
 
 /**
@@ -100,6 +117,14 @@ abstract class AbstractFetchDownloadService : Service() {
 
     protected open val style: Style = Style()
 
+    /**
+     * The maximum number of connections a single download may use. If the server supports range
+     * requests, a large file is split into up to this many segments that are downloaded
+     * concurrently and written at their offsets into the file. The default of 1 always downloads a
+     * file over a single connection.
+     */
+    protected open val maxDownloadSegments: Int = 1
+
     @VisibleForTesting
     internal val broadcastManager by lazy { LocalBroadcastManager.getInstance(this) }
 
@@ -117,13 +142,16 @@ abstract class AbstractFetchDownloadService : Service() {
     internal data class DownloadJobState(
         var job: Job? = null,
         @Volatile var state: DownloadState,
-        var currentBytesCopied: Long = 0,
+        @Volatile var currentBytesCopied: Long = 0,
         @GuardedBy("context") var status: Status,
         var foregroundServiceId: Int = 0,
         var downloadDeleted: Boolean = false,
         var notifiedStopped: Boolean = false,
         var lastNotificationUpdate: Long = 0L,
         var createdTime: Long = System.currentTimeMillis(),
+        var segments: List<DownloadSegment>? = null,
+        var rangeValidator: String? = null,
+        @Volatile var requestStartedAt: Long? = null,
     ) {
         internal fun canUpdateNotification(): Boolean {
             return isUnderNotificationUpdateLimit() && !notifiedStopped
@@ -145,10 +173,26 @@ abstract class AbstractFetchDownloadService : Service() {
         }
     }
 
+    /**
+     * A range of a download, from [start] (inclusive) to [end] (exclusive), that is downloaded over
+     * its own connection.
+     */
+    internal class DownloadSegment(val start: Long, val end: Long) {
+        @Volatile var bytesCopied: Long = 0
+
+        val position: Long
+            get() = start + bytesCopied
+
+        val isCompleted: Boolean
+            get() = position >= end
+    }
+
     internal fun setDownloadJobStatus(downloadJobState: DownloadJobState, status: Status) {
         synchronized(context) {
             if (status == DOWNLOADING) {
                 downloadJobState.notifiedStopped = false
+                // Every attempt reports its own time to first byte.
+                downloadJobState.state = downloadJobState.state.copy(timeToFirstByteMs = null)
             }
             downloadJobState.status = status
             updateDownloadState(downloadJobState.state.copy(status = status))
@@ -180,9 +224,7 @@ abstract class AbstractFetchDownloadService : Service() {
                     ACTION_RESUME -> {
                         setDownloadJobStatus(currentDownloadJobState, DOWNLOADING)
 
-                        currentDownloadJobState.job = CoroutineScope(IO).launch {
-                            startDownloadJob(currentDownloadJobState)
-                        }
+                        launchDownloadJob(currentDownloadJobState)
 
                         emitNotificationResumeFact()
                         logger.debug("ACTION_RESUME for ${currentDownloadJobState.state.id}")
@@ -209,9 +251,7 @@ abstract class AbstractFetchDownloadService : Service() {
                         currentDownloadJobState.lastNotificationUpdate = System.currentTimeMillis()
                         setDownloadJobStatus(currentDownloadJobState, DOWNLOADING)
 
-                        currentDownloadJobState.job = CoroutineScope(IO).launch {
-                            startDownloadJob(currentDownloadJobState)
-                        }
+                        launchDownloadJob(currentDownloadJobState)
 
                         emitNotificationTryAgainFact()
                         logger.debug("ACTION_TRY_AGAIN for ${currentDownloadJobState.state.id}")
@@ -292,9 +332,7 @@ abstract class AbstractFetchDownloadService : Service() {
         store.dispatch(DownloadAction.UpdateDownloadAction(downloadJobState.state))
 
         if (actualStatus == DOWNLOADING) {
-            downloadJobState.job = CoroutineScope(IO).launch {
-                startDownloadJob(downloadJobState)
-            }
+            launchDownloadJob(downloadJobState)
         }
 
         downloadJobs[download.id] = downloadJobState
@@ -428,6 +466,18 @@ abstract class AbstractFetchDownloadService : Service() {
     }
 
     @Suppress("TooGenericExceptionCaught")
+    /**
+     * Runs [startDownloadJob] in a new coroutine, which is set as the job of [downloadJobState]
+     * before it starts, so that the download can launch coroutines that are cancelled along with it.
+     */
+    private fun launchDownloadJob(downloadJobState: DownloadJobState) {
+        val job = CoroutineScope(IO).launch(start = CoroutineStart.LAZY) {
+            startDownloadJob(downloadJobState)
+        }
+        downloadJobState.job = job
+        job.start()
+    }
+
     internal fun startDownloadJob(currentDownloadJobState: DownloadJobState) {
         logger.debug("Starting download for ${currentDownloadJobState.state.id} ")
         try {
@@ -674,8 +724,20 @@ abstract class AbstractFetchDownloadService : Service() {
         }
     }
 
-    @Suppress("ComplexCondition", "ComplexMethod")
-    internal fun performDownload(currentDownloadJobState: DownloadJobState, useHttpClient: Boolean = false) {
+    @Suppress("ComplexCondition", "ComplexMethod", "LongMethod")
+    internal fun performDownload(
+        currentDownloadJobState: DownloadJobState,
+        useHttpClient: Boolean = false,
+        useSegments: Boolean = true,
+    ) {
+        if (currentDownloadJobState.segments != null) {
+            // Resuming a segmented download: each remaining segment is fetched with its own range request.
+            if (!performSegmentedDownload(currentDownloadJobState, firstSegmentStream = null)) {
+                performDownload(currentDownloadJobState, useHttpClient = true, useSegments = false)
+            }
+            return
+        }
+
         val download = currentDownloadJobState.state
         val isResumingDownload = currentDownloadJobState.currentBytesCopied > 0L
         val headers = MutableHeaders()
@@ -694,6 +756,7 @@ abstract class AbstractFetchDownloadService : Service() {
         // download.response doesn't support adding headers.
         val response = if (isResumingDownload || useHttpClient || download.response == null) {
             isUsingHttpClient = true
+            currentDownloadJobState.requestStartedAt = Clock.elapsedRealtime()
             httpClient.fetch(request)
         } else {
             requireNotNull(download.response)
@@ -713,11 +776,22 @@ abstract class AbstractFetchDownloadService : Service() {
             return
         }
 
+        var isRestartNeeded = false
         response.body.useStream { inStream ->
             var copyInChuckStatus: CopyInChuckStatus? = null
             val newDownloadState = download.withResponse(response.headers, inStream)
             currentDownloadJobState.state = newDownloadState
 
+            if (!isResumingDownload && useSegments) {
+                val segments = createSegments(response, newDownloadState.contentLength)
+                if (segments != null) {
+                    currentDownloadJobState.segments = segments
+                    currentDownloadJobState.rangeValidator = getRangeValidator(response)
+                    isRestartNeeded = !performSegmentedDownload(currentDownloadJobState, firstSegmentStream = inStream)
+                    return@useStream
+                }
+            }
+
             useFileStream(newDownloadState, isResumingDownload) { outStream ->
                 copyInChuckStatus = copyInChunks(currentDownloadJobState, inStream, outStream, isUsingHttpClient)
             }
@@ -726,6 +800,11 @@ abstract class AbstractFetchDownloadService : Service() {
                 verifyDownload(currentDownloadJobState)
             }
         }
+
+        if (isRestartNeeded) {
+            // The file changed while downloading its segments: download it again over a single connection.
+            performDownload(currentDownloadJobState, useHttpClient = true, useSegments = false)
+        }
     }
 
     /**
@@ -757,6 +836,13 @@ abstract class AbstractFetchDownloadService : Service() {
         COMPLETED, ERROR_IN_STREAM_CLOSED
     }
 
+    /**
+     * Copies [inStream] to [outStream] until the stream ends or the download is no longer running.
+     *
+     * If [outStream] writes to a file, the data is copied through a direct [ByteBuffer] into the
+     * file's [FileChannel], growing the buffer while the stream keeps filling it. The progress is
+     * published to the store periodically, independently of the copy loop.
+     */
     @VisibleForTesting
     @Suppress("MaxLineLength")
     internal fun copyInChunks(
@@ -765,57 +851,359 @@ abstract class AbstractFetchDownloadService : Service() {
         outStream: OutputStream,
         downloadWithHttpClient: Boolean = false,
     ): CopyInChuckStatus {
-        val data = ByteArray(CHUNK_SIZE)
         logger.debug(
             "starting copyInChunks ${downloadJobState.state.id}" +
                 " currentBytesCopied ${downloadJobState.state.currentBytesCopied}",
         )
 
-        val throttleUpdateDownload = throttleLatest<Long>(
-            PROGRESS_UPDATE_INTERVAL,
-            coroutineScope = CoroutineScope(IO),
-        ) { copiedBytes ->
-            val newState = downloadJobState.state.copy(currentBytesCopied = copiedBytes)
-            updateDownloadState(newState)
+        val progressUpdates = launchProgressUpdates(downloadJobState)
+        val isInStreamClosed = try {
+            if (outStream is FileOutputStream) {
+                val source = Channels.newChannel(inStream)
+                copyToChannel(downloadJobState, source, outStream.channel, downloadWithHttpClient)
+            } else {
+                copyToStream(downloadJobState, inStream, outStream, downloadWithHttpClient)
+            }
+        } finally {
+            progressUpdates.cancel()
+            updateProgress(downloadJobState)
+        }
+
+        if (isInStreamClosed) {
+            // In cases where [download.response] is available and users with slow
+            // networks start a download but quickly press pause and then resume
+            // [isResumingDownload] will be false as there will be not enough time
+            // for bytes to be copied, but the stream in [download.response] will be closed,
+            // we have to fallback to [httpClient]
+            performDownload(downloadJobState, useHttpClient = true)
+            return CopyInChuckStatus.ERROR_IN_STREAM_CLOSED
         }
+        logger.debug(
+            "Finishing copyInChunks ${downloadJobState.state.id} " +
+                "currentBytesCopied ${downloadJobState.currentBytesCopied}",
+        )
+        return CopyInChuckStatus.COMPLETED
+    }
 
-        var isInStreamClosed = false
+    /**
+     * Copies [source] into [destination] through a reused direct buffer, which spares copying
+     * every chunk into a temporary direct buffer when writing it. The buffer starts at [CHUNK_SIZE]
+     * and doubles, up to [MAX_CHUNK_SIZE], whenever a single read fills it, so that fast downloads
+     * need fewer reads and writes while slow ones don't hold on to large buffers.
+     *
+     * @return true if reading [source] failed and the download should be retried.
+     */
+    private fun copyToChannel(
+        downloadJobState: DownloadJobState,
+        source: ReadableByteChannel,
+        destination: FileChannel,
+        downloadWithHttpClient: Boolean,
+    ): Boolean {
+        var buffer = ByteBuffer.allocateDirect(CHUNK_SIZE)
         // To ensure that we copy all files (even ones that don't have fileSize, we must NOT check < fileSize
         while (getDownloadJobStatus(downloadJobState) == DOWNLOADING) {
-            var bytesRead: Int
-            try {
-                bytesRead = inStream.read(data)
+            val bytesRead = try {
+                source.read(buffer)
             } catch (e: IOException) {
                 if (downloadWithHttpClient) {
                     throw e
                 }
-                isInStreamClosed = true
-                break
+                return true
             }
             // If bytesRead is -1, there's no data left to read from the stream
             if (bytesRead == -1) { break }
+            reportTimeToFirstByte(downloadJobState)
+
+            val isBufferFilled = !buffer.hasRemaining()
+            buffer.flip()
+            while (buffer.hasRemaining()) {
+                destination.write(buffer)
+            }
             downloadJobState.currentBytesCopied += bytesRead
 
-            throttleUpdateDownload(downloadJobState.currentBytesCopied)
+            buffer = if (isBufferFilled && buffer.capacity() < MAX_CHUNK_SIZE) {
+                ByteBuffer.allocateDirect(buffer.capacity() * 2)
+            } else {
+                buffer.clear()
+            }
+        }
+        return false
+    }
+
+    /**
+     * Copies [inStream] to [outStream] through a heap buffer of [CHUNK_SIZE].
+     *
+     * @return true if reading [inStream] failed and the download should be retried.
+     */
+    private fun copyToStream(
+        downloadJobState: DownloadJobState,
+        inStream: InputStream,
+        outStream: OutputStream,
+        downloadWithHttpClient: Boolean,
+    ): Boolean {
+        val data = ByteArray(CHUNK_SIZE)
+        // To ensure that we copy all files (even ones that don't have fileSize, we must NOT check < fileSize
+        while (getDownloadJobStatus(downloadJobState) == DOWNLOADING) {
+            val bytesRead = try {
+                inStream.read(data)
+            } catch (e: IOException) {
+                if (downloadWithHttpClient) {
+                    throw e
+                }
+                return true
+            }
+            // If bytesRead is -1, there's no data left to read from the stream
+            if (bytesRead == -1) { break }
+            reportTimeToFirstByte(downloadJobState)
+            downloadJobState.currentBytesCopied += bytesRead
 
             outStream.write(data, 0, bytesRead)
         }
-        if (isInStreamClosed) {
-            // In cases where [download.response] is available and users with slow
-            // networks start a download but quickly press pause and then resume
-            // [isResumingDownload] will be false as there will be not enough time
-            // for bytes to be copied, but the stream in [download.response] will be closed,
-            // we have to fallback to [httpClient]
-            performDownload(downloadJobState, useHttpClient = true)
-            return CopyInChuckStatus.ERROR_IN_STREAM_CLOSED
+        return false
+    }
+
+    /**
+     * Publishes the bytes copied by [downloadJobState] to the store every [PROGRESS_UPDATE_INTERVAL]
+     * until the returned [Job] is cancelled, so that the copy loop doesn't need to report progress.
+     */
+    private fun launchProgressUpdates(downloadJobState: DownloadJobState): Job {
+        return CoroutineScope(IO).launch {
+            while (isActive) {
+                delay(PROGRESS_UPDATE_INTERVAL)
+                updateProgress(downloadJobState)
+            }
+        }
+    }
+
+    private fun updateProgress(downloadJobState: DownloadJobState) {
+        synchronized(downloadJobState) {
+            val copiedBytes = downloadJobState.currentBytesCopied
+            if (copiedBytes != downloadJobState.state.currentBytesCopied) {
+                updateDownloadState(downloadJobState.state.copy(currentBytesCopied = copiedBytes))
+            }
+        }
+    }
+
+    /**
+     * Publishes the time between sending the request of [downloadJobState] and reading its first
+     * bytes, once they were read. Does nothing if the request wasn't sent by this service.
+     */
+    private fun reportTimeToFirstByte(downloadJobState: DownloadJobState) {
+        if (downloadJobState.requestStartedAt == null) {
+            return
         }
+
+        synchronized(downloadJobState) {
+            val requestStartedAt = downloadJobState.requestStartedAt ?: return
+            downloadJobState.requestStartedAt = null
+            val timeToFirstByteMs = Clock.elapsedRealtime() - requestStartedAt
+            updateDownloadState(downloadJobState.state.copy(timeToFirstByteMs = timeToFirstByteMs))
+        }
+    }
+
+    /**
+     * Splits a download of [contentLength] bytes into segments, or returns null if the download
+     * should be done over a single connection: segmenting is disabled, the file is too small or the
+     * server doesn't support range requests for it (or doesn't provide a validator to send them with).
+     */
+    @VisibleForTesting
+    @Suppress("ReturnCount")
+    internal fun createSegments(response: Response, contentLength: Long?): List<DownloadSegment>? {
+        if (maxDownloadSegments < 2 || contentLength == null || response.status != OK_STATUS) {
+            return null
+        }
+
+        // Ranges of an encoded response refer to the encoded bytes, not to the bytes we write to the file.
+        val encoding = response.headers[CONTENT_ENCODING]
+        if (response.headers[ACCEPT_RANGES] != ACCEPT_RANGES_BYTES || (encoding != null && encoding != IDENTITY)) {
+            return null
+        }
+
+        // Without a validator we can't tell if a range comes from a different version of the file.
+        if (getRangeValidator(response) == null) {
+            return null
+        }
+
+        val count = minOf(maxDownloadSegments.toLong(), contentLength / MIN_DOWNLOAD_SEGMENT_SIZE).toInt()
+        if (count < 2) {
+            return null
+        }
+
+        val segmentSize = contentLength / count
+        return (0 until count).map { index ->
+            val end = if (index == count - 1) contentLength else (index + 1) * segmentSize
+            DownloadSegment(index * segmentSize, end)
+        }
+    }
+
+    /**
+     * Returns the validator to send with range requests for the file of [response]: its strong
+     * ETag or its Last-Modified date. Weak ETags can't be used with If-Range.
+     */
+    private fun getRangeValidator(response: Response): String? {
+        val etag = response.headers[ETAG]?.takeUnless { it.startsWith(WEAK_ETAG_PREFIX) }
+        return etag ?: response.headers[LAST_MODIFIED]
+    }
+
+    /**
+     * Downloads the remaining segments of [downloadJobState] concurrently, writing each of them at its
+     * offset into the file. The first segment continues reading [firstSegmentStream] if provided (the
+     * response that announced support for range requests), all others are fetched with range requests.
+     *
+     * The segments are fetched in coroutines that are cancelled with the job of [downloadJobState],
+     * e.g. when the download gets paused or cancelled.
+     *
+     * @return false if a range response didn't belong to the file of the first response. The segments
+     * are reset then and the download has to be restarted from the beginning.
+     */
+    @VisibleForTesting
+    internal fun performSegmentedDownload(
+        downloadJobState: DownloadJobState,
+        firstSegmentStream: InputStream?,
+    ): Boolean {
+        val segments = requireNotNull(downloadJobState.segments)
+        val isResumingDownload = firstSegmentStream == null
         logger.debug(
-            "Finishing copyInChunks ${downloadJobState.state.id} " +
-                "currentBytesCopied ${downloadJobState.currentBytesCopied}",
+            "Starting segmented download ${downloadJobState.state.id} with " +
+                "${segments.count { !it.isCompleted }} remaining segments",
         )
-        return CopyInChuckStatus.COMPLETED
+
+        if (isResumingDownload) {
+            // The remaining segments are requested now, the first response to arrive is the first byte.
+            downloadJobState.requestStartedAt = Clock.elapsedRealtime()
+        }
+
+        val progressUpdates = launchProgressUpdates(downloadJobState)
+        try {
+            useFileChannel(downloadJobState.state, isResumingDownload) { channel ->
+                val contentLength = segments.last().end
+                if (channel.size() < contentLength) {
+                    // Allocate the whole file up front, so that every segment can write at its offset.
+                    channel.write(ByteBuffer.wrap(ByteArray(1)), contentLength - 1)
+                }
+
+                // If any segment fails, the others are cancelled (see copySegment) and the exception
+                // is rethrown, so that the download is marked as failed. The supervisor keeps a failing
+                // segment from cancelling the download job, while cancelling the job cancels the segments.
+                val segmentsJob = SupervisorJob(downloadJobState.job)
+                try {
+                    runBlocking(IO + segmentsJob) {
+                        segments.filterNot { it.isCompleted }.forEach { segment ->
+                            launch {
+                                val stream = firstSegmentStream.takeIf { segment === segments.first() }
+                                if (stream != null) {
+                                    copySegment(downloadJobState, segment, stream, channel)
+                                } else {
+                                    fetchSegment(downloadJobState, segment, contentLength, channel)
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    segmentsJob.complete()
+                }
+            }
+        } catch (e: RangeValidationException) {
+            logger.warn("Restarting segmented download ${downloadJobState.state.id}", e)
+            resetSegments(downloadJobState)
+            return false
+        } catch (e: CancellationException) {
+            // The download job was cancelled, e.g. because the download was paused or cancelled.
+            logger.debug("Stopped segmented download ${downloadJobState.state.id}")
+            return true
+        } finally {
+            progressUpdates.cancel()
+            updateProgress(downloadJobState)
+        }
+
+        verifyDownload(downloadJobState)
+        return true
+    }
+
+    /**
+     * Forgets the segments of [downloadJobState], so that it gets downloaded from the beginning.
+     */
+    private fun resetSegments(downloadJobState: DownloadJobState) {
+        synchronized(downloadJobState) {
+            downloadJobState.segments = null
+            downloadJobState.rangeValidator = null
+            downloadJobState.currentBytesCopied = 0
+            updateDownloadState(downloadJobState.state.copy(currentBytesCopied = 0))
+        }
+    }
+
+    private suspend fun fetchSegment(
+        downloadJobState: DownloadJobState,
+        segment: DownloadSegment,
+        contentLength: Long,
+        channel: FileChannel,
+    ) {
+        val download = downloadJobState.state
+        val headers = MutableHeaders(RANGE to "bytes=${segment.position}-${segment.end - 1}")
+        downloadJobState.rangeValidator?.let { headers.set(IF_RANGE, it) }
+        val request = Request(download.url.sanitizeURL(), headers = headers, private = download.private)
+
+        httpClient.fetch(request).use { response ->
+            // The server sends the whole file instead of the range if it doesn't match If-Range anymore.
+            if (response.status == OK_STATUS) {
+                throw RangeValidationException("The file of ${download.id} changed")
+            }
+
+            if (response.status != PARTIAL_CONTENT_STATUS) {
+                throw IOException("Range request for ${download.id} failed with status ${response.status}")
+            }
+
+            // Only write the range if it is the one we asked for, of a file with the same size.
+            val contentRange = response.headers[CONTENT_RANGE]?.let { CONTENT_RANGE_PATTERN.matchEntire(it.trim()) }
+            val rangeStart = contentRange?.groupValues?.get(1)?.toLongOrNull()
+            val rangeTotal = contentRange?.groupValues?.get(2)?.toLongOrNull()
+            if (rangeStart != segment.position || rangeTotal != contentLength) {
+                throw RangeValidationException(
+                    "Range request for ${download.id} returned an unexpected range: ${response.headers[CONTENT_RANGE]}",
+                )
+            }
+
+            response.body.useStream { inStream ->
+                copySegment(downloadJobState, segment, inStream, channel)
+            }
+        }
+    }
+
+    /**
+     * Copies [inStream] into [channel] at the position of [segment], until the segment is complete,
+     * the download is no longer running or the coroutine is cancelled because another segment failed.
+     */
+    private suspend fun copySegment(
+        downloadJobState: DownloadJobState,
+        segment: DownloadSegment,
+        inStream: InputStream,
+        channel: FileChannel,
+    ) {
+        val data = ByteArray(CHUNK_SIZE)
+        while (!segment.isCompleted && getDownloadJobStatus(downloadJobState) == DOWNLOADING) {
+            coroutineContext.ensureActive()
+            val bytesRead = inStream.read(data, 0, minOf(CHUNK_SIZE.toLong(), segment.end - segment.position).toInt())
+            // If the stream ends early, verifyDownload marks the download as failed.
+            if (bytesRead == -1) { break }
+            reportTimeToFirstByte(downloadJobState)
+
+            val buffer = ByteBuffer.wrap(data, 0, bytesRead)
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, segment.position + buffer.position())
+            }
+            segment.bytesCopied += bytesRead
+
+            synchronized(downloadJobState) {
+                downloadJobState.currentBytesCopied += bytesRead
+            }
+        }
     }
 
+    /**
+     * Thrown if the response to a range request doesn't belong to the file that is being downloaded.
+     */
+    private class RangeValidationException(message: String) : IOException(message)
+
     /**
      * Informs [mozilla.components.feature.downloads.manager.FetchDownloadManager] that a download
      * is no longer in progress due to being paused, completed, or failed
@@ -852,6 +1240,31 @@ abstract class AbstractFetchDownloadService : Service() {
         }
     }
 
+    /**
+     * Opens the file of [download] for writing at arbitrary positions, without truncating it, then
+     * informs the system that a download is complete after [block] is run.
+     *
+     * Encapsulates different behaviour depending on the SDK version.
+     */
+    @SuppressLint("NewApi")
+    internal fun useFileChannel(
+        download: DownloadState,
+        append: Boolean,
+        block: (FileChannel) -> Unit,
+    ) {
+        val downloadWithUniqueFileName = makeUniqueFileNameIfNecessary(download, append)
+        updateDownloadState(downloadWithUniqueFileName)
+
+        if (shouldUseScopedStorage()) {
+            useFileDescriptorScopedStorage(downloadWithUniqueFileName, "rw") { pfd ->
+                ParcelFileDescriptor.AutoCloseOutputStream(pfd).use { block(it.channel) }
+            }
+        } else {
+            createDirectoryIfNeeded(downloadWithUniqueFileName)
+            RandomAccessFile(File(downloadWithUniqueFileName.filePath), "rw").use { block(it.channel) }
+        }
+    }
+
     @VisibleForTesting
     internal fun shouldUseScopedStorage() = getSdkVersion() >= Build.VERSION_CODES.Q
 
@@ -897,6 +1310,17 @@ abstract class AbstractFetchDownloadService : Service() {
     @TargetApi(Build.VERSION_CODES.Q)
     @VisibleForTesting
     internal fun useFileStreamScopedStorage(download: DownloadState, block: (OutputStream) -> Unit) {
+        useFileDescriptorScopedStorage(download, "w") { pfd ->
+            ParcelFileDescriptor.AutoCloseOutputStream(pfd).use(block)
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private fun useFileDescriptorScopedStorage(
+        download: DownloadState,
+        mode: String,
+        block: (ParcelFileDescriptor?) -> Unit,
+    ) {
         val values = ContentValues().apply {
             put(MediaStore.Downloads.DISPLAY_NAME, download.fileName)
             put(
@@ -916,8 +1340,7 @@ abstract class AbstractFetchDownloadService : Service() {
         }
 
         downloadUri?.let {
-            val pfd = resolver.openFileDescriptor(it, "w")
-            ParcelFileDescriptor.AutoCloseOutputStream(pfd).use(block)
+            block(resolver.openFileDescriptor(it, mode))
 
             values.clear()
             values.put(MediaStore.Downloads.IS_PENDING, 0)
@@ -1046,6 +1469,12 @@ abstract class AbstractFetchDownloadService : Service() {
 
         private const val FILE_PROVIDER_EXTENSION = ".feature.downloads.fileprovider"
         private const val CHUNK_SIZE = 32 * 1024
+        private const val MAX_CHUNK_SIZE = 1024 * 1024
+        private const val MIN_DOWNLOAD_SEGMENT_SIZE = 4L * 1024 * 1024
+        private const val ACCEPT_RANGES_BYTES = "bytes"
+        private const val IDENTITY = "identity"
+        private const val WEAK_ETAG_PREFIX = "W/"
+        private val CONTENT_RANGE_PATTERN = Regex("bytes (\\d+)-\\d+/(\\d+)")
         private const val PARTIAL_CONTENT_STATUS = 206
         private const val OK_STATUS = 200
 
@@ -0,0 +1,36 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.feature.downloads
+
+import mozilla.components.browser.state.state.content.DownloadState
+
+/**
+ * Transfer performance of a download, as observed by the [DownloadMiddleware].
+ *
+ * @property downloadId The ID of the [DownloadState].
+ * @property status The current status of the download.
+ * @property bytesCopied The number of bytes downloaded so far.
+ * @property contentLength The size of the download in bytes, if known.
+ * @property bytesPerSecond The current transfer rate, averaged over the recent progress updates.
+ * 0 while the download isn't running.
+ * @property estimatedTimeRemainingMs The estimated time until the download completes, based on
+ * [bytesPerSecond]. Null if the size of the download or the transfer rate isn't known.
+ * @property timeToFirstByteMs The time between sending the request of the latest (re)start of the
+ * download and receiving its first bytes, as measured by the download service. Null until the first
+ * bytes were received, or if the response was provided by the engine.
+ * @property retryCount The number of times the download was restarted after failing.
+ * @property isStalled Whether the download is running but hasn't made progress for a while.
+ */
+data class DownloadMetrics(
+    val downloadId: String,
+    val status: DownloadState.Status,
+    val bytesCopied: Long,
+    val contentLength: Long?,
+    val bytesPerSecond: Long,
+    val estimatedTimeRemainingMs: Long?,
+    val timeToFirstByteMs: Long?,
+    val retryCount: Int,
+    val isStalled: Boolean,
+)
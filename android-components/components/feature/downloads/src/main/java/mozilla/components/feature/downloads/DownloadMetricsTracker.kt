@@ -0,0 +1,114 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.feature.downloads
+
+import mozilla.components.browser.state.state.content.DownloadState
+import mozilla.components.browser.state.state.content.DownloadState.Status.DOWNLOADING
+import mozilla.components.browser.state.state.content.DownloadState.Status.FAILED
+import mozilla.components.support.base.android.Clock
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.math.roundToLong
+
+// A download without progress for this long is considered stalled.
+internal const val STALL_TIMEOUT_MS = 10_000L
+
+// Weight of the latest transfer rate sample in the average transfer rate.
+private const val RATE_SMOOTHING_FACTOR = 0.3
+private const val MILLIS_PER_SECOND = 1000
+
+/**
+ * Tracks the transfer performance of downloads from the updates of their [DownloadState]s.
+ *
+ * Updates are expected on a single thread (the store's), while [get] may be called from any thread.
+ */
+internal class DownloadMetricsTracker {
+    private data class Record(
+        val download: DownloadState,
+        val lastProgressAt: Long,
+        val bytesPerSecond: Double = 0.0,
+        val retryCount: Int = 0,
+    )
+
+    private val records = ConcurrentHashMap<String, Record>()
+
+    /**
+     * Records an update of [download], e.g. its progress or a change of its status.
+     */
+    fun onDownloadUpdated(download: DownloadState) {
+        val now = Clock.elapsedRealtime()
+        val previous = records[download.id]
+        val bytes = download.currentBytesCopied
+
+        records[download.id] = when {
+            previous == null -> Record(download, now)
+
+            download.status == DOWNLOADING && previous.download.status != DOWNLOADING -> previous.copy(
+                download = download,
+                lastProgressAt = now,
+                bytesPerSecond = 0.0,
+                retryCount = previous.retryCount + if (previous.download.status == FAILED) 1 else 0,
+            )
+
+            download.status == DOWNLOADING && bytes > previous.download.currentBytesCopied -> {
+                val elapsedMs = now - previous.lastProgressAt
+                val sample = (bytes - previous.download.currentBytesCopied) * MILLIS_PER_SECOND.toDouble() /
+                    elapsedMs.coerceAtLeast(1)
+                previous.copy(
+                    download = download,
+                    lastProgressAt = now,
+                    bytesPerSecond = if (previous.bytesPerSecond == 0.0) {
+                        sample
+                    } else {
+                        RATE_SMOOTHING_FACTOR * sample + (1 - RATE_SMOOTHING_FACTOR) * previous.bytesPerSecond
+                    },
+                )
+            }
+
+            download.status == DOWNLOADING -> previous.copy(download = download)
+
+            else -> previous.copy(download = download, bytesPerSecond = 0.0)
+        }
+    }
+
+    /**
+     * Stops tracking the download with the given [downloadId].
+     */
+    fun remove(downloadId: String) {
+        records.remove(downloadId)
+    }
+
+    /**
+     * Stops tracking all downloads.
+     */
+    fun clear() {
+        records.clear()
+    }
+
+    /**
+     * Returns the current [DownloadMetrics] of the download with the given [downloadId], or null if
+     * the download isn't tracked.
+     */
+    fun get(downloadId: String): DownloadMetrics? {
+        val record = records[downloadId] ?: return null
+        val download = record.download
+        val isDownloading = download.status == DOWNLOADING
+        val bytesPerSecond = record.bytesPerSecond.roundToLong()
+        val remainingBytes = download.contentLength?.let { it - download.currentBytesCopied }
+
+        return DownloadMetrics(
+            downloadId = downloadId,
+            status = download.status,
+            bytesCopied = download.currentBytesCopied,
+            contentLength = download.contentLength,
+            bytesPerSecond = bytesPerSecond,
+            estimatedTimeRemainingMs = remainingBytes
+                ?.takeIf { isDownloading && bytesPerSecond > 0 && it >= 0 }
+                ?.let { it * MILLIS_PER_SECOND / bytesPerSecond },
+            timeToFirstByteMs = download.timeToFirstByteMs,
+            retryCount = record.retryCount,
+            isStalled = isDownloading && Clock.elapsedRealtime() - record.lastProgressAt >= STALL_TIMEOUT_MS,
+        )
+    }
+}
@@ -11,6 +11,10 @@ import androidx.annotation.VisibleForTesting
 import androidx.core.content.ContextCompat
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.launch
 import mozilla.components.browser.state.action.BrowserAction
 import mozilla.components.browser.state.action.ContentAction
@@ -47,15 +51,46 @@ class DownloadMiddleware(
 
     private var scope = CoroutineScope(coroutineContext)
 
+    private val metricsTracker = DownloadMetricsTracker()
+
+    /**
+     * Returns a [Flow] of the [DownloadMetrics] of the download with the given [downloadId], e.g. for
+     * monitoring transfer performance. The metrics are sampled every [sampleIntervalMs] and emitted
+     * whenever they changed. The flow completes once the download completes, gets cancelled or
+     * removed, and is empty if the download is unknown.
+     */
+    fun metrics(
+        downloadId: String,
+        sampleIntervalMs: Long = DEFAULT_METRICS_SAMPLE_INTERVAL_MS,
+    ): Flow<DownloadMetrics> = flow {
+        while (true) {
+            val metrics = metricsTracker.get(downloadId) ?: break
+            emit(metrics)
+            if (metrics.status == COMPLETED || metrics.status == CANCELLED) {
+                break
+            }
+            delay(sampleIntervalMs)
+        }
+    }.distinctUntilChanged()
+
     override fun invoke(
         context: MiddlewareContext<BrowserState, BrowserAction>,
         next: (BrowserAction) -> Unit,
         action: BrowserAction,
     ) {
         when (action) {
-            is DownloadAction.RemoveDownloadAction -> removeDownload(action.downloadId, context.store)
-            is DownloadAction.RemoveAllDownloadsAction -> removeDownloads()
-            is DownloadAction.UpdateDownloadAction -> updateDownload(action.download, context)
+            is DownloadAction.RemoveDownloadAction -> {
+                metricsTracker.remove(action.downloadId)
+                removeDownload(action.downloadId, context.store)
+            }
+            is DownloadAction.RemoveAllDownloadsAction -> {
+                metricsTracker.clear()
+                removeDownloads()
+            }
+            is DownloadAction.UpdateDownloadAction -> {
+                metricsTracker.onDownloadUpdated(action.download)
+                updateDownload(action.download, context)
+            }
             is DownloadAction.RestoreDownloadsStateAction -> restoreDownloads(context.store)
             is ContentAction.CancelDownloadAction -> closeDownloadResponse(context.store, action.sessionId)
             is DownloadAction.AddDownloadAction -> {
@@ -87,8 +122,14 @@ class DownloadMiddleware(
                     removePrivateNotifications(context.store)
                 }
             }
-            is DownloadAction.AddDownloadAction -> sendDownloadIntent(action.download)
-            is DownloadAction.RestoreDownloadStateAction -> sendDownloadIntent(action.download)
+            is DownloadAction.AddDownloadAction -> {
+                metricsTracker.onDownloadUpdated(action.download)
+                sendDownloadIntent(action.download)
+            }
+            is DownloadAction.RestoreDownloadStateAction -> {
+                metricsTracker.onDownloadUpdated(action.download)
+                sendDownloadIntent(action.download)
+            }
             else -> {
                 // no-op
             }
@@ -183,4 +224,8 @@ class DownloadMiddleware(
         val privateDownloads = store.state.downloads.filterValues { it.private }
         privateDownloads.forEach { removeStatusBarNotification(store, it.value) }
     }
+
+    private companion object {
+        const val DEFAULT_METRICS_SAMPLE_INTERVAL_MS = 1000L
+    }
 }
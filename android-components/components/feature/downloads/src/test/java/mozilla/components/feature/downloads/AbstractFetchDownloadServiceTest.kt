@@ -23,6 +23,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers.IO
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
@@ -37,6 +38,13 @@ import mozilla.components.browser.state.state.content.DownloadState.Status.FAILE
 import mozilla.components.browser.state.state.content.DownloadState.Status.INITIATED
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.Headers.Names.ACCEPT_RANGES
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_ENCODING
+import mozilla.components.concept.fetch.Headers.Names.CONTENT_RANGE
+import mozilla.components.concept.fetch.Headers.Names.ETAG
+import mozilla.components.concept.fetch.Headers.Names.IF_RANGE
+import mozilla.components.concept.fetch.Headers.Names.LAST_MODIFIED
+import mozilla.components.concept.fetch.Headers.Names.RANGE
 import mozilla.components.concept.fetch.MutableHeaders
 import mozilla.components.concept.fetch.Request
 import mozilla.components.concept.fetch.Response
@@ -48,8 +56,10 @@ import mozilla.components.feature.downloads.AbstractFetchDownloadService.Compani
 import mozilla.components.feature.downloads.AbstractFetchDownloadService.Companion.PROGRESS_UPDATE_INTERVAL
 import mozilla.components.feature.downloads.AbstractFetchDownloadService.CopyInChuckStatus.ERROR_IN_STREAM_CLOSED
 import mozilla.components.feature.downloads.AbstractFetchDownloadService.DownloadJobState
+import mozilla.components.feature.downloads.AbstractFetchDownloadService.DownloadSegment
 import mozilla.components.feature.downloads.DownloadNotification.NOTIFICATION_DOWNLOAD_GROUP_ID
 import mozilla.components.feature.downloads.facts.DownloadsFacts.Items.NOTIFICATION
+import mozilla.components.support.base.android.Clock
 import mozilla.components.support.base.android.NotificationsDelegate
 import mozilla.components.support.base.facts.Action
 import mozilla.components.support.base.facts.processor.CollectionProcessor
@@ -96,9 +106,14 @@ import org.robolectric.annotation.Config
 import org.robolectric.annotation.Implementation
 import org.robolectric.annotation.Implements
 import org.robolectric.shadows.ShadowNotificationManager
+import java.io.ByteArrayInputStream
 import java.io.File
+import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
+import kotlin.concurrent.thread
 import kotlin.random.Random
 
 @RunWith(AndroidJUnit4::class)
@@ -1316,6 +1331,335 @@ class AbstractFetchDownloadServiceTest {
         verifyNoInteractions(responseFromDownloadState)
     }
 
+    @Test
+    fun `createSegments splits large downloads if enabled and the server supports range requests`() {
+        val segmentingService = object : AbstractFetchDownloadService() {
+            override val httpClient = client
+            override val store = browserStore
+            override val notificationsDelegate = this@AbstractFetchDownloadServiceTest.notificationsDelegate
+            override val maxDownloadSegments = 4
+        }
+        val contentLength = 10L * 1024 * 1024
+        fun response(vararg headers: Pair<String, String>, status: Int = 200) =
+            Response("https://example.com/file.zip", status, MutableHeaders(*headers), Response.Body(mock()))
+
+        val etag = ETAG to "\"1\""
+        val segments = segmentingService.createSegments(response(ACCEPT_RANGES to "bytes", etag), contentLength)!!
+        // Segments are at least 4 MB large.
+        assertEquals(2, segments.size)
+        assertEquals(0L, segments[0].start)
+        assertEquals(contentLength / 2, segments[0].end)
+        assertEquals(contentLength / 2, segments[1].start)
+        assertEquals(contentLength, segments[1].end)
+
+        val lastModified = LAST_MODIFIED to "Wed, 21 Oct 2015 07:28:00 GMT"
+        assertNotNull(segmentingService.createSegments(response(ACCEPT_RANGES to "bytes", lastModified), contentLength))
+
+        assertNull(segmentingService.createSegments(response(lastModified), contentLength))
+        assertNull(segmentingService.createSegments(response(ACCEPT_RANGES to "none", lastModified), contentLength))
+        val partialResponse = response(ACCEPT_RANGES to "bytes", etag, status = 206)
+        assertNull(segmentingService.createSegments(partialResponse, contentLength))
+        assertNull(
+            segmentingService.createSegments(
+                response(ACCEPT_RANGES to "bytes", lastModified, CONTENT_ENCODING to "gzip"),
+                contentLength,
+            ),
+        )
+        assertNull(segmentingService.createSegments(response(ACCEPT_RANGES to "bytes", lastModified), null))
+        assertNull(segmentingService.createSegments(response(ACCEPT_RANGES to "bytes", lastModified), 1024L))
+        // Range requests can't be validated without a strong validator.
+        assertNull(segmentingService.createSegments(response(ACCEPT_RANGES to "bytes"), contentLength))
+        val weakEtag = ETAG to "W/\"1\""
+        assertNull(segmentingService.createSegments(response(ACCEPT_RANGES to "bytes", weakEtag), contentLength))
+
+        // Segmenting is disabled by default.
+        assertNull(service.createSegments(response(ACCEPT_RANGES to "bytes", lastModified), contentLength))
+    }
+
+    @Test
+    fun `performSegmentedDownload writes every segment at its offset`() {
+        val content = ByteArray(100) { it.toByte() }
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            segments = listOf(DownloadSegment(0, 40), DownloadSegment(40, 70), DownloadSegment(70, 100)),
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        val ranges = fetchRanges(content)
+
+        service.performSegmentedDownload(downloadJob, firstSegmentStream = ByteArrayInputStream(content))
+
+        assertEquals(listOf("bytes=40-69", "bytes=70-99"), ranges.sorted())
+        assertTrue(content.contentEquals(file.readBytes()))
+        assertEquals(100L, downloadJob.currentBytesCopied)
+        assertEquals(COMPLETED, service.getDownloadJobStatus(downloadJob))
+    }
+
+    @Test
+    fun `performDownload resumes only the remaining parts of a segmented download`() {
+        val content = ByteArray(100) { it.toByte() }
+        val file = folder.newFile()
+        file.writeBytes(content.copyOf(20) + ByteArray(20) + content.copyOfRange(40, 60) + ByteArray(40))
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        val segments = listOf(DownloadSegment(0, 40), DownloadSegment(40, 60), DownloadSegment(60, 100))
+        segments[0].bytesCopied = 20
+        segments[1].bytesCopied = 20
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            currentBytesCopied = 40,
+            segments = segments,
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        val ranges = fetchRanges(content)
+
+        service.performDownload(downloadJob)
+
+        assertEquals(listOf("bytes=20-39", "bytes=60-99"), ranges.sorted())
+        assertTrue(content.contentEquals(file.readBytes()))
+        assertEquals(100L, downloadJob.currentBytesCopied)
+        assertEquals(COMPLETED, service.getDownloadJobStatus(downloadJob))
+    }
+
+    @Test
+    fun `performDownload reports the time between sending a request and reading its first bytes`() {
+        val content = ByteArray(100) { it.toByte() }
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        val segments = listOf(DownloadSegment(0, 50), DownloadSegment(50, 100))
+        segments[0].bytesCopied = 50
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            currentBytesCopied = 50,
+            segments = segments,
+            rangeValidator = "\"1\"",
+        )
+        service.downloadJobs[download.id] = downloadJob
+        useFileChannel(file)
+        var now = 1000L
+        Clock.delegate = object : Clock.Delegate {
+            override fun elapsedRealtime() = now
+        }
+        val response = Response(
+            "https://example.com/file.zip",
+            206,
+            MutableHeaders(CONTENT_RANGE to "bytes 50-99/100"),
+            Response.Body(ByteArrayInputStream(content.copyOfRange(50, 100))),
+        )
+        doAnswer {
+            now += 300
+            response
+        }.`when`(client).fetch(any())
+
+        try {
+            service.performDownload(downloadJob)
+        } finally {
+            Clock.reset()
+        }
+
+        assertEquals(300L, downloadJob.state.timeToFirstByteMs)
+        assertNull(downloadJob.requestStartedAt)
+
+        // A new attempt measures its own time to first byte.
+        service.setDownloadJobStatus(downloadJob, DOWNLOADING)
+        assertNull(downloadJob.state.timeToFirstByteMs)
+    }
+
+    @Test
+    fun `performSegmentedDownload fails the download if a range request fails`() {
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            segments = listOf(DownloadSegment(0, 50), DownloadSegment(50, 100)),
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        val response = Response("https://example.com/file.zip", 500, MutableHeaders(), Response.Body(mock()))
+        doReturn(response).`when`(client).fetch(any())
+
+        try {
+            service.performSegmentedDownload(downloadJob, firstSegmentStream = ByteArrayInputStream(ByteArray(100)))
+            fail("Expected an IOException")
+        } catch (e: IOException) {
+            // The failed segment can be resumed when trying again.
+            assertEquals(0L, downloadJob.segments!![1].bytesCopied)
+        }
+    }
+
+    @Test
+    fun `performSegmentedDownload resets the segments if a range request returns a different range`() {
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        fun downloadJob() = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            segments = listOf(DownloadSegment(0, 50), DownloadSegment(50, 100)),
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+
+        listOf("bytes 0-49/100", "bytes 50-99/200", "bytes */100", null).forEach { contentRange ->
+            val headers = MutableHeaders()
+            contentRange?.let { headers.set(CONTENT_RANGE, it) }
+            val response = Response(
+                "https://example.com/file.zip",
+                206,
+                headers,
+                Response.Body(ByteArrayInputStream(ByteArray(50))),
+            )
+            doReturn(response).`when`(client).fetch(any())
+            val job = downloadJob()
+
+            assertFalse(
+                service.performSegmentedDownload(job, firstSegmentStream = ByteArrayInputStream(ByteArray(100))),
+            )
+            assertNull(job.segments)
+            assertNull(job.rangeValidator)
+            assertEquals(0L, job.currentBytesCopied)
+        }
+    }
+
+    @Test
+    fun `performDownload restarts over a single connection if the file changed since it was segmented`() {
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 100L)
+        val segments = listOf(DownloadSegment(0, 50), DownloadSegment(50, 100))
+        segments[0].bytesCopied = 50
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            currentBytesCopied = 50,
+            segments = segments,
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        val requests = mutableListOf<Request>()
+        doAnswer { invocation ->
+            requests.add(invocation.getArgument(0))
+            // The file doesn't match If-Range anymore, so the whole file is returned.
+            Response(
+                "https://example.com/file.zip",
+                200,
+                MutableHeaders(ETAG to "\"2\""),
+                Response.Body(ByteArrayInputStream(ByteArray(100))),
+            )
+        }.`when`(client).fetch(any())
+
+        service.performDownload(downloadJob)
+
+        assertEquals(2, requests.size)
+        assertEquals("\"1\"", requests[0].headers!![IF_RANGE])
+        assertNull(requests[1].headers!![RANGE])
+        assertNull(downloadJob.segments)
+        assertNull(downloadJob.rangeValidator)
+        verify(service).useFileStream(any(), eq(false), any())
+    }
+
+    @Test
+    fun `performSegmentedDownload stops the segments if the download job is cancelled`() {
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 2_000_000L)
+        val downloadJob = DownloadJobState(
+            job = Job(),
+            state = download,
+            status = DOWNLOADING,
+            segments = listOf(DownloadSegment(0, 1_000_000), DownloadSegment(1_000_000, 2_000_000)),
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        doAnswer {
+            Response(
+                "https://example.com/file.zip",
+                206,
+                MutableHeaders(CONTENT_RANGE to "bytes 1000000-1999999/2000000"),
+                Response.Body(slowStream()),
+            )
+        }.`when`(client).fetch(any())
+        thread {
+            Thread.sleep(100)
+            downloadJob.job!!.cancel()
+        }
+
+        assertTrue(service.performSegmentedDownload(downloadJob, firstSegmentStream = slowStream()))
+
+        assertTrue(downloadJob.segments!!.none { it.isCompleted })
+        assertEquals(DOWNLOADING, service.getDownloadJobStatus(downloadJob))
+    }
+
+    @Test
+    fun `performSegmentedDownload stops the other segments if a range request fails`() {
+        val file = folder.newFile()
+        val download = DownloadState("https://example.com/file.zip", "file.zip", contentLength = 2_000_000L)
+        val downloadJob = DownloadJobState(
+            state = download,
+            status = DOWNLOADING,
+            segments = listOf(DownloadSegment(0, 1_000_000), DownloadSegment(1_000_000, 2_000_000)),
+            rangeValidator = "\"1\"",
+        )
+        useFileChannel(file)
+        val response = Response("https://example.com/file.zip", 500, MutableHeaders(), Response.Body(mock()))
+        doReturn(response).`when`(client).fetch(any())
+
+        try {
+            service.performSegmentedDownload(downloadJob, firstSegmentStream = slowStream())
+            fail("Expected an IOException")
+        } catch (e: IOException) {
+            assertFalse(downloadJob.segments!![0].isCompleted)
+            assertEquals(DOWNLOADING, service.getDownloadJobStatus(downloadJob))
+        }
+    }
+
+    /**
+     * Returns a stream that would take far longer than the test timeout to fill a segment.
+     */
+    private fun slowStream() = object : InputStream() {
+        override fun read(): Int {
+            Thread.sleep(1)
+            return 0
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            Thread.sleep(1)
+            b[off] = 0
+            return 1
+        }
+    }
+
+    private fun useFileChannel(file: File) {
+        doAnswer { invocation ->
+            val block = invocation.getArgument<(FileChannel) -> Unit>(2)
+            RandomAccessFile(file, "rw").use { block(it.channel) }
+        }.`when`(service).useFileChannel(any(), anyBoolean(), any())
+    }
+
+    /**
+     * Answers range requests with the requested part of [content] and returns the requested ranges.
+     */
+    private fun fetchRanges(content: ByteArray): List<String> {
+        val ranges = mutableListOf<String>()
+        doAnswer { invocation ->
+            val headers = invocation.getArgument<Request>(0).headers!!
+            assertEquals("\"1\"", headers[IF_RANGE])
+            val range = headers[RANGE]!!
+            synchronized(ranges) { ranges.add(range) }
+            val (start, end) = range.removePrefix("bytes=").split("-").map { it.toInt() }
+            Response(
+                "https://example.com/file.zip",
+                206,
+                MutableHeaders(CONTENT_RANGE to "bytes $start-$end/${content.size}"),
+                Response.Body(ByteArrayInputStream(content.copyOfRange(start, end + 1))),
+            )
+        }.`when`(client).fetch(any())
+        return ranges
+    }
+
     @Test
     fun `onDestroy cancels all running jobs`() = runBlocking {
         val download = DownloadState("https://example.com/file.txt", "file.txt")
@@ -1946,6 +2290,39 @@ class AbstractFetchDownloadServiceTest {
         assertTrue(exceptionWasThrown)
     }
 
+    @Test
+    fun `copyInChunks copies to the channel of a file and publishes the copied bytes`() = runTest(testsDispatcher) {
+        val download = DownloadState("https://example.com/file.zip", "file.zip")
+        val downloadJobState = DownloadJobState(state = download, status = DOWNLOADING)
+        // Large enough for the buffer to grow a few times.
+        val content = Random.nextBytes(300 * 1024)
+        val file = folder.newFile()
+
+        val status = FileOutputStream(file).use { outStream ->
+            service.copyInChunks(downloadJobState, ByteArrayInputStream(content), outStream)
+        }
+
+        assertEquals(AbstractFetchDownloadService.CopyInChuckStatus.COMPLETED, status)
+        assertTrue(content.contentEquals(file.readBytes()))
+        assertEquals(content.size.toLong(), downloadJobState.currentBytesCopied)
+        verify(service).updateDownloadState(download.copy(currentBytesCopied = content.size.toLong()))
+    }
+
+    @Test
+    fun `copyInChunks appends to the channel of a file when resuming`() = runTest(testsDispatcher) {
+        val download = DownloadState("https://example.com/file.zip", "file.zip")
+        val downloadJobState = DownloadJobState(state = download, currentBytesCopied = 3, status = DOWNLOADING)
+        val file = folder.newFile()
+        file.writeBytes(byteArrayOf(1, 2, 3))
+
+        FileOutputStream(file, true).use { outStream ->
+            service.copyInChunks(downloadJobState, ByteArrayInputStream(byteArrayOf(4, 5)), outStream)
+        }
+
+        assertTrue(byteArrayOf(1, 2, 3, 4, 5).contentEquals(file.readBytes()))
+        assertEquals(5L, downloadJobState.currentBytesCopied)
+    }
+
     @Test
     fun `copyInChunks - must return COMPLETED when finish copying bytes`() = runTest(testsDispatcher) {
         val downloadJobState = DownloadJobState(state = mock(), status = DOWNLOADING)
@@ -0,0 +1,134 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.feature.downloads
+
+import mozilla.components.browser.state.state.content.DownloadState
+import mozilla.components.browser.state.state.content.DownloadState.Status.COMPLETED
+import mozilla.components.browser.state.state.content.DownloadState.Status.DOWNLOADING
+import mozilla.components.browser.state.state.content.DownloadState.Status.FAILED
+import mozilla.components.browser.state.state.content.DownloadState.Status.INITIATED
+import mozilla.components.browser.state.state.content.DownloadState.Status.PAUSED
+import mozilla.components.support.base.android.Clock
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class DownloadMetricsTrackerTest {
+    private var now = 0L
+    private val tracker = DownloadMetricsTracker()
+    private val download = DownloadState(
+        id = "download",
+        url = "https://example.com/file.zip",
+        contentLength = 10_000L,
+        status = INITIATED,
+    )
+
+    @Before
+    fun setUp() {
+        Clock.delegate = object : Clock.Delegate {
+            override fun elapsedRealtime() = now
+        }
+    }
+
+    @After
+    fun tearDown() {
+        Clock.reset()
+    }
+
+    @Test
+    fun `tracks the transfer rate and remaining time`() {
+        tracker.onDownloadUpdated(download)
+        now = 100
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING))
+
+        var metrics = tracker.get("download")!!
+        assertEquals(DOWNLOADING, metrics.status)
+        assertNull(metrics.estimatedTimeRemainingMs)
+
+        now = 600
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING, currentBytesCopied = 1000))
+
+        metrics = tracker.get("download")!!
+        assertEquals(1000L, metrics.bytesCopied)
+        assertEquals(2000L, metrics.bytesPerSecond)
+        assertEquals(4500L, metrics.estimatedTimeRemainingMs)
+
+        // The rate is smoothed: 0.3 * 4000 + 0.7 * 2000.
+        now = 1100
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING, currentBytesCopied = 3000))
+
+        metrics = tracker.get("download")!!
+        assertEquals(2600L, metrics.bytesPerSecond)
+
+        tracker.onDownloadUpdated(download.copy(status = COMPLETED, currentBytesCopied = 10_000))
+
+        metrics = tracker.get("download")!!
+        assertEquals(COMPLETED, metrics.status)
+        assertEquals(0L, metrics.bytesPerSecond)
+        assertNull(metrics.estimatedTimeRemainingMs)
+    }
+
+    @Test
+    fun `detects stalled downloads`() {
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING))
+
+        now = STALL_TIMEOUT_MS - 1
+        assertFalse(tracker.get("download")!!.isStalled)
+
+        now = STALL_TIMEOUT_MS
+        assertTrue(tracker.get("download")!!.isStalled)
+
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING, currentBytesCopied = 1))
+        assertFalse(tracker.get("download")!!.isStalled)
+
+        // Paused downloads are not stalled.
+        tracker.onDownloadUpdated(download.copy(status = PAUSED, currentBytesCopied = 1))
+        now += STALL_TIMEOUT_MS
+        assertFalse(tracker.get("download")!!.isStalled)
+    }
+
+    @Test
+    fun `counts restarts of failed downloads as retries`() {
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING))
+        tracker.onDownloadUpdated(download.copy(status = PAUSED))
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING))
+        assertEquals(0, tracker.get("download")!!.retryCount)
+
+        tracker.onDownloadUpdated(download.copy(status = FAILED, currentBytesCopied = 100))
+        now = 1000
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING, currentBytesCopied = 100))
+        assertEquals(1, tracker.get("download")!!.retryCount)
+    }
+
+    @Test
+    fun `reports the time to first byte measured by the download service`() {
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING))
+        // Progress alone doesn't tell when the first byte arrived.
+        now = 1000
+        tracker.onDownloadUpdated(download.copy(status = DOWNLOADING, currentBytesCopied = 100))
+        assertNull(tracker.get("download")!!.timeToFirstByteMs)
+
+        tracker.onDownloadUpdated(
+            download.copy(status = DOWNLOADING, currentBytesCopied = 100, timeToFirstByteMs = 250),
+        )
+        assertEquals(250L, tracker.get("download")!!.timeToFirstByteMs)
+    }
+
+    @Test
+    fun `removed downloads are no longer tracked`() {
+        tracker.onDownloadUpdated(download)
+        tracker.onDownloadUpdated(download.copy(id = "other"))
+
+        tracker.remove("download")
+        assertNull(tracker.get("download"))
+
+        tracker.clear()
+        assertNull(tracker.get("other"))
+    }
+}
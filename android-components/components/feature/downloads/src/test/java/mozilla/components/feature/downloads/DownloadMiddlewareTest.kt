@@ -8,6 +8,8 @@ import android.app.DownloadManager.EXTRA_DOWNLOAD_ID
 import android.content.Context
 import android.content.Intent
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
 import mozilla.components.browser.state.action.ContentAction
 import mozilla.components.browser.state.action.DownloadAction
 import mozilla.components.browser.state.action.TabListAction
@@ -15,6 +17,7 @@ import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.browser.state.state.content.DownloadState
 import mozilla.components.browser.state.state.content.DownloadState.Status.CANCELLED
 import mozilla.components.browser.state.state.content.DownloadState.Status.COMPLETED
+import mozilla.components.browser.state.state.content.DownloadState.Status.DOWNLOADING
 import mozilla.components.browser.state.state.content.DownloadState.Status.FAILED
 import mozilla.components.browser.state.state.content.DownloadState.Status.INITIATED
 import mozilla.components.browser.state.state.createTab
@@ -29,6 +32,7 @@ import mozilla.components.support.test.rule.MainCoroutineRule
 import mozilla.components.support.test.rule.runTestOnMain
 import mozilla.components.support.test.whenever
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Rule
 import org.junit.Test
@@ -604,4 +608,44 @@ class DownloadMiddlewareTest {
         downloadMiddleware.closeDownloadResponse(store, tab.id)
         verify(response).close()
     }
+
+    @Test
+    fun `WHEN a download is updated THEN its metrics are emitted until it completes`() = runTestOnMain {
+        val downloadMiddleware = DownloadMiddleware(
+            mock(),
+            AbstractFetchDownloadService::class.java,
+            coroutineContext = dispatcher,
+            downloadStorage = mock(),
+        )
+        val store = BrowserStore(
+            initialState = BrowserState(),
+            middleware = listOf(downloadMiddleware),
+        )
+        val download = DownloadState("https://mozilla.org/download", contentLength = 100L, private = true)
+
+        assertEquals(emptyList<DownloadMetrics>(), downloadMiddleware.metrics(download.id).toList())
+
+        store.dispatch(DownloadAction.AddDownloadAction(download)).joinBlocking()
+        store.dispatch(DownloadAction.UpdateDownloadAction(download.copy(status = DOWNLOADING))).joinBlocking()
+        store.dispatch(
+            DownloadAction.UpdateDownloadAction(download.copy(status = DOWNLOADING, currentBytesCopied = 50)),
+        ).joinBlocking()
+
+        val metrics = downloadMiddleware.metrics(download.id).first()
+        assertEquals(DOWNLOADING, metrics.status)
+        assertEquals(50L, metrics.bytesCopied)
+        assertEquals(100L, metrics.contentLength)
+        assertEquals(0, metrics.retryCount)
+
+        store.dispatch(
+            DownloadAction.UpdateDownloadAction(download.copy(status = COMPLETED, currentBytesCopied = 100)),
+        ).joinBlocking()
+
+        val completedMetrics = downloadMiddleware.metrics(download.id).toList()
+        assertEquals(1, completedMetrics.size)
+        assertEquals(COMPLETED, completedMetrics.single().status)
+
+        store.dispatch(DownloadAction.RemoveDownloadAction(download.id)).joinBlocking()
+        assertNull(downloadMiddleware.metrics(download.id).toList().firstOrNull())
+    }
 }
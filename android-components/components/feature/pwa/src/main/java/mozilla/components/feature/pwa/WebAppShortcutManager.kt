@@ -40,11 +40,16 @@ import mozilla.components.concept.fetch.Client
 import mozilla.components.feature.pwa.WebAppLauncherActivity.Companion.ACTION_PWA_LAUNCHER
 import mozilla.components.feature.pwa.ext.hasLargeIcons
 import mozilla.components.feature.pwa.ext.installableManifest
+import mozilla.components.support.images.BitmapPool
 import mozilla.components.support.images.decoder.AndroidImageDecoder
 import mozilla.components.support.utils.PendingIntentUtils
 
 private val pwaIconMemoryCache = IconMemoryCache()
 
+// Bitmaps of resized icons are released to this pool once drawn into the maskable icon, and get
+// reused for decoding and resizing the next icon.
+private val pwaBitmapPool = BitmapPool()
+
 const val SHORTCUT_CATEGORY = mozilla.components.feature.customtabs.SHORTCUT_CATEGORY
 
 /**
@@ -274,13 +279,14 @@ private fun webAppIcons(
         DataUriIconLoader(),
     ),
     decoders = listOf(
-        AndroidImageDecoder(),
+        AndroidImageDecoder(pwaBitmapPool),
         ICOIconDecoder(),
     ),
     processors = listOf(
         MemoryIconProcessor(pwaIconMemoryCache),
-        ResizingProcessor(),
+        ResizingProcessor(bitmapPool = pwaBitmapPool),
         ColorProcessor(),
         AdaptiveIconProcessor(),
     ),
+    bitmapPool = pwaBitmapPool,
 )
@@ -9,9 +9,9 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.flow.collect
-import kotlinx.coroutines.flow.map
 import mozilla.components.browser.state.action.ContentAction.UpdateRefreshCanceledStateAction
 import mozilla.components.browser.state.selector.findTabOrCustomTabOrSelectedTab
+import mozilla.components.browser.state.selector.tabOrCustomTabOrSelectedTabSelector
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.engine.EngineView
 import mozilla.components.lib.state.ext.flowScoped
@@ -42,11 +42,8 @@ class SwipeRefreshFeature(
      * Start feature: Starts adding pull to refresh behavior for the active session.
      */
     override fun start() {
-        scope = store.flowScoped { flow ->
-            flow.map { state -> state.findTabOrCustomTabOrSelectedTab(tabId) }
-                .ifAnyChanged {
-                    arrayOf(it?.content?.loading, it?.content?.refreshCanceled)
-                }
+        scope = store.flowScoped(selector = tabOrCustomTabOrSelectedTabSelector, key = tabId) { flow ->
+            flow.ifAnyChanged { arrayOf(it?.content?.loading, it?.content?.refreshCanceled) }
                 .collect { tab ->
                     tab?.let {
                         if (!tab.content.loading || tab.content.refreshCanceled) {
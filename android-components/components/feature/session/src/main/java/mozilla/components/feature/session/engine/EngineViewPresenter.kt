@@ -8,10 +8,9 @@ import android.view.View
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.flow.collect
-import kotlinx.coroutines.flow.map
 import mozilla.components.browser.state.action.EngineAction
 import mozilla.components.browser.state.action.LastAccessAction
-import mozilla.components.browser.state.selector.findTabOrCustomTabOrSelectedTab
+import mozilla.components.browser.state.selector.tabOrCustomTabOrSelectedTabSelector
 import mozilla.components.browser.state.state.SessionState
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.engine.EngineView
@@ -32,17 +31,16 @@ internal class EngineViewPresenter(
      * Start presenter and display data in view.
      */
     fun start() {
-        scope = store.flowScoped { flow ->
-            flow.map { state -> state.findTabOrCustomTabOrSelectedTab(tabId) }
-                // Render if the tab itself changed and when an engine session is linked
-                .ifAnyChanged { tab ->
-                    arrayOf(
-                        tab?.id,
-                        tab?.engineState?.engineSession,
-                        tab?.engineState?.crashed,
-                        tab?.content?.firstContentfulPaint,
-                    )
-                }
+        scope = store.flowScoped(selector = tabOrCustomTabOrSelectedTabSelector, key = tabId) { flow ->
+            // Render if the tab itself changed and when an engine session is linked
+            flow.ifAnyChanged { tab ->
+                arrayOf(
+                    tab?.id,
+                    tab?.engineState?.engineSession,
+                    tab?.engineState?.crashed,
+                    tab?.content?.firstContentfulPaint,
+                )
+            }
                 .collect { tab -> onTabToRender(tab) }
         }
     }
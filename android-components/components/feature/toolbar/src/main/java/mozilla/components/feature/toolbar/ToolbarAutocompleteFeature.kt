@@ -6,14 +6,24 @@ package mozilla.components.feature.toolbar
 
 import androidx.annotation.VisibleForTesting
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.cancelChildren
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import mozilla.components.concept.engine.Engine
 import mozilla.components.concept.toolbar.AutocompleteProvider
+import mozilla.components.concept.toolbar.AutocompleteResult
 import mozilla.components.concept.toolbar.Toolbar
 import java.util.SortedSet
 
 /**
  * Feature implementation for connecting a toolbar with a list of autocomplete providers.
  *
+ * All providers are queried concurrently. The suggestion of the provider with the highest priority
+ * wins, but the suggestion of a provider with a lower priority is shown in the meantime while
+ * providers with a higher priority are still being queried. Queries for a previous input get
+ * cancelled by the toolbar once the input changes.
+ *
  * @param toolbar the [Toolbar] to connect to autocomplete providers.
  * @param engine (optional) instance of a browser [Engine] to issue
  * [Engine.speculativeConnect] calls on successful URL autocompletion.
@@ -31,11 +41,13 @@ class ToolbarAutocompleteFeature(
 
     init {
         toolbar.setAutocompleteListener { query, delegate ->
-            if (!shouldAutocomplete() || autocompleteProviders.isEmpty() || query.isBlank()) {
+            val providers = synchronized(this) { autocompleteProviders.toList() }
+            if (!shouldAutocomplete() || providers.isEmpty() || query.isBlank()) {
                 delegate.noAutocompleteResult(query)
             } else {
-                val result = autocompleteProviders
-                    .firstNotNullOfOrNull { it.getAutocompleteSuggestion(query) }
+                val result = queryProviders(providers, query) { provisionalResult ->
+                    delegate.applyAutocompleteResult(provisionalResult) {}
+                }
 
                 if (result != null) {
                     delegate.applyAutocompleteResult(result) {
@@ -48,6 +60,47 @@ class ToolbarAutocompleteFeature(
         }
     }
 
+    /**
+     * Queries all [providers] (sorted by priority) for [query] concurrently and returns the result of
+     * the first provider that has one. Results of providers further down the list are passed to
+     * [onProvisionalResult] as soon as they arrive, while the providers before them are still running.
+     */
+    private suspend fun queryProviders(
+        providers: List<AutocompleteProvider>,
+        query: String,
+        onProvisionalResult: (AutocompleteResult) -> Unit,
+    ): AutocompleteResult? = coroutineScope {
+        val responses = Channel<IndexedValue<AutocompleteResult?>>(providers.size)
+        providers.forEachIndexed { index, provider ->
+            launch {
+                responses.send(IndexedValue(index, provider.getAutocompleteSuggestion(query)))
+            }
+        }
+
+        val completed = BooleanArray(providers.size)
+        val results = arrayOfNulls<AutocompleteResult>(providers.size)
+        var provisionalIndex = providers.size
+        var bestIndex = -1
+        var firstRunningIndex = 0
+        // Done once no provider before the best result is still running: the result won't get any better.
+        while (firstRunningIndex != -1 && bestIndex !in 0 until firstRunningIndex) {
+            val (index, result) = responses.receive()
+            completed[index] = true
+            results[index] = result
+
+            bestIndex = results.indexOfFirst { it != null }
+            firstRunningIndex = completed.indexOfFirst { !it }
+            if (firstRunningIndex != -1 && bestIndex in firstRunningIndex + 1 until provisionalIndex) {
+                provisionalIndex = bestIndex
+                onProvisionalResult(requireNotNull(results[bestIndex]))
+            }
+        }
+
+        // The remaining providers can only have results with a lower priority.
+        coroutineContext.cancelChildren()
+        results.getOrNull(bestIndex)
+    }
+
     /**
      * Update the list of providers used for autocompletion results.
      * Changes will take effect the next time user changes their input.
@@ -5,6 +5,10 @@
 package mozilla.components.feature.toolbar
 
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.runCurrent
 import kotlinx.coroutines.test.runTest
 import mozilla.components.browser.domains.Domain
 import mozilla.components.browser.domains.autocomplete.BaseDomainAutocompleteProvider
@@ -547,6 +551,67 @@ class ToolbarAutocompleteFeatureTest {
         verify(toolbar).refreshAutocomplete()
     }
 
+    @Test
+    fun `WHEN providers are slow THEN they are queried concurrently and the result of the first one by priority is applied`() = runTest {
+        val toolbar = TestToolbar()
+        val feature = ToolbarAutocompleteFeature(toolbar)
+        val autocompleteDelegate: AutocompleteDelegate = mock()
+        val historyResult = AutocompleteResult("mo", "mozilla.org/en-US", "https://mozilla.org/en-US", "history", 1)
+        val domainsResult = AutocompleteResult("mo", "mozilla.org", "https://mozilla.org", "domains", 1)
+        val history = SlowAutocompleteProvider(autocompletePriority = 0)
+        val sessions = SlowAutocompleteProvider(autocompletePriority = 1)
+        val domains = SlowAutocompleteProvider(autocompletePriority = 2)
+        feature.updateAutocompleteProviders(listOf(history, sessions, domains), false)
+
+        val job = launch { toolbar.autocompleteFilter!!("mo", autocompleteDelegate) }
+        runCurrent()
+        assertEquals(listOf("mo"), history.queries)
+        assertEquals(listOf("mo"), sessions.queries)
+        assertEquals(listOf("mo"), domains.queries)
+
+        // The result of a provider with a lower priority is applied while the others are still running.
+        domains.result.complete(domainsResult)
+        runCurrent()
+        verify(autocompleteDelegate).applyAutocompleteResult(eq(domainsResult), any())
+        assertFalse(job.isCompleted)
+
+        history.result.complete(historyResult)
+        runCurrent()
+        verify(autocompleteDelegate).applyAutocompleteResult(eq(historyResult), any())
+        verify(autocompleteDelegate, never()).noAutocompleteResult(any())
+
+        // Once the provider with the highest priority has a result, the others are cancelled.
+        assertTrue(job.isCompleted)
+        assertTrue(sessions.cancelled)
+    }
+
+    @Test
+    fun `WHEN providers with a higher priority have no result THEN the result of the next one is applied`() = runTest {
+        val toolbar = TestToolbar()
+        val engine: Engine = mock()
+        val feature = ToolbarAutocompleteFeature(toolbar, engine)
+        val autocompleteDelegate: AutocompleteDelegate = mock()
+        val domainsResult = AutocompleteResult("mo", "mozilla.org", "https://mozilla.org", "domains", 1)
+        val history = SlowAutocompleteProvider(autocompletePriority = 0)
+        val domains = SlowAutocompleteProvider(autocompletePriority = 1)
+        feature.updateAutocompleteProviders(listOf(history, domains), false)
+
+        val job = launch { toolbar.autocompleteFilter!!("mo", autocompleteDelegate) }
+        domains.result.complete(domainsResult)
+        runCurrent()
+        history.result.complete(null)
+        runCurrent()
+
+        assertTrue(job.isCompleted)
+        val callbackCaptor = argumentCaptor<() -> Unit>()
+        verify(autocompleteDelegate, times(2)).applyAutocompleteResult(eq(domainsResult), callbackCaptor.capture())
+        verify(autocompleteDelegate, never()).noAutocompleteResult(any())
+
+        // Only the final result triggers a speculative connect.
+        callbackCaptor.allValues.forEach { it() }
+        verify(engine, times(1)).speculativeConnect("https://mozilla.org")
+    }
+
     @Suppress("SameParameterValue")
     private fun verifyNoAutocompleteResult(toolbar: TestToolbar, autocompleteDelegate: AutocompleteDelegate, query: String) = runTest {
         toolbar.autocompleteFilter!!(query, autocompleteDelegate)
@@ -577,3 +642,24 @@ private class AutocompleteProviderFake(
 ) : AutocompleteProvider {
     override suspend fun getAutocompleteSuggestion(query: String) = resultToReturn
 }
+
+/**
+ * [AutocompleteProvider] suspending until [result] is completed.
+ */
+private class SlowAutocompleteProvider(
+    override val autocompletePriority: Int,
+) : AutocompleteProvider {
+    val result = CompletableDeferred<AutocompleteResult?>()
+    val queries = mutableListOf<String>()
+    var cancelled = false
+
+    override suspend fun getAutocompleteSuggestion(query: String): AutocompleteResult? {
+        queries.add(query)
+        try {
+            return result.await()
+        } catch (e: CancellationException) {
+            cancelled = true
+            throw e
+        }
+    }
+}
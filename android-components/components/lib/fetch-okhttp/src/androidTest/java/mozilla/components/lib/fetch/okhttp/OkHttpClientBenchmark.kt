@@ -0,0 +1,97 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.fetch.okhttp
+
+import android.content.Context
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.concept.fetch.Request
+import okhttp3.Cache
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Before
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/** Compares requests with a custom read timeout using a pooled derived client and a client per request. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class OkHttpClientBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val server = MockWebServer()
+
+    @Before
+    fun setUp() {
+        server.setDispatcher(
+            object : Dispatcher() {
+                override fun dispatch(request: RecordedRequest) = MockResponse().setBody("{}")
+            },
+        )
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun fetchWithDefaultClient() {
+        val client = OkHttpClient(okhttp3.OkHttpClient(), context)
+        val request = Request(server.url("/").toString(), cookiePolicy = Request.CookiePolicy.OMIT)
+
+        benchmarkRule.measureRepeated {
+            client.fetch(request).use { it.body.string() }
+        }
+    }
+
+    @Test
+    fun fetchWithPooledDerivedClient() {
+        val client = OkHttpClient(okhttp3.OkHttpClient(), context)
+        val request = Request(
+            server.url("/").toString(),
+            readTimeout = READ_TIMEOUT_SECONDS to TimeUnit.SECONDS,
+            cookiePolicy = Request.CookiePolicy.OMIT,
+        )
+
+        benchmarkRule.measureRepeated {
+            client.fetch(request).use { it.body.string() }
+        }
+    }
+
+    @Test
+    fun fetchWithRebuiltClient() {
+        val client = okhttp3.OkHttpClient()
+        val cacheDirectory = File(context.cacheDir, "benchmark")
+        val request = okhttp3.Request.Builder().url(server.url("/")).build()
+
+        benchmarkRule.measureRepeated {
+            val cache = Cache(cacheDirectory, OkHttpClient.CACHE_MAX_SIZE)
+            val requestClient = client.newBuilder()
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .cache(cache)
+                .build()
+            requestClient.newCall(request).execute().use { it.body()!!.string() }
+            // Not closed by OkHttpClient before, but the benchmark would run out of file descriptors otherwise.
+            cache.close()
+        }
+    }
+
+    private companion object {
+        const val READ_TIMEOUT_SECONDS = 10L
+    }
+}
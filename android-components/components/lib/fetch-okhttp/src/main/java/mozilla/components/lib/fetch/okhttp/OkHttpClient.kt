@@ -12,20 +12,29 @@ import mozilla.components.concept.fetch.MutableHeaders
 import mozilla.components.concept.fetch.Request
 import mozilla.components.concept.fetch.Response
 import mozilla.components.concept.fetch.isDataUri
-import mozilla.components.lib.fetch.okhttp.OkHttpClient.Companion.CACHE_MAX_SIZE
+import mozilla.components.lib.fetch.okhttp.OkHttpClient.Companion.getOrCreateCache
 import mozilla.components.lib.fetch.okhttp.OkHttpClient.Companion.getOrCreateCookieManager
 import okhttp3.Cache
 import okhttp3.CacheControl
 import okhttp3.JavaNetCookieJar
 import okhttp3.OkHttpClient
 import okhttp3.RequestBody
+import java.io.File
+import java.io.IOException
 import java.net.CookieHandler
 import java.net.CookieManager
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
 typealias RequestBuilder = okhttp3.Request.Builder
 
 /**
  * [Client] implementation using OkHttp.
+ *
+ * Requests with a configuration different from [client] (e.g. custom timeouts) are performed with clients derived
+ * from [client]. Derived clients are reused for all requests with the same configuration, and share the connection
+ * pool and dispatcher of [client]: connections (and their TLS sessions and HTTP/2 streams) are reused across all
+ * requests to the same host.
  */
 class OkHttpClient(
     private val client: OkHttpClient = OkHttpClient(),
@@ -36,6 +45,8 @@ class OkHttpClient(
         "Accept-Encoding" to "gzip",
     )
 
+    private val derivedClients = ConcurrentHashMap<ClientConfiguration, OkHttpClient>()
+
     override fun fetch(request: Request): Response {
         if (request.private) {
             throw IllegalArgumentException("Client doesn't support private request")
@@ -45,8 +56,46 @@ class OkHttpClient(
             return fetchDataUri(request)
         }
 
-        val requestClient = client.rebuildFor(request, context)
+        val actualResponse = newCall(request).execute()
+
+        return actualResponse.toResponse()
+    }
+
+    /**
+     * Enqueues the request with OkHttp: no thread is blocked while waiting for the response. Cancelling the returned
+     * [Client.Call] cancels the OkHttp call, which closes its connection.
+     */
+    override fun fetchAsync(request: Request, callback: Client.Callback): Client.Call {
+        if (request.private) {
+            throw IllegalArgumentException("Client doesn't support private request")
+        }
+
+        if (request.isDataUri()) {
+            try {
+                callback.onResponse(fetchDataUri(request))
+            } catch (e: IOException) {
+                callback.onFailure(e)
+            }
+            return Client.Call {}
+        }
+
+        val call = newCall(request)
+        call.enqueue(
+            object : okhttp3.Callback {
+                override fun onResponse(call: okhttp3.Call, response: okhttp3.Response) {
+                    callback.onResponse(response.toResponse())
+                }
+
+                override fun onFailure(call: okhttp3.Call, e: IOException) {
+                    callback.onFailure(e)
+                }
+            },
+        )
+
+        return Client.Call { call.cancel() }
+    }
 
+    private fun newCall(request: Request): okhttp3.Call {
         val requestBuilder = createRequestBuilderWithBody(request)
         requestBuilder.addHeadersFrom(request, defaultHeaders = defaultHeaders)
 
@@ -54,15 +103,30 @@ class OkHttpClient(
             requestBuilder.cacheControl(CacheControl.FORCE_NETWORK)
         }
 
-        val actualResponse = requestClient.newCall(
-            requestBuilder.build(),
-        ).execute()
+        return clientFor(request).newCall(requestBuilder.build())
+    }
 
-        return actualResponse.toResponse()
+    /**
+     * Returns the client for performing [request]: either [client], or a client derived from it for the configuration
+     * of [request].
+     */
+    internal fun clientFor(request: Request): OkHttpClient {
+        val configuration = ClientConfiguration.from(request) ?: return client
+        derivedClients[configuration]?.let { return it }
+
+        val derivedClient = configuration.deriveFrom(client, context)
+        if (derivedClients.size >= MAX_DERIVED_CLIENTS) {
+            // Unusually many configurations, e.g. timeouts computed per request: don't keep them all.
+            return derivedClient
+        }
+        return derivedClients.putIfAbsent(configuration, derivedClient) ?: derivedClient
     }
 
     companion object {
         internal const val CACHE_MAX_SIZE: Long = 10L * 1024L * 1024L
+        internal const val MAX_DERIVED_CLIENTS = 16
+
+        private val caches = mutableMapOf<File, Cache>()
 
         fun getOrCreateCookieManager(): CookieManager {
             if (CookieHandler.getDefault() == null) {
@@ -70,37 +134,69 @@ class OkHttpClient(
             }
             return CookieHandler.getDefault() as CookieManager
         }
+
+        /**
+         * Returns the [Cache] in the cache directory of [context]. All clients use the same instance, since a
+         * directory must only be used by one [Cache] at a time.
+         */
+        internal fun getOrCreateCache(context: Context): Cache = synchronized(caches) {
+            caches.getOrPut(context.cacheDir) { Cache(context.cacheDir, CACHE_MAX_SIZE) }
+        }
     }
 }
 
-private fun OkHttpClient.rebuildFor(request: Request, context: Context?): OkHttpClient {
-    @Suppress("ComplexCondition")
-    if (request.connectTimeout != null ||
-        request.readTimeout != null ||
-        request.redirect != Request.Redirect.FOLLOW ||
-        request.cookiePolicy != Request.CookiePolicy.OMIT
-    ) {
-        val clientBuilder = newBuilder()
-
-        request.connectTimeout?.let { (timeout, unit) -> clientBuilder.connectTimeout(timeout, unit) }
-        request.readTimeout?.let { (timeout, unit) -> clientBuilder.readTimeout(timeout, unit) }
-
-        if (request.redirect == Request.Redirect.MANUAL) {
+/**
+ * The configuration of a request that requires a client derived from the default client.
+ */
+private data class ClientConfiguration(
+    val connectTimeoutMillis: Long?,
+    val readTimeoutMillis: Long?,
+    val followRedirects: Boolean,
+    val includeCookies: Boolean,
+) {
+    fun deriveFrom(client: OkHttpClient, context: Context?): OkHttpClient {
+        val clientBuilder = client.newBuilder()
+
+        connectTimeoutMillis?.let { clientBuilder.connectTimeout(it, TimeUnit.MILLISECONDS) }
+        readTimeoutMillis?.let { clientBuilder.readTimeout(it, TimeUnit.MILLISECONDS) }
+
+        if (!followRedirects) {
             clientBuilder.followRedirects(false)
         }
 
-        if (request.cookiePolicy == Request.CookiePolicy.INCLUDE) {
+        if (includeCookies) {
             clientBuilder.cookieJar(JavaNetCookieJar(getOrCreateCookieManager()))
         }
 
         context?.let {
-            clientBuilder.cache(Cache(context.cacheDir, CACHE_MAX_SIZE))
+            clientBuilder.cache(getOrCreateCache(context))
         }
 
         return clientBuilder.build()
     }
 
-    return this
+    companion object {
+        /**
+         * Returns the configuration of [request], or null if the default client can perform it.
+         */
+        fun from(request: Request): ClientConfiguration? {
+            @Suppress("ComplexCondition")
+            if (request.connectTimeout == null &&
+                request.readTimeout == null &&
+                request.redirect == Request.Redirect.FOLLOW &&
+                request.cookiePolicy == Request.CookiePolicy.OMIT
+            ) {
+                return null
+            }
+
+            return ClientConfiguration(
+                connectTimeoutMillis = request.connectTimeout?.let { (timeout, unit) -> unit.toMillis(timeout) },
+                readTimeoutMillis = request.readTimeout?.let { (timeout, unit) -> unit.toMillis(timeout) },
+                followRedirects = request.redirect == Request.Redirect.FOLLOW,
+                includeCookies = request.cookiePolicy == Request.CookiePolicy.INCLUDE,
+            )
+        }
+    }
 }
 
 private fun okhttp3.Response.toResponse(): Response {
@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.fetch.okhttp
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
+import mozilla.components.support.test.robolectric.testContext
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(AndroidJUnit4::class)
+class OkHttpClientTest {
+    private val defaultClient = okhttp3.OkHttpClient()
+    private val client = OkHttpClient(defaultClient, testContext)
+
+    @Test
+    fun `requests with the configuration of the default client use the default client`() {
+        assertSame(
+            defaultClient,
+            client.clientFor(Request("https://www.mozilla.org", cookiePolicy = Request.CookiePolicy.OMIT)),
+        )
+    }
+
+    @Test
+    fun `requests with the same configuration use the same derived client`() {
+        val derivedClient = client.clientFor(
+            Request("https://www.mozilla.org", readTimeout = 10L to TimeUnit.SECONDS),
+        )
+
+        assertNotSame(defaultClient, derivedClient)
+        assertEquals(10_000, derivedClient.readTimeoutMillis())
+        assertSame(
+            derivedClient,
+            client.clientFor(Request("https://example.org", readTimeout = 10_000L to TimeUnit.MILLISECONDS)),
+        )
+        assertNotSame(
+            derivedClient,
+            client.clientFor(Request("https://www.mozilla.org", readTimeout = 20L to TimeUnit.SECONDS)),
+        )
+        assertNotSame(
+            derivedClient,
+            client.clientFor(
+                Request(
+                    "https://www.mozilla.org",
+                    readTimeout = 10L to TimeUnit.SECONDS,
+                    redirect = Request.Redirect.MANUAL,
+                ),
+            ),
+        )
+    }
+
+    @Test
+    fun `derived clients share the connection pool, the dispatcher and the cache`() {
+        val derivedClient1 = client.clientFor(Request("https://www.mozilla.org"))
+        val derivedClient2 = client.clientFor(
+            Request("https://www.mozilla.org", redirect = Request.Redirect.MANUAL),
+        )
+
+        assertFalse(derivedClient2.followRedirects())
+        assertSame(defaultClient.connectionPool(), derivedClient1.connectionPool())
+        assertSame(defaultClient.connectionPool(), derivedClient2.connectionPool())
+        assertSame(defaultClient.dispatcher(), derivedClient1.dispatcher())
+        assertSame(defaultClient.dispatcher(), derivedClient2.dispatcher())
+        assertNull(defaultClient.cache())
+        assertSame(derivedClient1.cache(), derivedClient2.cache())
+
+        // Clients for the same context use the same cache, since a directory can only be used by one cache.
+        val otherClient = OkHttpClient(okhttp3.OkHttpClient(), testContext)
+        assertSame(derivedClient1.cache(), otherClient.clientFor(Request("https://www.mozilla.org")).cache())
+    }
+
+    @Test
+    fun `fetchAsync calls the callback with the response`() {
+        withServer(MockResponse().setBody("Hello World")) { server ->
+            val callback = LatchCallback()
+
+            client.fetchAsync(Request(server.url("/").toString()), callback)
+
+            assertTrue(callback.latch.await(10, TimeUnit.SECONDS))
+            assertEquals("Hello World", callback.response!!.use { it.body.string() })
+            assertNull(callback.exception)
+        }
+    }
+
+    @Test
+    fun `cancelling the call of fetchAsync cancels the OkHttp call`() {
+        withServer(MockResponse().setBody("Hello World").setHeadersDelay(10, TimeUnit.SECONDS)) { server ->
+            val callback = LatchCallback()
+
+            val call = client.fetchAsync(Request(server.url("/").toString()), callback)
+            assertNotNull(server.takeRequest(10, TimeUnit.SECONDS))
+            call.cancel()
+
+            assertTrue(callback.latch.await(5, TimeUnit.SECONDS))
+            assertNull(callback.response)
+            assertNotNull(callback.exception)
+        }
+    }
+
+    private fun withServer(response: MockResponse, block: (MockWebServer) -> Unit) {
+        val server = MockWebServer()
+        server.enqueue(response)
+        try {
+            server.start()
+            block(server)
+        } finally {
+            server.shutdown()
+        }
+    }
+
+    private class LatchCallback : Client.Callback {
+        val latch = CountDownLatch(1)
+        var response: Response? = null
+        var exception: IOException? = null
+
+        override fun onResponse(response: Response) {
+            this.response = response
+            latch.countDown()
+        }
+
+        override fun onFailure(exception: IOException) {
+            this.exception = exception
+            latch.countDown()
+        }
+    }
+}
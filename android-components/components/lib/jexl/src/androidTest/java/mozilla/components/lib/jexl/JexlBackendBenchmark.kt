@@ -0,0 +1,105 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.jexl
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import mozilla.components.lib.jexl.evaluator.JexlContext
+import mozilla.components.lib.jexl.ext.toJexl
+import mozilla.components.lib.jexl.value.JexlArray
+import mozilla.components.lib.jexl.value.JexlObject
+import mozilla.components.lib.jexl.value.JexlString
+import org.junit.Assert.assertEquals
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Targeting expressions similar to the ones used by experiments and messages.
+ */
+private val EXPRESSIONS = listOf(
+    "app_version|versionCompare('110.0') >= 0",
+    "language in ['en', 'de', 'fr'] && region == 'US'",
+    "is_already_enrolled || days_since_install >= 7 && days_since_update < 28",
+    "'org.mozilla.fenix' in installed_apps && device.manufacturer != 'Amazon'",
+    "device.android_sdk_version >= 26 && device.screen.width * device.screen.density > 1080",
+    "events[.name == 'app_opened' && .count > 3].count > 0",
+    "is_default_browser ? 60 * 60 * 24 * 7 > seconds_since_seen : false",
+)
+
+/** Compares evaluating compiled targeting expressions with the interpreter and the compiler [JexlBackend]. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class JexlBackendBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val context = createContext()
+
+    @Test
+    fun evaluateInterpreted() = benchmarkEvaluate(JexlBackend.INTERPRETER)
+
+    @Test
+    fun evaluateCompiled() = benchmarkEvaluate(JexlBackend.COMPILER)
+
+    @Test
+    fun backendsReturnSameResults() {
+        val interpreter = createJexl(JexlBackend.INTERPRETER)
+        val compiler = createJexl(JexlBackend.COMPILER)
+
+        for (expression in EXPRESSIONS) {
+            assertEquals(
+                expression,
+                interpreter.evaluateBooleanExpression(expression, context),
+                compiler.evaluateBooleanExpression(expression, context),
+            )
+        }
+    }
+
+    private fun benchmarkEvaluate(backend: JexlBackend) {
+        val jexl = createJexl(backend)
+        val expressions = EXPRESSIONS.map { jexl.compile(it) }
+
+        benchmarkRule.measureRepeated {
+            for (expression in expressions) {
+                expression.evaluateBooleanExpression(context)
+            }
+        }
+    }
+
+    private fun createJexl(backend: JexlBackend) = Jexl(backend = backend).apply {
+        addTransform("versionCompare") { value, arguments ->
+            val version = value.toString().substringBefore('.').toInt()
+            val other = arguments.first().toString().substringBefore('.').toInt()
+            version.compareTo(other).toJexl()
+        }
+    }
+}
+
+private fun createContext() = JexlContext(
+    "app_version" to "112.1.0".toJexl(),
+    "language" to "en".toJexl(),
+    "region" to "US".toJexl(),
+    "is_already_enrolled" to false.toJexl(),
+    "is_default_browser" to true.toJexl(),
+    "days_since_install" to 12.toJexl(),
+    "days_since_update" to 3.toJexl(),
+    "seconds_since_seen" to 3600.toJexl(),
+    "installed_apps" to JexlArray(JexlString("org.mozilla.fenix"), JexlString("org.mozilla.focus")),
+    "device" to JexlObject(
+        "manufacturer" to "Google".toJexl(),
+        "android_sdk_version" to 33.toJexl(),
+        "screen" to JexlObject(
+            "width" to 1080.toJexl(),
+            "density" to 2.75.toJexl(),
+        ),
+    ),
+    "events" to JexlArray(
+        JexlObject("name" to "app_opened".toJexl(), "count" to 12.toJexl()),
+        JexlObject("name" to "tab_opened".toJexl(), "count" to 40.toJexl()),
+    ),
+)
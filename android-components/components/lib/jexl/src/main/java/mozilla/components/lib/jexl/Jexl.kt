@@ -4,8 +4,6 @@
 
 package mozilla.components.lib.jexl
 
-import mozilla.components.lib.jexl.evaluator.Evaluator
-import mozilla.components.lib.jexl.evaluator.EvaluatorException
 import mozilla.components.lib.jexl.evaluator.JexlContext
 import mozilla.components.lib.jexl.evaluator.Transform
 import mozilla.components.lib.jexl.grammar.Grammar
@@ -13,14 +11,16 @@ import mozilla.components.lib.jexl.lexer.Lexer
 import mozilla.components.lib.jexl.lexer.LexerException
 import mozilla.components.lib.jexl.parser.Parser
 import mozilla.components.lib.jexl.parser.ParserException
-import mozilla.components.lib.jexl.value.JexlUndefined
 import mozilla.components.lib.jexl.value.JexlValue
 
 class Jexl(
     private val grammar: Grammar = Grammar(),
+    cacheSize: Int = DEFAULT_CACHE_SIZE,
+    private val backend: JexlBackend = JexlBackend.INTERPRETER,
 ) {
     private val lexer: Lexer = Lexer(grammar)
     private val transforms: MutableMap<String, Transform> = mutableMapOf()
+    private val cache = ExpressionCache(cacheSize)
 
     /**
      * Adds or replaces a transform function in this Jexl instance.
@@ -35,6 +35,32 @@ class Jexl(
         transforms[name] = transform
     }
 
+    /**
+     * Compiles a Jexl string into a [JexlExpression] that can be evaluated repeatedly without
+     * lexing and parsing the string again. The most recently compiled expressions are cached, so
+     * compiling the same string again is cheap.
+     *
+     * @param expression The Jexl expression to be compiled.
+     * @return The compiled expression.
+     * @throws JexlException if lexing or parsing the expression failed.
+     */
+    @Throws(JexlException::class)
+    fun compile(expression: String): JexlExpression {
+        synchronized(cache) {
+            cache[expression]?.let { return it }
+
+            val ast = try {
+                Parser(grammar).parse(lexer.tokenize(expression))
+            } catch (e: LexerException) {
+                throw JexlException(e)
+            } catch (e: ParserException) {
+                throw JexlException(e)
+            }
+
+            return JexlExpression(expression, ast, grammar, transforms, backend).also { cache[expression] = it }
+        }
+    }
+
     /**
      * Evaluates a Jexl string within an optional context.
      *
@@ -45,24 +71,8 @@ class Jexl(
      * @throws JexlException if lexing, parsing or evaluating the expression failed.
      */
     @Throws(JexlException::class)
-    @Suppress("ThrowsCount")
     fun evaluate(expression: String, context: JexlContext = JexlContext()): JexlValue {
-        val parser = Parser(grammar)
-        val evaluator = Evaluator(context, grammar, transforms)
-
-        try {
-            val tokens = lexer.tokenize(expression)
-            val astTree = parser.parse(tokens)
-                ?: return JexlUndefined()
-
-            return evaluator.evaluate(astTree)
-        } catch (e: LexerException) {
-            throw JexlException(e)
-        } catch (e: ParserException) {
-            throw JexlException(e)
-        } catch (e: EvaluatorException) {
-            throw JexlException(e)
-        }
+        return compile(expression).evaluate(context)
     }
 
     /**
@@ -75,24 +85,30 @@ class Jexl(
         context: JexlContext = JexlContext(),
         defaultValue: Boolean? = null,
     ): Boolean {
-        val result = try {
-            evaluate(expression, context)
-        } catch (e: EvaluatorException) {
-            throw JexlException(e)
-        }
+        return compile(expression).evaluateBooleanExpression(context, defaultValue)
+    }
 
-        return try {
-            result.toBoolean()
-        } catch (e: EvaluatorException) {
-            if (defaultValue != null) {
-                return defaultValue
-            } else {
-                throw JexlException(e)
-            }
-        }
+    companion object {
+        /**
+         * The default number of compiled expressions that are kept in memory.
+         */
+        const val DEFAULT_CACHE_SIZE = 100
     }
 }
 
+/**
+ * A least recently used cache of compiled expressions, keyed by the expression string.
+ */
+private class ExpressionCache(
+    private val maxSize: Int,
+) : LinkedHashMap<String, JexlExpression>(maxSize, LOAD_FACTOR, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, JexlExpression>?): Boolean {
+        return size > maxSize
+    }
+}
+
+private const val LOAD_FACTOR = 0.75f
+
 /**
  * Generic exception thrown when evaluating an expression failed.
  */
@@ -0,0 +1,22 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.jexl
+
+/**
+ * The backends a [Jexl] instance can use for evaluating expressions. Both yield the same results.
+ */
+enum class JexlBackend {
+    /**
+     * Walks the abstract syntax tree of an expression on every evaluation.
+     */
+    INTERPRETER,
+
+    /**
+     * Compiles the abstract syntax tree of an expression once, folding constant subexpressions and
+     * resolving operators ahead of time. Evaluating a compiled expression allocates fewer
+     * intermediate values, which makes it faster for expressions that get evaluated repeatedly.
+     */
+    COMPILER,
+}
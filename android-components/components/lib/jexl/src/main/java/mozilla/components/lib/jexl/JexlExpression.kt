@@ -0,0 +1,93 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.jexl
+
+import mozilla.components.lib.jexl.ast.AstNode
+import mozilla.components.lib.jexl.evaluator.CompiledBooleanNode
+import mozilla.components.lib.jexl.evaluator.Compiler
+import mozilla.components.lib.jexl.evaluator.Evaluator
+import mozilla.components.lib.jexl.evaluator.EvaluatorException
+import mozilla.components.lib.jexl.evaluator.JexlContext
+import mozilla.components.lib.jexl.evaluator.Transform
+import mozilla.components.lib.jexl.grammar.Grammar
+import mozilla.components.lib.jexl.value.JexlUndefined
+import mozilla.components.lib.jexl.value.JexlValue
+
+/**
+ * A Jexl expression that has been lexed and parsed by [Jexl.compile] and that can be evaluated
+ * repeatedly, within different contexts.
+ *
+ * The expression uses the transforms of the [Jexl] instance that compiled it, including transforms
+ * added after it was compiled.
+ *
+ * With [JexlBackend.COMPILER], the abstract syntax tree gets compiled by the [Compiler] when this
+ * expression is created. Otherwise it is walked by the [Evaluator] on every evaluation.
+ */
+class JexlExpression internal constructor(
+    val expression: String,
+    private val ast: AstNode?,
+    private val grammar: Grammar,
+    private val transforms: Map<String, Transform>,
+    backend: JexlBackend = JexlBackend.INTERPRETER,
+) {
+    private val compiled = if (ast != null && backend == JexlBackend.COMPILER) {
+        Compiler(grammar, transforms).compile(ast)
+    } else {
+        null
+    }
+
+    /**
+     * Evaluates this expression within an optional context.
+     *
+     * @param context A mapping of variables to values, which will be made accessible to the Jexl
+     *                expression when evaluating it.
+     * @return The result of the evaluation.
+     * @throws JexlException if evaluating the expression failed.
+     */
+    @Throws(JexlException::class)
+    fun evaluate(context: JexlContext = JexlContext()): JexlValue {
+        ast ?: return JexlUndefined()
+
+        return try {
+            compiled?.evaluate(context, relativeContext = null)
+                ?: Evaluator(context, grammar, transforms).evaluate(ast)
+        } catch (e: EvaluatorException) {
+            throw JexlException(e)
+        }
+    }
+
+    /**
+     * Evaluates this expression with an optional context to a Boolean result. Optionally a default
+     * value can be provided that will be returned if the expression does not return a boolean
+     * result.
+     */
+    fun evaluateBooleanExpression(
+        context: JexlContext = JexlContext(),
+        defaultValue: Boolean? = null,
+    ): Boolean {
+        if (compiled is CompiledBooleanNode) {
+            // The result is always a boolean: Skip wrapping it in a JexlValue.
+            return try {
+                compiled.evaluateBoolean(context, relativeContext = null)
+            } catch (e: EvaluatorException) {
+                throw JexlException(e)
+            }
+        }
+
+        val result = evaluate(context)
+
+        return try {
+            result.toBoolean()
+        } catch (e: EvaluatorException) {
+            if (defaultValue != null) {
+                return defaultValue
+            } else {
+                throw JexlException(e)
+            }
+        }
+    }
+
+    override fun toString() = expression
+}
@@ -0,0 +1,411 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.jexl.evaluator
+
+import mozilla.components.lib.jexl.JexlException
+import mozilla.components.lib.jexl.ast.ArrayLiteral
+import mozilla.components.lib.jexl.ast.AstNode
+import mozilla.components.lib.jexl.ast.BinaryExpression
+import mozilla.components.lib.jexl.ast.ConditionalExpression
+import mozilla.components.lib.jexl.ast.FilterExpression
+import mozilla.components.lib.jexl.ast.Identifier
+import mozilla.components.lib.jexl.ast.Literal
+import mozilla.components.lib.jexl.ast.ObjectLiteral
+import mozilla.components.lib.jexl.ast.Transformation
+import mozilla.components.lib.jexl.ast.UnaryExpression
+import mozilla.components.lib.jexl.grammar.Grammar
+import mozilla.components.lib.jexl.value.JexlArray
+import mozilla.components.lib.jexl.value.JexlBoolean
+import mozilla.components.lib.jexl.value.JexlDouble
+import mozilla.components.lib.jexl.value.JexlInteger
+import mozilla.components.lib.jexl.value.JexlObject
+import mozilla.components.lib.jexl.value.JexlString
+import mozilla.components.lib.jexl.value.JexlUndefined
+import mozilla.components.lib.jexl.value.JexlValue
+
+private val TRUE = JexlBoolean(true)
+private val FALSE = JexlBoolean(false)
+
+// The elements of the default grammar, whose operators the Compiler implements with specialized nodes.
+private val BUILT_IN_ELEMENTS = Grammar().elements
+
+/**
+ * A node of an abstract syntax tree that has been compiled by the [Compiler]: Everything that does
+ * not depend on the context (operators, identifier names, literal values) has been resolved ahead
+ * of time, so evaluating the node only needs to call into the compiled nodes of its children.
+ */
+internal abstract class CompiledNode {
+    /**
+     * Evaluates this node within the given [context] and, inside of a filter expression, the
+     * [relativeContext] of the element being filtered.
+     */
+    abstract fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue
+}
+
+/**
+ * A [CompiledNode] that always yields a [JexlBoolean], e.g. a comparison. [evaluateBoolean] returns
+ * the result without wrapping it in a [JexlValue].
+ */
+internal abstract class CompiledBooleanNode : CompiledNode() {
+    abstract fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean
+
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        if (evaluateBoolean(context, relativeContext)) TRUE else FALSE
+}
+
+/**
+ * Compiles a JEXL abstract syntax tree into a tree of [CompiledNode]s. This is an alternative to
+ * walking the tree with the [Evaluator] on every evaluation, that yields the same results:
+ *
+ * - Subexpressions that only consist of literals are evaluated once, when compiling.
+ * - Comparison and logical operators are evaluated without allocating intermediate [JexlBoolean]s.
+ * - Transforms are looked up when evaluating, so that transforms added later still apply.
+ *
+ * Operators are only implemented by specialized nodes if the [grammar] uses the built-in element of
+ * the operator. Otherwise they are evaluated through the [grammar], like the [Evaluator] does.
+ */
+internal class Compiler(
+    private val grammar: Grammar = Grammar(),
+    private val transforms: Map<String, Transform> = emptyMap(),
+) {
+    fun compile(node: AstNode): CompiledNode {
+        val compiled = when (node) {
+            is Literal -> compileLiteral(node)
+            is BinaryExpression -> compileBinaryExpression(node)
+            is Identifier -> compileIdentifier(node)
+            is ObjectLiteral -> ObjectNode(node.properties.mapValues { compile(it.value) })
+            @Suppress("UNCHECKED_CAST")
+            is ArrayLiteral -> ArrayNode((node.values as List<AstNode>).map { compile(it) })
+            is ConditionalExpression -> ConditionalNode(
+                compile(node.test!!),
+                node.consequent?.let { compile(it) },
+                node.alternate?.let { compile(it) },
+            )
+            is Transformation -> compileTransformation(node)
+            is FilterExpression -> compileFilterExpression(node)
+            is UnaryExpression -> ErrorNode { _, _ ->
+                throw JexlException(message = "Unary expression evaluation can't be validated")
+            }
+        }
+
+        return if (compiled.isFoldable()) fold(compiled) else compiled
+    }
+
+    private fun compileLiteral(node: Literal): CompiledNode = when (val value = node.value) {
+        is String -> ConstantNode(JexlString(value))
+        is Double -> ConstantNode(JexlDouble(value))
+        is Int -> ConstantNode(JexlInteger(value))
+        is Boolean -> ConstantNode(if (value) TRUE else FALSE)
+        else -> ErrorNode { _, _ -> throw EvaluatorException("Unknown value type: ${value!!::class}") }
+    }
+
+    private fun compileBinaryExpression(node: BinaryExpression): CompiledNode {
+        val left = compile(node.left!!)
+        val right = compile(node.right!!)
+
+        val operator = node.operator!!
+        if (grammar.elements[operator] != BUILT_IN_ELEMENTS[operator]) {
+            // The grammar changes the semantics of this operator: Evaluate it like the Evaluator does.
+            return BinaryNode(left, right, operator, grammar.elements[operator]!!.evaluate)
+        }
+
+        return when (operator) {
+            "==" -> EqualsNode(left, right, expected = true)
+            "!=" -> EqualsNode(left, right, expected = false)
+            ">" -> CompareNode(left, right) { it > 0 }
+            ">=" -> CompareNode(left, right) { it >= 0 }
+            "<" -> CompareNode(left, right) { it < 0 }
+            "<=" -> CompareNode(left, right) { it <= 0 }
+            "&&" -> AndNode(left, right)
+            "||" -> OrNode(left, right)
+            "in" -> InNode(left, right)
+            else -> BinaryNode(left, right, operator, grammar.elements[operator]!!.evaluate)
+        }
+    }
+
+    private fun compileIdentifier(node: Identifier): CompiledNode {
+        val name = node.value.toString()
+
+        return when {
+            node.from != null -> ScopedIdentifierNode(compile(node.from!!), name)
+            node.relative -> RelativeIdentifierNode(name)
+            else -> IdentifierNode(name)
+        }
+    }
+
+    private fun compileTransformation(node: Transformation): CompiledNode {
+        val name = node.name
+        val subject = node.subject?.let { compile(it) }
+        val arguments = node.arguments.map { compile(it) }
+
+        return TransformationNode(transforms, name, subject, arguments)
+    }
+
+    private fun compileFilterExpression(node: FilterExpression): CompiledNode {
+        val subject = node.subject?.let { compile(it) }
+            ?: return ErrorNode { _, _ -> throw EvaluatorException("Missing subject for filter expression") }
+        val expression = node.expression?.let { compile(it) }
+
+        return when {
+            expression == null -> ErrorNode { context, relativeContext ->
+                subject.evaluate(context, relativeContext)
+                throw EvaluatorException("Missing expression for filter expression")
+            }
+            node.relative -> RelativeFilterNode(subject, expression)
+            else -> StaticFilterNode(subject, expression)
+        }
+    }
+
+    /**
+     * Evaluates a node whose children are all constants ahead of time. If that fails, the node is
+     * kept, so that the error is thrown when evaluating the expression, like the [Evaluator] would.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun fold(node: CompiledNode): CompiledNode {
+        return try {
+            ConstantNode(node.evaluate(JexlContext(), null))
+        } catch (e: Exception) {
+            node
+        }
+    }
+}
+
+/**
+ * Returns true if this node does not depend on the context and can therefore be evaluated when
+ * compiling. Transforms are never folded since they may not be pure.
+ */
+private fun CompiledNode.isFoldable(): Boolean = when (this) {
+    is ConstantNode -> false
+    is BinaryNode -> left is ConstantNode && right is ConstantNode
+    is EqualsNode -> left is ConstantNode && right is ConstantNode
+    is CompareNode -> left is ConstantNode && right is ConstantNode
+    is AndNode -> left is ConstantNode && right is ConstantNode
+    is OrNode -> left is ConstantNode && right is ConstantNode
+    is InNode -> left is ConstantNode && right is ConstantNode
+    is ArrayNode -> values.all { it is ConstantNode }
+    is ObjectNode -> properties.values.all { it is ConstantNode }
+    is ConditionalNode -> test is ConstantNode &&
+        (consequent == null || consequent is ConstantNode) &&
+        (alternate == null || alternate is ConstantNode)
+    else -> false
+}
+
+private class ConstantNode(val value: JexlValue) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?) = value
+}
+
+/**
+ * A node that can't be evaluated, e.g. an unsupported expression. Like the [Evaluator], this only
+ * throws once the node gets evaluated.
+ */
+private class ErrorNode(
+    private val error: (JexlContext, JexlObject?) -> Nothing,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        error(context, relativeContext)
+}
+
+private class BinaryNode(
+    val left: CompiledNode,
+    val right: CompiledNode,
+    private val operator: String?,
+    private val evaluate: ((JexlValue, JexlValue) -> JexlValue)?,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        return evaluate?.invoke(leftValue, rightValue)
+            ?: throw EvaluatorException("Can't evaluate _operator: $operator")
+    }
+}
+
+private class EqualsNode(
+    val left: CompiledNode,
+    val right: CompiledNode,
+    private val expected: Boolean,
+) : CompiledBooleanNode() {
+    override fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        return (leftValue == rightValue) == expected
+    }
+}
+
+private class CompareNode(
+    val left: CompiledNode,
+    val right: CompiledNode,
+    private val test: (Int) -> Boolean,
+) : CompiledBooleanNode() {
+    override fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        val result = if (leftValue is JexlInteger && rightValue is JexlInteger) {
+            leftValue.value.compareTo(rightValue.value)
+        } else {
+            leftValue.compareTo(rightValue)
+        }
+
+        return test(result)
+    }
+}
+
+/**
+ * Like the [Evaluator], both operands of the logical operators get evaluated, but the right operand
+ * is only converted to a boolean if needed.
+ */
+private class AndNode(val left: CompiledNode, val right: CompiledNode) : CompiledBooleanNode() {
+    override fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        return leftValue.toBoolean() && rightValue.toBoolean()
+    }
+}
+
+private class OrNode(val left: CompiledNode, val right: CompiledNode) : CompiledBooleanNode() {
+    override fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        return leftValue.toBoolean() || rightValue.toBoolean()
+    }
+}
+
+private class InNode(val left: CompiledNode, val right: CompiledNode) : CompiledBooleanNode() {
+    override fun evaluateBoolean(context: JexlContext, relativeContext: JexlObject?): Boolean {
+        val leftValue = left.evaluate(context, relativeContext)
+        val rightValue = right.evaluate(context, relativeContext)
+
+        return when {
+            leftValue is JexlString -> rightValue.toString().contains(leftValue.value)
+            rightValue is JexlArray -> rightValue.value.contains(leftValue)
+            else -> throw EvaluatorException(
+                "Operator 'in' not applicable to " + leftValue::class + " and " + rightValue::class,
+            )
+        }
+    }
+}
+
+private class IdentifierNode(private val name: String) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?) = context.get(name)
+}
+
+private class RelativeIdentifierNode(private val name: String) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        relativeContext?.value?.get(name) ?: JexlUndefined()
+}
+
+private class ScopedIdentifierNode(
+    private val from: CompiledNode,
+    private val name: String,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        when (val subContext = from.evaluate(context, relativeContext)) {
+            is JexlArray -> when (val obj = subContext.value[0]) {
+                is JexlUndefined -> obj
+                is JexlObject -> obj.value[name] ?: throw EvaluatorException("$name is undefined")
+                else -> throw EvaluatorException("$obj is not an object")
+            }
+
+            is JexlObject -> subContext.value[name] ?: JexlUndefined()
+
+            else -> JexlUndefined()
+        }
+}
+
+private class ObjectNode(val properties: Map<String, CompiledNode>) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        JexlObject(properties.mapValues { it.value.evaluate(context, relativeContext) })
+}
+
+private class ArrayNode(val values: List<CompiledNode>) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue =
+        JexlArray(values.map { it.evaluate(context, relativeContext) })
+}
+
+private class ConditionalNode(
+    val test: CompiledNode,
+    val consequent: CompiledNode?,
+    val alternate: CompiledNode?,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue {
+        val result = test.evaluate(context, relativeContext)
+
+        return if (result.toBoolean()) {
+            consequent?.evaluate(context, relativeContext) ?: result
+        } else {
+            alternate!!.evaluate(context, relativeContext)
+        }
+    }
+}
+
+private class TransformationNode(
+    private val transforms: Map<String, Transform>,
+    private val name: String?,
+    private val subject: CompiledNode?,
+    private val arguments: List<CompiledNode>,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue {
+        val transform = transforms[name]
+            ?: throw EvaluatorException("Unknown transform $name")
+
+        if (subject == null) {
+            throw EvaluatorException("Missing subject for transform")
+        }
+
+        val subjectValue = subject.evaluate(context, relativeContext)
+        val argumentValues = arguments.map { it.evaluate(context, relativeContext) }
+
+        return transform.invoke(subjectValue, argumentValues)
+    }
+}
+
+private class RelativeFilterNode(
+    private val subject: CompiledNode,
+    private val expression: CompiledNode,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue {
+        val subjectValue = subject.evaluate(context, relativeContext)
+        val filterSubject = subjectValue as? JexlArray ?: JexlArray(subjectValue)
+
+        val values = filterSubject.value.filter { element ->
+            val value = expression.evaluate(context, element as? JexlObject)
+            value.value as Boolean
+        }
+
+        return JexlArray(values)
+    }
+}
+
+private class StaticFilterNode(
+    private val subject: CompiledNode,
+    private val expression: CompiledNode,
+) : CompiledNode() {
+    override fun evaluate(context: JexlContext, relativeContext: JexlObject?): JexlValue {
+        val subjectValue = subject.evaluate(context, relativeContext)
+        val result = expression.evaluate(context, relativeContext)
+
+        return when {
+            result is JexlBoolean -> if (result.value) subjectValue else JexlUndefined()
+
+            subjectValue is JexlUndefined -> subjectValue
+
+            subjectValue is JexlObject && result is JexlString -> subjectValue.value[result.value]
+                ?: JexlUndefined()
+
+            subjectValue is JexlArray && result is JexlInteger -> subjectValue.value.getOrNull(result.value)
+                ?: JexlUndefined()
+
+            // We just convert a double to int here .. hoping for the best!
+            subjectValue is JexlArray && result is JexlDouble ->
+                subjectValue.value.getOrNull(result.value.toInt()) ?: JexlUndefined()
+
+            else -> throw EvaluatorException("Cannot filter $subjectValue by $result")
+        }
+    }
+}
@@ -18,9 +18,14 @@ import kotlin.math.floor
  * Grammar of the JEXL language.
  *
  * Note that changes here may require a change in the Lexer or Parser.
+ *
+ * @param overrides Elements replacing the built-in elements with the same name, e.g. for changing
+ * the semantics of an operator.
  */
 @Suppress("MagicNumber") // Operator precedence uses numbers and I do not see the need for constants..
-class Grammar {
+class Grammar internal constructor(overrides: Map<String, GrammarElement>) {
+    constructor() : this(emptyMap())
+
     val elements: Map<String, GrammarElement> = mapOf(
         "." to GrammarElement(Token.Type.DOT),
         "[" to GrammarElement(Token.Type.OPEN_BRACKET),
@@ -131,7 +136,7 @@ class Grammar {
         ) { _, right ->
             JexlBoolean(!right.toBoolean())
         },
-    )
+    ) + overrides
 }
 
 data class GrammarElement(
@@ -9,7 +9,12 @@ import mozilla.components.lib.jexl.ext.toJexl
 import mozilla.components.lib.jexl.ext.toJexlArray
 import mozilla.components.lib.jexl.value.JexlArray
 import mozilla.components.lib.jexl.value.JexlObject
+import mozilla.components.lib.jexl.value.JexlUndefined
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
 import org.junit.Test
 
 class JexlTest {
@@ -109,4 +114,95 @@ class JexlTest {
             jexl.evaluate("employees[.age >= 30 && .age < 90][.age < 35]", context),
         )
     }
+
+    @Test
+    fun `Should evaluate compiled expression within different contexts`() {
+        val jexl = Jexl()
+        val expression = jexl.compile("age > 30 && name in ['Archer', 'Lana']")
+
+        assertTrue(
+            expression.evaluateBooleanExpression(JexlContext("age" to 36.toJexl(), "name" to "Archer".toJexl())),
+        )
+        assertFalse(
+            expression.evaluateBooleanExpression(JexlContext("age" to 29.toJexl(), "name" to "Lana".toJexl())),
+        )
+        assertEquals(
+            true.toJexl(),
+            expression.evaluate(JexlContext("age" to 50.toJexl(), "name" to "Lana".toJexl())),
+        )
+    }
+
+    @Test
+    fun `Should return cached compiled expression`() {
+        val jexl = Jexl()
+
+        val expression = jexl.compile("1 + 2")
+        assertSame(expression, jexl.compile("1 + 2"))
+        assertNotSame(expression, jexl.compile("1 + 3"))
+        assertEquals(3.toJexl(), expression.evaluate())
+    }
+
+    @Test
+    fun `Should evict least recently used compiled expressions`() {
+        val jexl = Jexl(cacheSize = 2)
+
+        val first = jexl.compile("1")
+        val second = jexl.compile("2")
+        assertSame(first, jexl.compile("1"))
+
+        // "2" is the least recently used expression now.
+        jexl.compile("3")
+
+        assertSame(first, jexl.compile("1"))
+        assertNotSame(second, jexl.compile("2"))
+    }
+
+    @Test
+    fun `Compiled expression uses transforms added after compiling`() {
+        val jexl = Jexl()
+        val expression = jexl.compile("name|lower")
+
+        jexl.addTransform("lower") { value, _ ->
+            value.toString().lowercase().toJexl()
+        }
+
+        assertEquals("archer".toJexl(), expression.evaluate(JexlContext("name" to "ARCHER".toJexl())))
+    }
+
+    @Test
+    fun `Compiled empty expression evaluates to undefined`() {
+        val jexl = Jexl()
+
+        assertEquals(JexlUndefined(), jexl.compile("").evaluate())
+    }
+
+    @Test(expected = JexlException::class)
+    fun `Compiling invalid expression throws`() {
+        Jexl().compile("1 +")
+    }
+
+    @Test(expected = JexlException::class)
+    fun `Evaluating compiled expression with unknown transform throws`() {
+        Jexl().compile("name|unknown").evaluate(JexlContext("name" to "Archer".toJexl()))
+    }
+
+    @Test
+    fun `Should evaluate expressions with compiler backend`() {
+        val jexl = Jexl(backend = JexlBackend.COMPILER)
+        jexl.addTransform("lower") { value, _ ->
+            value.toString().lowercase().toJexl()
+        }
+
+        val context = JexlContext("age" to 36.toJexl(), "name" to "ARCHER".toJexl())
+
+        assertTrue(jexl.evaluateBooleanExpression("age > 30 && name|lower in ['archer', 'lana']", context))
+        assertEquals("archer!".toJexl(), jexl.evaluate("name|lower + '!'", context))
+        assertEquals(JexlUndefined(), jexl.evaluate("", context))
+        assertTrue(jexl.evaluateBooleanExpression("{}", context, defaultValue = true))
+    }
+
+    @Test(expected = JexlException::class)
+    fun `Should throw when evaluating invalid boolean expression with compiler backend`() {
+        Jexl(backend = JexlBackend.COMPILER).evaluateBooleanExpression("age > 30", JexlContext(), defaultValue = true)
+    }
 }
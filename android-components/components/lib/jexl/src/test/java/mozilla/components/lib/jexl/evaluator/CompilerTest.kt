@@ -0,0 +1,192 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.jexl.evaluator
+
+import mozilla.components.lib.jexl.JexlException
+import mozilla.components.lib.jexl.ast.AstNode
+import mozilla.components.lib.jexl.grammar.Grammar
+import mozilla.components.lib.jexl.grammar.GrammarElement
+import mozilla.components.lib.jexl.lexer.Lexer
+import mozilla.components.lib.jexl.lexer.Token
+import mozilla.components.lib.jexl.parser.Parser
+import mozilla.components.lib.jexl.value.JexlArray
+import mozilla.components.lib.jexl.value.JexlBoolean
+import mozilla.components.lib.jexl.value.JexlInteger
+import mozilla.components.lib.jexl.value.JexlObject
+import mozilla.components.lib.jexl.value.JexlString
+import mozilla.components.lib.jexl.value.JexlValue
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CompilerTest {
+    private val grammar = Grammar()
+
+    @Test
+    fun `Should fold constant subexpressions`() {
+        val node = compile("[\"foo\", (2 + 3) * 4, 1 < 2]")
+
+        val first = node.evaluate(JexlContext(), null)
+        val second = node.evaluate(JexlContext(), null)
+
+        assertEquals(JexlArray(JexlString("foo"), JexlInteger(20), JexlBoolean(true)), first)
+        assertSame(first, second)
+    }
+
+    @Test
+    fun `Should not fold expressions depending on the context`() {
+        val node = compile("[foo, 1 + 2]")
+
+        val first = node.evaluate(JexlContext("foo" to JexlInteger(1)), null)
+        val second = node.evaluate(JexlContext("foo" to JexlInteger(2)), null)
+
+        assertEquals(JexlArray(JexlInteger(1), JexlInteger(3)), first)
+        assertEquals(JexlArray(JexlInteger(2), JexlInteger(3)), second)
+        assertNotSame(first, second)
+    }
+
+    @Test
+    fun `Should not fold transforms`() {
+        var invocations = 0
+        val node = compile(
+            "\"foo\"|count",
+            transforms = mapOf(
+                "count" to { value, _ ->
+                    invocations++
+                    value
+                },
+            ),
+        )
+
+        node.evaluate(JexlContext(), null)
+        node.evaluate(JexlContext(), null)
+
+        assertEquals(2, invocations)
+    }
+
+    @Test(expected = EvaluatorException::class)
+    fun `Should throw errors of constant subexpressions when evaluating`() {
+        val node = compile("\"foo\" * 2")
+
+        node.evaluate(JexlContext(), null)
+    }
+
+    @Test(expected = JexlException::class)
+    fun `Should throw when evaluating unary expressions`() {
+        compile("!true").evaluate(JexlContext(), null)
+    }
+
+    @Test
+    fun `Should evaluate comparisons without wrapping the result`() {
+        val node = compile("user.age >= 18 && \"en\" in user.locales && user.name != \"\"")
+
+        assertTrue(node is CompiledBooleanNode)
+
+        val adult = createUser(age = 36, locales = listOf("en", "de"))
+        val minor = createUser(age = 16, locales = listOf("en"))
+
+        assertTrue((node as CompiledBooleanNode).evaluateBoolean(adult, null))
+        assertFalse(node.evaluateBoolean(minor, null))
+        assertSame(node.evaluate(adult, null), node.evaluate(adult, null))
+    }
+
+    @Test
+    fun `Should compare mixed number types`() {
+        assertEquals(JexlBoolean(true), compile("a < 2.5").evaluate(JexlContext("a" to JexlInteger(2)), null))
+        assertEquals(JexlBoolean(true), compile("a == 2.0").evaluate(JexlContext("a" to JexlInteger(2)), null))
+    }
+
+    @Test
+    fun `Should evaluate relative filters with the context of each element`() {
+        val node = compile("users[.age > minimum && .locale in locales].name")
+        val context = JexlContext(
+            "minimum" to JexlInteger(20),
+            "locales" to JexlArray(JexlString("en"), JexlString("de")),
+            "users" to JexlArray(
+                JexlObject("name" to JexlString("a"), "age" to JexlInteger(18), "locale" to JexlString("en")),
+                JexlObject("name" to JexlString("b"), "age" to JexlInteger(30), "locale" to JexlString("fr")),
+                JexlObject("name" to JexlString("c"), "age" to JexlInteger(40), "locale" to JexlString("de")),
+            ),
+        )
+
+        assertEquals(JexlString("c"), node.evaluate(context, null))
+    }
+
+    @Test
+    fun `Should yield same results as evaluator`() {
+        val expressions = listOf(
+            "user.age >= 18 && \"en\" in user.locales",
+            "user.name + \" (\" + user.age + \")\"",
+            "user.age // 10 * 10",
+            "user.locales[0] == \"en\" ? \"english\" : \"other\"",
+            "user.locales[.length > 0]",
+            "user.missing.property",
+            "{name: user.name, adult: user.age > 17}",
+            "user.name|upper in [\"STERLING\", \"MALORY\"]",
+        )
+        val transforms = mapOf<String, Transform>(
+            "upper" to { value, _ -> JexlString(value.toString().uppercase()) },
+        )
+        val context = createUser(age = 36, locales = listOf("en", "de"))
+
+        for (expression in expressions) {
+            val tree = toTree(expression)
+
+            assertEquals(
+                expression,
+                Evaluator(context, grammar, transforms).evaluate(tree),
+                Compiler(grammar, transforms).compile(tree).evaluate(context, null),
+            )
+        }
+    }
+
+    @Test
+    fun `Should evaluate operators of a custom grammar like the evaluator`() {
+        val customGrammar = Grammar(
+            mapOf(
+                "==" to GrammarElement(Token.Type.BINARY_OP, 20) { left, right ->
+                    JexlBoolean(left.toString().equals(right.toString(), ignoreCase = true))
+                },
+                "&&" to GrammarElement(Token.Type.BINARY_OP, 10) { left, right ->
+                    if (left.toBoolean()) right else left
+                },
+            ),
+        )
+        val context = createUser(age = 36, locales = listOf("en", "de"))
+
+        for (expression in listOf("user.name == \"STERLING\"", "user.age > 17 && user.name", "\"a\" == \"A\"")) {
+            val tree = Parser(customGrammar).parse(Lexer(customGrammar).tokenize(expression))!!
+            val node = Compiler(customGrammar).compile(tree)
+
+            assertEquals(expression, Evaluator(context, customGrammar).evaluate(tree), node.evaluate(context, null))
+        }
+        val and = Compiler(customGrammar).compile(toTree("user.age > 17 && user.name"))
+        assertEquals(JexlString("Sterling"), and.evaluate(context, null))
+
+        // Built-in operators of the grammar are still compiled into specialized nodes.
+        assertTrue(Compiler(customGrammar).compile(toTree("user.age > 17")) is CompiledBooleanNode)
+    }
+
+    private fun createUser(age: Int, locales: List<String>) = JexlContext(
+        "user" to JexlObject(
+            "name" to JexlString("Sterling"),
+            "age" to JexlInteger(age),
+            "locales" to JexlArray(locales.map<String, JexlValue> { JexlString(it) }),
+        ),
+    )
+
+    private fun compile(
+        expression: String,
+        transforms: Map<String, Transform> = emptyMap(),
+    ): CompiledNode = Compiler(grammar, transforms).compile(toTree(expression))
+
+    private fun toTree(expression: String): AstNode {
+        return Parser(grammar).parse(Lexer(grammar).tokenize(expression))
+            ?: throw AssertionError("Expression yielded null AST tree")
+    }
+}
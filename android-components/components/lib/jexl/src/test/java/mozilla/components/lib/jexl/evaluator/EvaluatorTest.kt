@@ -360,6 +360,11 @@ class EvaluatorTest {
         val actual = evaluator.evaluate(tree)
 
         assertEquals(result, if (unpack) actual.value else actual)
+
+        // The compiler is an alternative to the evaluator and must yield the same results.
+        val compiled = Compiler(grammar, transforms).compile(tree).evaluate(context, relativeContext = null)
+
+        assertEquals(result, if (unpack) compiled.value else compiled)
     }
 
     private fun toTree(
@@ -0,0 +1,79 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.publicsuffixlist
+
+import android.content.Context
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Ignore
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+private val DOMAINS = listOf(
+    "www.mozilla.org",
+    "developer.mozilla.org",
+    "www.bbc.co.uk",
+    "news.ycombinator.com",
+    "a.b.ide.kyoto.jp",
+    "en.m.wikipedia.org",
+    "mozilla.github.io",
+    "www.city.kawasaki.jp",
+    "localhost",
+    "shishi.xn--fiqs8s",
+)
+
+/** Compares public suffix lookups using [PublicSuffixListData] and [BinarySearchPublicSuffixListData]. */
+@Ignore("This is a benchmark, see docs/contribute/benchmarks.md for how to run it")
+@RunWith(AndroidJUnit4::class)
+class PublicSuffixListBenchmark {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val context: Context
+        get() = ApplicationProvider.getApplicationContext()
+
+    @Test
+    fun lookupTrie() {
+        val data = PublicSuffixListLoader.load(context)
+
+        benchmarkRule.measureRepeated {
+            for (domain in DOMAINS) {
+                data.getPublicSuffixOffset(domain)
+            }
+        }
+    }
+
+    @Test
+    fun lookupBinarySearch() {
+        val data = PublicSuffixListLoader.read(context, ::BinarySearchPublicSuffixListData)
+
+        benchmarkRule.measureRepeated {
+            for (domain in DOMAINS) {
+                data.getPublicSuffixOffset(domain)
+            }
+        }
+    }
+
+    @Test
+    fun load() {
+        benchmarkRule.measureRepeated {
+            PublicSuffixListLoader.load(context)
+        }
+    }
+
+    @Test
+    fun implementationsReturnSameResults() {
+        val trie = PublicSuffixListLoader.load(context)
+        val binarySearch = PublicSuffixListLoader.read(context, ::BinarySearchPublicSuffixListData)
+
+        for (domain in DOMAINS) {
+            assertEquals(domain, binarySearch.getPublicSuffixOffset(domain), trie.getPublicSuffixOffset(domain))
+        }
+    }
+}
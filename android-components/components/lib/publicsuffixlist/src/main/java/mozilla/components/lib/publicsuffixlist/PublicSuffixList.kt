@@ -5,6 +5,7 @@
 package mozilla.components.lib.publicsuffixlist
 
 import android.content.Context
+import android.util.LruCache
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Deferred
@@ -22,14 +23,20 @@ import kotlinx.coroutines.async
  *
  * https://publicsuffix.org/
  * https://github.com/publicsuffix/list
+ *
+ * @param cacheSize The number of registrable domains (see [getPublicSuffixPlusOne]) to keep in memory.
  */
 class PublicSuffixList(
     context: Context,
     dispatcher: CoroutineDispatcher = Dispatchers.IO,
     private val scope: CoroutineScope = CoroutineScope(dispatcher),
+    cacheSize: Int = DEFAULT_CACHE_SIZE,
 ) {
     private val data: PublicSuffixListData by lazy { PublicSuffixListLoader.load(context) }
 
+    // Registrable domains by domain, shared by all lookups of registrable domains.
+    private val publicSuffixPlusOneCache = LruCache<String, CachedResult>(cacheSize)
+
     /**
      * Prefetch the public suffix list from disk so that it is available in memory.
      */
@@ -55,10 +62,7 @@ class PublicSuffixList(
      * are passed (e.g., a full URL, a domain with a trailing '/', etc) this may return an incorrect result.
      */
     fun isPublicSuffix(domain: String): Deferred<Boolean> = scope.async {
-        when (data.getPublicSuffixOffset(domain)) {
-            is PublicSuffixOffset.PublicSuffix -> true
-            else -> false
-        }
+        data.getPublicSuffixOffset(domain) == PublicSuffixOffset.PublicSuffix
     }
 
     /**
@@ -76,14 +80,51 @@ class PublicSuffixList(
      * are passed (e.g., a full URL, a domain with a trailing '/', etc) this may return an incorrect result.
      */
     fun getPublicSuffixPlusOne(domain: String): Deferred<String?> = scope.async {
-        when (val offset = data.getPublicSuffixOffset(domain)) {
-            is PublicSuffixOffset.Offset ->
-                domain
-                    .split('.')
-                    .drop(offset.value)
-                    .joinToString(separator = ".")
-            else -> null
-        }
+        getPublicSuffixPlusOneSync(domain)
+    }
+
+    /**
+     * Returns the registrable domain (see [getPublicSuffixPlusOne]) of every domain in [domains], in
+     * the same order. All domains are looked up in a single coroutine, which makes this preferable
+     * to calling [getPublicSuffixPlusOne] for every domain if there are many.
+     *
+     * @param [domains] _must_ be valid domains. [PublicSuffixList] performs no validation, and if any unexpected
+     * values are passed (e.g., a full URL, a domain with a trailing '/', etc) this may return incorrect results.
+     */
+    fun getPublicSuffixPlusOnes(domains: Iterable<String>): Deferred<List<String?>> = scope.async {
+        getPublicSuffixPlusOnesSync(domains)
+    }
+
+    /**
+     * Synchronous version of [getPublicSuffixPlusOne]. This is meant to be used once [prefetch] has
+     * completed: Otherwise it reads the public suffix list from disk on the calling thread.
+     */
+    fun getPublicSuffixPlusOneSync(domain: String): String? {
+        publicSuffixPlusOneCache.get(domain)?.let { return it.value }
+
+        val offset = data.getPublicSuffixOffset(domain)
+        val result = if (offset.isOffset) domain.dropLabels(offset.value) else null
+
+        publicSuffixPlusOneCache.put(domain, CachedResult(result))
+        return result
+    }
+
+    /**
+     * Synchronous version of [getPublicSuffixPlusOnes]. This is meant to be used once [prefetch] has
+     * completed: Otherwise it reads the public suffix list from disk on the calling thread.
+     */
+    fun getPublicSuffixPlusOnesSync(domains: Iterable<String>): List<String?> {
+        return domains.map { getPublicSuffixPlusOneSync(it) }
+    }
+
+    /**
+     * Synchronous version of [getPublicSuffixPlusOnes] for a lazily evaluated sequence of [domains].
+     * The returned sequence looks up every domain when it is iterated. This is meant to be used
+     * once [prefetch] has completed: Otherwise it reads the public suffix list from disk on the
+     * thread iterating the sequence.
+     */
+    fun getPublicSuffixPlusOnesSync(domains: Sequence<String>): Sequence<String?> {
+        return domains.map { getPublicSuffixPlusOneSync(it) }
     }
 
     /**
@@ -101,14 +142,8 @@ class PublicSuffixList(
      * are passed (e.g., a full URL, a domain with a trailing '/', etc) this may return an incorrect result.
      */
     fun getPublicSuffix(domain: String) = scope.async {
-        when (val offset = data.getPublicSuffixOffset(domain)) {
-            is PublicSuffixOffset.Offset ->
-                domain
-                    .split('.')
-                    .drop(offset.value + 1)
-                    .joinToString(separator = ".")
-            else -> null
-        }
+        val offset = data.getPublicSuffixOffset(domain)
+        if (offset.isOffset) domain.dropLabels(offset.value + 1) else null
     }
 
     /**
@@ -126,13 +161,51 @@ class PublicSuffixList(
      * are passed (e.g., a full URL, a domain with a trailing '/', etc) this may return an incorrect result.
      */
     fun stripPublicSuffix(domain: String) = scope.async {
-        when (val offset = data.getPublicSuffixOffset(domain)) {
-            is PublicSuffixOffset.Offset ->
-                domain
-                    .split('.')
-                    .joinToString(separator = ".", limit = offset.value + 1, truncated = "")
-                    .dropLast(1)
-            else -> domain
+        val offset = data.getPublicSuffixOffset(domain)
+        if (offset.isOffset) domain.takeLabels(offset.value + 1) else domain
+    }
+
+    /**
+     * An entry of [publicSuffixPlusOneCache], since [LruCache] does not support `null` values.
+     */
+    private class CachedResult(val value: String?)
+
+    companion object {
+        /**
+         * The default number of registrable domains that are kept in memory.
+         */
+        const val DEFAULT_CACHE_SIZE = 500
+    }
+}
+
+/**
+ * Returns this domain without its first [count] labels, or an empty string if it does not have
+ * more than [count] labels.
+ */
+private fun String.dropLabels(count: Int): String {
+    var start = 0
+    repeat(count) {
+        val dot = indexOf('.', start)
+        if (dot == -1) {
+            return ""
+        }
+        start = dot + 1
+    }
+    return substring(start)
+}
+
+/**
+ * Returns the first [count] labels of this domain. If the domain does not have more than [count]
+ * labels, the last character is dropped instead (which is what the previous implementation of
+ * [PublicSuffixList.stripPublicSuffix] returned for inputs with alternative label separators).
+ */
+private fun String.takeLabels(count: Int): String {
+    var end = -1
+    repeat(count) {
+        end = indexOf('.', end + 1)
+        if (end == -1) {
+            return dropLast(1)
         }
     }
+    return substring(0, end)
 }
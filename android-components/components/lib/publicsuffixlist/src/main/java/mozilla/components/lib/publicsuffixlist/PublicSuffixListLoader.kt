@@ -11,7 +11,15 @@ import java.io.IOException
 private const val PUBLIC_SUFFIX_LIST_FILE = "publicsuffixes"
 
 internal object PublicSuffixListLoader {
-    fun load(context: Context): PublicSuffixListData = context.assets.open(
+    fun load(context: Context): PublicSuffixListData = read(context, ::PublicSuffixListData)
+
+    /**
+     * Reads the raw rules and exception rules of the public suffix list and passes them to [block].
+     */
+    fun <T> read(
+        context: Context,
+        block: (rules: ByteArray, exceptions: ByteArray) -> T,
+    ): T = context.assets.open(
         PUBLIC_SUFFIX_LIST_FILE,
     ).buffered().use { stream ->
         val publicSuffixSize = stream.readInt()
@@ -20,7 +28,7 @@ internal object PublicSuffixListLoader {
         val exceptionSize = stream.readInt()
         val exceptionBytes = stream.readFully(exceptionSize)
 
-        PublicSuffixListData(publicSuffixBytes, exceptionBytes)
+        block(publicSuffixBytes, exceptionBytes)
     }
 }
 
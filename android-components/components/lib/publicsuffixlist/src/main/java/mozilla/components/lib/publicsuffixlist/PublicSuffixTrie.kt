@@ -0,0 +1,255 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.publicsuffixlist
+
+import java.util.TreeMap
+
+private const val ROOT = 0
+
+private const val FLAG_RULE = 1
+private const val FLAG_WILDCARD = 1 shl 1
+private const val FLAG_EXCEPTION = 1 shl 2
+
+private const val WILDCARD_PREFIX = "*."
+
+/**
+ * A trie of the rules of the public suffix list, keyed by domain labels from right to left (e.g.
+ * the rule "co.uk" is stored as "uk" -> "co").
+ *
+ * The trie is flattened into a few primitive arrays: the children of every node are stored next to
+ * each other and are sorted by their label, so that a child can be found using a binary search. The
+ * labels of all nodes share a single [CharArray]. This allows [find] to walk the labels of a domain
+ * in place without allocating.
+ *
+ * Wildcard rules (e.g. "*.ck") are not stored as nodes, but as a flag on the node of the suffix
+ * they apply to ("ck"). Like the generator of the list, this assumes that wildcards only ever
+ * appear as the leftmost label of a rule.
+ */
+internal class PublicSuffixTrie private constructor(
+    private val labels: CharArray,
+    private val labelStart: IntArray,
+    private val labelLength: IntArray,
+    private val firstChild: IntArray,
+    private val childCount: IntArray,
+    private val flags: ByteArray,
+) {
+    /**
+     * Returns the [PublicSuffixOffset] of the given [domain], which must already be converted to
+     * Unicode (see [java.net.IDN.toUnicode]).
+     */
+    @Suppress("ComplexMethod", "ReturnCount")
+    fun find(domain: CharSequence): PublicSuffixOffset {
+        val labelCount = countLabels(domain)
+        if (labelCount == 0) {
+            return PublicSuffixOffset.Invalid
+        }
+
+        var node = ROOT
+        var depth = 0
+        var exactMatch = 0
+        var wildcardMatch = 0
+        var exceptionMatch = 0
+
+        // Walk the labels from right to left, e.g. foo.bar.com turns into com, bar, foo. The longest
+        // matching rule wins.
+        var end = domain.length
+        while (end > 0) {
+            if (flags[node].toInt() and FLAG_WILDCARD != 0) {
+                // A wildcard rule matches any label below this node.
+                wildcardMatch = depth + 1
+            }
+
+            val start = findLabelStart(domain, end)
+            node = findChild(node, domain, start, end)
+            if (node < 0) {
+                break
+            }
+
+            depth++
+            val nodeFlags = flags[node].toInt()
+            if (nodeFlags and FLAG_RULE != 0) {
+                exactMatch = depth
+            }
+            if (nodeFlags and FLAG_EXCEPTION != 0) {
+                exceptionMatch = depth
+            }
+
+            end = start - 1
+        }
+
+        // Exception rules only apply to wildcard rules, so only use it if we matched a wildcard.
+        if (exceptionMatch > 0 && wildcardMatch > 0) {
+            // Exception rules hold the effective TLD plus one.
+            return PublicSuffixOffset(labelCount - exceptionMatch)
+        }
+
+        if (exactMatch == 0 && wildcardMatch == 0) {
+            // No rule matched: The prevailing rule is "*".
+            return if (labelCount == 1) {
+                PublicSuffixOffset.PrevailingRule
+            } else {
+                PublicSuffixOffset(labelCount - 2)
+            }
+        }
+
+        val ruleSize = maxOf(exactMatch, wildcardMatch)
+        return if (labelCount == ruleSize) {
+            PublicSuffixOffset.PublicSuffix
+        } else {
+            // The rule is for a public suffix, so we must take one more label.
+            PublicSuffixOffset(labelCount - (ruleSize + 1))
+        }
+    }
+
+    /**
+     * Returns the number of labels of [domain] or 0 if the domain is empty or any of its labels is.
+     */
+    private fun countLabels(domain: CharSequence): Int {
+        var count = 1
+        var start = 0
+        for (index in 0 until domain.length) {
+            if (domain[index] == '.') {
+                if (index == start) {
+                    return 0
+                }
+                count++
+                start = index + 1
+            }
+        }
+        return if (start == domain.length) 0 else count
+    }
+
+    /**
+     * Returns the start of the label of [domain] ending at [end].
+     */
+    private fun findLabelStart(domain: CharSequence, end: Int): Int {
+        var index = end - 1
+        while (index >= 0 && domain[index] != '.') {
+            index--
+        }
+        return index + 1
+    }
+
+    private fun findChild(node: Int, domain: CharSequence, start: Int, end: Int): Int {
+        var low = firstChild[node]
+        var high = low + childCount[node] - 1
+
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val result = compareLabel(mid, domain, start, end)
+            when {
+                result < 0 -> low = mid + 1
+                result > 0 -> high = mid - 1
+                else -> return mid
+            }
+        }
+
+        return -1
+    }
+
+    /**
+     * Compares the label of [node] with the label of [domain] between [start] and [end], in the
+     * same order as [String.compareTo].
+     */
+    private fun compareLabel(node: Int, domain: CharSequence, start: Int, end: Int): Int {
+        val offset = labelStart[node]
+        val length = labelLength[node]
+        val otherLength = end - start
+
+        for (index in 0 until minOf(length, otherLength)) {
+            val result = labels[offset + index] - domain[start + index]
+            if (result != 0) {
+                return result
+            }
+        }
+
+        return length - otherLength
+    }
+
+    private class Node(val label: String) {
+        val children = TreeMap<String, Node>()
+        var flags = 0
+
+        fun insert(rule: String, flag: Int) {
+            var node = this
+            for (label in rule.split('.').asReversed()) {
+                node = node.children.getOrPut(label) { Node(label) }
+            }
+            node.flags = node.flags or flag
+        }
+    }
+
+    companion object {
+        /**
+         * Compiles a [PublicSuffixTrie] from the [rules] and [exceptions] of the public suffix
+         * list, each given as UTF-8 encoded rules terminated by a '\n'.
+         */
+        fun build(rules: ByteArray, exceptions: ByteArray): PublicSuffixTrie {
+            val root = Node("")
+
+            rules.forEachRule { rule ->
+                if (rule.startsWith(WILDCARD_PREFIX)) {
+                    root.insert(rule.substring(WILDCARD_PREFIX.length), FLAG_WILDCARD)
+                } else {
+                    root.insert(rule, FLAG_RULE)
+                }
+            }
+
+            exceptions.forEachRule { rule ->
+                root.insert(rule, FLAG_EXCEPTION)
+            }
+
+            // Order the nodes breadth-first, so that the children of every node are adjacent.
+            val nodes = ArrayList<Node>()
+            nodes.add(root)
+            var index = 0
+            while (index < nodes.size) {
+                nodes.addAll(nodes[index].children.values)
+                index++
+            }
+
+            val labels = StringBuilder()
+            val labelStart = IntArray(nodes.size)
+            val labelLength = IntArray(nodes.size)
+            val firstChild = IntArray(nodes.size)
+            val childCount = IntArray(nodes.size)
+            val flags = ByteArray(nodes.size)
+
+            var nextChild = 1
+            nodes.forEachIndexed { position, node ->
+                labelStart[position] = labels.length
+                labelLength[position] = node.label.length
+                labels.append(node.label)
+
+                firstChild[position] = nextChild
+                childCount[position] = node.children.size
+                nextChild += node.children.size
+
+                flags[position] = node.flags.toByte()
+            }
+
+            return PublicSuffixTrie(
+                labels.toString().toCharArray(),
+                labelStart,
+                labelLength,
+                firstChild,
+                childCount,
+                flags,
+            )
+        }
+    }
+}
+
+private inline fun ByteArray.forEachRule(block: (String) -> Unit) {
+    var start = 0
+    for (index in indices) {
+        if (this[index] == '\n'.code.toByte()) {
+            if (index > start) {
+                block(String(this, start, index - start, Charsets.UTF_8))
+            }
+            start = index + 1
+        }
+    }
+}
@@ -411,6 +411,37 @@ class PublicSuffixListTest {
         assertNull(publicSuffixList.getPublicSuffixPlusOne("xn--fiqs8s").await())
     }
 
+    @Test
+    fun `Verify getPublicSuffixPlusOne for multiple domains`() = runTest {
+        val domains = listOf("www.mozilla.org", "co.uk", "www.bbc.co.uk", "", "www.mozilla.org", "a.b.ide.kyoto.jp")
+        val expected = listOf("mozilla.org", null, "bbc.co.uk", null, "mozilla.org", "b.ide.kyoto.jp")
+
+        val publicSuffixList = PublicSuffixList(testContext)
+        assertEquals(expected, publicSuffixList.getPublicSuffixPlusOnes(domains).await())
+
+        // Results are the same when served from the cache and for every variant of the API.
+        assertEquals(expected, publicSuffixList.getPublicSuffixPlusOnesSync(domains))
+        assertEquals(expected, publicSuffixList.getPublicSuffixPlusOnesSync(domains.asSequence()).toList())
+        assertEquals(expected, domains.map { publicSuffixList.getPublicSuffixPlusOneSync(it) })
+        assertEquals(expected, domains.map { publicSuffixList.getPublicSuffixPlusOne(it).await() })
+    }
+
+    @Test
+    fun `Verify getPublicSuffixPlusOne for multiple domains with small cache`() = runTest {
+        val domains = List(10) { "www.example$it.co.uk" }
+
+        val publicSuffixList = PublicSuffixList(testContext, cacheSize = 2).apply {
+            prefetch().await()
+        }
+
+        repeat(2) {
+            assertEquals(
+                List(10) { "example$it.co.uk" },
+                publicSuffixList.getPublicSuffixPlusOnesSync(domains),
+            )
+        }
+    }
+
     @Test
     fun `Accessing with and without prefetch`() = runTest {
         run {
@@ -0,0 +1,75 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.publicsuffixlist
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class PublicSuffixTrieTest {
+    private val trie = PublicSuffixTrie.build(
+        rules = rules("com", "uk", "co.uk", "ac.uk", "jp", "kyoto.jp", "*.kawasaki.jp", "*.ck", "github.io"),
+        exceptions = rules("city.kawasaki.jp", "www.ck"),
+    )
+
+    @Test
+    fun `Finds offset of domains matching exact rules`() {
+        assertEquals(PublicSuffixOffset(0), trie.find("mozilla.com"))
+        assertEquals(PublicSuffixOffset(1), trie.find("www.mozilla.com"))
+        assertEquals(PublicSuffixOffset(1), trie.find("www.bbc.co.uk"))
+        assertEquals(PublicSuffixOffset(0), trie.find("ox.ac.uk"))
+        assertEquals(PublicSuffixOffset(1), trie.find("a.b.kyoto.jp"))
+        assertEquals(PublicSuffixOffset(0), trie.find("mozilla.github.io"))
+    }
+
+    @Test
+    fun `Recognizes public suffixes`() {
+        assertEquals(PublicSuffixOffset.PublicSuffix, trie.find("com"))
+        assertEquals(PublicSuffixOffset.PublicSuffix, trie.find("co.uk"))
+        assertEquals(PublicSuffixOffset.PublicSuffix, trie.find("github.io"))
+        assertEquals(PublicSuffixOffset.PublicSuffix, trie.find("foo.kawasaki.jp"))
+    }
+
+    @Test
+    fun `Applies wildcard and exception rules`() {
+        assertEquals(PublicSuffixOffset(0), trie.find("a.foo.kawasaki.jp"))
+        assertEquals(PublicSuffixOffset(1), trie.find("b.a.foo.kawasaki.jp"))
+        assertEquals(PublicSuffixOffset(0), trie.find("city.kawasaki.jp"))
+        assertEquals(PublicSuffixOffset(1), trie.find("www.city.kawasaki.jp"))
+        assertEquals(PublicSuffixOffset(0), trie.find("www.ck"))
+        assertEquals(PublicSuffixOffset.PublicSuffix, trie.find("other.ck"))
+        assertEquals(PublicSuffixOffset(0), trie.find("example.other.ck"))
+    }
+
+    @Test
+    fun `Falls back to prevailing rule`() {
+        assertEquals(PublicSuffixOffset.PrevailingRule, trie.find("localhost"))
+        assertEquals(PublicSuffixOffset(0), trie.find("mozilla.example"))
+        assertEquals(PublicSuffixOffset(1), trie.find("www.mozilla.example"))
+        // "github" alone is not a rule, only "github.io" is.
+        assertEquals(PublicSuffixOffset(0), trie.find("mozilla.github"))
+    }
+
+    @Test
+    fun `Rejects empty domains and empty labels`() {
+        assertEquals(PublicSuffixOffset.Invalid, trie.find(""))
+        assertEquals(PublicSuffixOffset.Invalid, trie.find("."))
+        assertEquals(PublicSuffixOffset.Invalid, trie.find(".com"))
+        assertEquals(PublicSuffixOffset.Invalid, trie.find("mozilla..com"))
+        assertEquals(PublicSuffixOffset.Invalid, trie.find("mozilla.com."))
+    }
+
+    @Test
+    fun `Looks up labels in place of any CharSequence`() {
+        val domain = StringBuilder("www.mozilla.co.uk")
+        assertEquals(PublicSuffixOffset(1), trie.find(domain))
+
+        domain.setLength(domain.length - 3)
+        assertEquals(PublicSuffixOffset(1), trie.find(domain))
+    }
+
+    private fun rules(vararg rules: String): ByteArray {
+        return rules.sorted().joinToString(separator = "") { "$it\n" }.toByteArray(Charsets.UTF_8)
+    }
+}
@@ -0,0 +1,20 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.state
+
+/**
+ * Selects a slice of the [State] by key, e.g. a tab by its ID, for observing it with
+ * [Store.observeManually].
+ *
+ * For every state change [lookup] gets evaluated only once for all subscriptions using this
+ * [KeyedSelector] instance. The function it returns is then invoked by every subscription with its own
+ * key. Therefore a [KeyedSelector] should be created once, e.g. as a top-level property, and be shared
+ * by all observers instead of being created per subscription.
+ *
+ * @param lookup Function returning a lookup of slices by key for the given state.
+ */
+class KeyedSelector<S : State, K, T>(
+    internal val lookup: (S) -> (K) -> T,
+)
@@ -9,17 +9,28 @@ import android.os.Looper
 import androidx.annotation.CheckResult
 import androidx.annotation.VisibleForTesting
 import kotlinx.coroutines.CoroutineExceptionHandler
+import kotlinx.coroutines.CompletableJob
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import mozilla.components.lib.state.internal.ReducerChainBuilder
+import mozilla.components.lib.state.internal.SelectingObserver
+import mozilla.components.lib.state.internal.SelectorCache
 import mozilla.components.lib.state.internal.StoreThreadFactory
 import java.lang.ref.WeakReference
 import java.util.Collections
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
 
+/**
+ * The window (in milliseconds) during which actions dispatched via [Store.dispatchCoalesced] are
+ * collected before being reduced as one batch. Roughly one frame at 60 Hz.
+ */
+internal const val COALESCING_WINDOW_MS = 16L
+
 /**
  * A generic store holding an immutable [State].
  *
@@ -57,9 +68,17 @@ open class Store<S : State, A : Action>(
         scope.cancel()
     }
     private val dispatcherWithExceptionHandler = dispatcher + exceptionHandler
+    private val selectorCache = SelectorCache<S>()
 
     @Volatile private var currentState = initialState
 
+    // Only accessed from the store thread while reducing.
+    private var batching = false
+    private var batchChangedState = false
+
+    private val coalescingLock = Any()
+    private var coalescedBatch: CoalescedBatch<A>? = null
+
     /**
      * The current [State].
      */
@@ -88,17 +107,167 @@ open class Store<S : State, A : Action>(
         return subscription
     }
 
+    /**
+     * Registers an [Observer] function that will only be invoked when the result of [selector] changes.
+     *
+     * The [selector] gets evaluated once for every state change and its result gets compared (using
+     * [equals]) with the previous result. Only if it is different will [observer] be invoked with the new
+     * result. Results are memoized per state: Subscriptions that share the same [selector] instance will
+     * only evaluate it once for every state change. Since memoization is keyed on the [selector] instance,
+     * a lambda created per subscription is evaluated per subscription. To observe a slice by key (e.g. a
+     * tab by its ID) use the [KeyedSelector] variant instead.
+     *
+     * Like with [observeManually] the created [Subscription] is in paused state until explicitly resumed
+     * by calling [Subscription.resume]. Once resumed the [observer] will get invoked immediately with the
+     * result of [selector] for the latest state.
+     *
+     * @return A [Subscription] object that can be used to unsubscribe from further state changes.
+     */
+    @CheckResult(suggest = "observe")
+    @Synchronized
+    fun <T> observeManually(selector: (S) -> T, observer: Observer<T>): Subscription<S, A> {
+        val subscription = Subscription(
+            SelectingObserver({ state -> selectorCache.select(selector, state) }, observer),
+            store = this,
+        )
+        subscriptions.add(subscription)
+
+        return subscription
+    }
+
+    /**
+     * Registers an [Observer] function that will only be invoked when the slice of the [State] that
+     * [selector] returns for [key] changes.
+     *
+     * The lookup of [selector] gets evaluated only once per state change for all subscriptions sharing
+     * the same [selector] instance. Every subscription then only looks up its own [key] and compares
+     * the result (using [equals]) with the previous one.
+     *
+     * Like with [observeManually] the created [Subscription] is in paused state until explicitly resumed
+     * by calling [Subscription.resume]. Once resumed the [observer] will get invoked immediately with the
+     * slice for [key] of the latest state.
+     *
+     * @return A [Subscription] object that can be used to unsubscribe from further state changes.
+     */
+    @CheckResult(suggest = "observe")
+    @Synchronized
+    fun <K, T> observeManually(
+        selector: KeyedSelector<S, K, T>,
+        key: K,
+        observer: Observer<T>,
+    ): Subscription<S, A> {
+        val subscription = Subscription(
+            SelectingObserver({ state -> selectorCache.select(selector.lookup, state).invoke(key) }, observer),
+            store = this,
+        )
+        subscriptions.add(subscription)
+
+        return subscription
+    }
+
     /**
      * Dispatch an [Action] to the store in order to trigger a [State] change.
      */
-    fun dispatch(action: A) = scope.launch(dispatcherWithExceptionHandler) {
-        synchronized(this@Store) {
-            reducerChainBuilder.get(this@Store).invoke(action)
+    fun dispatch(action: A): Job = synchronized(coalescingLock) {
+        // Actions that are still waiting in the coalescing window were dispatched before this
+        // action and need to be reduced first to preserve ordering.
+        val pending = drainCoalescedBatch()
+
+        scope.launch(dispatcherWithExceptionHandler) {
+            synchronized(this@Store) {
+                if (pending == null) {
+                    reducerChainBuilder.get(this@Store).invoke(action)
+                } else {
+                    reduceCoalescedBatch(pending, listOf(action))
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch a list of [Action]s to the store. Every action will go through the chain of
+     * [Middleware] and the [Reducer] in order, but observers will only get notified once, with the
+     * [State] resulting from reducing the whole batch.
+     */
+    fun dispatchBatch(actions: List<A>): Job = synchronized(coalescingLock) {
+        val pending = drainCoalescedBatch()
+
+        scope.launch(dispatcherWithExceptionHandler) {
+            synchronized(this@Store) {
+                if (pending == null) {
+                    reduceBatch(actions)
+                } else {
+                    reduceCoalescedBatch(pending, actions)
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch an [Action] that may be coalesced with other actions dispatched through this
+     * method within a short window (roughly one frame). All actions collected in the window are
+     * then reduced as one batch (see [dispatchBatch]) and observers get notified only once.
+     *
+     * This is useful for high-frequency actions (e.g. progress updates) where observers only
+     * care about the latest state. Actions dispatched via [dispatch] or [dispatchBatch] after
+     * this method was called will still be reduced after the coalesced actions.
+     *
+     * @return A [Job] that completes once [action] and all other actions of its batch have been
+     * reduced, either when the window ends or earlier if a later [dispatch] or [dispatchBatch] call
+     * reduces them first. All actions of the same batch share this [Job].
+     */
+    fun dispatchCoalesced(action: A): Job = synchronized(coalescingLock) {
+        val batch = coalescedBatch ?: CoalescedBatch<A>(Job(scope.coroutineContext[Job])).also { batch ->
+            coalescedBatch = batch
+            scheduleCoalescedBatch(batch)
+        }
+        batch.actions.add(action)
+        batch.job
+    }
+
+    private fun scheduleCoalescedBatch(batch: CoalescedBatch<A>) = scope.launch(dispatcherWithExceptionHandler) {
+        delay(COALESCING_WINDOW_MS)
+
+        val pending = synchronized(coalescingLock) {
+            // The batch may already have been taken over by dispatch() or dispatchBatch().
+            if (coalescedBatch === batch) drainCoalescedBatch() else null
+        }
+        if (pending != null) {
+            synchronized(this@Store) {
+                reduceCoalescedBatch(pending, emptyList())
+            }
+        }
+    }
+
+    private fun drainCoalescedBatch(): CoalescedBatch<A>? {
+        return coalescedBatch.also { coalescedBatch = null }
+    }
+
+    private fun reduceCoalescedBatch(batch: CoalescedBatch<A>, actions: List<A>) {
+        reduceBatch(batch.actions + actions)
+        batch.job.complete()
+    }
+
+    private fun reduceBatch(actions: List<A>) {
+        val chain = reducerChainBuilder.get(this)
+
+        batching = true
+        try {
+            actions.forEach(chain)
+        } finally {
+            batching = false
+        }
+
+        if (batchChangedState) {
+            batchChangedState = false
+            notifySubscriptions(currentState)
         }
     }
 
     /**
      * Transitions from the current [State] to the passed in [state] and notifies all observers.
+     * While a batch of actions is being reduced, observers only get notified once the whole batch
+     * has been processed.
      */
     internal fun transitionTo(state: S) {
         if (state == currentState) {
@@ -107,6 +276,15 @@ open class Store<S : State, A : Action>(
         }
 
         currentState = state
+
+        if (batching) {
+            batchChangedState = true
+        } else {
+            notifySubscriptions(state)
+        }
+    }
+
+    private fun notifySubscriptions(state: S) {
         subscriptions.forEach { subscription -> subscription.dispatch(state) }
     }
 
@@ -114,6 +292,16 @@ open class Store<S : State, A : Action>(
         subscriptions.remove(subscription)
     }
 
+    /**
+     * Actions collected via [dispatchCoalesced] within one window and the [job] that completes once
+     * they have been reduced.
+     */
+    private class CoalescedBatch<A>(
+        val job: CompletableJob,
+    ) {
+        val actions = mutableListOf<A>()
+    }
+
     /**
      * A [Subscription] is returned whenever an observer is registered via the [observeManually] method. Calling
      * [unsubscribe] on the [Subscription] will unregister the observer.
@@ -134,6 +322,11 @@ open class Store<S : State, A : Action>(
         fun resume() {
             active = true
 
+            if (observer is SelectingObserver<*, *>) {
+                // Always deliver the latest value on resume, even if it has not changed while paused.
+                observer.reset()
+            }
+
             storeReference.get()?.state?.let(observer)
         }
 
@@ -23,6 +23,7 @@ import kotlinx.coroutines.flow.channelFlow
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import mozilla.components.lib.state.Action
+import mozilla.components.lib.state.KeyedSelector
 import mozilla.components.lib.state.Observer
 import mozilla.components.lib.state.State
 import mozilla.components.lib.state.Store
@@ -152,7 +153,49 @@ fun <S : State, A : Action> Store<S, A>.channel(
 @MainThread
 fun <S : State, A : Action> Store<S, A>.flow(
     owner: LifecycleOwner? = null,
-): Flow<S> {
+): Flow<S> = subscriptionFlow(owner) { observer -> observeManually(observer) }
+
+/**
+ * Creates a [Flow] for observing changes to a slice of the [State] in the [Store]. Other than
+ * mapping the result of [flow], the [selector] gets evaluated by the [Store] and a value will only be
+ * emitted if the result of [selector] changed.
+ *
+ * @param owner An optional [LifecycleOwner] that will be used to determine when to pause and resume
+ * the store subscription. When the [Lifecycle] is in STOPPED state then no value will be received.
+ * Once the [Lifecycle] switches back to at least STARTED state then the latest value and further
+ * updates will be emitted.
+ * @param selector Function returning the slice of the [State] to observe. Reusing the same
+ * [selector] instance for multiple flows allows the [Store] to evaluate it only once per state change.
+ */
+@MainThread
+fun <S : State, A : Action, T> Store<S, A>.flow(
+    owner: LifecycleOwner? = null,
+    selector: (S) -> T,
+): Flow<T> = subscriptionFlow(owner) { observer -> observeManually(selector, observer) }
+
+/**
+ * Creates a [Flow] for observing changes to the slice of the [State] in the [Store] that [selector]
+ * returns for [key]. The lookup of [selector] gets evaluated once per state change for all flows
+ * sharing the same [selector] and a value will only be emitted if the slice for [key] changed.
+ *
+ * @param owner An optional [LifecycleOwner] that will be used to determine when to pause and resume
+ * the store subscription. When the [Lifecycle] is in STOPPED state then no value will be received.
+ * Once the [Lifecycle] switches back to at least STARTED state then the latest value and further
+ * updates will be emitted.
+ * @param selector The [KeyedSelector] used to look up the slice of the [State].
+ * @param key The key of the slice to observe.
+ */
+@MainThread
+fun <S : State, A : Action, K, T> Store<S, A>.flow(
+    owner: LifecycleOwner? = null,
+    selector: KeyedSelector<S, K, T>,
+    key: K,
+): Flow<T> = subscriptionFlow(owner) { observer -> observeManually(selector, key, observer) }
+
+private fun <S : State, A : Action, T> Store<S, A>.subscriptionFlow(
+    owner: LifecycleOwner?,
+    subscribe: (Observer<T>) -> Store.Subscription<S, A>,
+): Flow<T> {
     var destroyed = owner?.lifecycle?.currentState == Lifecycle.State.DESTROYED
     val ownerDestroyedObserver = object : DefaultLifecycleObserver {
         override fun onDestroy(owner: LifecycleOwner) {
@@ -172,10 +215,10 @@ fun <S : State, A : Action> Store<S, A>.flow(
 
         owner?.lifecycle?.removeObserver(ownerDestroyedObserver)
 
-        val subscription = observeManually { state ->
+        val subscription = subscribe { value ->
             runBlocking {
                 try {
-                    send(state)
+                    send(value)
                 } catch (e: CancellationException) {
                     // It's possible for this channel to have been closed concurrently before
                     // we had a chance to unsubscribe. In this case we can just ignore this
@@ -220,6 +263,33 @@ fun <S : State, A : Action> Store<S, A>.flowScoped(
     }
 }
 
+/**
+ * Launches a coroutine in a new [MainScope] and creates a [Flow] for observing the slice of the
+ * [State] that [selector] returns for [key] in that scope. Invokes [block] inside that scope and
+ * passes the [Flow] to it.
+ *
+ * @param owner An optional [LifecycleOwner] that will be used to determine when to pause and resume
+ * the store subscription. When the [Lifecycle] is in STOPPED state then no value will be received.
+ * Once the [Lifecycle] switches back to at least STARTED state then the latest value and further
+ * updates will be emitted.
+ * @param selector The [KeyedSelector] used to look up the slice of the [State].
+ * @param key The key of the slice to observe.
+ * @return The [CoroutineScope] [block] is getting executed in.
+ */
+@MainThread
+fun <S : State, A : Action, K, T> Store<S, A>.flowScoped(
+    owner: LifecycleOwner? = null,
+    selector: KeyedSelector<S, K, T>,
+    key: K,
+    block: suspend (Flow<T>) -> Unit,
+): CoroutineScope {
+    return MainScope().apply {
+        launch {
+            block(flow(owner, selector, key))
+        }
+    }
+}
+
 /**
  * GenericLifecycleObserver implementation to bind an observer to a Lifecycle.
  */
@@ -0,0 +1,42 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.state.internal
+
+import mozilla.components.lib.state.Observer
+import mozilla.components.lib.state.State
+
+/**
+ * [Observer] implementation that only invokes the wrapped [observer] if the result of [select]
+ * changed compared to the last invocation.
+ */
+internal class SelectingObserver<S : State, T>(
+    private val select: (S) -> T,
+    private val observer: Observer<T>,
+) : (S) -> Unit {
+    private var hasValue = false
+    private var lastValue: T? = null
+
+    override fun invoke(state: S) {
+        val value = select(state)
+
+        if (hasValue && value == lastValue) {
+            // The observed slice of the state did not change.
+            return
+        }
+
+        hasValue = true
+        lastValue = value
+        observer.invoke(value)
+    }
+
+    /**
+     * Forgets the last observed value so that the next state will always be forwarded to the
+     * wrapped [observer].
+     */
+    fun reset() {
+        hasValue = false
+        lastValue = null
+    }
+}
@@ -0,0 +1,38 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.lib.state.internal
+
+import mozilla.components.lib.state.State
+import mozilla.components.lib.state.Store
+
+/**
+ * Memoizes the results of selector functions for the latest [State] of a [Store].
+ *
+ * All subscriptions registered with the same selector instance will share a single evaluation of
+ * that selector per state change. Results are dropped as soon as a different state is passed in.
+ */
+internal class SelectorCache<S : State> {
+    private var state: S? = null
+    private val results = HashMap<(S) -> Any?, Any?>()
+
+    /**
+     * Returns the result of [selector] for the given [state], evaluating it only if it has not
+     * been evaluated for this exact [state] instance yet.
+     */
+    @Synchronized
+    @Suppress("UNCHECKED_CAST")
+    fun <T> select(selector: (S) -> T, state: S): T {
+        if (state !== this.state) {
+            results.clear()
+            this.state = state
+        }
+
+        if (results.containsKey(selector)) {
+            return results[selector] as T
+        }
+
+        return selector(state).also { results[selector] = it }
+    }
+}
@@ -8,6 +8,7 @@ import mozilla.components.support.test.ext.joinBlocking
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertSame
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import java.io.IOException
@@ -117,6 +118,111 @@ class StoreTest {
         assertEquals(22, store.state.counter)
     }
 
+    @Test
+    fun `Selecting observer only gets notified if selected value changes`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        val observedValues = mutableListOf<Boolean>()
+        store.observeManually({ state -> state.counter >= 2 }) { value ->
+            observedValues.add(value)
+        }.also {
+            it.resume()
+        }
+
+        assertEquals(listOf(false), observedValues)
+
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+        assertEquals(listOf(false), observedValues)
+
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+        assertEquals(listOf(false, true), observedValues)
+
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+        assertEquals(listOf(false, true), observedValues)
+
+        store.dispatch(TestAction.SetValueAction(0)).joinBlocking()
+        assertEquals(listOf(false, true, false), observedValues)
+    }
+
+    @Test
+    fun `Selecting observer gets latest value on resume`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        val observedValues = mutableListOf<Int>()
+        val subscription = store.observeManually({ state -> state.counter }) { value ->
+            observedValues.add(value)
+        }.also {
+            it.resume()
+        }
+
+        subscription.pause()
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+        store.dispatch(TestAction.DecrementAction).joinBlocking()
+        assertEquals(listOf(0), observedValues)
+
+        subscription.resume()
+        assertEquals(listOf(0, 0), observedValues)
+    }
+
+    @Test
+    fun `Selector is evaluated once per state change for subscriptions sharing it`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        var evaluations = 0
+        val selector: (TestState) -> Int = { state ->
+            evaluations++
+            state.counter
+        }
+
+        var firstValue = -1
+        var secondValue = -1
+        store.observeManually(selector) { value -> firstValue = value }.also { it.resume() }
+        store.observeManually(selector) { value -> secondValue = value }.also { it.resume() }
+        evaluations = 0
+
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+
+        assertEquals(1, evaluations)
+        assertEquals(1, firstValue)
+        assertEquals(1, secondValue)
+    }
+
+    @Test
+    fun `Keyed selector is evaluated once per state change and observers only get notified for their key`() {
+        val store = Store(
+            TestState(counter = 1),
+            ::reducer,
+        )
+
+        var evaluations = 0
+        val selector = KeyedSelector<TestState, Int, Int> { state ->
+            evaluations++
+            ({ divisor -> state.counter / divisor })
+        }
+
+        val halves = mutableListOf<Int>()
+        val thirds = mutableListOf<Int>()
+        store.observeManually(selector, 2) { value -> halves.add(value) }.also { it.resume() }
+        store.observeManually(selector, 3) { value -> thirds.add(value) }.also { it.resume() }
+        evaluations = 0
+
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+        store.dispatch(TestAction.IncrementAction).joinBlocking()
+
+        assertEquals(2, evaluations)
+        assertEquals(listOf(0, 1), halves)
+        assertEquals(listOf(0, 1), thirds)
+    }
+
     @Test
     fun `Middleware chain gets executed in order`() {
         val incrementMiddleware: Middleware<TestState, TestAction> = { store, next, action ->
@@ -288,6 +394,141 @@ class StoreTest {
         assertNotNull(caughtException)
         assertTrue(caughtException is IOException)
     }
+
+    @Test
+    fun `Dispatching a batch reduces all actions and notifies observers once`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        val observedValues = mutableListOf<Int>()
+        store.observeManually { state -> observedValues.add(state.counter) }.also {
+            it.resume()
+        }
+
+        store.dispatchBatch(
+            listOf(
+                TestAction.IncrementAction,
+                TestAction.IncrementAction,
+                TestAction.DoubleAction,
+                TestAction.DoNothingAction,
+            ),
+        ).joinBlocking()
+
+        assertEquals(4, store.state.counter)
+        assertEquals(listOf(0, 4), observedValues)
+    }
+
+    @Test
+    fun `Dispatching a batch runs every action through the middleware chain`() {
+        val seenActions = mutableListOf<TestAction>()
+        val recordingMiddleware: Middleware<TestState, TestAction> = { _, next, action ->
+            seenActions.add(action)
+            next(action)
+        }
+
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+            listOf(recordingMiddleware),
+        )
+
+        store.dispatchBatch(
+            listOf(TestAction.IncrementAction, TestAction.SetValueAction(10)),
+        ).joinBlocking()
+
+        assertEquals(listOf(TestAction.IncrementAction, TestAction.SetValueAction(10)), seenActions)
+        assertEquals(10, store.state.counter)
+    }
+
+    @Test
+    fun `Observer does not get notified if batch does not change state`() {
+        val store = Store(
+            TestState(counter = 23),
+            ::reducer,
+        )
+
+        var stateChangeObserved = false
+        store.observeManually { stateChangeObserved = true }.also {
+            it.resume()
+        }
+        stateChangeObserved = false
+
+        store.dispatchBatch(listOf(TestAction.DoNothingAction, TestAction.DoNothingAction)).joinBlocking()
+
+        assertFalse(stateChangeObserved)
+    }
+
+    @Test
+    fun `Coalesced actions are reduced together and notify observers once`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        val observedValues = mutableListOf<Int>()
+        store.observeManually { state -> observedValues.add(state.counter) }.also {
+            it.resume()
+        }
+
+        store.dispatchCoalesced(TestAction.IncrementAction)
+        store.dispatchCoalesced(TestAction.IncrementAction)
+        store.dispatchCoalesced(TestAction.IncrementAction).joinBlocking()
+
+        assertEquals(3, store.state.counter)
+        assertEquals(listOf(0, 3), observedValues)
+    }
+
+    @Test
+    fun `Coalesced actions are reduced before actions dispatched later`() {
+        val store = Store(
+            TestState(counter = 1),
+            ::reducer,
+        )
+
+        store.dispatchCoalesced(TestAction.IncrementAction)
+        store.dispatch(TestAction.DoubleAction).joinBlocking()
+
+        assertEquals(4, store.state.counter)
+
+        store.dispatchCoalesced(TestAction.SetValueAction(5))
+        store.dispatchBatch(listOf(TestAction.DoubleAction)).joinBlocking()
+
+        assertEquals(10, store.state.counter)
+    }
+
+    @Test
+    fun `Job of coalesced action completes once the action got reduced by a later dispatch`() {
+        val store = Store(
+            TestState(counter = 1),
+            ::reducer,
+        )
+
+        val coalescedJob = store.dispatchCoalesced(TestAction.IncrementAction)
+        val job = store.dispatch(TestAction.DoubleAction)
+
+        coalescedJob.joinBlocking()
+        assertEquals(4, store.state.counter)
+
+        job.joinBlocking()
+        assertTrue(coalescedJob.isCompleted)
+    }
+
+    @Test
+    fun `Coalesced actions dispatched within the same window share a job`() {
+        val store = Store(
+            TestState(counter = 0),
+            ::reducer,
+        )
+
+        val first = store.dispatchCoalesced(TestAction.IncrementAction)
+        val second = store.dispatchCoalesced(TestAction.IncrementAction)
+
+        assertSame(first, second)
+        second.joinBlocking()
+        assertEquals(2, store.state.counter)
+    }
 }
 
 fun reducer(state: TestState, action: TestAction): TestState = when (action) {
@@ -0,0 +1,145 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.support.images
+
+import android.graphics.Bitmap
+import android.graphics.Color
+import android.os.Build
+import java.util.TreeMap
+
+private const val DEFAULT_MAX_BYTES = 4 * 1024 * 1024 // 4 MB
+
+// Don't reuse bitmaps that are much larger than needed: they would keep their memory allocated.
+private const val MAX_SIZE_MULTIPLE = 2
+
+/**
+ * A pool of mutable bitmaps that are no longer used, and whose memory can be reused for decoding or
+ * drawing new bitmaps of the same or a smaller size instead of allocating new ones.
+ *
+ * A bitmap must only be [put] into the pool once nothing else references it (e.g. a view displaying
+ * it or a cache): bitmaps taken from the pool get overwritten.
+ *
+ * @param maxBytes The maximum number of bytes of all bitmaps kept in the pool. If the pool gets
+ * larger, the bitmaps that were put into the pool first are dropped.
+ */
+class BitmapPool(
+    private val maxBytes: Int = DEFAULT_MAX_BYTES,
+) {
+    // Bitmaps by their allocation byte count, for finding a bitmap that is large enough.
+    private val bitmapsBySize = TreeMap<Int, ArrayDeque<Bitmap>>()
+
+    // All bitmaps in the order they were put into the pool, for dropping the oldest first.
+    private val bitmaps = ArrayDeque<Bitmap>()
+
+    /**
+     * The number of bytes of all bitmaps in the pool.
+     */
+    @get:Synchronized
+    var sizeInBytes: Int = 0
+        private set
+
+    /**
+     * Puts a [bitmap] that is no longer used into the pool. The pool takes ownership of the bitmap:
+     * if it can't be reused, it gets recycled.
+     */
+    @Synchronized
+    fun put(bitmap: Bitmap) {
+        if (bitmap.isRecycled || bitmaps.any { it === bitmap }) {
+            return
+        }
+
+        val byteCount = bitmap.allocationByteCount
+        if (!bitmap.isMutable || byteCount > maxBytes) {
+            bitmap.recycle()
+            return
+        }
+
+        bitmapsBySize.getOrPut(byteCount) { ArrayDeque() }.addLast(bitmap)
+        bitmaps.addLast(bitmap)
+        sizeInBytes += byteCount
+
+        trimToSize(maxBytes)
+    }
+
+    /**
+     * Returns a transparent bitmap with the given dimensions and [config], reusing the memory of a
+     * bitmap from the pool, or null if there is no bitmap in the pool that is large enough.
+     */
+    @Synchronized
+    fun get(width: Int, height: Int, config: Bitmap.Config = Bitmap.Config.ARGB_8888): Bitmap? {
+        val bitmap = take(width * height * config.bytesPerPixel) ?: return null
+
+        return try {
+            bitmap.reconfigure(width, height, config)
+            bitmap.eraseColor(Color.TRANSPARENT)
+            bitmap
+        } catch (e: IllegalArgumentException) {
+            bitmap.recycle()
+            null
+        }
+    }
+
+    /**
+     * Returns a bitmap from the pool with at least [byteCount] bytes allocated, to be used as
+     * [android.graphics.BitmapFactory.Options.inBitmap], or null if there is none. The returned
+     * bitmap still has its previous dimensions and content.
+     */
+    @Synchronized
+    fun getForDecoding(byteCount: Int): Bitmap? = take(byteCount)
+
+    /**
+     * Drops the bitmaps that were put into the pool first, until the pool is no larger than
+     * [maxSizeInBytes].
+     */
+    @Synchronized
+    fun trimToSize(maxSizeInBytes: Int) {
+        while (sizeInBytes > maxSizeInBytes && bitmaps.isNotEmpty()) {
+            val bitmap = bitmaps.removeFirst()
+            removeFromSizeIndex(bitmap)
+            sizeInBytes -= bitmap.allocationByteCount
+            bitmap.recycle()
+        }
+    }
+
+    /**
+     * Drops all bitmaps from the pool.
+     */
+    fun clear() = trimToSize(0)
+
+    private fun take(byteCount: Int): Bitmap? {
+        val entry = bitmapsBySize.ceilingEntry(byteCount) ?: return null
+        if (entry.key > byteCount * MAX_SIZE_MULTIPLE) {
+            return null
+        }
+
+        val bitmap = entry.value.removeFirst()
+        if (entry.value.isEmpty()) {
+            bitmapsBySize.remove(entry.key)
+        }
+
+        bitmaps.removeAll { it === bitmap }
+        sizeInBytes -= entry.key
+        return bitmap
+    }
+
+    private fun removeFromSizeIndex(bitmap: Bitmap) {
+        val byteCount = bitmap.allocationByteCount
+        val sameSize = bitmapsBySize[byteCount] ?: return
+        sameSize.removeAll { it === bitmap }
+        if (sameSize.isEmpty()) {
+            bitmapsBySize.remove(byteCount)
+        }
+    }
+}
+
+internal val Bitmap.Config.bytesPerPixel: Int
+    get() = when {
+        this == Bitmap.Config.ALPHA_8 -> 1
+        this == Bitmap.Config.RGB_565 -> 2
+        @Suppress("DEPRECATION")
+        this == Bitmap.Config.ARGB_4444 -> 2
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && this == Bitmap.Config.RGBA_F16 -> 8
+        else -> 4
+    }
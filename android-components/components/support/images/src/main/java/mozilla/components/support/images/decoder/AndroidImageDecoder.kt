@@ -10,15 +10,23 @@ import android.util.Size
 import androidx.annotation.VisibleForTesting
 import androidx.annotation.VisibleForTesting.Companion.PRIVATE
 import mozilla.components.support.base.log.logger.Logger
+import mozilla.components.support.images.BitmapPool
 import mozilla.components.support.images.DesiredSize
+import mozilla.components.support.images.bytesPerPixel
+import kotlin.math.ceil
 import kotlin.math.floor
 import kotlin.math.max
 import kotlin.math.min
 
 /**
  * [ImageDecoder] that will use Android's [BitmapFactory] in order to decode the byte data.
+ *
+ * @param bitmapPool An optional [BitmapPool] to take bitmaps from, whose memory will be reused for
+ * decoding instead of allocating a new bitmap.
  */
-class AndroidImageDecoder : ImageDecoder {
+class AndroidImageDecoder(
+    private val bitmapPool: BitmapPool? = null,
+) : ImageDecoder {
     private val logger = Logger("AndroidImageDecoder")
 
     override fun decode(data: ByteArray, desiredSize: DesiredSize): Bitmap? =
@@ -29,7 +37,7 @@ class AndroidImageDecoder : ImageDecoder {
             val sampleSize = floor(maxBoundLength / desiredSize.targetSize.toFloat()).toInt()
 
             if (isGoodSize(bounds, desiredSize)) {
-                decodeBitmap(data, sampleSize)
+                decodeBitmapIntoPooledBitmap(data, sampleSize, bounds) ?: decodeBitmap(data, sampleSize)
             } else {
                 null
             }
@@ -71,6 +79,39 @@ class AndroidImageDecoder : ImageDecoder {
         return Size(options.outWidth, options.outHeight)
     }
 
+    /**
+     * Decodes a bitmap image into a bitmap from the [bitmapPool], if it has one that is large
+     * enough. Returns null if that is not the case or if decoding into the bitmap failed.
+     */
+    private fun decodeBitmapIntoPooledBitmap(data: ByteArray, sampleSize: Int, bounds: Size): Bitmap? {
+        val pool = bitmapPool ?: return null
+
+        // The decoder rounds the sample size down to the nearest power of 2.
+        val effectiveSampleSize = Integer.highestOneBit(max(sampleSize, 1)).toDouble()
+        val width = ceil(bounds.width / effectiveSampleSize).toInt()
+        val height = ceil(bounds.height / effectiveSampleSize).toInt()
+        val reusableBitmap = pool.getForDecoding(width * height * Bitmap.Config.ARGB_8888.bytesPerPixel)
+            ?: return null
+
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = sampleSize
+            inMutable = true
+            inBitmap = reusableBitmap
+        }
+
+        val bitmap = try {
+            BitmapFactory.decodeByteArray(data, 0, data.size, options)
+        } catch (e: IllegalArgumentException) {
+            // The bitmap could not be reused for this image.
+            null
+        }
+
+        if (bitmap == null) {
+            pool.put(reusableBitmap)
+        }
+        return bitmap
+    }
+
     /**
      * Decodes a bitmap image.
      *
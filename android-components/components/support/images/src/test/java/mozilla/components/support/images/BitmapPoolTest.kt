@@ -0,0 +1,110 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.support.images
+
+import android.graphics.Bitmap
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class BitmapPoolTest {
+
+    @Test
+    fun `WHEN a bitmap of the same size was released THEN it is reused`() {
+        val pool = BitmapPool()
+        val bitmap = createBitmap(64)
+
+        pool.put(bitmap)
+        assertEquals(64 * 64 * 4, pool.sizeInBytes)
+
+        assertSame(bitmap, pool.get(64, 64))
+        assertEquals(0, pool.sizeInBytes)
+        assertNull(pool.get(64, 64))
+    }
+
+    @Test
+    fun `WHEN a larger bitmap was released THEN it is reconfigured to the requested size`() {
+        val pool = BitmapPool()
+        val bitmap = createBitmap(64)
+
+        pool.put(bitmap)
+
+        val reused = pool.get(48, 48)
+        assertSame(bitmap, reused)
+        assertEquals(48, reused!!.width)
+        assertEquals(48, reused.height)
+    }
+
+    @Test
+    fun `WHEN only much larger or smaller bitmaps were released THEN none is reused`() {
+        val pool = BitmapPool()
+
+        pool.put(createBitmap(128))
+        pool.put(createBitmap(16))
+
+        assertNull(pool.get(32, 32))
+        assertNull(pool.getForDecoding(32 * 32 * 4))
+    }
+
+    @Test
+    fun `WHEN an immutable bitmap is released THEN it is recycled`() {
+        val pool = BitmapPool()
+        val bitmap = createBitmap(64).copy(Bitmap.Config.ARGB_8888, false)
+
+        pool.put(bitmap)
+
+        assertTrue(bitmap.isRecycled)
+        assertEquals(0, pool.sizeInBytes)
+    }
+
+    @Test
+    fun `WHEN the pool gets too large THEN the oldest bitmaps are dropped`() {
+        val pool = BitmapPool(maxBytes = 2 * 64 * 64 * 4)
+        val first = createBitmap(64)
+        val second = createBitmap(64)
+        val third = createBitmap(64)
+
+        pool.put(first)
+        pool.put(second)
+        pool.put(third)
+
+        assertTrue(first.isRecycled)
+        assertFalse(second.isRecycled)
+        assertFalse(third.isRecycled)
+        assertEquals(2 * 64 * 64 * 4, pool.sizeInBytes)
+    }
+
+    @Test
+    fun `WHEN the same bitmap is released twice THEN it is only pooled once`() {
+        val pool = BitmapPool()
+        val bitmap = createBitmap(64)
+
+        pool.put(bitmap)
+        pool.put(bitmap)
+
+        assertEquals(64 * 64 * 4, pool.sizeInBytes)
+    }
+
+    @Test
+    fun `WHEN the pool is cleared THEN all bitmaps are recycled`() {
+        val pool = BitmapPool()
+        val bitmap = createBitmap(64)
+
+        pool.put(bitmap)
+        pool.clear()
+
+        assertTrue(bitmap.isRecycled)
+        assertEquals(0, pool.sizeInBytes)
+        assertNull(pool.getForDecoding(1))
+    }
+
+    private fun createBitmap(size: Int) = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)
+}
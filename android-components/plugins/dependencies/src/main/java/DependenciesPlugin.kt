@@ -60,6 +60,7 @@ object Versions {
         const val annotation = "1.5.0"
         const val appcompat = "1.3.0"
         const val autofill = "1.1.0"
+        const val benchmark = "1.1.1"
         const val browser = "1.3.0"
         const val biometric = "1.1.0"
         const val cardview = "1.0.0"
@@ -112,6 +113,7 @@ object ComponentsDependencies {
     const val androidx_annotation = "androidx.annotation:annotation:${Versions.AndroidX.annotation}"
     const val androidx_appcompat = "androidx.appcompat:appcompat:${Versions.AndroidX.appcompat}"
     const val androidx_autofill = "androidx.autofill:autofill:${Versions.AndroidX.autofill}"
+    const val androidx_benchmark_junit4 = "androidx.benchmark:benchmark-junit4:${Versions.AndroidX.benchmark}"
     const val androidx_arch_core_common = "androidx.arch.core:core-common:${Versions.AndroidX.arch}"
     const val androidx_arch_core_testing = "androidx.arch.core:core-testing:${Versions.AndroidX.arch}"
     const val androidx_biometric = "androidx.biometric:biometric:${Versions.AndroidX.biometric}"
@@ -539,6 +539,7 @@ open class FenixApplication : LocaleAwareApplication(), Provider {
 
         runOnlyInMainProcess {
             components.core.icons.onTrimMemory(level)
+            components.core.thumbnailStorage.onTrimMemory(level)
             components.core.store.dispatch(SystemAction.LowMemoryAction(level))
         }
     }
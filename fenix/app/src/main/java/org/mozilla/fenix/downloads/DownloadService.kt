@@ -15,4 +15,9 @@ class DownloadService : AbstractFetchDownloadService() {
     override val store: BrowserStore by lazy { components.core.store }
     override val style: Style by lazy { Style(R.color.fx_mobile_text_color_accent) }
     override val notificationsDelegate: NotificationsDelegate by lazy { components.notificationsDelegate }
+    override val maxDownloadSegments: Int = MAX_DOWNLOAD_SEGMENTS
+
+    companion object {
+        private const val MAX_DOWNLOAD_SEGMENTS = 4
+    }
 }
@@ -10,11 +10,16 @@ import android.graphics.Rect
 import android.util.AttributeSet
 import android.view.DragEvent
 import android.view.View
+import androidx.recyclerview.widget.ConcatAdapter
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.RecyclerView
 import mozilla.components.browser.tabstray.TabViewHolder
+import mozilla.components.browser.tabstray.thumbnail.ThumbnailPrefetchScrollListener
+import mozilla.components.concept.base.images.ImageLoadRequest
+import org.mozilla.fenix.ext.components
 import org.mozilla.fenix.tabstray.TabsTrayInteractor
 import org.mozilla.fenix.tabstray.TabsTrayStore
+import org.mozilla.fenix.tabstray.ext.browserAdapter
 import kotlin.math.abs
 
 /**
@@ -36,6 +41,13 @@ abstract class AbstractBrowserTrayList @JvmOverloads constructor(
         SwipeToDeleteBinding(tabsTrayStore)
     }
 
+    private val thumbnailPrefetcher by lazy {
+        ThumbnailPrefetchScrollListener(
+            requestForPosition = ::thumbnailRequestAt,
+            prefetch = { request -> context.components.core.thumbnailStorage.prefetchThumbnail(request) },
+        )
+    }
+
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
 
@@ -44,18 +56,44 @@ abstract class AbstractBrowserTrayList @JvmOverloads constructor(
         adapter?.onAttachedToRecyclerView(this)
         this.setOnDragListener(dragListen)
         itemAnimator = DraggableItemAnimator()
+        addOnScrollListener(thumbnailPrefetcher)
     }
 
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
 
         swipeToDelete.stop()
+        removeOnScrollListener(thumbnailPrefetcher)
+        thumbnailPrefetcher.cancel()
 
         // Notify the adapter that it is released from the view preemptively.
         adapter?.onDetachedFromRecyclerView(this)
         this.setOnDragListener(null)
     }
 
+    /**
+     * Returns the [ImageLoadRequest] for the thumbnail of the tab at [position], matching the request of the view
+     * holder that will display it, or null if there is no tab at [position].
+     */
+    private fun thumbnailRequestAt(position: Int): ImageLoadRequest? {
+        val settings = context.components.settings
+        if (settings.enableTabsTrayToCompose) {
+            // The compose tabs tray loads its thumbnails differently.
+            return null
+        }
+
+        val (browserAdapter, offset) = when (val adapter = adapter) {
+            is BrowserTabsAdapter -> adapter to 0
+            is ConcatAdapter -> adapter.browserAdapter to adapter.adapters
+                .takeWhile { it !is BrowserTabsAdapter }
+                .sumOf { it.itemCount }
+            else -> return null
+        }
+        val tab = browserAdapter.currentList.getOrNull(position - offset) ?: return null
+
+        return ImageLoadRequest(tab.id, BrowserTabViewHolder.thumbnailSize(resources, settings.gridTabView))
+    }
+
     // Find the closest item to the x/y position of the drop.
     private data class DropPositionData(val id: String, val placeAfter: Boolean, val view: View)
     private fun getDropPosition(x: Float, y: Float, source: String): DropPositionData? {
@@ -4,6 +4,7 @@
 
 package org.mozilla.fenix.tabstray.browser
 
+import android.content.res.Resources
 import android.view.View
 import androidx.appcompat.content.res.AppCompatResources
 import androidx.appcompat.widget.AppCompatImageButton
@@ -45,10 +46,7 @@ sealed class BrowserTabViewHolder(itemView: View) : RecyclerView.ViewHolder(item
         private val closeButton: AppCompatImageButton = itemView.findViewById(R.id.mozac_browser_tabstray_close)
 
         override val thumbnailSize: Int
-            get() = max(
-                itemView.resources.getDimensionPixelSize(R.dimen.tab_tray_grid_item_thumbnail_height),
-                itemView.resources.getDimensionPixelSize(R.dimen.tab_tray_grid_item_thumbnail_width),
-            )
+            get() = thumbnailSize(itemView.resources, gridLayout = true)
 
         override fun updateSelectedTabIndicator(showAsSelected: Boolean) {
             val binding = TabTrayGridItemBinding.bind(itemView)
@@ -96,10 +94,7 @@ sealed class BrowserTabViewHolder(itemView: View) : RecyclerView.ViewHolder(item
         featureName: String,
     ) : AbstractBrowserTabViewHolder(itemView, imageLoader, store, selectionHolder, featureName) {
         override val thumbnailSize: Int
-            get() = max(
-                itemView.resources.getDimensionPixelSize(R.dimen.tab_tray_list_item_thumbnail_height),
-                itemView.resources.getDimensionPixelSize(R.dimen.tab_tray_list_item_thumbnail_width),
-            )
+            get() = thumbnailSize(itemView.resources, gridLayout = false)
 
         override fun updateSelectedTabIndicator(showAsSelected: Boolean) {
             val color = if (showAsSelected) {
@@ -119,4 +114,22 @@ sealed class BrowserTabViewHolder(itemView: View) : RecyclerView.ViewHolder(item
             const val LAYOUT_ID = R.layout.tab_tray_item
         }
     }
+
+    companion object {
+        /**
+         * Returns the size of the tab thumbnails displayed by a [GridViewHolder] if [gridLayout] is true, or by a
+         * [ListViewHolder] otherwise.
+         */
+        fun thumbnailSize(resources: Resources, gridLayout: Boolean): Int = if (gridLayout) {
+            max(
+                resources.getDimensionPixelSize(R.dimen.tab_tray_grid_item_thumbnail_height),
+                resources.getDimensionPixelSize(R.dimen.tab_tray_grid_item_thumbnail_width),
+            )
+        } else {
+            max(
+                resources.getDimensionPixelSize(R.dimen.tab_tray_list_item_thumbnail_height),
+                resources.getDimensionPixelSize(R.dimen.tab_tray_list_item_thumbnail_width),
+            )
+        }
+    }
 }